@@ -8,7 +8,6 @@ import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
 import io.kaicode.elasticvc.api.BranchService;
 import io.kaicode.elasticvc.api.ComponentService;
-import io.kaicode.elasticvc.api.VersionControlHelper;
 import org.apache.http.HttpHost;
 import org.apache.http.auth.AuthScope;
 import org.apache.http.auth.UsernamePasswordCredentials;
@@ -37,9 +36,11 @@ import org.snomed.snowstorm.core.data.domain.jobs.IdentifiersForRegistration;
 import org.snomed.snowstorm.core.data.services.*;
 import org.snomed.snowstorm.core.data.services.identifier.IdentifierCacheManager;
 import org.snomed.snowstorm.core.data.services.identifier.IdentifierSource;
+import org.snomed.snowstorm.core.data.services.identifier.IssuedIdentifierFilter;
 import org.snomed.snowstorm.core.data.services.identifier.LocalRandomIdentifierSource;
 import org.snomed.snowstorm.core.data.services.identifier.SnowstormCISClient;
 import org.snomed.snowstorm.core.pojo.LanguageDialect;
+import org.snomed.snowstorm.ecl.ECLResultCache;
 import org.snomed.snowstorm.ecl.SECLObjectFactory;
 import org.snomed.snowstorm.mrcm.MRCMUpdateService;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -76,7 +77,9 @@ import javax.annotation.PostConstruct;
 import java.io.IOException;
 import java.util.*;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import static java.lang.Long.parseLong;
 
@@ -140,15 +143,33 @@ public abstract class Config {
 	@Value("${snowstorm.aws.request-signing.enabled}")
 	private Boolean awsRequestSigning;
 
+	@Value("${search.description.stored-acceptability.enabled:false}")
+	private boolean storedAcceptabilityEnabled;
+
 	@Autowired
 	private BranchService branchService;
 
 	@Autowired
 	private ConceptDefinitionStatusUpdateService conceptDefinitionStatusUpdateService;
 
+	@Autowired
+	private DescriptionAcceptabilityUpdateService descriptionAcceptabilityUpdateService;
+
+	@Autowired
+	private SemanticTagCountService semanticTagCountService;
+
 	@Autowired
 	private SemanticIndexUpdateService semanticIndexUpdateService;
 
+	@Autowired
+	private HierarchySnapshotService hierarchySnapshotService;
+
+	@Autowired
+	private ECLResultCache eclResultCache;
+
+	@Autowired
+	private AxiomConversionService axiomConversionService;
+
 	@Autowired
 	private MRCMUpdateService mrcmUpdateService;
 
@@ -164,6 +185,9 @@ public abstract class Config {
 	@Autowired
 	private IntegrityService integrityService;
 
+	@Autowired
+	private IssuedIdentifierFilter issuedIdentifierFilter;
+
 	@Autowired
 	private DomainEntityConfiguration domainEntityConfiguration;
 	
@@ -172,11 +196,20 @@ public abstract class Config {
 	@PostConstruct
 	public void configureCommitListeners() {
 		// Commit listeners will be called in this order
+		branchService.addCommitListener(getVersionControlHelper());
 		branchService.addCommitListener(conceptDefinitionStatusUpdateService);
+		if (storedAcceptabilityEnabled) {
+			branchService.addCommitListener(descriptionAcceptabilityUpdateService);
+		}
 		branchService.addCommitListener(semanticIndexUpdateService);
+		branchService.addCommitListener(hierarchySnapshotService);
+		branchService.addCommitListener(eclResultCache);
+		branchService.addCommitListener(axiomConversionService);
 		branchService.addCommitListener(mrcmUpdateService);
+		branchService.addCommitListener(semanticTagCountService);
 		branchService.addCommitListener(traceabilityLogService);
 		branchService.addCommitListener(integrityService);
+		branchService.addCommitListener(issuedIdentifierFilter);
 		branchService.addCommitListener(commit -> {
 			logger.info("Completed commit on {} in {} seconds.", commit.getBranch().getPath(), secondsDuration(commit.getTimepoint()));
 		});
@@ -193,7 +226,14 @@ public abstract class Config {
 
 	@Bean
 	public ExecutorService taskExecutor() {
-		return Executors.newCachedThreadPool();
+		CachingVersionControlHelper versionControlHelper = getVersionControlHelper();
+		// Cached thread pool which counts the branch criteria requests of tasks against the REST request submitting them
+		return new ThreadPoolExecutor(0, Integer.MAX_VALUE, 60L, TimeUnit.SECONDS, new SynchronousQueue<>()) {
+			@Override
+			public void execute(Runnable command) {
+				super.execute(versionControlHelper.inCurrentRequest(command));
+			}
+		};
 	}
 
 	@Bean
@@ -316,8 +356,8 @@ public abstract class Config {
 	}
 
 	@Bean
-	public VersionControlHelper getVersionControlHelper() {
-		return new VersionControlHelper();
+	public CachingVersionControlHelper getVersionControlHelper() {
+		return new CachingVersionControlHelper();
 	}
 
 	@Bean
@@ -326,10 +366,11 @@ public abstract class Config {
 			@Value("${cis.username}") String username,
 			@Value("${cis.password}") String password,
 			@Value("${cis.softwareName}") String softwareName,
-			@Value("${cis.timeout}") int timeoutSeconds) {
+			@Value("${cis.timeout}") int timeoutSeconds,
+			IssuedIdentifierFilter issuedIdentifierFilter) {
 
 		if (cisApiUrl.equals("local-random") || cisApiUrl.equals("local")) {// local is the legacy name
-			return new LocalRandomIdentifierSource(elasticsearchRestTemplate());
+			return new LocalRandomIdentifierSource(elasticsearchRestTemplate(), issuedIdentifierFilter);
 		} else {
 			return new SnowstormCISClient(cisApiUrl, username, password, softwareName, timeoutSeconds);
 		}
@@ -1,8 +1,12 @@
 package org.snomed.snowstorm.config;
 
+import org.snomed.snowstorm.core.data.services.CachingVersionControlHelper;
+import org.snomed.snowstorm.rest.config.BranchLookupMetricsInterceptor;
 import org.snomed.snowstorm.rest.converter.ItemsPageCSVConverter;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 
 import java.util.List;
@@ -10,9 +14,17 @@ import java.util.List;
 @Configuration
 public class WebConfig implements WebMvcConfigurer {
 
+	@Autowired
+	private CachingVersionControlHelper versionControlHelper;
+
 	@Override
 	public void configureMessageConverters(List<HttpMessageConverter<?>> converters) {
 		converters.add(new ItemsPageCSVConverter());
 	}
 
+	@Override
+	public void addInterceptors(InterceptorRegistry registry) {
+		registry.addInterceptor(new BranchLookupMetricsInterceptor(versionControlHelper));
+	}
+
 }
@@ -0,0 +1,63 @@
+package org.snomed.snowstorm.core.data.domain;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.elasticsearch.annotations.Document;
+import org.springframework.data.elasticsearch.annotations.Field;
+import org.springframework.data.elasticsearch.annotations.FieldType;
+
+/**
+ * Components with bad reference integrity on a branch for one form, stated or inferred, valid while the branch head matches headTimestamp.
+ */
+@Document(indexName = "integrity-index")
+public class BranchIntegrityIndex {
+
+	@Id
+	private String id;
+
+	@Field(type = FieldType.Keyword)
+	private String path;
+
+	@Field(type = FieldType.Boolean)
+	private boolean stated;
+
+	@Field(type = FieldType.Long)
+	private long headTimestamp;
+
+	@Field(type = FieldType.Keyword, index = false, docValues = false)
+	private String issuesJson;
+
+	public BranchIntegrityIndex() {
+	}
+
+	public BranchIntegrityIndex(String path, boolean stated, long headTimestamp, String issuesJson) {
+		this.id = getId(path, stated);
+		this.path = path;
+		this.stated = stated;
+		this.headTimestamp = headTimestamp;
+		this.issuesJson = issuesJson;
+	}
+
+	public static String getId(String path, boolean stated) {
+		return path + (stated ? "_stated" : "_inferred");
+	}
+
+	public String getId() {
+		return id;
+	}
+
+	public String getPath() {
+		return path;
+	}
+
+	public boolean isStated() {
+		return stated;
+	}
+
+	public long getHeadTimestamp() {
+		return headTimestamp;
+	}
+
+	public String getIssuesJson() {
+		return issuesJson;
+	}
+}
@@ -30,6 +30,8 @@ public class Description extends SnomedComponent<Description> implements SnomedC
 		String CONCEPT_ID = "conceptId";
 		String TYPE_ID = "typeId";
 		String LANGUAGE_CODE = "languageCode";
+		String PREFERRED_IN = "preferredIn";
+		String ACCEPTABLE_IN = "acceptableIn";
 	}
 
 	@JsonView(value = View.Component.class)
@@ -78,6 +80,13 @@ public class Description extends SnomedComponent<Description> implements SnomedC
 	@Size(min = 5, max = 18)
 	private String caseSignificanceId;
 
+	// Language reference sets where this description is preferred or acceptable. Maintained from the language refset members by a commit listener.
+	@Field(type = FieldType.Keyword)
+	private Set<String> preferredIn;
+
+	@Field(type = FieldType.Keyword)
+	private Set<String> acceptableIn;
+
 	// Populated when requesting an update
 	@Transient
 	private Map<String, String> acceptabilityMap;
@@ -374,6 +383,24 @@ public class Description extends SnomedComponent<Description> implements SnomedC
 		return termLen;
 	}
 
+	@JsonIgnore
+	public Set<String> getPreferredIn() {
+		return preferredIn;
+	}
+
+	public void setPreferredIn(Set<String> preferredIn) {
+		this.preferredIn = preferredIn;
+	}
+
+	@JsonIgnore
+	public Set<String> getAcceptableIn() {
+		return acceptableIn;
+	}
+
+	public void setAcceptableIn(Set<String> acceptableIn) {
+		this.acceptableIn = acceptableIn;
+	}
+
 	public String getTag() {
 		if (Concepts.FSN.equals(typeId)) {
 			Matcher matcher = TAG_PATTERN.matcher(term);
@@ -0,0 +1,45 @@
+package org.snomed.snowstorm.core.data.domain;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.elasticsearch.annotations.Document;
+import org.springframework.data.elasticsearch.annotations.Field;
+import org.springframework.data.elasticsearch.annotations.FieldType;
+
+/**
+ * Saved Bloom filter of the identifiers used by one component type.
+ * Every component version with a start before the watermark was added to the filter.
+ */
+@Document(indexName = "issued-identifier-filter")
+public class IssuedIdentifierFilterSnapshot {
+
+	@Id
+	private String componentType;
+
+	@Field(type = FieldType.Long)
+	private long watermark;
+
+	// Serialised Bloom filter, Base64 encoded
+	@Field(type = FieldType.Keyword, index = false, docValues = false)
+	private String filter;
+
+	public IssuedIdentifierFilterSnapshot() {
+	}
+
+	public IssuedIdentifierFilterSnapshot(String componentType, long watermark, String filter) {
+		this.componentType = componentType;
+		this.watermark = watermark;
+		this.filter = filter;
+	}
+
+	public String getComponentType() {
+		return componentType;
+	}
+
+	public long getWatermark() {
+		return watermark;
+	}
+
+	public String getFilter() {
+		return filter;
+	}
+}
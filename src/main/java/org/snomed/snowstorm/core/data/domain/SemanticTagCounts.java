@@ -0,0 +1,45 @@
+package org.snomed.snowstorm.core.data.domain;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.elasticsearch.annotations.Document;
+import org.springframework.data.elasticsearch.annotations.Field;
+import org.springframework.data.elasticsearch.annotations.FieldType;
+
+/**
+ * Number of active concepts per semantic tag on a branch, valid while the branch head matches headTimestamp.
+ * Shared by all instances using the same store.
+ */
+@Document(indexName = "semantic-tag-counts")
+public class SemanticTagCounts {
+
+	@Id
+	private String path;
+
+	@Field(type = FieldType.Long)
+	private long headTimestamp;
+
+	// Tag counts as a JSON object, semantic tags can not be used as field names
+	@Field(type = FieldType.Keyword, index = false, docValues = false)
+	private String tagCountsJson;
+
+	public SemanticTagCounts() {
+	}
+
+	public SemanticTagCounts(String path, long headTimestamp, String tagCountsJson) {
+		this.path = path;
+		this.headTimestamp = headTimestamp;
+		this.tagCountsJson = tagCountsJson;
+	}
+
+	public String getPath() {
+		return path;
+	}
+
+	public long getHeadTimestamp() {
+		return headTimestamp;
+	}
+
+	public String getTagCountsJson() {
+		return tagCountsJson;
+	}
+}
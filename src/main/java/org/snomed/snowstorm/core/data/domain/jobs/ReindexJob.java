@@ -0,0 +1,161 @@
+package org.snomed.snowstorm.core.data.domain.jobs;
+
+import org.snomed.snowstorm.core.data.domain.JobStatus;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.elasticsearch.annotations.Document;
+import org.springframework.data.elasticsearch.annotations.Field;
+import org.springframework.data.elasticsearch.annotations.FieldType;
+
+import java.util.*;
+
+/**
+ * Background rebuild of documents in one index.
+ * The documents are split into slices by internalId range. The last internalId processed in each slice
+ * is saved with the job after each batch so that an interrupted job can continue where it stopped.
+ */
+@Document(indexName = "reindex-job")
+public class ReindexJob {
+
+	@Id
+	private String id;
+	@Field(type = FieldType.Keyword)
+	private String type;
+	private Map<String, String> parameters;
+	@Field(type = FieldType.Keyword)
+	private JobStatus status;
+	private Date scheduledDate;
+	private Date startDate;
+	private Date endDate;
+	private String message;
+	private List<Slice> slices;
+
+	public ReindexJob() {
+	}
+
+	public ReindexJob(String type, Map<String, String> parameters, List<Slice> slices) {
+		id = UUID.randomUUID().toString();
+		this.type = type;
+		this.parameters = parameters;
+		this.slices = slices;
+		scheduledDate = new Date();
+		status = JobStatus.SCHEDULED;
+	}
+
+	public long getDocumentsProcessed() {
+		return slices.stream().mapToLong(Slice::getDocumentsProcessed).sum();
+	}
+
+	public long getDocumentsUpdated() {
+		return slices.stream().mapToLong(Slice::getDocumentsUpdated).sum();
+	}
+
+	public long getSlicesComplete() {
+		return slices.stream().filter(Slice::isComplete).count();
+	}
+
+	public String getId() {
+		return id;
+	}
+
+	public String getType() {
+		return type;
+	}
+
+	public Map<String, String> getParameters() {
+		return parameters;
+	}
+
+	public JobStatus getStatus() {
+		return status;
+	}
+
+	public void setStatus(JobStatus status) {
+		this.status = status;
+	}
+
+	public Date getScheduledDate() {
+		return scheduledDate;
+	}
+
+	public Date getStartDate() {
+		return startDate;
+	}
+
+	public void setStartDate(Date startDate) {
+		this.startDate = startDate;
+	}
+
+	public Date getEndDate() {
+		return endDate;
+	}
+
+	public void setEndDate(Date endDate) {
+		this.endDate = endDate;
+	}
+
+	public String getMessage() {
+		return message;
+	}
+
+	public void setMessage(String message) {
+		this.message = message;
+	}
+
+	public List<Slice> getSlices() {
+		return slices;
+	}
+
+	public static final class Slice {
+
+		// Inclusive, null for the first slice
+		private String fromInternalId;
+		// Exclusive, null for the last slice
+		private String toInternalId;
+		private String lastInternalId;
+		private long documentsProcessed;
+		private long documentsUpdated;
+		private boolean complete;
+
+		public Slice() {
+		}
+
+		public Slice(String fromInternalId, String toInternalId) {
+			this.fromInternalId = fromInternalId;
+			this.toInternalId = toInternalId;
+		}
+
+		public void addProgress(String lastInternalId, long documentsProcessed, long documentsUpdated) {
+			this.lastInternalId = lastInternalId;
+			this.documentsProcessed += documentsProcessed;
+			this.documentsUpdated += documentsUpdated;
+		}
+
+		public String getFromInternalId() {
+			return fromInternalId;
+		}
+
+		public String getToInternalId() {
+			return toInternalId;
+		}
+
+		public String getLastInternalId() {
+			return lastInternalId;
+		}
+
+		public long getDocumentsProcessed() {
+			return documentsProcessed;
+		}
+
+		public long getDocumentsUpdated() {
+			return documentsUpdated;
+		}
+
+		public boolean isComplete() {
+			return complete;
+		}
+
+		public void setComplete(boolean complete) {
+			this.complete = complete;
+		}
+	}
+}
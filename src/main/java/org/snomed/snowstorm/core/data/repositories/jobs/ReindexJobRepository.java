@@ -0,0 +1,14 @@
+package org.snomed.snowstorm.core.data.repositories.jobs;
+
+import org.snomed.snowstorm.core.data.domain.JobStatus;
+import org.snomed.snowstorm.core.data.domain.jobs.ReindexJob;
+import org.springframework.data.elasticsearch.repository.ElasticsearchRepository;
+
+import java.util.Collection;
+import java.util.List;
+
+public interface ReindexJobRepository extends ElasticsearchRepository<ReindexJob, String> {
+
+	List<ReindexJob> findByStatusIn(Collection<JobStatus> statuses);
+
+}
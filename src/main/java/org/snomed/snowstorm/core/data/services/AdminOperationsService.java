@@ -11,22 +11,18 @@ import io.kaicode.elasticvc.domain.DomainEntity;
 import io.kaicode.elasticvc.repositories.BranchRepository;
 import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
 import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
-import org.elasticsearch.action.update.UpdateRequest;
 import org.elasticsearch.index.query.QueryBuilders;
-import org.elasticsearch.search.sort.SortBuilders;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.snomed.snowstorm.config.SearchLanguagesConfiguration;
 import org.snomed.snowstorm.core.data.domain.*;
+import org.snomed.snowstorm.core.data.domain.jobs.ReindexJob;
 import org.snomed.snowstorm.core.rf2.RF2Constants;
-import org.snomed.snowstorm.core.util.DescriptionHelper;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
 import org.springframework.data.elasticsearch.core.SearchHitsIterator;
 import org.springframework.data.elasticsearch.core.query.NativeSearchQuery;
 import org.springframework.data.elasticsearch.core.query.NativeSearchQueryBuilder;
 import org.springframework.data.elasticsearch.core.query.Query;
-import org.springframework.data.elasticsearch.core.query.UpdateQuery;
 import org.springframework.data.elasticsearch.repository.ElasticsearchRepository;
 import org.springframework.stereotype.Service;
 
@@ -35,8 +31,6 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.util.*;
-import java.util.concurrent.atomic.AtomicLong;
-import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
@@ -44,15 +38,11 @@ import static com.google.common.collect.Iterables.partition;
 import static io.kaicode.elasticvc.api.ComponentService.LARGE_PAGE;
 import static java.lang.Long.parseLong;
 import static java.lang.String.format;
-import static org.elasticsearch.common.xcontent.XContentFactory.jsonBuilder;
 import static org.elasticsearch.index.query.QueryBuilders.*;
 
 @Service
 public class AdminOperationsService {
 
-	@Autowired
-	private SearchLanguagesConfiguration searchLanguagesConfiguration;
-
 	@Autowired
 	private ElasticsearchOperations elasticsearchTemplate;
 
@@ -80,63 +70,15 @@ public class AdminOperationsService {
 	@Autowired
 	private ConceptService conceptService;
 
+	@Autowired
+	private ReindexJobService reindexJobService;
+
 	private Logger logger = LoggerFactory.getLogger(getClass());
 	public static final int ONE_SECOND_IN_MILLIS = 1000;
 
-	public void reindexDescriptionsForLanguage(String languageCode) throws IOException {
-		Map<String, Set<Character>> charactersNotFoldedSets = searchLanguagesConfiguration.getCharactersNotFoldedSets();
-		Set<Character> foldedCharacters = charactersNotFoldedSets.getOrDefault(languageCode, Collections.emptySet());
-		logger.info("Reindexing all description documents in version control with language code '{}' using {} folded characters.", languageCode, foldedCharacters.size());
-		AtomicLong descriptionCount = new AtomicLong();
-		AtomicLong descriptionUpdateCount = new AtomicLong();
-		try (SearchHitsIterator<Description> descriptionsOnAllBranchesStream = elasticsearchTemplate.searchForStream(new NativeSearchQueryBuilder()
-						.withQuery(termQuery(Description.Fields.LANGUAGE_CODE, languageCode))
-						.withSort(SortBuilders.fieldSort("internalId"))
-						.withPageable(LARGE_PAGE)
-						.build(),
-				Description.class)) {
-
-			List<UpdateQuery> updateQueries = new ArrayList<>();
-			AtomicReference<IOException> exceptionThrown = new AtomicReference<>();
-			descriptionsOnAllBranchesStream.forEachRemaining(hit -> {
-				Description description = hit.getContent();
-				if (exceptionThrown.get() == null) {
-
-					String newFoldedTerm = DescriptionHelper.foldTerm(description.getTerm(), foldedCharacters);
-					descriptionCount.incrementAndGet();
-					if (!newFoldedTerm.equals(description.getTermFolded())) {
-						UpdateRequest updateRequest = new UpdateRequest();
-						try {
-							updateRequest.doc(jsonBuilder()
-									.startObject()
-									.field(Description.Fields.TERM_FOLDED, newFoldedTerm)
-									.endObject());
-						} catch (IOException e) {
-							exceptionThrown.set(e);
-						}
-
-						updateQueries.add(UpdateQuery.builder(description.getInternalId()).build());
-						descriptionUpdateCount.incrementAndGet();
-					}
-					if (updateQueries.size() == 10_000) {
-						logger.info("Bulk update {}", descriptionUpdateCount.get());
-						elasticsearchTemplate.bulkUpdate(updateQueries, elasticsearchTemplate.getIndexCoordinatesFor(Description.class));
-						updateQueries.clear();
-					}
-				}
-			});
-			if (exceptionThrown.get() != null) {
-				throw exceptionThrown.get();
-			}
-			if (!updateQueries.isEmpty()) {
-				logger.info("Bulk update {}", descriptionUpdateCount.get());
-				elasticsearchTemplate.bulkUpdate(updateQueries, elasticsearchTemplate.getIndexCoordinatesFor(Description.class));
-			}
-		} finally {
-			elasticsearchTemplate.indexOps(Description.class).refresh();
-		}
-		logger.info("Completed reindexing of description documents with language code '{}'. Of the {} documents found {} were updated due to a character folding change.",
-				languageCode, descriptionCount.get(), descriptionUpdateCount.get());
+	public ReindexJob reindexDescriptionsForLanguage(String languageCode) {
+		logger.info("Starting reindex of all description documents in version control with language code '{}'.", languageCode);
+		return reindexJobService.startJob(DescriptionFoldingReindexer.TYPE, Collections.singletonMap(DescriptionFoldingReindexer.LANGUAGE_CODE, languageCode));
 	}
 
 	public Map<Class, Set<String>> findAndEndDonatedContent(String branch) {
@@ -1,13 +1,18 @@
 package org.snomed.snowstorm.core.data.services;
 
 import ch.qos.logback.classic.Level;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import io.kaicode.elasticvc.api.BranchCriteria;
+import io.kaicode.elasticvc.api.BranchService;
 import io.kaicode.elasticvc.api.VersionControlHelper;
+import io.kaicode.elasticvc.domain.Branch;
 import it.unimi.dsi.fastutil.longs.LongArrayList;
 import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
 import org.snomed.snowstorm.core.data.domain.*;
 import org.snomed.snowstorm.core.data.services.pojo.AuthoringStatsSummary;
 import org.snomed.snowstorm.core.pojo.LanguageDialect;
+import org.snomed.snowstorm.core.util.ConcurrencyUtil;
 import org.snomed.snowstorm.core.util.TimerUtil;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.PageRequest;
@@ -19,6 +24,8 @@ import org.springframework.data.elasticsearch.core.query.Query;
 import org.springframework.stereotype.Service;
 
 import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.stream.Collectors;
 
 import static io.kaicode.elasticvc.api.VersionControlHelper.LARGE_PAGE;
@@ -37,7 +44,23 @@ public class AuthoringStatsService {
 	@Autowired
 	private ConceptService conceptService;
 
+	@Autowired
+	private BranchService branchService;
+
+	@Autowired
+	private ExecutorService executorService;
+
+	// Stats keyed by branch path and head timestamp
+	private final Cache<String, AuthoringStatsSummary> branchHeadStatsCache = Caffeine.newBuilder().maximumSize(1_000).build();
+
 	public AuthoringStatsSummary getStats(String branch) {
+		Branch latest = branchService.findLatest(branch);
+		// Stats only change when the branch head moves, the dashboard requests them for every open task
+		AuthoringStatsSummary stats = branchHeadStatsCache.get(branch + "@" + latest.getHeadTimestamp(), key -> doGetStats(latest));
+		return new AuthoringStatsSummary(new Date(), stats);
+	}
+
+	private AuthoringStatsSummary doGetStats(Branch branch) {
 		BranchCriteria branchCriteria = versionControlHelper.getBranchCriteria(branch);
 
 		TimerUtil timer = new TimerUtil("Authoring stats", Level.INFO, 5);
@@ -45,58 +68,35 @@ public class AuthoringStatsService {
 		AuthoringStatsSummary authoringStatsSummary = new AuthoringStatsSummary(new Date());
 		authoringStatsSummary.setTitle("Authoring changes since last release");
 
-		// New concepts
+		// Collect the concept ids needed for the new synonyms query while the concept counts run
+		Future<NativeSearchQueryBuilder> newSynonymsOnExistingConceptsCriteria =
+				executorService.submit(() -> getNewSynonymsOnExistingConceptsCriteria(branchCriteria, null));
+
+		// New, inactivated and reactivated concepts in one multi-search
 		PageRequest pageOfOne = PageRequest.of(0, 1);
-		SearchHits<Concept> newConceptsPage = elasticsearchOperations.search(withTotalHitsTracking(getNewConceptCriteria(branchCriteria)
-				.withPageable(pageOfOne)
-				.build()), Concept.class);
-		timer.checkpoint("new concepts");
-		authoringStatsSummary.setNewConceptsCount(newConceptsPage.getTotalHits());
-
-		// Inactivated concepts
-		SearchHits<Concept> inactivatedConceptsPage = elasticsearchOperations.search(withTotalHitsTracking(getInactivatedConceptsCriteria(branchCriteria)
-				.withPageable(pageOfOne)
-				.build()), Concept.class);
-		timer.checkpoint("inactivated concepts");
-		authoringStatsSummary.setInactivatedConceptsCount(inactivatedConceptsPage.getTotalHits());
-
-		// Reactivated concepts
-		SearchHits<Concept> reactivatedConceptsPage = elasticsearchOperations.search(withTotalHitsTracking(getReactivatedConceptsCriteria(branchCriteria)
-				.withPageable(pageOfOne)
-				.build()), Concept.class);
-		timer.checkpoint("reactivated concepts");
-		authoringStatsSummary.setReactivatedConceptsCount(reactivatedConceptsPage.getTotalHits());
-
-		// Changed FSNs
-		SearchHits<Description> changedFSNsPage = elasticsearchOperations.search(withTotalHitsTracking(getChangedFSNsCriteria(branchCriteria)
-				.withPageable(pageOfOne)
-				.build()), Description.class);
-		timer.checkpoint("changed FSNs");
-		authoringStatsSummary.setChangedFsnCount(changedFSNsPage.getTotalHits());
-
-		// Inactivated synonyms
-		SearchHits<Description> inactivatedSynonyms = elasticsearchOperations.search(withTotalHitsTracking(getInactivatedSynonymCriteria(branchCriteria)
-				.withFields(Description.Fields.CONCEPT_ID)
-				.withPageable(pageOfOne)
-				.build()), Description.class);
-		timer.checkpoint("inactivated descriptions");
-		authoringStatsSummary.setInactivatedSynonymsCount(inactivatedSynonyms.getTotalHits());
-
-		// New synonyms for existing concepts
-		SearchHits<Description> newSynonymsForExistingConcepts = elasticsearchOperations.search(withTotalHitsTracking(getNewSynonymsOnExistingConceptsCriteria(branchCriteria, timer)
-				.withFields(Description.Fields.DESCRIPTION_ID, Description.Fields.CONCEPT_ID)
-				.withPageable(pageOfOne)
-				.build()), Description.class);
-		timer.checkpoint("new synonyms for existing concepts");
-		authoringStatsSummary.setNewSynonymsForExistingConceptsCount(newSynonymsForExistingConcepts.getTotalHits());
-
-		// Reactivated synonyms
-		SearchHits<Description> reactivatedSynonyms = elasticsearchOperations.search(withTotalHitsTracking(getReactivatedSynonymsCriteria(branchCriteria)
-				.withFields(Description.Fields.CONCEPT_ID)
-				.withPageable(pageOfOne)
-				.build()), Description.class);
-		timer.checkpoint("reactivated descriptions");
-		authoringStatsSummary.setReactivatedSynonymsCount(reactivatedSynonyms.getTotalHits());
+		List<SearchHits<Concept>> conceptCounts = elasticsearchOperations.multiSearch(Arrays.asList(
+				withTotalHitsTracking(getNewConceptCriteria(branchCriteria).withPageable(pageOfOne).build()),
+				withTotalHitsTracking(getInactivatedConceptsCriteria(branchCriteria).withPageable(pageOfOne).build()),
+				withTotalHitsTracking(getReactivatedConceptsCriteria(branchCriteria).withPageable(pageOfOne).build())
+		), Concept.class, elasticsearchOperations.getIndexCoordinatesFor(Concept.class));
+		timer.checkpoint("concept counts");
+		authoringStatsSummary.setNewConceptsCount(conceptCounts.get(0).getTotalHits());
+		authoringStatsSummary.setInactivatedConceptsCount(conceptCounts.get(1).getTotalHits());
+		authoringStatsSummary.setReactivatedConceptsCount(conceptCounts.get(2).getTotalHits());
+
+		// Changed FSNs, inactivated synonyms, new synonyms for existing concepts and reactivated synonyms in one multi-search
+		List<SearchHits<Description>> descriptionCounts = elasticsearchOperations.multiSearch(Arrays.asList(
+				withTotalHitsTracking(getChangedFSNsCriteria(branchCriteria).withPageable(pageOfOne).build()),
+				withTotalHitsTracking(getInactivatedSynonymCriteria(branchCriteria).withFields(Description.Fields.CONCEPT_ID).withPageable(pageOfOne).build()),
+				withTotalHitsTracking(ConcurrencyUtil.waitForResult(newSynonymsOnExistingConceptsCriteria::get, "calculating authoring stats")
+						.withFields(Description.Fields.DESCRIPTION_ID, Description.Fields.CONCEPT_ID).withPageable(pageOfOne).build()),
+				withTotalHitsTracking(getReactivatedSynonymsCriteria(branchCriteria).withFields(Description.Fields.CONCEPT_ID).withPageable(pageOfOne).build())
+		), Description.class, elasticsearchOperations.getIndexCoordinatesFor(Description.class));
+		timer.checkpoint("description counts");
+		authoringStatsSummary.setChangedFsnCount(descriptionCounts.get(0).getTotalHits());
+		authoringStatsSummary.setInactivatedSynonymsCount(descriptionCounts.get(1).getTotalHits());
+		authoringStatsSummary.setNewSynonymsForExistingConceptsCount(descriptionCounts.get(2).getTotalHits());
+		authoringStatsSummary.setReactivatedSynonymsCount(descriptionCounts.get(3).getTotalHits());
 
 		return authoringStatsSummary;
 	}
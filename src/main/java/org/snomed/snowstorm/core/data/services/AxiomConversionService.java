@@ -1,7 +1,11 @@
 package org.snomed.snowstorm.core.data.services;
 
 import io.kaicode.elasticvc.api.BranchCriteria;
+import io.kaicode.elasticvc.api.BranchService;
+import io.kaicode.elasticvc.api.CommitListener;
 import io.kaicode.elasticvc.api.VersionControlHelper;
+import io.kaicode.elasticvc.domain.Branch;
+import io.kaicode.elasticvc.domain.Commit;
 import org.snomed.otf.owltoolkit.conversion.AxiomRelationshipConversionService;
 import org.snomed.otf.owltoolkit.conversion.ConversionException;
 import org.snomed.otf.owltoolkit.domain.AxiomRepresentation;
@@ -12,16 +16,21 @@ import org.snomed.snowstorm.core.util.TimerUtil;
 import org.snomed.snowstorm.ecl.ECLQueryService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
+import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
+import org.springframework.data.elasticsearch.core.mapping.IndexCoordinates;
+import org.springframework.data.elasticsearch.core.query.NativeSearchQueryBuilder;
 import org.springframework.stereotype.Service;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
 import static io.kaicode.elasticvc.api.ComponentService.LARGE_PAGE;
 import static java.lang.Long.parseLong;
+import static org.elasticsearch.index.query.QueryBuilders.*;
 
 @Service
-public class AxiomConversionService {
+public class AxiomConversionService implements CommitListener {
 
 	@Autowired
 	private ReferenceSetMemberService memberService;
@@ -32,8 +41,18 @@ public class AxiomConversionService {
 	@Autowired
 	private ECLQueryService eclQueryService;
 
+	@Autowired
+	private BranchService branchService;
+
+	@Autowired
+	private ElasticsearchOperations elasticsearchTemplate;
+
 	private final AxiomRelationshipConversionService axiomRelationshipConversionService;
 
+	// Conversion services configured from the MRCM and concept model of each branch, keyed on the branch version they were built from.
+	// Entries are removed by commits which change MRCM attribute domains or the concept model attribute hierarchy, other commits move them on to the new head.
+	private final Map<String, BranchConversionService> branchConversionServices = new ConcurrentHashMap<>();
+
 	public AxiomConversionService() {
 		axiomRelationshipConversionService = new AxiomRelationshipConversionService(Collections.emptySet());
 	}
@@ -57,7 +76,14 @@ public class AxiomConversionService {
 	}
 
 	public void populateAxiomMembers(Collection<Concept> concepts, String branchPath) {
-		AxiomRelationshipConversionService conversionService = setupConversionService(branchPath);
+		AxiomRelationshipConversionService conversionService = getConversionService(branchPath);
+		// A cached service is shared by requests on the same branch. Its OWL API data factory and renderers are not documented as thread safe.
+		synchronized (conversionService) {
+			populateAxiomMembers(concepts, conversionService);
+		}
+	}
+
+	private void populateAxiomMembers(Collection<Concept> concepts, AxiomRelationshipConversionService conversionService) {
 		for (Concept concept : concepts) {
 			for (Axiom axiom : concept.getClassAxioms()) {
 				String owlExpression = conversionService.convertRelationshipsToAxiom(
@@ -81,6 +107,59 @@ public class AxiomConversionService {
 				.setAdditionalField(ReferenceSetMember.OwlExpressionFields.OWL_EXPRESSION, owlExpression);
 	}
 
+	private AxiomRelationshipConversionService getConversionService(String branchPath) {
+		Branch branch = branchService.findLatest(branchPath);
+		BranchConversionService cached = branchConversionServices.get(branchPath);
+		if (cached != null && cached.baseTimestamp == branch.getBaseTimestamp() && cached.headTimestamp == branch.getHeadTimestamp()) {
+			return cached.conversionService;
+		}
+		AxiomRelationshipConversionService conversionService = setupConversionService(branchPath);
+		// Keyed on the head the service was built from. If a commit completes during setup the entry does not match the new head,
+		// whether or not the commit listener saw it, so it is never used for content the setup did not see.
+		branchConversionServices.put(branchPath, new BranchConversionService(conversionService, branch.getBaseTimestamp(), branch.getHeadTimestamp()));
+		return conversionService;
+	}
+
+	@Override
+	public void preCommitCompletion(Commit commit) throws IllegalStateException {
+		String path = commit.getBranch().getPath();
+		String childPrefix = path + "/";
+		if (branchConversionServices.keySet().stream().noneMatch(cachedPath -> cachedPath.equals(path) || cachedPath.startsWith(childPrefix))) {
+			return;
+		}
+		if (isConversionSetupChanged(commit)) {
+			branchConversionServices.keySet().removeIf(cachedPath -> cachedPath.equals(path) || cachedPath.startsWith(childPrefix));
+		} else {
+			// Still valid, move the entry on to the head this commit creates
+			long newHeadTimestamp = commit.getTimepoint().getTime();
+			branchConversionServices.computeIfPresent(path, (cachedPath, cached) -> cached.headTimestamp == commit.getBranch().getHeadTimestamp() ?
+					new BranchConversionService(cached.conversionService, cached.baseTimestamp, newHeadTimestamp) : cached);
+		}
+	}
+
+	// One request for both changes, the MRCM attribute domain members and the stated semantic index entries of the attribute hierarchy
+	private boolean isConversionSetupChanged(Commit commit) {
+		BranchCriteria changesCriteria = versionControlHelper.getBranchCriteriaChangesAndDeletionsWithinOpenCommitOnly(commit);
+		// Ended versions are included so attributes moved out of the hierarchy are found
+		List<Long> attributeRoots = Arrays.asList(parseLong(Concepts.CONCEPT_MODEL_OBJECT_ATTRIBUTE), parseLong(Concepts.CONCEPT_MODEL_DATA_ATTRIBUTE));
+		IndexCoordinates indices = IndexCoordinates.of(
+				elasticsearchTemplate.getIndexCoordinatesFor(ReferenceSetMember.class).getIndexName(),
+				elasticsearchTemplate.getIndexCoordinatesFor(QueryConcept.class).getIndexName());
+		long changes = elasticsearchTemplate.count(new NativeSearchQueryBuilder()
+				.withQuery(boolQuery()
+						.should(boolQuery()
+								.must(changesCriteria.getEntityBranchCriteria(ReferenceSetMember.class))
+								.must(termQuery(ReferenceSetMember.Fields.REFSET_ID, Concepts.REFSET_MRCM_ATTRIBUTE_DOMAIN_INTERNATIONAL)))
+						.should(boolQuery()
+								.must(changesCriteria.getEntityBranchCriteria(QueryConcept.class))
+								.must(termQuery(QueryConcept.Fields.STATED, true))
+								.must(boolQuery()
+										.should(termsQuery(QueryConcept.Fields.ANCESTORS, attributeRoots))
+										.should(termsQuery(QueryConcept.Fields.CONCEPT_ID, attributeRoots)))))
+				.build(), null, indices);
+		return changes > 0;
+	}
+
 	private AxiomRelationshipConversionService setupConversionService(String branchPath) {
 		TimerUtil timer = new TimerUtil("Axiom conversion service setup");
 		Page<ReferenceSetMember> mrcmAttributeDomainMembers = memberService.findMembers(branchPath, new MemberSearchRequest().active(true).referenceSet(Concepts.REFSET_MRCM_ATTRIBUTE_DOMAIN_INTERNATIONAL), LARGE_PAGE);
@@ -126,4 +205,17 @@ public class AxiomConversionService {
 		}
 		return axiomRepresentation;
 	}
+
+	private static final class BranchConversionService {
+
+		private final AxiomRelationshipConversionService conversionService;
+		private final long baseTimestamp;
+		private final long headTimestamp;
+
+		private BranchConversionService(AxiomRelationshipConversionService conversionService, long baseTimestamp, long headTimestamp) {
+			this.conversionService = conversionService;
+			this.baseTimestamp = baseTimestamp;
+			this.headTimestamp = headTimestamp;
+		}
+	}
 }
@@ -0,0 +1,290 @@
+package org.snomed.snowstorm.core.data.services;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.kaicode.elasticvc.api.BranchCriteria;
+import io.kaicode.elasticvc.api.BranchService;
+import io.kaicode.elasticvc.api.CommitListener;
+import io.kaicode.elasticvc.api.VersionControlHelper;
+import io.kaicode.elasticvc.domain.Branch;
+import io.kaicode.elasticvc.domain.Commit;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+
+import javax.annotation.PostConstruct;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Version control helper which caches branch criteria, shared across threads.
+ * Entries are keyed by path, the head of the branch version and the timepoint so a cached entry is never used for a different branch version,
+ * this still takes one branch lookup but saves loading the time slice of the branch.
+ * Criteria of locked branches are not cached. Entries are removed when the branch or one of its ancestors receives a commit.
+ * The branch version of each head criteria instance handed out is remembered, by identity, so that other caches can key their entries
+ * on the path, head and base timestamps rather than the content of the criteria.
+ * The number of criteria requests and cache misses are counted for each REST endpoint,
+ * including requests made by tasks which the REST request submits to the shared task executor.
+ */
+public class CachingVersionControlHelper extends VersionControlHelper implements CommitListener {
+
+	private static final long HEAD = -1;
+
+	@Value("${branch-criteria-cache.enabled:true}")
+	private boolean enabled;
+
+	@Value("${branch-criteria-cache.max-entries:10000}")
+	private long maxEntries;
+
+	@Value("${branch-criteria-cache.expire-after-access-seconds:300}")
+	private long expireAfterAccessSeconds;
+
+	@Autowired
+	private BranchService branchService;
+
+	private Cache<Key, BranchCriteria> cache;
+
+	// Weak keys are compared by identity
+	private final Cache<BranchCriteria, BranchHead> criteriaBranchHeads = Caffeine.newBuilder().weakKeys().build();
+
+	private final ThreadLocal<RequestLookups> requestLookups = new ThreadLocal<>();
+
+	private final Map<String, EndpointLookups> endpointLookups = new ConcurrentHashMap<>();
+
+	@PostConstruct
+	public void init() {
+		cache = Caffeine.newBuilder()
+				.maximumSize(maxEntries)
+				.expireAfterAccess(expireAfterAccessSeconds, TimeUnit.SECONDS)
+				.recordStats()
+				.build();
+	}
+
+	@Override
+	public BranchCriteria getBranchCriteria(String path) {
+		return getBranchCriteria(branchService.findBranchOrThrow(path));
+	}
+
+	@Override
+	public BranchCriteria getBranchCriteria(Branch branch) {
+		if (branch.isLocked()) {
+			countLookup(false);
+			return super.getBranchCriteria(branch);
+		}
+		BranchCriteria branchCriteria;
+		if (enabled) {
+			branchCriteria = getOrLoad(new Key(branch.getPath(), branch.getHeadTimestamp(), HEAD), () -> super.getBranchCriteria(branch));
+		} else {
+			countLookup(false);
+			branchCriteria = super.getBranchCriteria(branch);
+		}
+		criteriaBranchHeads.put(branchCriteria, new BranchHead(branch.getPath(), branch.getHeadTimestamp(), branch.getBaseTimestamp()));
+		return branchCriteria;
+	}
+
+	/**
+	 * @return The branch version these criteria were created for if they are the head criteria of a branch which was not locked,
+	 * otherwise null. Criteria at other timepoints or including an open commit always return null.
+	 */
+	public BranchHead getBranchHead(BranchCriteria branchCriteria) {
+		return branchCriteria != null ? criteriaBranchHeads.getIfPresent(branchCriteria) : null;
+	}
+
+	@Override
+	public BranchCriteria getBranchCriteriaAtTimepoint(String path, Date timepoint) {
+		if (!enabled) {
+			countLookup(false);
+			return super.getBranchCriteriaAtTimepoint(path, timepoint);
+		}
+		Branch branch = branchService.findAtTimepointOrThrow(path, timepoint);
+		if (branch.isLocked()) {
+			countLookup(false);
+			return super.getBranchCriteriaAtTimepoint(path, timepoint);
+		}
+		return getOrLoad(new Key(path, branch.getHeadTimestamp(), timepoint.getTime()), () -> super.getBranchCriteriaAtTimepoint(path, timepoint));
+	}
+
+	private BranchCriteria getOrLoad(Key key, Supplier<BranchCriteria> loader) {
+		BranchCriteria branchCriteria = cache.getIfPresent(key);
+		countLookup(branchCriteria != null);
+		if (branchCriteria == null) {
+			branchCriteria = loader.get();
+			cache.put(key, branchCriteria);
+		}
+		return branchCriteria;
+	}
+
+	@Override
+	public void preCommitCompletion(Commit commit) throws IllegalStateException {
+		String path = commit.getBranch().getPath();
+		String childPrefix = path + "/";
+		cache.asMap().keySet().removeIf(key -> key.path.equals(path) || key.path.startsWith(childPrefix));
+	}
+
+	/**
+	 * Starts counting branch criteria requests made by the current thread for a REST request.
+	 */
+	public void startRequest() {
+		requestLookups.set(new RequestLookups());
+	}
+
+	/**
+	 * Stops counting for the current thread and adds the counts to the totals of the endpoint.
+	 */
+	public void endRequest(String endpoint) {
+		RequestLookups lookups = requestLookups.get();
+		requestLookups.remove();
+		if (lookups != null && endpoint != null) {
+			EndpointLookups totals = endpointLookups.computeIfAbsent(endpoint, e -> new EndpointLookups());
+			totals.requests.increment();
+			totals.criteriaRequests.add(lookups.criteriaRequests.sum());
+			totals.cacheMisses.add(lookups.cacheMisses.sum());
+		}
+	}
+
+	/**
+	 * Wraps a task so that branch criteria requests made while it runs, on any thread, are counted against the REST request
+	 * of the current thread. Returns the task unchanged if the current thread is not counting.
+	 */
+	public Runnable inCurrentRequest(Runnable task) {
+		RequestLookups lookups = requestLookups.get();
+		if (lookups == null) {
+			return task;
+		}
+		return () -> {
+			RequestLookups previous = requestLookups.get();
+			requestLookups.set(lookups);
+			try {
+				task.run();
+			} finally {
+				if (previous != null) {
+					requestLookups.set(previous);
+				} else {
+					requestLookups.remove();
+				}
+			}
+		};
+	}
+
+	private void countLookup(boolean cacheHit) {
+		RequestLookups lookups = requestLookups.get();
+		if (lookups != null) {
+			lookups.criteriaRequests.increment();
+			if (!cacheHit) {
+				lookups.cacheMisses.increment();
+			}
+		}
+	}
+
+	public Map<String, Object> getStats() {
+		CacheStats stats = cache.stats();
+		Map<String, Object> statsMap = new LinkedHashMap<>();
+		statsMap.put("enabled", enabled);
+		statsMap.put("entries", cache.estimatedSize());
+		statsMap.put("hitCount", stats.hitCount());
+		statsMap.put("missCount", stats.missCount());
+		statsMap.put("hitRate", stats.hitRate());
+		statsMap.put("evictionCount", stats.evictionCount());
+		Map<String, Object> endpoints = new TreeMap<>();
+		endpointLookups.forEach((endpoint, totals) -> {
+			long requests = totals.requests.sum();
+			long criteriaRequests = totals.criteriaRequests.sum();
+			long cacheMisses = totals.cacheMisses.sum();
+			Map<String, Object> endpointStats = new LinkedHashMap<>();
+			endpointStats.put("requests", requests);
+			endpointStats.put("branchCriteriaRequests", criteriaRequests);
+			endpointStats.put("cacheMisses", cacheMisses);
+			endpointStats.put("branchCriteriaRequestsPerRequest", (float) criteriaRequests / requests);
+			endpointStats.put("cacheMissesPerRequest", (float) cacheMisses / requests);
+			endpoints.put(endpoint, endpointStats);
+		});
+		statsMap.put("endpoints", endpoints);
+		return statsMap;
+	}
+
+	private static final class Key {
+
+		private final String path;
+		private final long head;
+		private final long timepoint;
+
+		private Key(String path, long head, long timepoint) {
+			this.path = path;
+			this.head = head;
+			this.timepoint = timepoint;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (this == o) return true;
+			if (o == null || getClass() != o.getClass()) return false;
+			Key key = (Key) o;
+			return head == key.head &&
+					timepoint == key.timepoint &&
+					path.equals(key.path);
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(path, head, timepoint);
+		}
+	}
+
+	/**
+	 * Identifies one version of a branch. Content visible at a branch version never changes so results can be cached against it.
+	 */
+	public static final class BranchHead {
+
+		private final String path;
+		private final long headTimestamp;
+		private final long baseTimestamp;
+
+		public BranchHead(String path, long headTimestamp, long baseTimestamp) {
+			this.path = path;
+			this.headTimestamp = headTimestamp;
+			this.baseTimestamp = baseTimestamp;
+		}
+
+		public String getPath() {
+			return path;
+		}
+
+		public long getHeadTimestamp() {
+			return headTimestamp;
+		}
+
+		public long getBaseTimestamp() {
+			return baseTimestamp;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (this == o) return true;
+			if (o == null || getClass() != o.getClass()) return false;
+			BranchHead that = (BranchHead) o;
+			return headTimestamp == that.headTimestamp &&
+					baseTimestamp == that.baseTimestamp &&
+					path.equals(that.path);
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(path, headTimestamp, baseTimestamp);
+		}
+	}
+
+	// Shared by the request thread and the tasks it submits
+	private static final class RequestLookups {
+		private final LongAdder criteriaRequests = new LongAdder();
+		private final LongAdder cacheMisses = new LongAdder();
+	}
+
+	private static final class EndpointLookups {
+		private final LongAdder requests = new LongAdder();
+		private final LongAdder criteriaRequests = new LongAdder();
+		private final LongAdder cacheMisses = new LongAdder();
+	}
+}
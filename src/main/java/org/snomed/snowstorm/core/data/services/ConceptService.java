@@ -28,9 +28,11 @@ import org.snomed.snowstorm.core.data.services.pojo.ResultMapPage;
 import org.snomed.snowstorm.core.data.services.pojo.SAxiomRepresentation;
 import org.snomed.snowstorm.core.pojo.BranchTimepoint;
 import org.snomed.snowstorm.core.pojo.LanguageDialect;
+import org.snomed.snowstorm.core.util.ConcurrencyUtil;
 import org.snomed.snowstorm.core.util.PageHelper;
 import org.snomed.snowstorm.core.util.TimerUtil;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
@@ -99,6 +101,12 @@ public class ConceptService extends ComponentService {
 	@Autowired
 	private ConceptAttributeSortHelper conceptAttributeSortHelper;
 
+	@Autowired
+	private ExecutorService executorService;
+
+	@Value("${concept-load.concurrency:4}")
+	private int conceptLoadConcurrency;
+
 	private final Cache<String, AsyncConceptChangeBatch> batchConceptChanges;
 
 	private Logger logger = LoggerFactory.getLogger(getClass());
@@ -291,63 +299,74 @@ public class ConceptService extends ComponentService {
 			concept.getRelationships().clear();
 		}
 
-		Map<String, ConceptMini> conceptMiniMap = new HashMap<>();
+		// Joins run concurrently. Each partition task only touches its own concepts so only the shared conceptMiniMap needs to be thread safe.
+		Map<String, ConceptMini> conceptMiniMap = new ConcurrentHashMap<>();
 
 		if (includeRelationships) {
-			// Fetch Relationships
+			List<Runnable> relationshipJoins = new ArrayList<>();
 			for (List<String> conceptIds : Iterables.partition(conceptIdMap.keySet(), CLAUSE_LIMIT)) {
-				queryBuilder.withQuery(boolQuery()
-						.must(termsQuery("sourceId", conceptIds))
-						.must(branchCriteria.getEntityBranchCriteria(Relationship.class)))
-						.withPageable(LARGE_PAGE);
-				try (final SearchHitsIterator<Relationship> relationships = elasticsearchTemplate.searchForStream(queryBuilder.build(), Relationship.class)) {
-					relationships.forEachRemaining(hit -> {
-						Relationship relationship = hit.getContent();
-						// Join Relationships
-						conceptIdMap.get(relationship.getSourceId()).addRelationship(relationship);
-
-						// Add placeholders for relationship type and target details
-						relationship.setType(getConceptMini(conceptMiniMap, relationship.getTypeId(), languageDialects));
-						relationship.setTarget(getConceptMini(conceptMiniMap, relationship.getDestinationId(), languageDialects));
-					});
-				}
-			}
-			timer.checkpoint("get relationships " + getFetchCount(conceptIdMap.size()));
-
-			// Fetch Axioms
-			for (List<String> conceptIds : Iterables.partition(conceptIdMap.keySet(), CLAUSE_LIMIT)) {
-				queryBuilder.withQuery(boolQuery()
-						.must(termQuery(ReferenceSetMember.Fields.REFSET_ID, Concepts.OWL_AXIOM_REFERENCE_SET))
-						.must(termsQuery(ReferenceSetMember.Fields.REFERENCED_COMPONENT_ID, conceptIds))
-						.must(branchCriteria.getEntityBranchCriteria(ReferenceSetMember.class)))
-						.withPageable(LARGE_PAGE);
+				// Fetch Relationships
+				relationshipJoins.add(() -> {
+					NativeSearchQueryBuilder relationshipQuery = new NativeSearchQueryBuilder()
+							.withQuery(boolQuery()
+									.must(termsQuery("sourceId", conceptIds))
+									.must(branchCriteria.getEntityBranchCriteria(Relationship.class)))
+							.withPageable(LARGE_PAGE);
+					try (final SearchHitsIterator<Relationship> relationships = elasticsearchTemplate.searchForStream(relationshipQuery.build(), Relationship.class)) {
+						relationships.forEachRemaining(hit -> {
+							Relationship relationship = hit.getContent();
+							// Join Relationships
+							conceptIdMap.get(relationship.getSourceId()).addRelationship(relationship);
+
+							// Add placeholders for relationship type and target details
+							relationship.setType(getConceptMini(conceptMiniMap, relationship.getTypeId(), languageDialects));
+							relationship.setTarget(getConceptMini(conceptMiniMap, relationship.getDestinationId(), languageDialects));
+						});
+					}
+				});
 
-				try (final SearchHitsIterator<ReferenceSetMember> axiomMembers = elasticsearchTemplate.searchForStream(queryBuilder.build(), ReferenceSetMember.class)) {
-					axiomMembers.forEachRemaining(axiomMember -> joinAxiom(axiomMember.getContent(), conceptIdMap, conceptMiniMap, languageDialects));
-				}
+				// Fetch Axioms
+				relationshipJoins.add(() -> {
+					NativeSearchQueryBuilder axiomQuery = new NativeSearchQueryBuilder()
+							.withQuery(boolQuery()
+									.must(termQuery(ReferenceSetMember.Fields.REFSET_ID, Concepts.OWL_AXIOM_REFERENCE_SET))
+									.must(termsQuery(ReferenceSetMember.Fields.REFERENCED_COMPONENT_ID, conceptIds))
+									.must(branchCriteria.getEntityBranchCriteria(ReferenceSetMember.class)))
+							.withPageable(LARGE_PAGE);
+					try (final SearchHitsIterator<ReferenceSetMember> axiomMembers = elasticsearchTemplate.searchForStream(axiomQuery.build(), ReferenceSetMember.class)) {
+						axiomMembers.forEachRemaining(axiomMember -> joinAxiom(axiomMember.getContent(), conceptIdMap, conceptMiniMap, languageDialects));
+					}
+				});
 			}
-			timer.checkpoint("get axioms " + getFetchCount(conceptIdMap.size()));
+			runJoinsConcurrently(relationshipJoins);
+			timer.checkpoint("get relationships and axioms " + getFetchCount(conceptIdMap.size()));
 		}
 
-		// Fetch ConceptMini definition statuses
+		// Fetch ConceptMini definition statuses alongside descriptions, they set different fields of each ConceptMini
+		DescriptionService.DescriptionJoin descriptionJoin = descriptionService.createDescriptionJoin(branchCriteria, conceptIdMap, conceptMiniMap,
+				includeDescriptionInactivationInfo);
+		List<Runnable> descriptionJoins = new ArrayList<>(descriptionJoin.getLookups());
 		for (List<String> conceptIds : Iterables.partition(conceptMiniMap.keySet(), CLAUSE_LIMIT)) {
-			queryBuilder.withQuery(boolQuery()
-					.must(termsQuery("conceptId", conceptIds))
-					.must(branchCriteria.getEntityBranchCriteria(Concept.class)))
-					.withPageable(LARGE_PAGE);
-			try (final SearchHitsIterator<Concept> conceptsForMini = elasticsearchTemplate.searchForStream(queryBuilder.build(), Concept.class)) {
-				conceptsForMini.forEachRemaining(hit ->
-				{
-					Concept concept = hit.getContent();
-					ConceptMini conceptMini = conceptMiniMap.get(concept.getConceptId());
-					conceptMini.setDefinitionStatusId(concept.getDefinitionStatusId());
-					conceptMini.setModuleId(concept.getModuleId());
-				});
-			}
+			descriptionJoins.add(() -> {
+				NativeSearchQueryBuilder conceptMiniQuery = new NativeSearchQueryBuilder()
+						.withQuery(boolQuery()
+								.must(termsQuery("conceptId", conceptIds))
+								.must(branchCriteria.getEntityBranchCriteria(Concept.class)))
+						.withPageable(LARGE_PAGE);
+				try (final SearchHitsIterator<Concept> conceptsForMini = elasticsearchTemplate.searchForStream(conceptMiniQuery.build(), Concept.class)) {
+					conceptsForMini.forEachRemaining(hit ->
+					{
+						Concept concept = hit.getContent();
+						ConceptMini conceptMini = conceptMiniMap.get(concept.getConceptId());
+						conceptMini.setDefinitionStatusId(concept.getDefinitionStatusId());
+						conceptMini.setModuleId(concept.getModuleId());
+					});
+				}
+			});
 		}
-		timer.checkpoint("get relationship def status " + getFetchCount(conceptMiniMap.size()));
-
-		descriptionService.joinDescriptions(branchCriteria, conceptIdMap, conceptMiniMap, timer, includeDescriptionInactivationInfo);
+		runJoinsConcurrently(descriptionJoins);
+		descriptionJoin.complete(timer);
+		timer.checkpoint("get descriptions and relationship def status " + getFetchCount(conceptMiniMap.size()));
 
 		conceptAttributeSortHelper.sortAttributes(conceptIdMap.values());
 		timer.checkpoint("Sort attributes");
@@ -398,6 +417,32 @@ public class ConceptService extends ComponentService {
 		}
 	}
 
+	/**
+	 * Runs independent joins of a concept load, at most concept-load.concurrency at a time. Joins run in the calling thread if concurrency is 1.
+	 * If a join fails the joins still running are cancelled and the failure is thrown, joins not yet started are not run.
+	 */
+	private void runJoinsConcurrently(List<Runnable> joins) {
+		if (conceptLoadConcurrency <= 1 || joins.size() <= 1) {
+			joins.forEach(Runnable::run);
+			return;
+		}
+		ExecutorCompletionService<Void> completionService = new ExecutorCompletionService<>(executorService);
+		Set<Future<Void>> running = new HashSet<>();
+		Iterator<Runnable> joinIterator = joins.iterator();
+		try {
+			while (joinIterator.hasNext() || !running.isEmpty()) {
+				while (joinIterator.hasNext() && running.size() < conceptLoadConcurrency) {
+					running.add(completionService.submit(joinIterator.next(), null));
+				}
+				Future<Void> completed = ConcurrencyUtil.waitForResult(completionService::take, "loading concepts");
+				running.remove(completed);
+				ConcurrencyUtil.waitForResult(completed::get, "loading concepts");
+			}
+		} finally {
+			running.forEach(future -> future.cancel(true));
+		}
+	}
+
 	private static ConceptMini getConceptMini(Map<String, ConceptMini> conceptMiniMap, String id, List<LanguageDialect> languageDialects) {
 		if (id == null) return new ConceptMini((String)null, languageDialects);
 		return conceptMiniMap.computeIfAbsent(id, i -> new ConceptMini(id, languageDialects));
@@ -0,0 +1,248 @@
+package org.snomed.snowstorm.core.data.services;
+
+import com.google.common.collect.Iterables;
+import io.kaicode.elasticvc.api.*;
+import io.kaicode.elasticvc.domain.Branch;
+import io.kaicode.elasticvc.domain.Commit;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.snomed.snowstorm.core.data.domain.Concepts;
+import org.snomed.snowstorm.core.data.domain.Description;
+import org.snomed.snowstorm.core.data.domain.ReferenceSetMember;
+import org.snomed.snowstorm.core.data.repositories.DescriptionRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
+import org.springframework.data.elasticsearch.core.SearchHitsIterator;
+import org.springframework.data.elasticsearch.core.query.NativeSearchQueryBuilder;
+import org.springframework.data.elasticsearch.core.query.UpdateQuery;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static io.kaicode.elasticvc.domain.Commit.CommitType.CONTENT;
+import static io.kaicode.elasticvc.domain.Commit.CommitType.PROMOTION;
+import static org.elasticsearch.index.query.QueryBuilders.*;
+import static org.snomed.snowstorm.config.Config.BATCH_SAVE_SIZE;
+import static org.snomed.snowstorm.core.data.services.BranchMetadataHelper.INTERNAL_METADATA_KEY;
+
+/**
+ * Keeps the preferredIn and acceptableIn fields of descriptions up to date with the active language reference set members
+ * so that description searches can filter by acceptability in the description query.
+ * The fields are only maintained on MAIN, where changes arrive by content and promotion commits. Descriptions inherited by other branches
+ * are never versioned just to hold this derived data, so searches on those branches check language reference set members
+ * for any description or member that is not on MAIN.
+ * Descriptions written before the fields existed hold no values, so the time of the last full update is recorded in the internal
+ * metadata of MAIN. Stored values are only complete for branches which see MAIN at or after that time.
+ */
+@Service
+public class DescriptionAcceptabilityUpdateService extends ComponentService implements CommitListener {
+
+	@Autowired
+	private BranchService branchService;
+
+	@Autowired
+	private VersionControlHelper versionControlHelper;
+
+	@Autowired
+	private ElasticsearchOperations elasticsearchTemplate;
+
+	@Autowired
+	private DescriptionRepository descriptionRepository;
+
+	@Autowired
+	private BranchMetadataHelper branchMetadataHelper;
+
+	public static final String FULL_UPDATE_TIMEPOINT_METADATA_KEY = "descriptionAcceptabilityFullUpdate";
+
+	private final Logger logger = LoggerFactory.getLogger(DescriptionAcceptabilityUpdateService.class);
+
+	@Override
+	public void preCommitCompletion(Commit commit) throws IllegalStateException {
+		if (Branch.MAIN.equals(commit.getBranch().getPath()) && (commit.getCommitType() == CONTENT || commit.getCommitType() == PROMOTION)) {
+			logger.debug("Start updating description acceptability on branch {}.", commit.getBranch().getPath());
+			try {
+				performUpdate(false, commit);
+				logger.debug("End updating description acceptability on branch {}.", commit.getBranch().getPath());
+			} catch (Exception e) {
+				throw new IllegalStateException("Failed to update description acceptability." + e, e);
+			}
+		}
+	}
+
+	public void updateAllDescriptionAcceptability(String path) throws ServiceException {
+		if (!Branch.MAIN.equals(path)) {
+			throw new IllegalArgumentException("Stored description acceptability is only maintained on " + Branch.MAIN + ".");
+		}
+		logger.info("Updating acceptability of all descriptions on branch {}.", path);
+		try (Commit commit = branchService.openCommit(path, branchMetadataHelper.getBranchLockMetadata("Updating acceptability of all descriptions."))) {
+			performUpdate(true, commit);
+			recordFullUpdateTimepoint(commit);
+			commit.markSuccessful();
+		} catch (Exception e) {
+			throw new ServiceException("Failed to update acceptability of all descriptions.", e);
+		}
+		logger.info("Completed updating acceptability of all descriptions on branch {}.", path);
+	}
+
+	/**
+	 * @return Timepoint of the last full update of stored acceptability on MAIN, or null if it has never been run.
+	 */
+	@SuppressWarnings("unchecked")
+	public Long getFullUpdateTimepoint() {
+		Map<String, Object> metadata = branchMetadataHelper.expandObjectValues(branchService.findBranchOrThrow(Branch.MAIN).getMetadata());
+		if (metadata == null || !(metadata.get(INTERNAL_METADATA_KEY) instanceof Map)) {
+			return null;
+		}
+		Object timepoint = ((Map<String, Object>) metadata.get(INTERNAL_METADATA_KEY)).get(FULL_UPDATE_TIMEPOINT_METADATA_KEY);
+		return timepoint != null ? Long.parseLong(timepoint.toString()) : null;
+	}
+
+	@SuppressWarnings("unchecked")
+	private void recordFullUpdateTimepoint(Commit commit) {
+		Branch branch = commit.getBranch();
+		Map<String, Object> metadata = branchMetadataHelper.expandObjectValues(branch.getMetadata());
+		if (metadata == null) {
+			metadata = new HashMap<>();
+		}
+		Map<String, Object> internal = metadata.get(INTERNAL_METADATA_KEY) instanceof Map ?
+				new HashMap<>((Map<String, Object>) metadata.get(INTERNAL_METADATA_KEY)) : new HashMap<>();
+		internal.put(FULL_UPDATE_TIMEPOINT_METADATA_KEY, String.valueOf(commit.getTimepoint().getTime()));
+		metadata.put(INTERNAL_METADATA_KEY, internal);
+		branch.setMetadata(branchMetadataHelper.flattenObjectValues(metadata));
+	}
+
+	private void performUpdate(boolean allDescriptions, Commit commit) {
+		Set<Long> descriptionIdsToCheck = allDescriptions ? getAllDescriptions(commit) : getDescriptionsWithAcceptabilityChanged(commit);
+		if (!descriptionIdsToCheck.isEmpty()) {
+			logger.info("Checking acceptability of {} descriptions.", descriptionIdsToCheck.size());
+			int updated = 0;
+			for (List<Long> batch : Iterables.partition(descriptionIdsToCheck, CLAUSE_LIMIT)) {
+				Collection<Description> descriptionsToUpdate = findAndFixDescriptionsNeedingAcceptabilityUpdate(batch, commit);
+				if (!descriptionsToUpdate.isEmpty()) {
+					saveChanges(descriptionsToUpdate, commit);
+					updated += descriptionsToUpdate.size();
+				}
+			}
+			logger.info("{} descriptions updated with new acceptability.", updated);
+		}
+	}
+
+	private Set<Long> getAllDescriptions(Commit commit) {
+		BranchCriteria branchCriteria = versionControlHelper.getBranchCriteriaIncludingOpenCommit(commit);
+		Set<Long> result = new LongOpenHashSet();
+		try (final SearchHitsIterator<Description> descriptions = elasticsearchTemplate.searchForStream(new NativeSearchQueryBuilder()
+				.withQuery(branchCriteria.getEntityBranchCriteria(Description.class))
+				.withFields(Description.Fields.DESCRIPTION_ID)
+				.withPageable(ConceptService.LARGE_PAGE).build(), Description.class)) {
+			descriptions.forEachRemaining(hit -> result.add(Long.parseLong(hit.getContent().getDescriptionId())));
+		}
+		return result;
+	}
+
+	private Set<Long> getDescriptionsWithAcceptabilityChanged(Commit commit) {
+		BranchCriteria branchCriteria = versionControlHelper.getBranchCriteriaChangesAndDeletionsWithinOpenCommitOnly(commit);
+		Set<Long> result = new LongOpenHashSet();
+
+		// Descriptions saved in this commit may hold acceptability copied from an earlier version
+		try (final SearchHitsIterator<Description> descriptions = elasticsearchTemplate.searchForStream(new NativeSearchQueryBuilder()
+				.withQuery(branchCriteria.getEntityBranchCriteria(Description.class))
+				.withFields(Description.Fields.DESCRIPTION_ID)
+				.withPageable(ConceptService.LARGE_PAGE).build(), Description.class)) {
+			descriptions.forEachRemaining(hit -> result.add(Long.parseLong(hit.getContent().getDescriptionId())));
+		}
+
+		// Language refset members created, changed or deleted in this commit
+		try (final SearchHitsIterator<ReferenceSetMember> members = elasticsearchTemplate.searchForStream(new NativeSearchQueryBuilder()
+				.withQuery(boolQuery()
+						.must(branchCriteria.getEntityBranchCriteria(ReferenceSetMember.class))
+						.must(existsQuery(ReferenceSetMember.LanguageFields.ACCEPTABILITY_ID_FIELD_PATH)))
+				.withFields(ReferenceSetMember.Fields.REFERENCED_COMPONENT_ID)
+				.withPageable(ConceptService.LARGE_PAGE).build(), ReferenceSetMember.class)) {
+			members.forEachRemaining(hit -> result.add(Long.parseLong(hit.getContent().getReferencedComponentId())));
+		}
+		return result;
+	}
+
+	private Collection<Description> findAndFixDescriptionsNeedingAcceptabilityUpdate(Collection<Long> descriptionIds, Commit commit) {
+		BranchCriteria branchCriteria = versionControlHelper.getBranchCriteriaIncludingOpenCommit(commit);
+
+		Map<String, Set<String>> preferredInMap = new HashMap<>();
+		Map<String, Set<String>> acceptableInMap = new HashMap<>();
+		try (final SearchHitsIterator<ReferenceSetMember> members = elasticsearchTemplate.searchForStream(new NativeSearchQueryBuilder()
+				.withQuery(boolQuery()
+						.must(branchCriteria.getEntityBranchCriteria(ReferenceSetMember.class))
+						.must(termQuery(ReferenceSetMember.Fields.ACTIVE, true))
+						.must(termsQuery(ReferenceSetMember.LanguageFields.ACCEPTABILITY_ID_FIELD_PATH, Concepts.PREFERRED, Concepts.ACCEPTABLE))
+						.filter(termsQuery(ReferenceSetMember.Fields.REFERENCED_COMPONENT_ID, descriptionIds)))
+				.withPageable(ConceptService.LARGE_PAGE).build(), ReferenceSetMember.class)) {
+			members.forEachRemaining(hit -> {
+				ReferenceSetMember member = hit.getContent();
+				Map<String, Set<String>> acceptabilityMap = Concepts.PREFERRED.equals(member.getAdditionalField(ReferenceSetMember.LanguageFields.ACCEPTABILITY_ID)) ?
+						preferredInMap : acceptableInMap;
+				acceptabilityMap.computeIfAbsent(member.getReferencedComponentId(), id -> new HashSet<>()).add(member.getRefsetId());
+			});
+		}
+
+		List<Description> result = new ArrayList<>();
+		try (final SearchHitsIterator<Description> descriptions = elasticsearchTemplate.searchForStream(new NativeSearchQueryBuilder()
+				.withQuery(boolQuery()
+						.must(branchCriteria.getEntityBranchCriteria(Description.class))
+						.must(termsQuery(Description.Fields.DESCRIPTION_ID, descriptionIds))
+						.mustNot(existsQuery("end")))
+				.withPageable(ConceptService.LARGE_PAGE).build(), Description.class)) {
+			descriptions.forEachRemaining(hit -> {
+				Description description = hit.getContent();
+				Set<String> preferredIn = preferredInMap.getOrDefault(description.getDescriptionId(), Collections.emptySet());
+				Set<String> acceptableIn = acceptableInMap.getOrDefault(description.getDescriptionId(), Collections.emptySet());
+				if (!preferredIn.equals(emptyIfNull(description.getPreferredIn())) || !acceptableIn.equals(emptyIfNull(description.getAcceptableIn()))) {
+					description.setPreferredIn(preferredIn);
+					description.setAcceptableIn(acceptableIn);
+					description.markChanged();
+					result.add(description);
+				}
+			});
+		}
+		return result;
+	}
+
+	private void saveChanges(Collection<Description> descriptionsToSave, Commit commit) {
+		// Save in batches
+		for (List<Description> descriptions : Iterables.partition(descriptionsToSave, BATCH_SAVE_SIZE)) {
+
+			descriptions.forEach(Description::updateEffectiveTime);
+			// Update descriptions already saved in the current commit rather than creating a second version within the commit.
+			Set<Description> editedDescriptions = descriptions.stream()
+					.filter(description -> description.getStart().equals(commit.getTimepoint()))
+					.collect(Collectors.toSet());
+			updateDescriptionAcceptabilityViaUpdateQuery(editedDescriptions);
+
+			Set<Description> toSave = descriptions.stream()
+					.filter(description -> !editedDescriptions.contains(description))
+					.collect(Collectors.toSet());
+			doSaveBatchComponents(toSave, commit, Description.Fields.DESCRIPTION_ID, descriptionRepository);
+		}
+	}
+
+	private void updateDescriptionAcceptabilityViaUpdateQuery(Collection<Description> descriptions) {
+		List<UpdateQuery> updateQueries = new ArrayList<>();
+		for (Description description : descriptions) {
+			Map<String, Object> params = new HashMap<>();
+			params.put(Description.Fields.PREFERRED_IN, new ArrayList<>(description.getPreferredIn()));
+			params.put(Description.Fields.ACCEPTABLE_IN, new ArrayList<>(description.getAcceptableIn()));
+			updateQueries.add(UpdateQuery.builder(description.getInternalId())
+					.withScript("ctx._source.preferredIn=params.preferredIn; ctx._source.acceptableIn=params.acceptableIn")
+					.withParams(params)
+					.build());
+		}
+		if (!updateQueries.isEmpty()) {
+			elasticsearchTemplate.bulkUpdate(updateQueries, elasticsearchTemplate.getIndexCoordinatesFor(Description.class));
+			elasticsearchTemplate.indexOps(Description.class).refresh();
+		}
+	}
+
+	private static Set<String> emptyIfNull(Set<String> set) {
+		return set != null ? set : Collections.emptySet();
+	}
+}
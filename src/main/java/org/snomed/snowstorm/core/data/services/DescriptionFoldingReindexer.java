@@ -0,0 +1,60 @@
+package org.snomed.snowstorm.core.data.services;
+
+import org.elasticsearch.index.query.QueryBuilder;
+import org.snomed.snowstorm.config.SearchLanguagesConfiguration;
+import org.snomed.snowstorm.core.data.domain.Description;
+import org.snomed.snowstorm.core.util.DescriptionHelper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.elasticsearch.core.query.UpdateQuery;
+import org.springframework.stereotype.Component;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+import static org.elasticsearch.index.query.QueryBuilders.termQuery;
+
+/**
+ * Updates the folded term of descriptions of one language after the character folding configuration of that language has changed.
+ */
+@Component
+public class DescriptionFoldingReindexer implements DocumentReindexer<Description> {
+
+	public static final String TYPE = "description-folding";
+	public static final String LANGUAGE_CODE = "languageCode";
+
+	@Autowired
+	private SearchLanguagesConfiguration searchLanguagesConfiguration;
+
+	@Override
+	public String getType() {
+		return TYPE;
+	}
+
+	@Override
+	public Class<Description> getDocumentClass() {
+		return Description.class;
+	}
+
+	@Override
+	public QueryBuilder getQuery(Map<String, String> parameters) {
+		return termQuery(Description.Fields.LANGUAGE_CODE, parameters.get(LANGUAGE_CODE));
+	}
+
+	@Override
+	public Function<Description, UpdateQuery> getUpdateFunction(Map<String, String> parameters) {
+		Set<Character> charactersNotFolded = searchLanguagesConfiguration.getCharactersNotFoldedSets()
+				.getOrDefault(parameters.get(LANGUAGE_CODE), Collections.emptySet());
+		return description -> {
+			String newFoldedTerm = DescriptionHelper.foldTerm(description.getTerm(), charactersNotFolded);
+			if (newFoldedTerm.equals(description.getTermFolded())) {
+				return null;
+			}
+			return UpdateQuery.builder(description.getInternalId())
+					.withScript("ctx._source.termFolded=params.termFolded")
+					.withParams(Collections.<String, Object>singletonMap(Description.Fields.TERM_FOLDED, newFoldedTerm))
+					.build();
+		};
+	}
+}
@@ -6,7 +6,7 @@ import com.google.common.collect.Sets;
 import io.kaicode.elasticvc.api.BranchCriteria;
 import io.kaicode.elasticvc.api.BranchService;
 import io.kaicode.elasticvc.api.ComponentService;
-import io.kaicode.elasticvc.api.VersionControlHelper;
+import io.kaicode.elasticvc.api.PathUtil;
 import io.kaicode.elasticvc.domain.Branch;
 import io.kaicode.elasticvc.domain.Commit;
 import it.unimi.dsi.fastutil.longs.Long2ObjectLinkedOpenHashMap;
@@ -24,12 +24,11 @@ import org.elasticsearch.index.query.Operator;
 import org.elasticsearch.search.aggregations.Aggregation;
 import org.elasticsearch.search.aggregations.AggregationBuilders;
 import org.elasticsearch.search.aggregations.Aggregations;
-import org.elasticsearch.search.aggregations.bucket.terms.ParsedStringTerms;
-import org.elasticsearch.search.aggregations.bucket.terms.Terms;
 import org.elasticsearch.search.sort.SortBuilders;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.snomed.snowstorm.config.SearchLanguagesConfiguration;
+import org.snomed.snowstorm.core.data.services.CachingVersionControlHelper.BranchHead;
 import org.snomed.snowstorm.core.data.domain.*;
 import org.snomed.snowstorm.core.data.services.identifier.IdentifierService;
 import org.snomed.snowstorm.core.data.services.pojo.DescriptionCriteria;
@@ -57,6 +56,8 @@ import org.springframework.util.CollectionUtils;
 import java.io.IOException;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
@@ -71,7 +72,7 @@ public class DescriptionService extends ComponentService {
 	private SearchLanguagesConfiguration searchLanguagesConfiguration;
 
 	@Autowired
-	private VersionControlHelper versionControlHelper;
+	private CachingVersionControlHelper versionControlHelper;
 
 	@Autowired
 	private BranchService branchService;
@@ -82,11 +83,23 @@ public class DescriptionService extends ComponentService {
 	@Autowired
 	private ConceptUpdateHelper conceptUpdateHelper;
 
-	private final Map<String, SemanticTagCacheEntry> semanticTagAggregationCache = new ConcurrentHashMap<>();
+	@Autowired
+	private SemanticTagCountService semanticTagCountService;
+
+	@Autowired
+	private DescriptionAcceptabilityUpdateService acceptabilityUpdateService;
 
 	@Value("${search.description.aggregation.maxProcessableResultsSize}")
 	private int aggregationMaxProcessableResultsSize;
 
+	@Value("${search.description.stored-acceptability.enabled:false}")
+	private boolean storedAcceptabilityEnabled;
+
+	// Maximum number of descriptions checked against language refset members when filtering by stored acceptability
+	private static final int MAX_STORED_ACCEPTABILITY_CHECKS = 10_000;
+
+	private static final String PATH = "path";
+
 	public enum SearchMode {
 		STANDARD, REGEX, WHOLE_WORD
 	}
@@ -279,108 +292,58 @@ public class DescriptionService extends ComponentService {
 	void joinDescriptions(BranchCriteria branchCriteria, Map<String, Concept> conceptIdMap, Map<String, ConceptMini> conceptMiniMap,
 			TimerUtil timer, boolean fetchInactivationInfo) {
 
-		final NativeSearchQueryBuilder queryBuilder = new NativeSearchQueryBuilder();
-
-		final Set<String> allConceptIds = new HashSet<>();
-		if (conceptIdMap != null) {
-			allConceptIds.addAll(conceptIdMap.keySet());
-		}
-		if (conceptMiniMap != null) {
-			allConceptIds.addAll(conceptMiniMap.keySet());
-		}
-		if (allConceptIds.isEmpty()) {
-			return;
-		}
-
-		// Fetch Descriptions
-		Map<String, Description> descriptionIdMap = new HashMap<>();
-		for (List<String> conceptIds : Iterables.partition(allConceptIds, CLAUSE_LIMIT)) {
-			queryBuilder.withQuery(boolQuery()
-					.must(branchCriteria.getEntityBranchCriteria(Description.class))
-					.must(termsQuery("conceptId", conceptIds)))
-					.withPageable(LARGE_PAGE);
-			try (final SearchHitsIterator<Description> descriptions = elasticsearchTemplate.searchForStream(queryBuilder.build(), Description.class)) {
-				descriptions.forEachRemaining(hit -> {
-					Description description = hit.getContent();
-					// Join Descriptions to concepts for loading whole concepts use case.
-					final String descriptionConceptId = description.getConceptId();
-					if (conceptIdMap != null) {
-						final Concept concept = conceptIdMap.get(descriptionConceptId);
-						if (concept != null) {
-							concept.addDescription(description);
-						}
-					}
-					// Join Description to ConceptMinis for search result use case.
-					if (conceptMiniMap != null) {
-						final ConceptMini conceptMini = conceptMiniMap.get(descriptionConceptId);
-						if (conceptMini != null && description.isActive()) {
-							conceptMini.addActiveDescription(description);
-						}
-					}
-
-					// Store Descriptions in a map for adding Lang Refset and inactivation members.
-					descriptionIdMap.putIfAbsent(description.getDescriptionId(), description);
-				});
-			}
-		}
-		if (timer != null) timer.checkpoint("get descriptions " + getFetchCount(allConceptIds.size()));
-
-		// Fetch Lang Refset Members
-		joinLangRefsetMembers(branchCriteria, allConceptIds, descriptionIdMap);
-		if (timer != null) timer.checkpoint("get lang refset " + getFetchCount(allConceptIds.size()));
-
-		// Fetch Inactivation Indicators and Associations
-		if (fetchInactivationInfo) {
-			joinInactivationIndicatorsAndAssociations(conceptIdMap, descriptionIdMap, branchCriteria, timer);
-		}
+		DescriptionJoin descriptionJoin = createDescriptionJoin(branchCriteria, conceptIdMap, conceptMiniMap, fetchInactivationInfo);
+		descriptionJoin.getLookups().forEach(Runnable::run);
+		descriptionJoin.complete(timer);
 	}
 
 	public Map<String, Long> countActiveConceptsPerSemanticTag(String branch) {
+		return semanticTagCountService.countActiveConceptsPerSemanticTag(branch);
+	}
 
-		Branch branchObject = branchService.findLatest(branch);
-
-		SemanticTagCacheEntry semanticTagCacheEntry = semanticTagAggregationCache.get(branch);
-		if (semanticTagCacheEntry != null) {
-			if (semanticTagCacheEntry.getBranchHeadTime() == branchObject.getHead().getTime()) {
-				return semanticTagCacheEntry.getTagCounts();
-			}
-		}
-
-		BranchCriteria branchCriteria = versionControlHelper.getBranchCriteria(branch);
+	/**
+	 * Splits the description join into lookups which can run concurrently. The description and language reference set lookups of each partition
+	 * of concepts are independent, each only touches the concepts of its partition. Inactivation members are looked up by description id
+	 * so they are fetched once the other lookups have completed.
+	 */
+	DescriptionJoin createDescriptionJoin(BranchCriteria branchCriteria, Map<String, Concept> conceptIdMap, Map<String, ConceptMini> conceptMiniMap,
+			boolean fetchInactivationInfo) {
 
-		List<Long> activeConcepts = new LongArrayList();
+		return new DescriptionJoin(branchCriteria, conceptIdMap, conceptMiniMap, fetchInactivationInfo);
+	}
 
-		try (SearchHitsIterator<Concept> stream = elasticsearchTemplate.searchForStream(new NativeSearchQueryBuilder()
-				.withQuery(boolQuery()
-						.must(branchCriteria.getEntityBranchCriteria(Concept.class))
-						.must(termQuery(Concept.Fields.ACTIVE, true)))
-				.withSourceFilter(new FetchSourceFilter(new String[] {Concept.Fields.CONCEPT_ID}, new String[] {}))
-				.withPageable(LARGE_PAGE).build(), Concept.class)) {
-			stream.forEachRemaining(hit -> activeConcepts.add(hit.getContent().getConceptIdAsLong()));
-		}
+	private void fetchDescriptions(BranchCriteria branchCriteria, List<String> conceptIds, Map<String, Concept> conceptIdMap,
+			Map<String, ConceptMini> conceptMiniMap, Map<String, Description> descriptionIdMap) {
 
-		SearchHits<Description> page = elasticsearchTemplate.search(new NativeSearchQueryBuilder()
+		NativeSearchQuery query = new NativeSearchQueryBuilder()
 				.withQuery(boolQuery()
 						.must(branchCriteria.getEntityBranchCriteria(Description.class))
-						.must(termQuery(Description.Fields.ACTIVE, true))
-						.must(termQuery(Description.Fields.TYPE_ID, Concepts.FSN))
-						.filter(termsQuery(Description.Fields.CONCEPT_ID, activeConcepts))
-				)
-				.addAggregation(AggregationBuilders.terms("semanticTags").field(Description.Fields.TAG).size(AGGREGATION_SEARCH_SIZE))
-				.build(), Description.class);
-
-		Map<String, Long> tagCounts = new TreeMap<>();
-		if (page.hasAggregations()) {
-			ParsedStringTerms semanticTags = page.getAggregations().get("semanticTags");
-			List<? extends Terms.Bucket> buckets = semanticTags.getBuckets();
-			for (Terms.Bucket bucket : buckets) {
-				tagCounts.put(bucket.getKeyAsString(), bucket.getDocCount());
-			}
-		}
-		// Cache result
-		semanticTagAggregationCache.put(branch, new SemanticTagCacheEntry(branchObject.getHead().getTime(), tagCounts));
+						.must(termsQuery("conceptId", conceptIds)))
+				.withPageable(LARGE_PAGE)
+				.build();
+		try (final SearchHitsIterator<Description> descriptions = elasticsearchTemplate.searchForStream(query, Description.class)) {
+			descriptions.forEachRemaining(hit -> {
+				Description description = hit.getContent();
+				// Join Descriptions to concepts for loading whole concepts use case.
+				final String descriptionConceptId = description.getConceptId();
+				if (conceptIdMap != null) {
+					final Concept concept = conceptIdMap.get(descriptionConceptId);
+					if (concept != null) {
+						concept.addDescription(description);
+					}
+				}
+				// Join Description to ConceptMinis for search result use case.
+				if (conceptMiniMap != null) {
+					final ConceptMini conceptMini = conceptMiniMap.get(descriptionConceptId);
+					if (conceptMini != null && description.isActive()) {
+						conceptMini.addActiveDescription(description);
+					}
+				}
 
-		return tagCounts;
+				// Store Descriptions in a map for adding Lang Refset and inactivation members.
+				descriptionIdMap.putIfAbsent(description.getDescriptionId(), description);
+			});
+		}
 	}
 
 	private void joinInactivationIndicatorsAndAssociations(Map<String, Concept> conceptIdMap, Map<String, Description> descriptionIdMap,
@@ -440,24 +403,29 @@ public class DescriptionService extends ComponentService {
 	}
 
 	private void joinLangRefsetMembers(BranchCriteria branchCriteria, Set<String> allConceptIds, Map<String, Description> descriptionIdMap) {
-		NativeSearchQueryBuilder queryBuilder = new NativeSearchQueryBuilder();
 		for (List<String> conceptIds : Iterables.partition(allConceptIds, CLAUSE_LIMIT)) {
-
-			queryBuilder.withQuery(boolQuery()
-					.must(branchCriteria.getEntityBranchCriteria(ReferenceSetMember.class))
-					.must(termsQuery(ReferenceSetMember.LanguageFields.ACCEPTABILITY_ID_FIELD_PATH, Concepts.PREFERRED, Concepts.ACCEPTABLE))
-					.must(termsQuery("conceptId", conceptIds)))
-					.withPageable(LARGE_PAGE);
 			// Join Lang Refset Members
-			try (final SearchHitsIterator<ReferenceSetMember> langRefsetMembers = elasticsearchTemplate.searchForStream(queryBuilder.build(), ReferenceSetMember.class)) {
-				langRefsetMembers.forEachRemaining(hit -> {
-					ReferenceSetMember langRefsetMember = hit.getContent();
-					Description description = descriptionIdMap.get(langRefsetMember.getReferencedComponentId());
-					if (description != null) {
-						description.addLanguageRefsetMember(langRefsetMember);
-					}
-				});
-			}
+			fetchLangRefsetMembers(branchCriteria, conceptIds, langRefsetMember -> joinLangRefsetMember(langRefsetMember, descriptionIdMap));
+		}
+	}
+
+	private void fetchLangRefsetMembers(BranchCriteria branchCriteria, List<String> conceptIds, Consumer<ReferenceSetMember> memberConsumer) {
+		NativeSearchQuery query = new NativeSearchQueryBuilder()
+				.withQuery(boolQuery()
+						.must(branchCriteria.getEntityBranchCriteria(ReferenceSetMember.class))
+						.must(termsQuery(ReferenceSetMember.LanguageFields.ACCEPTABILITY_ID_FIELD_PATH, Concepts.PREFERRED, Concepts.ACCEPTABLE))
+						.must(termsQuery("conceptId", conceptIds)))
+				.withPageable(LARGE_PAGE)
+				.build();
+		try (final SearchHitsIterator<ReferenceSetMember> langRefsetMembers = elasticsearchTemplate.searchForStream(query, ReferenceSetMember.class)) {
+			langRefsetMembers.forEachRemaining(hit -> memberConsumer.accept(hit.getContent()));
+		}
+	}
+
+	private static void joinLangRefsetMember(ReferenceSetMember langRefsetMember, Map<String, Description> descriptionIdMap) {
+		Description description = descriptionIdMap.get(langRefsetMember.getReferencedComponentId());
+		if (description != null) {
+			description.addLanguageRefsetMember(langRefsetMember);
 		}
 	}
 
@@ -502,37 +470,78 @@ public class DescriptionService extends ComponentService {
 			descriptionQuery.must(termsQuery(Description.Fields.CONCEPT_ID, conceptIdsCriteria));
 		}
 
+		Set<Long> preferredIn = criteria.getPreferredIn();
+		Set<Long> acceptableIn = criteria.getAcceptableIn();
+		Set<Long> preferredOrAcceptableIn = criteria.getPreferredOrAcceptableIn();
+		boolean acceptabilityFiltering = !CollectionUtils.isEmpty(preferredIn) || !CollectionUtils.isEmpty(acceptableIn) || !CollectionUtils.isEmpty(preferredOrAcceptableIn);
+		// Descriptions for which the stored acceptability may not apply on this branch, these are checked against the language refset members
+		Set<Long> acceptabilityToCheck = null;
+		if (acceptabilityFiltering && storedAcceptabilityEnabled) {
+			acceptabilityToCheck = findDescriptionsWithAcceptabilityChangedOffMain(branchCriteria);
+		}
+		boolean storedAcceptabilityFiltering = acceptabilityToCheck != null;
+		if (storedAcceptabilityFiltering) {
+			// Filter using the acceptability stored on each description, within the same query
+			BoolQueryBuilder storedAcceptabilityFilter = boolQuery();
+			if (!CollectionUtils.isEmpty(preferredIn)) {
+				storedAcceptabilityFilter.filter(termsQuery(Description.Fields.PREFERRED_IN, preferredIn));
+			}
+			if (!CollectionUtils.isEmpty(acceptableIn)) {
+				storedAcceptabilityFilter.filter(termsQuery(Description.Fields.ACCEPTABLE_IN, acceptableIn));
+			}
+			if (!CollectionUtils.isEmpty(preferredOrAcceptableIn)) {
+				storedAcceptabilityFilter.filter(boolQuery()
+						.should(termsQuery(Description.Fields.PREFERRED_IN, preferredOrAcceptableIn))
+						.should(termsQuery(Description.Fields.ACCEPTABLE_IN, preferredOrAcceptableIn)));
+			}
+			descriptionQuery.filter(boolQuery()
+					.should(storedAcceptabilityFilter)
+					// Stored acceptability is only maintained on MAIN
+					.should(boolQuery().mustNot(termQuery(PATH, Branch.MAIN)))
+					.should(termsQuery(Description.Fields.DESCRIPTION_ID, acceptabilityToCheck)));
+		}
+
 		// First pass search to collect all description and concept ids.
 		final Map<Long, Long> descriptionToConceptMap = new Long2ObjectLinkedOpenHashMap<>();
 		NativeSearchQueryBuilder searchQueryBuilder = new NativeSearchQueryBuilder()
 				.withQuery(descriptionQuery)
-				.withSourceFilter(new FetchSourceFilter(new String[] {Description.Fields.DESCRIPTION_ID, Description.Fields.CONCEPT_ID}, new String[]{}));
-
-		NativeSearchQuery query = searchQueryBuilder.withPageable(PAGE_OF_ONE).build();
-		query.setTrackTotalHits(true);
-		long totalElements = elasticsearchTemplate.search(query, Description.class).getTotalHits();
-		if (totalElements > aggregationMaxProcessableResultsSize) {
-			throw new TooCostlyException(String.format("There are over %s results. Aggregating these results would be too costly.", aggregationMaxProcessableResultsSize));
+				.withSourceFilter(new FetchSourceFilter(new String[] {Description.Fields.DESCRIPTION_ID, Description.Fields.CONCEPT_ID, PATH}, new String[]{}));
+
+		if (!storedAcceptabilityFiltering) {
+			NativeSearchQuery query = searchQueryBuilder.withPageable(PAGE_OF_ONE).build();
+			query.setTrackTotalHits(true);
+			long totalElements = elasticsearchTemplate.search(query, Description.class).getTotalHits();
+			if (totalElements > aggregationMaxProcessableResultsSize) {
+				throw newTooCostlyException();
+			}
+			timer.checkpoint("Count all check");
 		}
-		timer.checkpoint("Count all check");
 
 		NativeSearchQuery searchQuery = searchQueryBuilder.withPageable(LARGE_PAGE).build();
 		addTermSort(searchQuery);
 		try (SearchHitsIterator<Description> stream = elasticsearchTemplate.searchForStream(
 				searchQuery, Description.class)) {
-			stream.forEachRemaining(hit -> {
-				Description description = hit.getContent();
-				descriptionToConceptMap.put(parseLong(description.getDescriptionId()), parseLong(description.getConceptId()));
-			});
+			while (stream.hasNext()) {
+				Description description = stream.next().getContent();
+				long descriptionId = parseLong(description.getDescriptionId());
+				descriptionToConceptMap.put(descriptionId, parseLong(description.getConceptId()));
+				if (storedAcceptabilityFiltering) {
+					// The filtered query is not counted up front, the limit is applied while collecting instead
+					if (descriptionToConceptMap.size() > aggregationMaxProcessableResultsSize) {
+						throw newTooCostlyException();
+					}
+					if (!Branch.MAIN.equals(description.getPath())) {
+						acceptabilityToCheck.add(descriptionId);
+					}
+				}
+			}
 		}
 		timer.checkpoint("Collect all description and concept ids");
 
-		// Second pass to apply lang refset filter
-		Set<Long> preferredIn = criteria.getPreferredIn();
-		Set<Long> acceptableIn = criteria.getAcceptableIn();
-		Set<Long> preferredOrAcceptableIn = criteria.getPreferredOrAcceptableIn();
+		// Second pass to apply lang refset filter, only to descriptions where stored acceptability may not apply when that is used
 		Set<Long> conceptIds;
-		if (!CollectionUtils.isEmpty(preferredIn) || !CollectionUtils.isEmpty(acceptableIn) || !CollectionUtils.isEmpty(preferredOrAcceptableIn)) {
+		Set<Long> descriptionIdsToFilter = storedAcceptabilityFiltering ? Sets.intersection(acceptabilityToCheck, descriptionToConceptMap.keySet()) : descriptionToConceptMap.keySet();
+		if (acceptabilityFiltering && !descriptionIdsToFilter.isEmpty()) {
 
 			BoolQueryBuilder queryBuilder = boolQuery()
 					.must(branchCriteria.getEntityBranchCriteria(ReferenceSetMember.class))
@@ -556,7 +565,7 @@ public class DescriptionService extends ComponentService {
 
 			NativeSearchQuery nativeSearchQuery = new NativeSearchQueryBuilder()
 					.withQuery(queryBuilder)
-					.withFilter(termsQuery(ReferenceSetMember.Fields.REFERENCED_COMPONENT_ID, descriptionToConceptMap.keySet()))
+					.withFilter(termsQuery(ReferenceSetMember.Fields.REFERENCED_COMPONENT_ID, new LongOpenHashSet(descriptionIdsToFilter)))
 					.withSourceFilter(new FetchSourceFilter(new String[]{ReferenceSetMember.Fields.REFERENCED_COMPONENT_ID}, new String[]{}))
 					.withPageable(LARGE_PAGE)
 					.build();
@@ -568,7 +577,7 @@ public class DescriptionService extends ComponentService {
 			// Create new map of descriptions and concepts, keeping the original description order.
 			Map<Long, Long> filteredDescriptionToConceptMap = new Long2ObjectLinkedOpenHashMap<>();
 			for (Long descriptionId : descriptionToConceptMap.keySet()) {
-				if (filteredDescriptionIds.contains(descriptionId)) {
+				if (filteredDescriptionIds.contains(descriptionId) || !descriptionIdsToFilter.contains(descriptionId)) {
 					filteredDescriptionToConceptMap.put(descriptionId, descriptionToConceptMap.get(descriptionId));
 				}
 			}
@@ -638,6 +647,75 @@ public class DescriptionService extends ComponentService {
 		return new DescriptionMatches(descriptions, conceptIds, descriptionQuery);
 	}
 
+	/**
+	 * Finds descriptions whose language reference set members on this branch may differ from those used for the stored acceptability on MAIN.
+	 * That is members which are not on MAIN and members on MAIN which this branch has replaced, deleted or not yet rebased onto.
+	 * @return The description ids or null if stored acceptability should not be used, because there are too many, the criteria are not
+	 * the head criteria of a branch or the branch sees MAIN from before the last full update of stored acceptability.
+	 */
+	private Set<Long> findDescriptionsWithAcceptabilityChangedOffMain(BranchCriteria branchCriteria) {
+		BranchHead branchHead = versionControlHelper.getBranchHead(branchCriteria);
+		if (branchHead == null || !isStoredAcceptabilityComplete(branchHead)) {
+			return null;
+		}
+		BoolQueryBuilder memberBranchCriteria = branchCriteria.getEntityBranchCriteria(ReferenceSetMember.class);
+		BoolQueryBuilder changedMembers = boolQuery()
+				.should(boolQuery()
+						.must(memberBranchCriteria)
+						.mustNot(termQuery(PATH, Branch.MAIN)));
+		if (!Branch.MAIN.equals(branchHead.getPath())) {
+			changedMembers.should(boolQuery()
+					.must(termQuery(PATH, Branch.MAIN))
+					.must(rangeQuery("start").lte(branchHead.getBaseTimestamp()))
+					.mustNot(rangeQuery("end").lte(branchHead.getBaseTimestamp()))
+					.mustNot(memberBranchCriteria));
+		}
+		Set<Long> descriptionIds = new LongOpenHashSet();
+		try (SearchHitsIterator<ReferenceSetMember> stream = elasticsearchTemplate.searchForStream(new NativeSearchQueryBuilder()
+				.withQuery(boolQuery()
+						.must(existsQuery(ReferenceSetMember.LanguageFields.ACCEPTABILITY_ID_FIELD_PATH))
+						.must(changedMembers))
+				.withFields(ReferenceSetMember.Fields.REFERENCED_COMPONENT_ID)
+				.withPageable(LARGE_PAGE)
+				.build(), ReferenceSetMember.class)) {
+			while (stream.hasNext()) {
+				descriptionIds.add(parseLong(stream.next().getContent().getReferencedComponentId()));
+				if (descriptionIds.size() > MAX_STORED_ACCEPTABILITY_CHECKS) {
+					// Cheaper to check all matching descriptions against the members
+					return null;
+				}
+			}
+		}
+		return descriptionIds;
+	}
+
+	private TooCostlyException newTooCostlyException() {
+		return new TooCostlyException(String.format("There are over %s results. Aggregating these results would be too costly.", aggregationMaxProcessableResultsSize));
+	}
+
+	/**
+	 * Stored acceptability is only complete for description versions on MAIN written since the last full update.
+	 * Branches with an older base, like code system versions or branches not rebased since, see MAIN versions without it.
+	 */
+	private boolean isStoredAcceptabilityComplete(BranchHead branchHead) {
+		Long fullUpdateTimepoint = acceptabilityUpdateService.getFullUpdateTimepoint();
+		if (fullUpdateTimepoint == null) {
+			return false;
+		}
+		String path = branchHead.getPath();
+		if (Branch.MAIN.equals(path)) {
+			return branchHead.getHeadTimestamp() >= fullUpdateTimepoint;
+		}
+		// Find the timepoint at which this branch sees MAIN, through the base of each ancestor at the time its child was based on it
+		long mainTimepoint = branchHead.getBaseTimestamp();
+		String parentPath = PathUtil.getParentPath(path);
+		while (parentPath != null && !Branch.MAIN.equals(parentPath)) {
+			mainTimepoint = branchService.findAtTimepointOrThrow(parentPath, new Date(mainTimepoint)).getBaseTimestamp();
+			parentPath = PathUtil.getParentPath(parentPath);
+		}
+		return mainTimepoint >= fullUpdateTimepoint;
+	}
+
 	private Set<Long> filterOrderedSet(Set<Long> orderedIds, List<Long> idsToKeep) {
 		LongLinkedOpenHashSet newSet = new LongLinkedOpenHashSet();
 		for (Long orderedId : orderedIds) {
@@ -789,25 +867,6 @@ public class DescriptionService extends ComponentService {
 		return query;
 	}
 
-	private static class SemanticTagCacheEntry {
-
-		private final long branchHeadTime;
-		private final Map<String, Long> tagCounts;
-
-		SemanticTagCacheEntry(long branchHeadTime, Map<String, Long> tagCounts) {
-			this.branchHeadTime = branchHeadTime;
-			this.tagCounts = tagCounts;
-		}
-
-		private long getBranchHeadTime() {
-			return branchHeadTime;
-		}
-
-		private Map<String, Long> getTagCounts() {
-			return tagCounts;
-		}
-	}
-
 	static class DescriptionMatches {
 
 		private final Set<Long> conceptIds;
@@ -832,4 +891,54 @@ public class DescriptionService extends ComponentService {
 			return descriptionQuery;
 		}
 	}
+
+	final class DescriptionJoin {
+
+		private final BranchCriteria branchCriteria;
+		private final Map<String, Concept> conceptIdMap;
+		private final boolean fetchInactivationInfo;
+		private final Set<String> allConceptIds = new HashSet<>();
+		private final Map<String, Description> descriptionIdMap = new ConcurrentHashMap<>();
+		// Joined once all descriptions are fetched
+		private final Queue<ReferenceSetMember> langRefsetMembers = new ConcurrentLinkedQueue<>();
+		private final List<Runnable> lookups = new ArrayList<>();
+
+		private DescriptionJoin(BranchCriteria branchCriteria, Map<String, Concept> conceptIdMap, Map<String, ConceptMini> conceptMiniMap,
+				boolean fetchInactivationInfo) {
+
+			this.branchCriteria = branchCriteria;
+			this.conceptIdMap = conceptIdMap;
+			this.fetchInactivationInfo = fetchInactivationInfo;
+			if (conceptIdMap != null) {
+				allConceptIds.addAll(conceptIdMap.keySet());
+			}
+			if (conceptMiniMap != null) {
+				allConceptIds.addAll(conceptMiniMap.keySet());
+			}
+			for (List<String> conceptIds : Iterables.partition(allConceptIds, CLAUSE_LIMIT)) {
+				lookups.add(() -> fetchDescriptions(branchCriteria, conceptIds, conceptIdMap, conceptMiniMap, descriptionIdMap));
+				lookups.add(() -> fetchLangRefsetMembers(branchCriteria, conceptIds, langRefsetMembers::add));
+			}
+		}
+
+		/**
+		 * @return Lookups which must all complete before {@link #complete(TimerUtil)} is called.
+		 */
+		List<Runnable> getLookups() {
+			return lookups;
+		}
+
+		void complete(TimerUtil timer) {
+			if (allConceptIds.isEmpty()) {
+				return;
+			}
+			langRefsetMembers.forEach(langRefsetMember -> joinLangRefsetMember(langRefsetMember, descriptionIdMap));
+			if (timer != null) timer.checkpoint("get descriptions and lang refset " + getFetchCount(allConceptIds.size()));
+
+			// Fetch Inactivation Indicators and Associations
+			if (fetchInactivationInfo) {
+				joinInactivationIndicatorsAndAssociations(conceptIdMap, descriptionIdMap, branchCriteria, timer);
+			}
+		}
+	}
 }
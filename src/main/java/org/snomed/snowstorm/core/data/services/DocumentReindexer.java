@@ -0,0 +1,30 @@
+package org.snomed.snowstorm.core.data.services;
+
+import io.kaicode.elasticvc.domain.DomainEntity;
+import org.elasticsearch.index.query.QueryBuilder;
+import org.springframework.data.elasticsearch.core.query.UpdateQuery;
+
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * A type of document rebuild which can be run as a background job by {@link ReindexJobService}.
+ * Implementations are Spring beans, they are found by the job service using their type.
+ */
+public interface DocumentReindexer<T extends DomainEntity<?>> {
+
+	String getType();
+
+	Class<T> getDocumentClass();
+
+	/**
+	 * @return Query selecting the documents to be checked, across all branches.
+	 */
+	QueryBuilder getQuery(Map<String, String> parameters);
+
+	/**
+	 * @return Function returning the update needed for a document or null if the document is already correct.
+	 */
+	Function<T, UpdateQuery> getUpdateFunction(Map<String, String> parameters);
+
+}
@@ -0,0 +1,136 @@
+package org.snomed.snowstorm.core.data.services;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.kaicode.elasticvc.api.BranchCriteria;
+import io.kaicode.elasticvc.api.CommitListener;
+import io.kaicode.elasticvc.domain.Commit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.snomed.snowstorm.core.data.domain.QueryConcept;
+import org.snomed.snowstorm.core.data.services.CachingVersionControlHelper.BranchHead;
+import org.snomed.snowstorm.core.data.services.transitiveclosure.HierarchySnapshot;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
+import org.springframework.data.elasticsearch.core.SearchHitsIterator;
+import org.springframework.data.elasticsearch.core.query.NativeSearchQueryBuilder;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.util.Date;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+
+import static io.kaicode.elasticvc.api.ComponentService.LARGE_PAGE;
+import static org.elasticsearch.index.query.QueryBuilders.boolQuery;
+import static org.elasticsearch.index.query.QueryBuilders.termQuery;
+
+/**
+ * Holds optional in-memory hierarchy snapshots of the semantic index, one per branch and form.
+ * A snapshot is only handed out when the caller's branch criteria are the head criteria of the branch version it was built from,
+ * keyed on path and head timestamp, so queries at other timepoints or within an open commit always fall back to Elasticsearch.
+ * Snapshots are built in the background on first use and dropped when the branch commits.
+ */
+@Service
+public class HierarchySnapshotService implements CommitListener {
+
+	@Value("${ecl.hierarchy-snapshot.enabled:false}")
+	private boolean enabled;
+
+	@Value("${ecl.hierarchy-snapshot.max-snapshots:4}")
+	private int maxSnapshots;
+
+	@Autowired
+	private ElasticsearchOperations elasticsearchTemplate;
+
+	@Autowired
+	private CachingVersionControlHelper versionControlHelper;
+
+	@Autowired
+	private ExecutorService executorService;
+
+	private Cache<String, HierarchySnapshot> snapshots;
+
+	private final Set<String> snapshotsBuilding = ConcurrentHashMap.newKeySet();
+
+	private final Logger logger = LoggerFactory.getLogger(getClass());
+
+	@PostConstruct
+	public void init() {
+		snapshots = Caffeine.newBuilder().maximumSize(maxSnapshots).build();
+	}
+
+	/**
+	 * @return The hierarchy snapshot for this branch and form if one exists for the branch version of these head criteria, otherwise null.
+	 * When enabled and no current snapshot exists a background build is started.
+	 */
+	public HierarchySnapshot getSnapshotIfCurrent(String path, BranchCriteria branchCriteria, boolean stated) {
+		if (!enabled || path == null) {
+			return null;
+		}
+		BranchHead branchHead = versionControlHelper.getBranchHead(branchCriteria);
+		if (branchHead == null || !branchHead.getPath().equals(path)) {
+			// Historic and in-commit queries are not cached.
+			return null;
+		}
+		String key = getKey(path, stated);
+		HierarchySnapshot snapshot = snapshots.getIfPresent(key);
+		if (snapshot != null && snapshot.getHeadTimestamp() == branchHead.getHeadTimestamp()) {
+			return snapshot;
+		}
+		buildInBackground(path, stated, branchHead.getHeadTimestamp(), key);
+		return null;
+	}
+
+	private void buildInBackground(String path, boolean stated, long requestedHeadTimestamp, String key) {
+		if (!snapshotsBuilding.add(key)) {
+			return;
+		}
+		executorService.submit(() -> {
+			try {
+				BranchCriteria branchCriteria = versionControlHelper.getBranchCriteria(path);
+				BranchHead branchHead = versionControlHelper.getBranchHead(branchCriteria);
+				if (branchHead == null || branchHead.getHeadTimestamp() != requestedHeadTimestamp) {
+					// Branch has moved on or is locked for a commit.
+					return;
+				}
+				snapshots.put(key, buildSnapshot(branchCriteria, stated, requestedHeadTimestamp, path));
+			} catch (Exception e) {
+				logger.error("Failed to build {} hierarchy snapshot for {}.", stated ? "stated" : "inferred", path, e);
+			} finally {
+				snapshotsBuilding.remove(key);
+			}
+		});
+	}
+
+	HierarchySnapshot buildSnapshot(BranchCriteria branchCriteria, boolean stated, long headTimestamp, String path) {
+		long start = new Date().getTime();
+		HierarchySnapshot.Builder builder = new HierarchySnapshot.Builder();
+		try (SearchHitsIterator<QueryConcept> stream = elasticsearchTemplate.searchForStream(new NativeSearchQueryBuilder()
+				.withQuery(boolQuery()
+						.must(branchCriteria.getEntityBranchCriteria(QueryConcept.class))
+						.must(termQuery(QueryConcept.Fields.STATED, stated)))
+				.withFields(QueryConcept.Fields.CONCEPT_ID, QueryConcept.Fields.PARENTS)
+				.withPageable(LARGE_PAGE)
+				.build(), QueryConcept.class)) {
+			stream.forEachRemaining(hit -> builder.addConcept(hit.getContent().getConceptIdL(), hit.getContent().getParents()));
+		}
+		HierarchySnapshot snapshot = builder.build(headTimestamp);
+		logger.info("Built {} hierarchy snapshot for {} with {} concepts in {} seconds.", stated ? "stated" : "inferred", path,
+				snapshot.getConceptCount(), (new Date().getTime() - start) / 1000f);
+		return snapshot;
+	}
+
+	@Override
+	public void preCommitCompletion(Commit commit) throws IllegalStateException {
+		String path = commit.getBranch().getPath();
+		snapshots.invalidate(getKey(path, true));
+		snapshots.invalidate(getKey(path, false));
+	}
+
+	private String getKey(String path, boolean stated) {
+		return path + (stated ? "_s" : "_i");
+	}
+}
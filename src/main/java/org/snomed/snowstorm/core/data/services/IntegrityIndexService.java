@@ -0,0 +1,388 @@
+package org.snomed.snowstorm.core.data.services;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.Sets;
+import io.kaicode.elasticvc.api.BranchCriteria;
+import io.kaicode.elasticvc.api.BranchService;
+import io.kaicode.elasticvc.api.VersionControlHelper;
+import io.kaicode.elasticvc.domain.Branch;
+import io.kaicode.elasticvc.domain.Commit;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import org.elasticsearch.index.query.BoolQueryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.snomed.otf.owltoolkit.conversion.ConversionException;
+import org.snomed.snowstorm.core.data.domain.*;
+import org.snomed.snowstorm.core.data.repositories.BranchIntegrityIndexRepository;
+import org.snomed.snowstorm.core.data.services.pojo.IntegrityIssueReport;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
+import org.springframework.data.elasticsearch.core.SearchHitsIterator;
+import org.springframework.data.elasticsearch.core.query.FetchSourceFilter;
+import org.springframework.data.elasticsearch.core.query.NativeSearchQueryBuilder;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.function.Consumer;
+
+import static io.kaicode.elasticvc.api.ComponentService.LARGE_PAGE;
+import static java.lang.Long.parseLong;
+import static org.elasticsearch.index.query.QueryBuilders.*;
+import static org.snomed.snowstorm.core.data.domain.ReferenceSetMember.OwlExpressionFields.OWL_EXPRESSION;
+
+/**
+ * Incremental index of components with bad reference integrity, one per branch and form.
+ * The index is created by a full integrity check of the latest branch state. After that each commit updates it using only
+ * the concepts, relationships and axioms changed in the commit. Components which reference a concept made inactive in the commit
+ * are found through the sourceId, typeId and destinationId fields of relationships and the stated semantic index for axioms.
+ * Axioms are included in the index of both forms, matching the full integrity check.
+ * An index which is not for the current branch head is ignored and replaced by the next full check.
+ */
+@Service
+public class IntegrityIndexService {
+
+	@Value("${integrity-check.incremental-index.enabled:false}")
+	private boolean enabled;
+
+	@Autowired
+	private BranchIntegrityIndexRepository branchIntegrityIndexRepository;
+
+	@Autowired
+	private BranchService branchService;
+
+	@Autowired
+	private VersionControlHelper versionControlHelper;
+
+	@Autowired
+	private ElasticsearchOperations elasticsearchTemplate;
+
+	@Autowired
+	private AxiomConversionService axiomConversionService;
+
+	@Autowired
+	private ObjectMapper objectMapper;
+
+	private final Logger logger = LoggerFactory.getLogger(getClass());
+
+	/**
+	 * @return The indexed issues if the index is enabled and up to date with this branch state, otherwise null.
+	 */
+	IntegrityIssues getIssuesIfCurrent(Branch branch, boolean stated) {
+		if (!enabled) {
+			return null;
+		}
+		return getStoredIssues(branch.getPath(), stated, branch.getHeadTimestamp());
+	}
+
+	/**
+	 * Stores the result of a full integrity check if it was run against the latest state of the branch.
+	 */
+	void storeFullCheckResult(Branch branch, boolean stated, IntegrityIssueReport report) {
+		if (!enabled || branchService.findLatest(branch.getPath()).getHeadTimestamp() != branch.getHeadTimestamp()) {
+			return;
+		}
+		IntegrityIssues issues = new IntegrityIssues();
+		putAll(issues.getRelationshipsWithInactiveSource(), report.getRelationshipsWithMissingOrInactiveSource());
+		putAll(issues.getRelationshipsWithInactiveType(), report.getRelationshipsWithMissingOrInactiveType());
+		putAll(issues.getRelationshipsWithInactiveDestination(), report.getRelationshipsWithMissingOrInactiveDestination());
+		Map<String, ConceptMini> axioms = report.getAxiomsWithMissingOrInactiveReferencedConcept();
+		if (axioms != null) {
+			axioms.forEach((axiomId, conceptMini) -> {
+				@SuppressWarnings("unchecked")
+				Set<Long> inactiveConcepts = (Set<Long>) conceptMini.getExtraFields().get("missingOrInactiveConcepts");
+				issues.addAxiomIssues(axiomId, conceptMini.getConceptId(), inactiveConcepts);
+			});
+		}
+		save(branch.getPath(), stated, branch.getHeadTimestamp(), issues);
+	}
+
+	/**
+	 * Updates any current index of the commit branch using the components changed in the commit.
+	 */
+	void updateIndex(Commit commit) {
+		if (!enabled || commit.isRebase()) {
+			return;
+		}
+		Branch branch = commit.getBranch();
+		Map<Boolean, IntegrityIssues> currentIssues = new HashMap<>();
+		for (boolean stated : new boolean[] {true, false}) {
+			IntegrityIssues issues = getStoredIssues(branch.getPath(), stated, branch.getHeadTimestamp());
+			if (issues != null) {
+				currentIssues.put(stated, issues);
+			}
+		}
+		if (currentIssues.isEmpty()) {
+			return;
+		}
+
+		try {
+			BranchCriteria changes = versionControlHelper.getBranchCriteriaChangesAndDeletionsWithinOpenCommitOnly(commit);
+			BranchCriteria branchCriteria = versionControlHelper.getBranchCriteriaIncludingOpenCommit(commit);
+			Map<String, Set<String>> versionsReplaced = commit.getEntityVersionsReplaced();
+			Set<Long> changedConcepts = new LongOpenHashSet();
+			streamChanged(changes, versionsReplaced, Concept.class, boolQuery(), Concept.Fields.CONCEPT_ID,
+					concept -> changedConcepts.add(concept.getConceptIdAsLong()));
+			Set<Long> changedRelationships = new LongOpenHashSet();
+			streamChanged(changes, versionsReplaced, Relationship.class, boolQuery(), Relationship.Fields.RELATIONSHIP_ID,
+					relationship -> changedRelationships.add(parseLong(relationship.getRelationshipId())));
+			Set<String> changedAxioms = new HashSet<>();
+			streamChanged(changes, versionsReplaced, ReferenceSetMember.class, boolQuery().must(termQuery(ReferenceSetMember.Fields.REFSET_ID, Concepts.OWL_AXIOM_REFERENCE_SET)),
+					ReferenceSetMember.Fields.MEMBER_ID, member -> changedAxioms.add(member.getMemberId()));
+
+			Set<Long> activeChangedConcepts = findActiveConcepts(changedConcepts, branchCriteria);
+			Set<Long> inactiveChangedConcepts = new LongOpenHashSet(Sets.difference(changedConcepts, activeChangedConcepts));
+
+			for (Map.Entry<Boolean, IntegrityIssues> entry : currentIssues.entrySet()) {
+				IntegrityIssues issues = entry.getValue();
+				issues.removeComponents(changedRelationships, changedAxioms);
+				issues.removeConcepts(activeChangedConcepts);
+				checkRelationships(issues, entry.getKey(), changedRelationships, inactiveChangedConcepts, branchCriteria);
+			}
+			// Axioms are checked in both forms, the same as the full integrity check
+			checkAxioms(currentIssues.values(), changedAxioms, inactiveChangedConcepts, branchCriteria);
+			for (Map.Entry<Boolean, IntegrityIssues> entry : currentIssues.entrySet()) {
+				save(branch.getPath(), entry.getKey(), commit.getTimepoint().getTime(), entry.getValue());
+			}
+			logger.debug("Integrity index of {} updated using {} concepts, {} relationships and {} axioms changed.",
+					branch.getPath(), changedConcepts.size(), changedRelationships.size(), changedAxioms.size());
+		} catch (ConversionException | RuntimeException e) {
+			// The index will not match the new branch head so will be recreated by the next full check
+			logger.warn("Failed to update integrity index of {}.", branch.getPath(), e);
+		}
+	}
+
+	private void checkRelationships(IntegrityIssues issues, boolean stated, Set<Long> changedRelationships, Set<Long> inactiveChangedConcepts, BranchCriteria branchCriteria) {
+		if (changedRelationships.isEmpty() && inactiveChangedConcepts.isEmpty()) {
+			return;
+		}
+		BoolQueryBuilder query = boolQuery()
+				.must(branchCriteria.getEntityBranchCriteria(Relationship.class))
+				.must(termQuery(Relationship.Fields.ACTIVE, true))
+				.must(boolQuery()
+						.should(termsQuery(Relationship.Fields.RELATIONSHIP_ID, changedRelationships))
+						.should(termsQuery(Relationship.Fields.SOURCE_ID, inactiveChangedConcepts))
+						.should(termsQuery(Relationship.Fields.TYPE_ID, inactiveChangedConcepts))
+						.should(termsQuery(Relationship.Fields.DESTINATION_ID, inactiveChangedConcepts)));
+		if (stated) {
+			query.mustNot(termQuery(Relationship.Fields.CHARACTERISTIC_TYPE_ID, Concepts.INFERRED_RELATIONSHIP));
+		} else {
+			query.must(termQuery(Relationship.Fields.CHARACTERISTIC_TYPE_ID, Concepts.INFERRED_RELATIONSHIP));
+		}
+		List<Relationship> relationships = new ArrayList<>();
+		Set<Long> referencedConcepts = new LongOpenHashSet();
+		try (SearchHitsIterator<Relationship> stream = elasticsearchTemplate.searchForStream(new NativeSearchQueryBuilder()
+				.withQuery(query)
+				.withPageable(LARGE_PAGE).build(), Relationship.class)) {
+			stream.forEachRemaining(hit -> {
+				Relationship relationship = hit.getContent();
+				relationships.add(relationship);
+				referencedConcepts.add(parseLong(relationship.getSourceId()));
+				referencedConcepts.add(parseLong(relationship.getTypeId()));
+				referencedConcepts.add(parseLong(relationship.getDestinationId()));
+			});
+		}
+		Set<Long> activeConcepts = findActiveConcepts(referencedConcepts, branchCriteria);
+		for (Relationship relationship : relationships) {
+			long relationshipId = parseLong(relationship.getRelationshipId());
+			putIfInactive(relationship.getSourceId(), activeConcepts, relationshipId, issues.getRelationshipsWithInactiveSource());
+			putIfInactive(relationship.getTypeId(), activeConcepts, relationshipId, issues.getRelationshipsWithInactiveType());
+			putIfInactive(relationship.getDestinationId(), activeConcepts, relationshipId, issues.getRelationshipsWithInactiveDestination());
+		}
+	}
+
+	private void checkAxioms(Collection<IntegrityIssues> issuesOfEachForm, Set<String> changedAxioms, Set<Long> inactiveChangedConcepts, BranchCriteria branchCriteria) throws ConversionException {
+		// Concepts with axioms which may reference the inactive concepts, found using the stated semantic index
+		Set<Long> conceptsToCheck = new LongOpenHashSet(inactiveChangedConcepts);
+		if (!inactiveChangedConcepts.isEmpty()) {
+			try (SearchHitsIterator<QueryConcept> stream = elasticsearchTemplate.searchForStream(new NativeSearchQueryBuilder()
+					.withQuery(boolQuery()
+							.must(branchCriteria.getEntityBranchCriteria(QueryConcept.class))
+							.must(termQuery(QueryConcept.Fields.STATED, true))
+							.must(termsQuery(QueryConcept.Fields.ATTR + "." + QueryConcept.ATTR_TYPE_WILDCARD, inactiveChangedConcepts)))
+					.withSourceFilter(new FetchSourceFilter(new String[] {QueryConcept.Fields.CONCEPT_ID}, null))
+					.withPageable(LARGE_PAGE).build(), QueryConcept.class)) {
+				stream.forEachRemaining(hit -> conceptsToCheck.add(hit.getContent().getConceptIdL()));
+			}
+		}
+		if (changedAxioms.isEmpty() && conceptsToCheck.isEmpty()) {
+			return;
+		}
+
+		Map<String, ReferenceSetMember> axioms = new HashMap<>();
+		Map<String, Set<Long>> axiomReferences = new HashMap<>();
+		Set<Long> referencedConcepts = new LongOpenHashSet();
+		try (SearchHitsIterator<ReferenceSetMember> stream = elasticsearchTemplate.searchForStream(new NativeSearchQueryBuilder()
+				.withQuery(boolQuery()
+						.must(branchCriteria.getEntityBranchCriteria(ReferenceSetMember.class))
+						.must(termQuery(ReferenceSetMember.Fields.ACTIVE, true))
+						.must(termQuery(ReferenceSetMember.Fields.REFSET_ID, Concepts.OWL_AXIOM_REFERENCE_SET))
+						.must(boolQuery()
+								.should(termsQuery(ReferenceSetMember.Fields.MEMBER_ID, changedAxioms))
+								.should(termsQuery(ReferenceSetMember.Fields.REFERENCED_COMPONENT_ID, conceptsToCheck))))
+				.withPageable(LARGE_PAGE).build(), ReferenceSetMember.class)) {
+			while (stream.hasNext()) {
+				ReferenceSetMember axiom = stream.next().getContent();
+				Set<Long> references = axiomConversionService.getReferencedConcepts(axiom.getAdditionalField(OWL_EXPRESSION));
+				axioms.put(axiom.getMemberId(), axiom);
+				axiomReferences.put(axiom.getMemberId(), references);
+				referencedConcepts.addAll(references);
+			}
+		}
+		Set<Long> activeConcepts = findActiveConcepts(referencedConcepts, branchCriteria);
+		for (Map.Entry<String, Set<Long>> entry : axiomReferences.entrySet()) {
+			Set<Long> badReferences = new HashSet<>(Sets.difference(entry.getValue(), activeConcepts));
+			if (!badReferences.isEmpty()) {
+				for (IntegrityIssues issues : issuesOfEachForm) {
+					issues.addAxiomIssues(entry.getKey(), axioms.get(entry.getKey()).getReferencedComponentId(), badReferences);
+				}
+			}
+		}
+	}
+
+	private <T extends SnomedComponent<T>> void streamChanged(BranchCriteria changes, Map<String, Set<String>> versionsReplaced, Class<T> componentClass,
+			BoolQueryBuilder typeQuery, String idField, Consumer<T> consumer) {
+
+		BoolQueryBuilder changedQuery = boolQuery().should(changes.getEntityBranchCriteria(componentClass));
+		Set<String> replaced = versionsReplaced.getOrDefault(componentClass.getSimpleName(), Collections.emptySet());
+		if (!replaced.isEmpty()) {
+			changedQuery.should(idsQuery().addIds(replaced.toArray(new String[]{})));
+		}
+		try (SearchHitsIterator<T> stream = elasticsearchTemplate.searchForStream(new NativeSearchQueryBuilder()
+				.withQuery(typeQuery.must(changedQuery))
+				.withSourceFilter(new FetchSourceFilter(new String[] {idField}, null))
+				.withPageable(LARGE_PAGE).build(), componentClass)) {
+			stream.forEachRemaining(hit -> consumer.accept(hit.getContent()));
+		}
+	}
+
+	private Set<Long> findActiveConcepts(Collection<Long> conceptIds, BranchCriteria branchCriteria) {
+		Set<Long> activeConcepts = new LongOpenHashSet();
+		if (conceptIds.isEmpty()) {
+			return activeConcepts;
+		}
+		try (SearchHitsIterator<Concept> stream = elasticsearchTemplate.searchForStream(new NativeSearchQueryBuilder()
+				.withQuery(boolQuery()
+						.must(branchCriteria.getEntityBranchCriteria(Concept.class))
+						.must(termQuery(Concept.Fields.ACTIVE, true))
+						.filter(termsQuery(Concept.Fields.CONCEPT_ID, conceptIds)))
+				.withSourceFilter(new FetchSourceFilter(new String[] {Concept.Fields.CONCEPT_ID}, null))
+				.withPageable(LARGE_PAGE).build(), Concept.class)) {
+			stream.forEachRemaining(hit -> activeConcepts.add(hit.getContent().getConceptIdAsLong()));
+		}
+		return activeConcepts;
+	}
+
+	private void putIfInactive(String conceptId, Set<Long> activeConcepts, long relationshipId, Map<Long, Long> relationshipsWithInactiveConcept) {
+		long concept = parseLong(conceptId);
+		if (!activeConcepts.contains(concept)) {
+			relationshipsWithInactiveConcept.put(relationshipId, concept);
+		}
+	}
+
+	private static void putAll(Map<Long, Long> target, Map<Long, Long> source) {
+		if (source != null) {
+			target.putAll(source);
+		}
+	}
+
+	private IntegrityIssues getStoredIssues(String path, boolean stated, long headTimestamp) {
+		Optional<BranchIntegrityIndex> stored = branchIntegrityIndexRepository.findById(BranchIntegrityIndex.getId(path, stated));
+		if (stored.isPresent() && stored.get().getHeadTimestamp() == headTimestamp) {
+			try {
+				return objectMapper.readValue(stored.get().getIssuesJson(), IntegrityIssues.class);
+			} catch (JsonProcessingException e) {
+				logger.warn("Failed to read integrity index of {}, a full check will be needed.", path, e);
+			}
+		}
+		return null;
+	}
+
+	private void save(String path, boolean stated, long headTimestamp, IntegrityIssues issues) {
+		try {
+			branchIntegrityIndexRepository.save(new BranchIntegrityIndex(path, stated, headTimestamp, objectMapper.writeValueAsString(issues)));
+		} catch (JsonProcessingException e) {
+			logger.warn("Failed to store integrity index of {}.", path, e);
+		}
+	}
+
+	/**
+	 * Relationships and axioms with bad integrity and the missing or inactive concepts they reference.
+	 */
+	public static final class IntegrityIssues {
+
+		private Map<Long, Long> relationshipsWithInactiveSource = new HashMap<>();
+		private Map<Long, Long> relationshipsWithInactiveType = new HashMap<>();
+		private Map<Long, Long> relationshipsWithInactiveDestination = new HashMap<>();
+		private Map<String, String> axiomReferencedComponents = new HashMap<>();
+		private Map<String, Set<Long>> axiomsWithInactiveConcepts = new HashMap<>();
+
+		void addAxiomIssues(String axiomId, String referencedComponentId, Set<Long> inactiveConcepts) {
+			axiomReferencedComponents.put(axiomId, referencedComponentId);
+			axiomsWithInactiveConcepts.computeIfAbsent(axiomId, id -> new HashSet<>()).addAll(inactiveConcepts);
+		}
+
+		void removeComponents(Set<Long> relationshipIds, Set<String> axiomIds) {
+			relationshipsWithInactiveSource.keySet().removeAll(relationshipIds);
+			relationshipsWithInactiveType.keySet().removeAll(relationshipIds);
+			relationshipsWithInactiveDestination.keySet().removeAll(relationshipIds);
+			axiomReferencedComponents.keySet().removeAll(axiomIds);
+			axiomsWithInactiveConcepts.keySet().removeAll(axiomIds);
+		}
+
+		void removeConcepts(Set<Long> activeConcepts) {
+			relationshipsWithInactiveSource.values().removeAll(activeConcepts);
+			relationshipsWithInactiveType.values().removeAll(activeConcepts);
+			relationshipsWithInactiveDestination.values().removeAll(activeConcepts);
+			for (Iterator<Map.Entry<String, Set<Long>>> iterator = axiomsWithInactiveConcepts.entrySet().iterator(); iterator.hasNext(); ) {
+				Map.Entry<String, Set<Long>> entry = iterator.next();
+				entry.getValue().removeAll(activeConcepts);
+				if (entry.getValue().isEmpty()) {
+					axiomReferencedComponents.remove(entry.getKey());
+					iterator.remove();
+				}
+			}
+		}
+
+		public Map<Long, Long> getRelationshipsWithInactiveSource() {
+			return relationshipsWithInactiveSource;
+		}
+
+		public void setRelationshipsWithInactiveSource(Map<Long, Long> relationshipsWithInactiveSource) {
+			this.relationshipsWithInactiveSource = relationshipsWithInactiveSource;
+		}
+
+		public Map<Long, Long> getRelationshipsWithInactiveType() {
+			return relationshipsWithInactiveType;
+		}
+
+		public void setRelationshipsWithInactiveType(Map<Long, Long> relationshipsWithInactiveType) {
+			this.relationshipsWithInactiveType = relationshipsWithInactiveType;
+		}
+
+		public Map<Long, Long> getRelationshipsWithInactiveDestination() {
+			return relationshipsWithInactiveDestination;
+		}
+
+		public void setRelationshipsWithInactiveDestination(Map<Long, Long> relationshipsWithInactiveDestination) {
+			this.relationshipsWithInactiveDestination = relationshipsWithInactiveDestination;
+		}
+
+		public Map<String, String> getAxiomReferencedComponents() {
+			return axiomReferencedComponents;
+		}
+
+		public void setAxiomReferencedComponents(Map<String, String> axiomReferencedComponents) {
+			this.axiomReferencedComponents = axiomReferencedComponents;
+		}
+
+		public Map<String, Set<Long>> getAxiomsWithInactiveConcepts() {
+			return axiomsWithInactiveConcepts;
+		}
+
+		public void setAxiomsWithInactiveConcepts(Map<String, Set<Long>> axiomsWithInactiveConcepts) {
+			this.axiomsWithInactiveConcepts = axiomsWithInactiveConcepts;
+		}
+	}
+}
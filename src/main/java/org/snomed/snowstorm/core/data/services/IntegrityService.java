@@ -53,6 +53,9 @@ public class IntegrityService extends ComponentService implements CommitListener
 	@Autowired
 	private DescriptionService descriptionService;
 
+	@Autowired
+	private IntegrityIndexService integrityIndexService;
+
 	public static final String INTEGRITY_ISSUE_METADATA_KEY = "integrityIssue";
 
 	private Logger logger = LoggerFactory.getLogger(getClass());
@@ -62,6 +65,7 @@ public class IntegrityService extends ComponentService implements CommitListener
 		if (commit.isRebase()) {
 			return;
 		}
+		integrityIndexService.updateIndex(commit);
 		Map<String, String> metadata = commit.getBranch().getMetadata();
 		if (metadata != null && metadata.containsKey(INTERNAL_METADATA_KEY)) {
 			Map<String, String> internalExpanded = (Map<String, String>) branchMetadataHelper.expandObjectValues(metadata).get(INTERNAL_METADATA_KEY);
@@ -452,6 +456,28 @@ public class IntegrityService extends ComponentService implements CommitListener
 
 
 	public IntegrityIssueReport findAllComponentsWithBadIntegrity(Branch branch, boolean stated) throws ServiceException {
+		IntegrityIndexService.IntegrityIssues indexedIssues = integrityIndexService.getIssuesIfCurrent(branch, stated);
+		if (indexedIssues != null) {
+			return getReport(branch, indexedIssues);
+		}
+		IntegrityIssueReport report = doFindAllComponentsWithBadIntegrity(branch, stated);
+		integrityIndexService.storeFullCheckResult(branch, stated, report);
+		return report;
+	}
+
+	private IntegrityIssueReport getReport(Branch branch, IntegrityIndexService.IntegrityIssues issues) {
+		Map<String, ConceptMini> axiomWithInactiveReferencedConcept = new HashMap<>();
+		Map<String, ConceptMini> conceptMiniMap = new HashMap<>();
+		issues.getAxiomsWithInactiveConcepts().forEach((axiomId, badReferences) ->
+				addConceptMini(axiomWithInactiveReferencedConcept, conceptMiniMap, axiomId, issues.getAxiomReferencedComponents().get(axiomId), badReferences));
+		if (!conceptMiniMap.isEmpty()) {
+			descriptionService.joinActiveDescriptions(branch.getPath(), conceptMiniMap);
+		}
+		return getReport(axiomWithInactiveReferencedConcept, new Long2LongOpenHashMap(issues.getRelationshipsWithInactiveSource()),
+				new Long2LongOpenHashMap(issues.getRelationshipsWithInactiveType()), new Long2LongOpenHashMap(issues.getRelationshipsWithInactiveDestination()));
+	}
+
+	private IntegrityIssueReport doFindAllComponentsWithBadIntegrity(Branch branch, boolean stated) throws ServiceException {
 
 		final Map<Long, Long> relationshipWithInactiveSource = new Long2LongOpenHashMap();
 		final Map<Long, Long> relationshipWithInactiveType = new Long2LongOpenHashMap();
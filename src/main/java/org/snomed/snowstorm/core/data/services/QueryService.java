@@ -1,12 +1,18 @@
 package org.snomed.snowstorm.core.data.services;
 
 import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
 import io.kaicode.elasticvc.api.BranchCriteria;
 import io.kaicode.elasticvc.api.VersionControlHelper;
 import it.unimi.dsi.fastutil.longs.LongArrayList;
 import it.unimi.dsi.fastutil.longs.LongArraySet;
 import it.unimi.dsi.fastutil.longs.LongComparators;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import it.unimi.dsi.fastutil.longs.LongSet;
 import org.elasticsearch.index.query.BoolQueryBuilder;
+import org.elasticsearch.search.aggregations.AggregationBuilders;
+import org.elasticsearch.search.aggregations.bucket.terms.IncludeExclude;
+import org.elasticsearch.search.aggregations.bucket.terms.Terms;
 import org.elasticsearch.search.sort.SortBuilders;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -14,15 +20,20 @@ import org.snomed.snowstorm.core.data.domain.*;
 import org.snomed.snowstorm.core.data.services.identifier.IdentifierService;
 import org.snomed.snowstorm.core.data.services.pojo.DescriptionCriteria;
 import org.snomed.snowstorm.core.data.services.pojo.ResultMapPage;
+import org.snomed.snowstorm.core.data.services.transitiveclosure.HierarchySnapshot;
 import org.snomed.snowstorm.core.pojo.BranchTimepoint;
 import org.snomed.snowstorm.core.pojo.LanguageDialect;
+import org.snomed.snowstorm.core.util.ConcurrencyUtil;
 import org.snomed.snowstorm.core.util.PageHelper;
 import org.snomed.snowstorm.core.util.SearchAfterPage;
 import org.snomed.snowstorm.core.util.TimerUtil;
+import org.snomed.snowstorm.ecl.ConceptSelectorHelper;
+import org.snomed.snowstorm.ecl.ECLQueryPlan;
 import org.snomed.snowstorm.ecl.ECLQueryService;
 import org.snomed.snowstorm.rest.converter.SearchAfterHelper;
 import org.springframework.beans.BeansException;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.ApplicationContext;
 import org.springframework.context.ApplicationContextAware;
 import org.springframework.data.domain.Page;
@@ -30,6 +41,7 @@ import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.elasticsearch.core.*;
+import org.springframework.data.elasticsearch.core.query.FetchSourceFilter;
 import org.springframework.data.elasticsearch.core.query.NativeSearchQuery;
 import org.springframework.data.elasticsearch.core.query.NativeSearchQueryBuilder;
 import org.springframework.stereotype.Service;
@@ -37,6 +49,8 @@ import org.springframework.util.CollectionUtils;
 
 import javax.annotation.Nullable;
 import java.util.*;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
 import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.stream.Collectors;
@@ -71,6 +85,18 @@ public class QueryService implements ApplicationContextAware {
 	@Autowired
 	private DescriptionService descriptionService;
 
+	@Autowired
+	private HierarchySnapshotService hierarchySnapshotService;
+
+	@Autowired
+	private ExecutorService executorService;
+
+	@Value("${ecl.hierarchy-lookup.batch-size:1000}")
+	private int hierarchyLookupBatchSize;
+
+	@Value("${ecl.hierarchy-lookup.concurrency:4}")
+	private int hierarchyLookupConcurrency;
+
 	private ConceptService conceptService;
 
 	private static final Function<Long, Object[]> CONCEPT_ID_SEARCH_AFTER_EXTRACTOR =
@@ -256,11 +282,13 @@ public class QueryService implements ApplicationContextAware {
 			conceptIdFilter = conceptQuery.conceptIds.stream().map(Long::valueOf).collect(Collectors.toSet());
 		}
 		if (definitionStatusFilter != null && !definitionStatusFilter.isEmpty()) {
-			Page<Long> allConceptIds = eclQueryService.selectConceptIds(ecl, branchCriteria, branchPath, conceptQuery.isStated(), conceptIdFilter, null);
+			Page<Long> allConceptIds = eclQueryService.selectConceptIds(ecl, branchCriteria, branchPath, conceptQuery.isStated(), conceptIdFilter, null,
+					conceptQuery.getEclExplainPlan());
 			List<Long> filteredConceptIds = filterByDefinitionStatus(allConceptIds.getContent(), conceptQuery.definitionStatusFilter, branchCriteria, new LongArrayList());
 			return PageHelper.fullListToPage(filteredConceptIds, pageRequest, CONCEPT_ID_SEARCH_AFTER_EXTRACTOR);
 		} else {
-			Page<Long> conceptIds = eclQueryService.selectConceptIds(ecl, branchCriteria, branchPath, conceptQuery.isStated(), conceptIdFilter, pageRequest);
+			Page<Long> conceptIds = eclQueryService.selectConceptIds(ecl, branchCriteria, branchPath, conceptQuery.isStated(), conceptIdFilter, pageRequest,
+					conceptQuery.getEclExplainPlan());
 			return PageHelper.toSearchAfterPage(conceptIds, CONCEPT_ID_SEARCH_AFTER_EXTRACTOR);
 		}
 	}
@@ -268,7 +296,7 @@ public class QueryService implements ApplicationContextAware {
 	private List<Long> doEclSearch(ConceptQueryBuilder conceptQuery, String branchPath, BranchCriteria branchCriteria, Collection<Long> conceptIdFilter) {
 		String ecl = conceptQuery.getEcl();
 		logger.debug("ECL Search {}", ecl);
-		return eclQueryService.selectConceptIds(ecl, branchCriteria, branchPath, conceptQuery.isStated(), conceptIdFilter).getContent();
+		return eclQueryService.selectConceptIds(ecl, branchCriteria, branchPath, conceptQuery.isStated(), conceptIdFilter, null, conceptQuery.getEclExplainPlan()).getContent();
 	}
 
 	private List<ConceptMini> sortConceptMinisByTermOrder(List<Long> termConceptIds, Map<String, ConceptMini> conceptMiniMap) {
@@ -322,22 +350,71 @@ public class QueryService implements ApplicationContextAware {
 		return !concepts.isEmpty() ? concepts.get(0).getAncestors() : Collections.emptySet();
 	}
 
-	public Set<Long> findAncestorIdsAsUnion(BranchCriteria branchCriteria, boolean stated, Collection<Long> conceptId) {
-		final NativeSearchQuery searchQuery = new NativeSearchQueryBuilder()
+	/**
+	 * @return In-memory hierarchy of the semantic index if enabled and available for exactly these branch criteria, otherwise null.
+	 */
+	public HierarchySnapshot findHierarchySnapshot(String path, BranchCriteria branchCriteria, boolean stated) {
+		return hierarchySnapshotService.getSnapshotIfCurrent(path, branchCriteria, stated);
+	}
+
+	public Set<Long> findAncestorIdsAsUnion(BranchCriteria branchCriteria, boolean stated, Collection<Long> conceptIds) {
+		return findHierarchyIdsAsUnion(branchCriteria, stated, conceptIds, QueryConcept.Fields.ANCESTORS, QueryConcept::getAncestors);
+	}
+
+	public Set<Long> findParentIdsAsUnion(BranchCriteria branchCriteria, boolean stated, Collection<Long> conceptIds) {
+		return findHierarchyIdsAsUnion(branchCriteria, stated, conceptIds, QueryConcept.Fields.PARENTS, QueryConcept::getParents);
+	}
+
+	// Concept ids are split into batches which are streamed concurrently, so latency scales with the number of batches rather than concepts.
+	private Set<Long> findHierarchyIdsAsUnion(BranchCriteria branchCriteria, boolean stated, Collection<Long> conceptIds, String field,
+			Function<QueryConcept, Set<Long>> idsFunction) {
+
+		List<List<Long>> batches = Lists.newArrayList(Iterables.partition(conceptIds, hierarchyLookupBatchSize));
+		if (batches.size() <= 1 || hierarchyLookupConcurrency <= 1) {
+			Set<Long> allIds = new LongOpenHashSet();
+			for (List<Long> batch : batches) {
+				streamHierarchyIds(branchCriteria, stated, batch, field, idsFunction, allIds);
+			}
+			return allIds;
+		}
+
+		ExecutorCompletionService<Set<Long>> completionService = new ExecutorCompletionService<>(executorService);
+		Iterator<List<Long>> batchIterator = batches.iterator();
+		int running = 0;
+		Set<Long> allIds = new LongOpenHashSet();
+		while (batchIterator.hasNext() || running > 0) {
+			while (batchIterator.hasNext() && running < hierarchyLookupConcurrency) {
+				List<Long> batch = batchIterator.next();
+				completionService.submit(() -> streamHierarchyIds(branchCriteria, stated, batch, field, idsFunction, new LongOpenHashSet()));
+				running++;
+			}
+			allIds.addAll(ConcurrencyUtil.waitForResult(() -> completionService.take().get(), "fetching concept " + field));
+			running--;
+		}
+		return allIds;
+	}
+
+	private Set<Long> streamHierarchyIds(BranchCriteria branchCriteria, boolean stated, List<Long> conceptIds, String field,
+			Function<QueryConcept, Set<Long>> idsFunction, Set<Long> allIds) {
+
+		NativeSearchQuery searchQuery = new NativeSearchQueryBuilder()
 				.withQuery(boolQuery()
 						.must(branchCriteria.getEntityBranchCriteria(QueryConcept.class))
-						.must(termsQuery(QueryConcept.Fields.CONCEPT_ID, conceptId))
-						.must(termQuery("stated", stated))
+						.must(termsQuery(QueryConcept.Fields.CONCEPT_ID, conceptIds))
+						.must(termQuery(QueryConcept.Fields.STATED, stated))
 				)
+				.withSourceFilter(new FetchSourceFilter(new String[] {field}, null))
 				.withPageable(LARGE_PAGE)
 				.build();
-		final List<QueryConcept> concepts = elasticsearchTemplate.search(searchQuery, QueryConcept.class)
-				.stream().map(SearchHit::getContent).collect(Collectors.toList());
-		Set<Long> allAncestors = new HashSet<>();
-		for (QueryConcept concept : concepts) {
-			allAncestors.addAll(concept.getAncestors());
+		try (SearchHitsIterator<QueryConcept> stream = elasticsearchTemplate.searchForStream(searchQuery, QueryConcept.class)) {
+			stream.forEachRemaining(hit -> {
+				Set<Long> ids = idsFunction.apply(hit.getContent());
+				if (ids != null) {
+					allIds.addAll(ids);
+				}
+			});
 		}
-		return allAncestors;
+		return allIds;
 	}
 
 	public List<Long> findDescendantIdsAsUnion(BranchCriteria branchCriteria, boolean stated, Collection<Long> conceptIds) {
@@ -360,20 +437,49 @@ public class QueryService implements ApplicationContextAware {
 	}
 
 	public List<Long> findRelationshipDestinationIds(Collection<Long> sourceConceptIds, List<Long> attributeTypeIds, BranchCriteria branchCriteria, boolean stated) {
+		LongSet destinationIds = findRelationshipDestinationIds(sourceConceptIds, attributeTypeIds, branchCriteria, stated, null);
+		// Sorting meaningless but supports deterministic pagination
+		return ConceptSelectorHelper.sortAndPage(destinationIds, null).getContent();
+	}
+
+	/**
+	 * Streams the destinations of the given attributes of the source concepts into a primitive set.
+	 * @param destinationFilter Optional. Only destinations within this set are collected, streaming stops early once all have been found.
+	 */
+	public LongSet findRelationshipDestinationIds(Collection<Long> sourceConceptIds, List<Long> attributeTypeIds, BranchCriteria branchCriteria, boolean stated,
+			LongSet destinationFilter) {
+
+		LongSet destinationIds = new LongOpenHashSet();
 		if (!stated) {
 			// Use relationships - it's faster
-			return relationshipService.findRelationshipDestinationIds(sourceConceptIds, attributeTypeIds, branchCriteria, false);
+			relationshipService.findRelationshipDestinationIds(sourceConceptIds, attributeTypeIds, branchCriteria, false, destinationIds, destinationFilter);
+			return destinationIds;
 		}
 
 		// For the stated view we'll use the semantic index to access relationships from both stated relationships or axioms.
 
 		if (attributeTypeIds != null && attributeTypeIds.isEmpty()) {
-			return Collections.emptyList();
+			return destinationIds;
+		}
+		if (sourceConceptIds == null) {
+			streamStatedDestinationIds(null, attributeTypeIds, branchCriteria, destinationIds, destinationFilter);
+		} else {
+			for (List<Long> batch : Iterables.partition(sourceConceptIds, CLAUSE_LIMIT)) {
+				if (streamStatedDestinationIds(batch, attributeTypeIds, branchCriteria, destinationIds, destinationFilter)) {
+					break;
+				}
+			}
 		}
+		return destinationIds;
+	}
+
+	// Returns true if all destinations of the filter have been found
+	private boolean streamStatedDestinationIds(List<Long> sourceConceptIds, List<Long> attributeTypeIds, BranchCriteria branchCriteria,
+			LongSet destinationIds, LongSet destinationFilter) {
 
 		BoolQueryBuilder boolQuery = boolQuery()
 				.must(branchCriteria.getEntityBranchCriteria(QueryConcept.class))
-				.must(termsQuery(QueryConcept.Fields.STATED, stated));
+				.must(termsQuery(QueryConcept.Fields.STATED, true));
 
 		if (attributeTypeIds != null) {
 			BoolQueryBuilder shoulds = boolQuery();
@@ -391,32 +497,39 @@ public class QueryService implements ApplicationContextAware {
 
 		NativeSearchQuery query = new NativeSearchQueryBuilder()
 				.withQuery(boolQuery)
+				.withSourceFilter(new FetchSourceFilter(new String[] {QueryConcept.Fields.ATTR_MAP, QueryConcept.Fields.PARENTS}, null))
 				.withPageable(LARGE_PAGE)
 				.build();
 
-		Set<Long> destinationIds = new LongArraySet();
 		try (SearchHitsIterator<QueryConcept> stream = elasticsearchTemplate.searchForStream(query, QueryConcept.class)) {
-			stream.forEachRemaining(hit -> {
-				QueryConcept queryConcept = hit.getContent();
+			while (stream.hasNext()) {
+				QueryConcept queryConcept = stream.next().getContent();
+				Map<String, Set<String>> attributes = queryConcept.getAttr();
 				if (attributeTypeIds != null) {
 					for (Long attributeTypeId : attributeTypeIds) {
 						if (attributeTypeId.equals(Concepts.IS_A_LONG)) {
-							destinationIds.addAll(queryConcept.getParents());
+							queryConcept.getParents().forEach(parentId -> addDestinationId(parentId, destinationIds, destinationFilter));
 						} else {
-							queryConcept.getAttr().getOrDefault(attributeTypeId.toString(), Collections.emptySet()).forEach(id -> destinationIds.add(parseLong(id)));
+							attributes.getOrDefault(attributeTypeId.toString(), Collections.emptySet())
+									.forEach(destinationId -> addDestinationId(parseLong(destinationId), destinationIds, destinationFilter));
 						}
 					}
 				} else {
-					queryConcept.getAttr().values().forEach(destinationSet -> destinationSet.forEach(destinationId -> destinationIds.add(parseLong(destinationId))));
+					attributes.values().forEach(destinationSet ->
+							destinationSet.forEach(destinationId -> addDestinationId(parseLong(destinationId), destinationIds, destinationFilter)));
 				}
-			});
+				if (destinationFilter != null && destinationIds.size() == destinationFilter.size()) {
+					return true;
+				}
+			}
 		}
+		return false;
+	}
 
-		// Stream search doesn't sort for us
-		// Sorting meaningless but supports deterministic pagination
-		List<Long> sortedIds = new LongArrayList(destinationIds);
-		sortedIds.sort(LongComparators.OPPOSITE_COMPARATOR);
-		return sortedIds;
+	private static void addDestinationId(long destinationId, LongSet destinationIds, LongSet destinationFilter) {
+		if (destinationFilter == null || destinationFilter.contains(destinationId)) {
+			destinationIds.add(destinationId);
+		}
 	}
 
 	/**
@@ -468,13 +581,49 @@ public class QueryService implements ApplicationContextAware {
 			return;
 		}
 
+		boolean stated = form == Relationship.CharacteristicType.stated;
+		Set<Long> conceptIds = concepts.stream().map(mini -> parseLong(mini.getConceptId())).collect(Collectors.toSet());
+		Map<Long, Long> descendantCounts;
+		HierarchySnapshot hierarchySnapshot = findHierarchySnapshot(branchPath, branchCriteria, stated);
+		if (hierarchySnapshot != null) {
+			descendantCounts = new HashMap<>();
+			for (Long conceptId : conceptIds) {
+				descendantCounts.put(conceptId, (long) hierarchySnapshot.getDescendants(Collections.singleton(conceptId)).size());
+			}
+		} else {
+			descendantCounts = countDescendants(conceptIds, stated, branchCriteria);
+		}
 		for (ConceptMini concept : concepts) {
-			SearchAfterPage<Long> page = searchForIds(createQueryBuilder(form).ecl("<" + concept.getId()), branchPath, branchCriteria, PAGE_OF_ONE);
-			concept.setDescendantCount(page.getTotalElements());
-			concept.setLeaf(form, page.getTotalElements() == 0);
+			long descendantCount = descendantCounts.getOrDefault(parseLong(concept.getConceptId()), 0L);
+			concept.setDescendantCount(descendantCount);
+			concept.setLeaf(form, descendantCount == 0);
 		}
 	}
 
+	// The descendant count of a concept is the number of concepts in the semantic index with that concept as an ancestor,
+	// so the counts of many concepts come from one terms aggregation on the ancestors field.
+	private Map<Long, Long> countDescendants(Collection<Long> conceptIds, boolean stated, BranchCriteria branchCriteria) {
+		Map<Long, Long> descendantCounts = new HashMap<>();
+		for (List<Long> batch : Iterables.partition(conceptIds, hierarchyLookupBatchSize)) {
+			long[] batchIds = batch.stream().mapToLong(Long::longValue).toArray();
+			SearchHits<QueryConcept> results = elasticsearchTemplate.search(new NativeSearchQueryBuilder()
+					.withQuery(boolQuery()
+							.must(branchCriteria.getEntityBranchCriteria(QueryConcept.class))
+							.must(termQuery(QueryConcept.Fields.STATED, stated))
+							.filter(termsQuery(QueryConcept.Fields.ANCESTORS, batch)))
+					.withPageable(PAGE_OF_ONE)
+					.addAggregation(AggregationBuilders.terms("descendantCounts").field(QueryConcept.Fields.ANCESTORS)
+							.includeExclude(new IncludeExclude(batchIds, null))
+							.size(batchIds.length))
+					.build(), QueryConcept.class);
+			Terms ancestors = results.getAggregations().get("descendantCounts");
+			for (Terms.Bucket bucket : ancestors.getBuckets()) {
+				descendantCounts.put(bucket.getKeyAsNumber().longValue(), bucket.getDocCount());
+			}
+		}
+		return descendantCounts;
+	}
+
 	public void joinDescendantCount(Concept concept, Relationship.CharacteristicType form, List<LanguageDialect> languageDialects, BranchTimepoint branchTimepoint) {
 		if (concept == null) {
 			return;
@@ -499,6 +648,7 @@ public class QueryService implements ApplicationContextAware {
 		private String ecl;
 		private Set<String> conceptIds;
 		private DescriptionCriteria descriptionCriteria;
+		private ECLQueryPlan eclExplainPlan;
 
 		private ConceptQueryBuilder(boolean stated) {
 			this.stated = stated;
@@ -514,6 +664,14 @@ public class QueryService implements ApplicationContextAware {
 			return this;
 		}
 
+		/**
+		 * Collects the steps and timings of the ECL execution in the given plan.
+		 */
+		public ConceptQueryBuilder eclExplainPlan(ECLQueryPlan eclExplainPlan) {
+			this.eclExplainPlan = eclExplainPlan;
+			return this;
+		}
+
 		public ConceptQueryBuilder conceptIds(Set<String> conceptIds) {
 			if (conceptIds != null && !conceptIds.isEmpty()) {
 				this.conceptIds = conceptIds;
@@ -554,6 +712,10 @@ public class QueryService implements ApplicationContextAware {
 			return conceptIds;
 		}
 
+		private ECLQueryPlan getEclExplainPlan() {
+			return eclExplainPlan;
+		}
+
 		private boolean isStated() {
 			return stated;
 		}
@@ -0,0 +1,262 @@
+package org.snomed.snowstorm.core.data.services;
+
+import io.kaicode.elasticvc.domain.DomainEntity;
+import org.elasticsearch.index.query.BoolQueryBuilder;
+import org.elasticsearch.index.query.RangeQueryBuilder;
+import org.elasticsearch.search.sort.SortBuilders;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.snomed.snowstorm.core.data.domain.JobStatus;
+import org.snomed.snowstorm.core.data.domain.jobs.ReindexJob;
+import org.snomed.snowstorm.core.data.repositories.jobs.ReindexJobRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
+import org.springframework.data.elasticsearch.core.SearchHitsIterator;
+import org.springframework.data.elasticsearch.core.query.NativeSearchQueryBuilder;
+import org.springframework.data.elasticsearch.core.query.UpdateQuery;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+
+import static io.kaicode.elasticvc.api.ComponentService.LARGE_PAGE;
+import static org.elasticsearch.index.query.QueryBuilders.boolQuery;
+import static org.elasticsearch.index.query.QueryBuilders.rangeQuery;
+
+/**
+ * Runs document rebuilds in the background across all branches.
+ * The documents are split into slices by the first character of their internalId and the slices are processed concurrently.
+ * Progress is saved after each batch so that jobs which were running when Snowstorm stopped can continue from their last batch on startup.
+ * If one slice fails the other slices of the job are stopped and the job fails.
+ */
+@Service
+public class ReindexJobService {
+
+	private static final String INTERNAL_ID = "internalId";
+	// Elasticsearch generated ids use the URL safe base64 alphabet, every fourth character in keyword sort order is a slice boundary
+	private static final String ID_CHARACTERS = "-0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZ_abcdefghijklmnopqrstuvwxyz";
+	private static final int ID_CHARACTERS_PER_SLICE = 4;
+	private static final int BATCH_SIZE = 10_000;
+
+	@Value("${reindex.concurrency:4}")
+	private int concurrency;
+
+	@Value("${reindex.resume-on-startup:false}")
+	private boolean resumeOnStartup;
+
+	@Autowired
+	private ReindexJobRepository reindexJobRepository;
+
+	@Autowired
+	private ElasticsearchOperations elasticsearchTemplate;
+
+	@Autowired
+	private ExecutorService executorService;
+
+	@Autowired
+	private List<DocumentReindexer<?>> reindexers;
+
+	private final Map<String, DocumentReindexer<?>> reindexersByType = new HashMap<>();
+
+	// Jobs running on this instance
+	private final Set<String> runningJobs = ConcurrentHashMap.newKeySet();
+
+	private final Logger logger = LoggerFactory.getLogger(getClass());
+
+	@PostConstruct
+	public void init() {
+		for (DocumentReindexer<?> reindexer : reindexers) {
+			reindexersByType.put(reindexer.getType(), reindexer);
+		}
+		if (resumeOnStartup) {
+			executorService.submit(this::resumeJobs);
+		}
+	}
+
+	/**
+	 * Runs jobs which were scheduled or in progress when Snowstorm stopped, one after another in the calling thread.
+	 * Slices which completed are not run again and the other slices continue after their last saved batch.
+	 */
+	public void resumeJobs() {
+		for (ReindexJob job : reindexJobRepository.findByStatusIn(Arrays.asList(JobStatus.SCHEDULED, JobStatus.IN_PROGRESS))) {
+			logger.info("Resuming {} reindex job {} after {} documents.", job.getType(), job.getId(), job.getDocumentsProcessed());
+			run(job);
+		}
+	}
+
+	public ReindexJob startJob(String type, Map<String, String> parameters) {
+		if (!reindexersByType.containsKey(type)) {
+			throw new IllegalArgumentException("Unknown reindex type '" + type + "'.");
+		}
+		List<ReindexJob.Slice> slices = new ArrayList<>();
+		String from = null;
+		for (int i = ID_CHARACTERS_PER_SLICE; i < ID_CHARACTERS.length(); i += ID_CHARACTERS_PER_SLICE) {
+			String to = ID_CHARACTERS.substring(i, i + 1);
+			slices.add(new ReindexJob.Slice(from, to));
+			from = to;
+		}
+		slices.add(new ReindexJob.Slice(from, null));
+		ReindexJob job = new ReindexJob(type, parameters, slices);
+		reindexJobRepository.save(job);
+		executorService.submit(() -> run(job));
+		return job;
+	}
+
+	public ReindexJob getJobOrThrow(String id) {
+		return reindexJobRepository.findById(id).orElseThrow(() -> new NotFoundException("Reindex job not found."));
+	}
+
+	public Page<ReindexJob> findJobs(int page, int size) {
+		return reindexJobRepository.findAll(PageRequest.of(page, size, Sort.by(Sort.Direction.DESC, "scheduledDate")));
+	}
+
+	private void run(ReindexJob job) {
+		if (!runningJobs.add(job.getId())) {
+			return;
+		}
+		DocumentReindexer<?> reindexer = reindexersByType.get(job.getType());
+		try {
+			if (job.getStartDate() == null) {
+				job.setStartDate(new Date());
+			}
+			job.setStatus(JobStatus.IN_PROGRESS);
+			saveProgress(job);
+
+			runSlices(job, reindexer);
+
+			elasticsearchTemplate.indexOps(reindexer.getDocumentClass()).refresh();
+			job.setStatus(JobStatus.COMPLETED);
+			job.setEndDate(new Date());
+			saveProgress(job);
+			logger.info("Completed {} reindex job {}. Of the {} documents found {} were updated.",
+					job.getType(), job.getId(), job.getDocumentsProcessed(), job.getDocumentsUpdated());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			failed(job, e);
+		} catch (ExecutionException e) {
+			failed(job, e.getCause());
+		} catch (RuntimeException e) {
+			failed(job, e);
+		} finally {
+			runningJobs.remove(job.getId());
+		}
+	}
+
+	private void runSlices(ReindexJob job, DocumentReindexer<?> reindexer) throws InterruptedException, ExecutionException {
+		ExecutorCompletionService<Void> completionService = new ExecutorCompletionService<>(executorService);
+		List<ReindexJob.Slice> slices = new ArrayList<>();
+		for (ReindexJob.Slice slice : job.getSlices()) {
+			if (!slice.isComplete()) {
+				slices.add(slice);
+			}
+		}
+		AtomicBoolean stopped = new AtomicBoolean();
+		List<Future<Void>> futures = new ArrayList<>();
+		try {
+			int completed = 0;
+			Iterator<ReindexJob.Slice> sliceIterator = slices.iterator();
+			while (completed < slices.size()) {
+				// Run at most the configured number of slices at once
+				while (sliceIterator.hasNext() && futures.size() - completed < Math.max(concurrency, 1)) {
+					ReindexJob.Slice slice = sliceIterator.next();
+					futures.add(completionService.submit(() -> {
+						runSlice(job, slice, reindexer, stopped);
+						return null;
+					}));
+				}
+				completionService.take().get();
+				completed++;
+			}
+		} finally {
+			// Stop the other slices if one failed, they continue from their last saved batch if the job is started again
+			stopped.set(true);
+			futures.forEach(future -> future.cancel(true));
+		}
+	}
+
+	private <T extends DomainEntity<?>> void runSlice(ReindexJob job, ReindexJob.Slice slice, DocumentReindexer<T> reindexer, AtomicBoolean stopped) {
+		RangeQueryBuilder range = rangeQuery(INTERNAL_ID);
+		if (slice.getLastInternalId() != null) {
+			range.gt(slice.getLastInternalId());
+		} else if (slice.getFromInternalId() != null) {
+			range.gte(slice.getFromInternalId());
+		}
+		if (slice.getToInternalId() != null) {
+			range.lt(slice.getToInternalId());
+		}
+		BoolQueryBuilder query = boolQuery()
+				.must(reindexer.getQuery(job.getParameters()))
+				.filter(range);
+		Function<T, UpdateQuery> updateFunction = reindexer.getUpdateFunction(job.getParameters());
+
+		try (SearchHitsIterator<T> stream = elasticsearchTemplate.searchForStream(new NativeSearchQueryBuilder()
+						.withQuery(query)
+						.withSort(SortBuilders.fieldSort(INTERNAL_ID))
+						.withPageable(LARGE_PAGE)
+						.build(),
+				reindexer.getDocumentClass())) {
+
+			List<UpdateQuery> updateQueries = new ArrayList<>();
+			long processed = 0;
+			String lastInternalId = null;
+			while (stream.hasNext()) {
+				if (stopped.get()) {
+					return;
+				}
+				T document = stream.next().getContent();
+				UpdateQuery updateQuery = updateFunction.apply(document);
+				if (updateQuery != null) {
+					updateQueries.add(updateQuery);
+				}
+				lastInternalId = document.getInternalId();
+				processed++;
+				if (processed == BATCH_SIZE) {
+					saveBatch(job, slice, updateQueries, lastInternalId, processed, reindexer);
+					updateQueries.clear();
+					processed = 0;
+				}
+			}
+			if (processed > 0) {
+				saveBatch(job, slice, updateQueries, lastInternalId, processed, reindexer);
+			}
+		}
+		synchronized (job) {
+			slice.setComplete(true);
+			reindexJobRepository.save(job);
+		}
+	}
+
+	private void saveBatch(ReindexJob job, ReindexJob.Slice slice, List<UpdateQuery> updateQueries, String lastInternalId, long processed,
+			DocumentReindexer<?> reindexer) {
+
+		if (!updateQueries.isEmpty()) {
+			elasticsearchTemplate.bulkUpdate(updateQueries, elasticsearchTemplate.getIndexCoordinatesFor(reindexer.getDocumentClass()));
+		}
+		synchronized (job) {
+			slice.addProgress(lastInternalId, processed, updateQueries.size());
+			reindexJobRepository.save(job);
+		}
+	}
+
+	private void saveProgress(ReindexJob job) {
+		// Slices of one job are saved from several threads
+		synchronized (job) {
+			reindexJobRepository.save(job);
+		}
+	}
+
+	private void failed(ReindexJob job, Throwable e) {
+		logger.error("{} reindex job {} failed.", job.getType(), job.getId(), e);
+		job.setStatus(JobStatus.FAILED);
+		job.setMessage(e.getMessage());
+		job.setEndDate(new Date());
+		saveProgress(job);
+	}
+}
@@ -7,9 +7,7 @@ import io.kaicode.elasticvc.api.ComponentService;
 import io.kaicode.elasticvc.api.VersionControlHelper;
 import io.kaicode.elasticvc.domain.Commit;
 import io.kaicode.rest.util.branchpathrewrite.BranchPathUriUtil;
-import it.unimi.dsi.fastutil.longs.LongArrayList;
-import it.unimi.dsi.fastutil.longs.LongArraySet;
-import it.unimi.dsi.fastutil.longs.LongComparators;
+import it.unimi.dsi.fastutil.longs.LongSet;
 import org.elasticsearch.index.query.BoolQueryBuilder;
 import org.snomed.snowstorm.core.data.domain.Concepts;
 import org.snomed.snowstorm.core.data.domain.Relationship;
@@ -123,30 +121,41 @@ public class RelationshipService extends ComponentService {
 				.get().map(SearchHit::getContent).collect(Collectors.toList());
 	}
 
-	List<Long> findRelationshipDestinationIds(Collection<Long> sourceConceptIds, Collection<Long> attributeTypeIds, BranchCriteria branchCriteria, boolean stated) {
+	/**
+	 * Streams relationship destinations into the given set.
+	 * @param destinationFilter Optional. Only destinations within this set are collected, streaming stops early once all have been found.
+	 */
+	void findRelationshipDestinationIds(Collection<Long> sourceConceptIds, Collection<Long> attributeTypeIds, BranchCriteria branchCriteria, boolean stated,
+			LongSet destinationIds, LongSet destinationFilter) {
+
 		if (attributeTypeIds != null && attributeTypeIds.isEmpty()) {
-			return Collections.emptyList();
+			return;
 		}
 
-		Set<Long> destinationIds = new LongArraySet();
 		if (sourceConceptIds == null) {
-			NativeSearchQuery query = constructDestinationSearchQuery(sourceConceptIds, attributeTypeIds, branchCriteria, stated);
-			try (SearchHitsIterator<Relationship> stream = elasticsearchOperations.searchForStream(query, Relationship.class)) {
-				stream.forEachRemaining(hit -> destinationIds.add(parseLong(hit.getContent().getDestinationId())));
-			}
+			streamDestinationIds(constructDestinationSearchQuery(null, attributeTypeIds, branchCriteria, stated), destinationIds, destinationFilter);
 		} else {
 			for (List<Long> batch : Iterables.partition(sourceConceptIds, CLAUSE_LIMIT)) {
-				NativeSearchQuery query = constructDestinationSearchQuery(batch, attributeTypeIds, branchCriteria, stated);
-				try (SearchHitsIterator<Relationship> stream = elasticsearchOperations.searchForStream(query, Relationship.class)) {
-					stream.forEachRemaining(hit -> destinationIds.add(parseLong(hit.getContent().getDestinationId())));
+				if (streamDestinationIds(constructDestinationSearchQuery(batch, attributeTypeIds, branchCriteria, stated), destinationIds, destinationFilter)) {
+					break;
+				}
+			}
+		}
+	}
+
+	// Returns true if all destinations of the filter have been found
+	private boolean streamDestinationIds(NativeSearchQuery query, LongSet destinationIds, LongSet destinationFilter) {
+		try (SearchHitsIterator<Relationship> stream = elasticsearchOperations.searchForStream(query, Relationship.class)) {
+			while (stream.hasNext()) {
+				long destinationId = parseLong(stream.next().getContent().getDestinationId());
+				if (destinationFilter == null) {
+					destinationIds.add(destinationId);
+				} else if (destinationFilter.contains(destinationId) && destinationIds.add(destinationId) && destinationIds.size() == destinationFilter.size()) {
+					return true;
 				}
 			}
 		}
-		// Stream search doesn't sort for us
-		// Sorting meaningless but supports deterministic pagination
-		List<Long> sortedIds = new LongArrayList(destinationIds);
-		sortedIds.sort(LongComparators.OPPOSITE_COMPARATOR);
-		return sortedIds;
+		return false;
 	}
 
 	private NativeSearchQuery constructDestinationSearchQuery(Collection<Long> sourceConceptIds, Collection<Long> attributeTypeIds, BranchCriteria branchCriteria, boolean stated) {
@@ -6,9 +6,12 @@ import com.google.common.collect.Sets;
 import io.kaicode.elasticvc.api.*;
 import io.kaicode.elasticvc.domain.Branch;
 import io.kaicode.elasticvc.domain.Commit;
+import io.kaicode.elasticvc.domain.DomainEntity;
 import io.kaicode.elasticvc.domain.Entity;
 import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
 import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import org.elasticsearch.index.query.BoolQueryBuilder;
+import org.elasticsearch.index.query.QueryBuilder;
 import org.elasticsearch.search.sort.SortBuilders;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -17,6 +20,7 @@ import org.snomed.snowstorm.config.Config;
 import org.snomed.snowstorm.core.data.domain.*;
 import org.snomed.snowstorm.core.data.repositories.QueryConceptRepository;
 import org.snomed.snowstorm.core.data.services.pojo.SAxiomRepresentation;
+import org.snomed.snowstorm.core.data.services.pojo.SemanticIndexRebuildStatus;
 import org.snomed.snowstorm.core.data.services.transitiveclosure.GraphBuilder;
 import org.snomed.snowstorm.core.data.services.transitiveclosure.GraphBuilderException;
 import org.snomed.snowstorm.core.data.services.transitiveclosure.Node;
@@ -32,12 +36,14 @@ import org.springframework.data.elasticsearch.core.query.NativeSearchQueryBuilde
 import org.springframework.data.elasticsearch.core.query.Query;
 import org.springframework.stereotype.Service;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import java.util.*;
+import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.BiConsumer;
 import java.util.function.Consumer;
 import java.util.function.Predicate;
-import java.util.stream.Collectors;
 
 import static java.lang.Long.parseLong;
 import static java.lang.String.format;
@@ -52,6 +58,18 @@ public class SemanticIndexUpdateService extends ComponentService implements Comm
 	@Value("${commit-hook.semantic-indexing.enabled:true}")
 	private boolean semanticIndexingEnabled;
 
+	@Value("${semantic-index.rebuild.parallel.enabled:false}")
+	private boolean parallelRebuildEnabled;
+
+	@Value("${semantic-index.rebuild.parallelism:0}")
+	private int rebuildParallelism;
+
+	@Value("${semantic-index.rebuild.save-queue-size:4}")
+	private int rebuildSaveQueueSize;
+
+	@Value("${semantic-index.rebase-delta.enabled:false}")
+	private boolean rebaseDeltaEnabled;
+
 	private static final long IS_A_TYPE = parseLong(Concepts.ISA);
 
 	@Autowired
@@ -72,8 +90,27 @@ public class SemanticIndexUpdateService extends ComponentService implements Comm
 	@Autowired
 	private AxiomConversionService axiomConversionService;
 
+	@Autowired
+	private ExecutorService executorService;
+
+	// Status of each rebuild while it is running
+	private final Map<String, SemanticIndexRebuildStatus> rebuildStatuses = new ConcurrentHashMap<>();
+
+	// Transitive closures of all parallel rebuilds are calculated on this pool
+	private ForkJoinPool rebuildForkJoinPool;
+
 	private final Logger logger = LoggerFactory.getLogger(getClass());
 
+	@PostConstruct
+	public void init() {
+		rebuildForkJoinPool = new ForkJoinPool(rebuildParallelism > 0 ? rebuildParallelism : Runtime.getRuntime().availableProcessors());
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		rebuildForkJoinPool.shutdownNow();
+	}
+
 	@Override
 	public void preCommitCompletion(Commit commit) throws IllegalStateException {
 		if (semanticIndexingEnabled) {
@@ -87,10 +124,11 @@ public class SemanticIndexUpdateService extends ComponentService implements Comm
 		}
 	}
 
-	public void rebuildStatedAndInferredSemanticIndex(String branchPath) throws ServiceException {
+	public SemanticIndexRebuildStatus rebuildStatedAndInferredSemanticIndex(String branchPath) throws ServiceException {
 		try (Commit commit = branchService.openCommit(branchPath, branchMetadataHelper.getBranchLockMetadata("Rebuilding semantic index."))) {
-			rebuildSemanticIndex(commit);
+			SemanticIndexRebuildStatus status = rebuildSemanticIndex(commit);
 			commit.markSuccessful();
+			return status;
 		} catch (ConversionException | GraphBuilderException e) {
 			throw new ServiceException("Failed to update semantic index. " + e.getMessage(), e);
 		}
@@ -98,7 +136,12 @@ public class SemanticIndexUpdateService extends ComponentService implements Comm
 
 	private void updateStatedAndInferredSemanticIndex(Commit commit) throws IllegalStateException, ConversionException, GraphBuilderException {
 		if (commit.isRebase()) {
-			rebuildSemanticIndex(commit);
+			RebaseDelta rebaseDelta = rebaseDeltaEnabled ? prepareRebaseDelta(commit) : null;
+			if (rebaseDelta != null) {
+				updateSemanticIndexForRebase(commit, rebaseDelta);
+			} else {
+				rebuildSemanticIndex(commit);
+			}
 		} else if (commit.getCommitType() != Commit.CommitType.PROMOTION) {
 			// Update query index using changes in the current commit
 			BranchCriteria changesBranchCriteria = versionControlHelper.getBranchCriteriaChangesAndDeletionsWithinOpenCommitOnly(commit);
@@ -111,21 +154,132 @@ public class SemanticIndexUpdateService extends ComponentService implements Comm
 		// If promotion the semantic changes will be promoted with the rest of the content.
 	}
 
-	private void rebuildSemanticIndex(Commit commit) throws ConversionException, GraphBuilderException {
+	/**
+	 * Updates only the part of the semantic index of a rebased branch which is affected by the rebase, keeping all other branch versions.
+	 * The affected concepts are those with modelling changed in the parent between the previous and new base, those changed in the rebase commit
+	 * and those with a branch version which now duplicates a newer parent version, plus the descendants of all of these.
+	 */
+	private void updateSemanticIndexForRebase(Commit commit, RebaseDelta rebaseDelta) throws ConversionException, GraphBuilderException {
+		logger.info("Updating semantic index of {} using changes in the parent branch since the previous base.", commit.getBranch().getPath());
+		BranchCriteria changesBranchCriteria = versionControlHelper.getBranchCriteriaChangesAndDeletionsWithinOpenCommitOnly(commit);
+		List<Branch> timeSlice = versionControlHelper.getTimeSlice(commit.getBranch().getPath(), commit.getTimepoint());
+		Set<String> relationshipAndAxiomDeletionsToProcess = Sets.union(commit.getEntityVersionsReplaced().getOrDefault(ReferenceSetMember.class.getSimpleName(), Collections.emptySet()),
+				commit.getEntityVersionsReplaced().getOrDefault(Relationship.class.getSimpleName(), Collections.emptySet()));
+		updateSemanticIndex(Form.STATED, changesBranchCriteria, relationshipAndAxiomDeletionsToProcess, commit, timeSlice, false, null, null, rebaseDelta);
+		updateSemanticIndex(Form.INFERRED, changesBranchCriteria, relationshipAndAxiomDeletionsToProcess, commit, timeSlice, false, null, null, rebaseDelta);
+	}
+
+	/**
+	 * Ends branch QueryConcept versions which duplicate a version brought in from the parent by the rebase
+	 * and collects what changed in the parent between the previous and new base.
+	 * @return The rebase delta or null if the branch has no parent.
+	 */
+	private RebaseDelta prepareRebaseDelta(Commit commit) {
+		Branch branch = commit.getBranch();
+		String path = branch.getPath();
+		String parentPath = PathUtil.getParentPath(path);
+		if (parentPath == null) {
+			return null;
+		}
+		Date previousBase = branchService.findAtTimepointOrThrow(path, new Date(commit.getTimepoint().getTime() - 1)).getBase();
+		BranchCriteria parentBefore = versionControlHelper.getBranchCriteriaAtTimepoint(parentPath, previousBase);
+		BranchCriteria parentAfter = versionControlHelper.getBranchCriteriaAtTimepoint(parentPath, branch.getBase());
+
+		// Gather QueryConcepts versioned on this branch
+		Set<String> conceptIdFormsOnBranch = new HashSet<>();
+		try (SearchHitsIterator<QueryConcept> stream = elasticsearchTemplate.searchForStream(new NativeSearchQueryBuilder()
+				.withQuery(versionControlHelper.getChangesOnBranchCriteria(branch).getEntityBranchCriteria(QueryConcept.class))
+				.withFields(QueryConcept.Fields.CONCEPT_ID_FORM)
+				.withPageable(LARGE_PAGE).build(), QueryConcept.class)) {
+			stream.forEachRemaining(hit -> conceptIdFormsOnBranch.add(hit.getContent().getId()));
+		}
+
+		// Find duplicate versions brought in by the rebase
+		RebaseDelta rebaseDelta = new RebaseDelta(parentBefore, parentAfter);
+		Set<String> duplicateConceptIdForms = new HashSet<>();
+		BranchCriteria branchCriteriaIncludingOpenCommit = versionControlHelper.getBranchCriteriaIncludingOpenCommit(commit);
+		for (List<String> batch : Iterables.partition(conceptIdFormsOnBranch, CLAUSE_LIMIT)) {
+			try (SearchHitsIterator<QueryConcept> stream = elasticsearchTemplate.searchForStream(new NativeSearchQueryBuilder()
+					.withQuery(branchCriteriaIncludingOpenCommit.getEntityBranchCriteria(QueryConcept.class)
+							// Version must come from an ancestor branch
+							.mustNot(termQuery("path", path)))
+					.withFilter(termsQuery(QueryConcept.Fields.CONCEPT_ID_FORM, batch))
+					.withFields(QueryConcept.Fields.CONCEPT_ID, QueryConcept.Fields.STATED)
+					.withPageable(LARGE_PAGE).build(), QueryConcept.class)) {
+				stream.forEachRemaining(hit -> {
+					QueryConcept queryConcept = hit.getContent();
+					duplicateConceptIdForms.add(QueryConcept.toConceptIdForm(queryConcept.getConceptIdL(), queryConcept.isStated()));
+					rebaseDelta.addDuplicateConcept(queryConcept.getConceptIdL(), queryConcept.isStated());
+				});
+			}
+		}
+		if (!duplicateConceptIdForms.isEmpty()) {
+			// Take the parent version, the concept is then recalculated for this branch
+			logger.info("Taking parent version of {} QueryConcepts on {}", duplicateConceptIdForms.size(), path);
+			versionControlHelper.endOldVersionsOnThisBranch(QueryConcept.class, duplicateConceptIdForms, QueryConcept.Fields.CONCEPT_ID_FORM, boolQuery(),
+					commit, queryConceptRepository);
+		}
+		return rebaseDelta;
+	}
+
+	/**
+	 * @return Progress of the semantic index rebuild running on the branch, or null if there is none.
+	 */
+	public SemanticIndexRebuildStatus getRebuildStatus(String branchPath) {
+		return rebuildStatuses.get(branchPath);
+	}
+
+	private SemanticIndexRebuildStatus rebuildSemanticIndex(Commit commit) throws ConversionException, GraphBuilderException {
 		// Recreate query index using new parent base point + content on this branch
 		Branch branch = commit.getBranch();
-		removeQConceptChangesOnBranch(commit);
-
-		BranchCriteria changesBranchCriteria = versionControlHelper.getChangesOnBranchCriteria(branch);
-		List<Branch> timeSlice = versionControlHelper.getTimeSlice(branch.getPath(), commit.getTimepoint());
-		Set<String> relationshipAndAxiomDeletionsToProcess = Sets.union(branch.getVersionsReplaced(ReferenceSetMember.class), branch.getVersionsReplaced(Relationship.class));
-		boolean completeRebuild = branch.getPath().equals("MAIN");
-		updateSemanticIndex(Form.STATED, changesBranchCriteria, relationshipAndAxiomDeletionsToProcess, commit, timeSlice, completeRebuild);
-		updateSemanticIndex(Form.INFERRED, changesBranchCriteria, relationshipAndAxiomDeletionsToProcess, commit, timeSlice, completeRebuild);
+		SemanticIndexRebuildStatus status = new SemanticIndexRebuildStatus(branch.getPath());
+		rebuildStatuses.put(branch.getPath(), status);
+		try {
+			removeQConceptChangesOnBranch(commit);
+
+			BranchCriteria changesBranchCriteria = versionControlHelper.getChangesOnBranchCriteria(branch);
+			List<Branch> timeSlice = versionControlHelper.getTimeSlice(branch.getPath(), commit.getTimepoint());
+			Set<String> relationshipAndAxiomDeletionsToProcess = Sets.union(branch.getVersionsReplaced(ReferenceSetMember.class), branch.getVersionsReplaced(Relationship.class));
+			boolean completeRebuild = branch.getPath().equals("MAIN");
+			if (parallelRebuildEnabled) {
+				try (ParallelRebuild parallelRebuild = new ParallelRebuild(commit, status)) {
+					// Stated and inferred forms are independent, each builds its own graph while sharing one writer
+					Future<Void> statedFuture = parallelRebuild.submitForm(() ->
+							updateSemanticIndex(Form.STATED, changesBranchCriteria, relationshipAndAxiomDeletionsToProcess, commit, timeSlice, completeRebuild, status, parallelRebuild));
+					Future<Void> inferredFuture = parallelRebuild.submitForm(() ->
+							updateSemanticIndex(Form.INFERRED, changesBranchCriteria, relationshipAndAxiomDeletionsToProcess, commit, timeSlice, completeRebuild, status, parallelRebuild));
+					parallelRebuild.waitForForms(Arrays.asList(statedFuture, inferredFuture));
+					parallelRebuild.finishSaving();
+				}
+			} else {
+				updateSemanticIndex(Form.STATED, changesBranchCriteria, relationshipAndAxiomDeletionsToProcess, commit, timeSlice, completeRebuild, status, null);
+				updateSemanticIndex(Form.INFERRED, changesBranchCriteria, relationshipAndAxiomDeletionsToProcess, commit, timeSlice, completeRebuild, status, null);
+			}
+			status.setStatus(SemanticIndexRebuildStatus.Status.COMPLETED);
+			return status;
+		} catch (ConversionException | GraphBuilderException | RuntimeException e) {
+			status.setMessage(e.getMessage());
+			status.setStatus(SemanticIndexRebuildStatus.Status.FAILED);
+			throw e;
+		} finally {
+			rebuildStatuses.remove(branch.getPath(), status);
+		}
 	}
 
 	private void updateSemanticIndex(Form form, BranchCriteria changesBranchCriteria, Set<String> internalIdsOfDeletedComponents, Commit commit,
 			List<Branch> timeSlice, boolean completeRebuild) throws IllegalStateException, ConversionException, GraphBuilderException {
+		updateSemanticIndex(form, changesBranchCriteria, internalIdsOfDeletedComponents, commit, timeSlice, completeRebuild, null, null, null);
+	}
+
+	private void updateSemanticIndex(Form form, BranchCriteria changesBranchCriteria, Set<String> internalIdsOfDeletedComponents, Commit commit,
+			List<Branch> timeSlice, boolean completeRebuild, SemanticIndexRebuildStatus status, ParallelRebuild parallelRebuild)
+			throws IllegalStateException, ConversionException, GraphBuilderException {
+		updateSemanticIndex(form, changesBranchCriteria, internalIdsOfDeletedComponents, commit, timeSlice, completeRebuild, status, parallelRebuild, null);
+	}
+
+	private void updateSemanticIndex(Form form, BranchCriteria changesBranchCriteria, Set<String> internalIdsOfDeletedComponents, Commit commit,
+			List<Branch> timeSlice, boolean completeRebuild, SemanticIndexRebuildStatus status, ParallelRebuild parallelRebuild, RebaseDelta rebaseDelta)
+			throws IllegalStateException, ConversionException, GraphBuilderException {
 
 		// Note: Searches within this method use a filter clause for collections of identifiers because these
 		//       can become larger than the maximum permitted query criteria.
@@ -135,15 +289,18 @@ public class SemanticIndexUpdateService extends ComponentService implements Comm
 		BranchCriteria branchCriteriaForAlreadyCommittedContent = versionControlHelper.getBranchCriteriaBeforeOpenCommit(commit);
 		BranchCriteria branchCriteriaIncludingOpenCommit = versionControlHelper.getBranchCriteriaIncludingOpenCommit(commit);
 		timer.checkpoint("get branch criteria");
+		updateStage(status, form, "Loading existing graph");
 
 		// Identify concepts with modeling changes  and load relevant parts of the existing node graph
 		final GraphBuilder graphBuilder = new GraphBuilder();
 		Set<Long> updatedConceptIds = buildRelevantPartsOfExistingGraph(graphBuilder, completeRebuild, form,
-				changesBranchCriteria, branchCriteriaForAlreadyCommittedContent, internalIdsOfDeletedComponents, timer);
+				changesBranchCriteria, branchCriteriaForAlreadyCommittedContent, internalIdsOfDeletedComponents, rebaseDelta, timer);
 		if (updatedConceptIds.isEmpty()) {
 			// Nothing to do
+			updateStage(status, form, "Complete");
 			return;
 		}
+		updateStage(status, form, "Loading modelling");
 
 		// Step - Update graph
 		// Strategy: Clear the modelling of updated concepts then add/remove edges and attributes based on the new commit
@@ -224,12 +381,12 @@ public class SemanticIndexUpdateService extends ComponentService implements Comm
 		}
 
 		// Step: Save changes
+		updateStage(status, form, "Saving");
 		Map<Long, Node> nodesToSave = new Long2ObjectOpenHashMap<>();
 		graphBuilder.getNodes().stream()
 				.filter(node -> newGraph || completeRebuild || node.isAncestorOrSelfUpdated() || conceptAttributeChanges.containsKey(node.getId()))
 				.forEach(node -> nodesToSave.put(node.getId(), node));
 		Set<Long> nodesNotFound = new LongOpenHashSet(nodesToSave.keySet());
-		Set<QueryConcept> queryConceptsToSave = new HashSet<>();
 
 		// Collect ids of nodes and attribute updates and convert to conceptIdForm
 		Set<Long> conceptIdsToUpdate = new LongOpenHashSet(nodesToSave.keySet());
@@ -240,6 +397,11 @@ public class SemanticIndexUpdateService extends ComponentService implements Comm
 		// either by authoring or importing the new version of the extension.
 		boolean throwExceptionIfTransitiveClosureLoopFound = !commit.isRebase();
 
+		// QueryConcepts are completed and saved in batches while the existing index is still being streamed
+		List<QueryConcept> queryConceptBatch = new ArrayList<>();
+		Set<Long> conceptIdsCollected = new LongOpenHashSet();
+		int savedCount = 0;
+
 		try (final SearchHitsIterator<QueryConcept> existingQueryConcepts = elasticsearchTemplate.searchForStream(new NativeSearchQueryBuilder()
 				.withQuery(boolQuery()
 						.must(branchCriteriaForAlreadyCommittedContent.getEntityBranchCriteria(QueryConcept.class))
@@ -256,12 +418,14 @@ public class SemanticIndexUpdateService extends ComponentService implements Comm
 			while (existingQueryConcepts.hasNext()) {
 				QueryConcept queryConcept = existingQueryConcepts.next().getContent();
 				Long conceptId = queryConcept.getConceptIdL();
+				if (!conceptIdsCollected.add(conceptId)) {
+					continue;
+				}
 				Node node = nodesToSave.get(conceptId);
 				boolean save = false;
 				if (node != null) {
-					// TC changes
-					queryConcept.setParents(node.getParents().stream().map(Node::getId).collect(Collectors.toSet()));
-					queryConcept.setAncestors(new HashSet<>(node.getTransitiveClosure(branchPath, throwExceptionIfTransitiveClosureLoopFound)));
+					// TC changes, ancestors are set when the batch is completed
+					queryConcept.setParents(new HashSet<>(node.getParentIds()));
 					save = true;
 				}
 				if (updatedConceptIds.contains(conceptId)) {
@@ -269,7 +433,11 @@ public class SemanticIndexUpdateService extends ComponentService implements Comm
 					save = true;
 				}
 				if (save) {
-					queryConceptsToSave.add(queryConcept);
+					queryConceptBatch.add(queryConcept);
+					if (queryConceptBatch.size() == Config.BATCH_SAVE_SIZE) {
+						savedCount += completeAndSaveBatch(queryConceptBatch, nodesToSave, form, commit, throwExceptionIfTransitiveClosureLoopFound, status, parallelRebuild);
+						queryConceptBatch = new ArrayList<>();
+					}
 				}
 				nodesNotFound.remove(conceptId);
 			}
@@ -280,27 +448,65 @@ public class SemanticIndexUpdateService extends ComponentService implements Comm
 		// The remaining nodes are new - create new QueryConcepts
 		for (Long nodeId : nodesNotFound) {
 			Node node = nodesToSave.get(nodeId);
-			final Set<Long> transitiveClosure = new HashSet<>(node.getTransitiveClosure(branchPath, throwExceptionIfTransitiveClosureLoopFound));
-			final Set<Long> parentIds = node.getParents().stream().map(Node::getId).collect(Collectors.toSet());
-			QueryConcept queryConcept = new QueryConcept(nodeId, parentIds, transitiveClosure, form.isStated());
+			final Set<Long> parentIds = new HashSet<>(node.getParentIds());
+			QueryConcept queryConcept = new QueryConcept(nodeId, parentIds, new HashSet<>(), form.isStated());
 			applyAttributeChanges(queryConcept, nodeId, conceptAttributeChanges);
-			queryConceptsToSave.add(queryConcept);
+			queryConceptBatch.add(queryConcept);
+			if (queryConceptBatch.size() == Config.BATCH_SAVE_SIZE) {
+				savedCount += completeAndSaveBatch(queryConceptBatch, nodesToSave, form, commit, throwExceptionIfTransitiveClosureLoopFound, status, parallelRebuild);
+				queryConceptBatch = new ArrayList<>();
+			}
 		}
-		if (!queryConceptsToSave.isEmpty()) {
+		if (!queryConceptBatch.isEmpty()) {
+			savedCount += completeAndSaveBatch(queryConceptBatch, nodesToSave, form, commit, throwExceptionIfTransitiveClosureLoopFound, status, parallelRebuild);
+		}
+		timer.checkpoint("Save updated QueryConcepts");
+		logger.debug("{} concepts updated within the {} semantic index.", savedCount, form.getName());
+		updateStage(status, form, parallelRebuild != null ? "Waiting for saves" : "Complete");
+
+		timer.finish();
+	}
 
-			// Delete query concepts which have no parents
-			queryConceptsToSave.stream().filter(c -> c.getParents().isEmpty() && !c.getConceptIdL().toString().equals(Concepts.SNOMEDCT_ROOT)).forEach(Entity::markDeleted);
-			queryConceptsToSave.forEach(QueryConcept::serializeGroupedAttributesMap);
+	private int completeAndSaveBatch(List<QueryConcept> queryConcepts, Map<Long, Node> nodesToSave, Form form, Commit commit,
+			boolean throwExceptionIfTransitiveClosureLoopFound, SemanticIndexRebuildStatus status, ParallelRebuild parallelRebuild) throws GraphBuilderException {
 
-			// Save in batches
-			for (List<QueryConcept> queryConcepts : Iterables.partition(queryConceptsToSave, Config.BATCH_SAVE_SIZE)) {
-				doSaveBatch(queryConcepts, commit);
+		String branchPath = commit.getBranch().getPath();
+		if (parallelRebuild != null) {
+			parallelRebuild.setTransitiveClosures(queryConcepts, nodesToSave, branchPath, throwExceptionIfTransitiveClosureLoopFound);
+		} else {
+			for (QueryConcept queryConcept : queryConcepts) {
+				setTransitiveClosure(queryConcept, nodesToSave, branchPath, throwExceptionIfTransitiveClosureLoopFound);
 			}
 		}
-		timer.checkpoint("Save updated QueryConcepts");
-		logger.debug("{} concepts updated within the {} semantic index.", queryConceptsToSave.size(), form.getName());
 
-		timer.finish();
+		// Delete query concepts which have no parents
+		queryConcepts.stream().filter(c -> c.getParents().isEmpty() && !c.getConceptIdL().toString().equals(Concepts.SNOMEDCT_ROOT)).forEach(Entity::markDeleted);
+		queryConcepts.forEach(QueryConcept::serializeGroupedAttributesMap);
+
+		if (parallelRebuild != null) {
+			parallelRebuild.queueSave(queryConcepts, form);
+		} else {
+			doSaveBatch(queryConcepts, commit);
+			if (status != null) {
+				status.addConceptsSaved(form.getName(), queryConcepts.size());
+			}
+		}
+		return queryConcepts.size();
+	}
+
+	private static void setTransitiveClosure(QueryConcept queryConcept, Map<Long, Node> nodesToSave, String branchPath,
+			boolean throwExceptionIfTransitiveClosureLoopFound) throws GraphBuilderException {
+
+		Node node = nodesToSave.get(queryConcept.getConceptIdL());
+		if (node != null) {
+			queryConcept.setAncestors(new HashSet<>(node.getTransitiveClosure(branchPath, throwExceptionIfTransitiveClosureLoopFound)));
+		}
+	}
+
+	private void updateStage(SemanticIndexRebuildStatus status, Form form, String stage) {
+		if (status != null) {
+			status.setStage(form.getName(), stage);
+		}
 	}
 
 	private boolean activeNow(SnomedComponent component, List<Branch> timeSlice) {
@@ -323,7 +529,7 @@ public class SemanticIndexUpdateService extends ComponentService implements Comm
 
 	private Set<Long> buildRelevantPartsOfExistingGraph(GraphBuilder graphBuilder, boolean completeRebuild, Form form,
 			BranchCriteria changesBranchCriteria, BranchCriteria branchCriteriaForAlreadyCommittedContent,
-			Set<String> internalIdsOfDeletedComponents, TimerUtil timer) throws ConversionException {
+			Set<String> internalIdsOfDeletedComponents, RebaseDelta rebaseDelta, TimerUtil timer) throws ConversionException {
 
 		Set<Long> updateSource = new LongOpenHashSet();
 		Set<Long> updateDestination = new LongOpenHashSet();
@@ -345,6 +551,8 @@ public class SemanticIndexUpdateService extends ComponentService implements Comm
 											.should(changesBranchCriteria.getEntityBranchCriteria(Relationship.class))
 											// Or on parent branch and deleted/replaced on this branch
 											.should(idsQuery().addIds(internalIdsOfDeletedComponents.toArray(new String[]{})))
+											// Or changed on parent branch since the previous base of a rebase
+											.should(getParentChangesSincePreviousBase(rebaseDelta, Relationship.class))
 									)
 							)
 					)
@@ -368,6 +576,8 @@ public class SemanticIndexUpdateService extends ComponentService implements Comm
 												.should(changesBranchCriteria.getEntityBranchCriteria(ReferenceSetMember.class))
 												// Or on parent branch and deleted/replaced on this branch
 												.should(termsQuery("internalId", internalIdsOfDeletedComponents))
+												// Or changed on parent branch since the previous base of a rebase
+												.should(getParentChangesSincePreviousBase(rebaseDelta, ReferenceSetMember.class))
 										)
 								)
 						)
@@ -403,6 +613,8 @@ public class SemanticIndexUpdateService extends ComponentService implements Comm
 											.should(changesBranchCriteria.getEntityBranchCriteria(Relationship.class))
 											// Or on parent branch and deleted/replaced on this branch
 											.should(termsQuery("internalId", internalIdsOfDeletedComponents))
+											// Or changed on parent branch since the previous base of a rebase
+											.should(getParentChangesSincePreviousBase(rebaseDelta, Relationship.class))
 									)
 									// Skip concepts already in the list
 									.mustNot(termsQuery(Relationship.Fields.SOURCE_ID, updateSource))
@@ -414,6 +626,11 @@ public class SemanticIndexUpdateService extends ComponentService implements Comm
 				otherChangedRelationships.forEachRemaining(hit -> updateSource.add(parseLong(hit.getContent().getSourceId())));
 			}
 
+			if (rebaseDelta != null) {
+				// Branch versions replaced by the parent version must be recalculated for this branch
+				updateSource.addAll(rebaseDelta.getDuplicateConcepts(form.isStated()));
+			}
+
 			if (updateSource.isEmpty()) {
 				// Stop here - nothing to update
 				return updateSource;
@@ -583,6 +800,21 @@ public class SemanticIndexUpdateService extends ComponentService implements Comm
 		}
 	}
 
+	/**
+	 * @return Clause matching versions which are visible in the parent at only one of the previous and new base of a rebase,
+	 * or a clause matching nothing when not rebasing.
+	 */
+	private QueryBuilder getParentChangesSincePreviousBase(RebaseDelta rebaseDelta, Class<? extends DomainEntity<?>> entityClass) {
+		if (rebaseDelta == null) {
+			return boolQuery().mustNot(matchAllQuery());
+		}
+		BoolQueryBuilder before = rebaseDelta.parentBefore.getEntityBranchCriteria(entityClass);
+		BoolQueryBuilder after = rebaseDelta.parentAfter.getEntityBranchCriteria(entityClass);
+		return boolQuery()
+				.should(boolQuery().must(after).mustNot(before))
+				.should(boolQuery().must(before).mustNot(after));
+	}
+
 	private void applyAttributeChanges(QueryConcept queryConcept, Long conceptId, Map<Long, AttributeChanges> conceptAttributeChanges) {
 		queryConcept.clearAttributes();
 		AttributeChanges attributeChanges = conceptAttributeChanges.get(conceptId);
@@ -647,6 +879,200 @@ public class SemanticIndexUpdateService extends ComponentService implements Comm
 		return missingConceptIds;
 	}
 
+	private static final class RebaseDelta {
+
+		private final BranchCriteria parentBefore;
+		private final BranchCriteria parentAfter;
+		private final Set<Long> statedDuplicateConcepts = new LongOpenHashSet();
+		private final Set<Long> inferredDuplicateConcepts = new LongOpenHashSet();
+
+		private RebaseDelta(BranchCriteria parentBefore, BranchCriteria parentAfter) {
+			this.parentBefore = parentBefore;
+			this.parentAfter = parentAfter;
+		}
+
+		private void addDuplicateConcept(Long conceptId, boolean stated) {
+			(stated ? statedDuplicateConcepts : inferredDuplicateConcepts).add(conceptId);
+		}
+
+		private Set<Long> getDuplicateConcepts(boolean stated) {
+			return stated ? statedDuplicateConcepts : inferredDuplicateConcepts;
+		}
+	}
+
+	private interface FormUpdate {
+		void run() throws ConversionException, GraphBuilderException;
+	}
+
+	/**
+	 * Shared state of a rebuild which processes the stated and inferred forms at the same time.
+	 * Transitive closures are calculated on the shared fork-join pool. Completed QueryConcept batches of both forms are saved in order
+	 * by a single writer, fed through a bounded queue, so graph processing continues while the previous batch is being indexed.
+	 */
+	private final class ParallelRebuild implements AutoCloseable {
+
+		private final Commit commit;
+		private final SemanticIndexRebuildStatus status;
+		private final BlockingQueue<Runnable> saveQueue;
+		private final Runnable endOfSaves = () -> {};
+		private final Future<?> writer;
+		private volatile boolean aborted;
+		private volatile RuntimeException saveFailure;
+		// The failure which caused the rebuild to abort, rather than the abort it caused in the other form
+		private final AtomicReference<Exception> firstFormFailure = new AtomicReference<>();
+
+		private ParallelRebuild(Commit commit, SemanticIndexRebuildStatus status) {
+			this.commit = commit;
+			this.status = status;
+			saveQueue = new ArrayBlockingQueue<>(Math.max(1, rebuildSaveQueueSize));
+			writer = executorService.submit(this::writeBatches);
+		}
+
+		private void writeBatches() {
+			try {
+				Runnable save;
+				while ((save = saveQueue.take()) != endOfSaves) {
+					// After a failure keep draining the queue so that form threads are never blocked
+					if (!aborted && saveFailure == null) {
+						try {
+							save.run();
+						} catch (RuntimeException e) {
+							saveFailure = e;
+						}
+					}
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+
+		private Future<Void> submitForm(FormUpdate formUpdate) {
+			return executorService.submit(() -> {
+				try {
+					formUpdate.run();
+				} catch (ConversionException | GraphBuilderException | RuntimeException e) {
+					// Stop the other form early, the commit will not be completed
+					firstFormFailure.compareAndSet(null, e);
+					aborted = true;
+					throw e;
+				}
+				return null;
+			});
+		}
+
+		private void waitForForms(List<Future<Void>> formFutures) throws ConversionException, GraphBuilderException {
+			Throwable failure = null;
+			for (Future<Void> formFuture : formFutures) {
+				try {
+					formFuture.get();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					aborted = true;
+					throw new IllegalStateException("Interrupted while rebuilding semantic index.", e);
+				} catch (ExecutionException e) {
+					if (failure == null) {
+						failure = e.getCause();
+					}
+				}
+			}
+			if (firstFormFailure.get() != null) {
+				failure = firstFormFailure.get();
+			}
+			if (failure instanceof ConversionException) {
+				throw (ConversionException) failure;
+			} else if (failure instanceof GraphBuilderException) {
+				throw (GraphBuilderException) failure;
+			} else if (failure instanceof RuntimeException) {
+				throw (RuntimeException) failure;
+			} else if (failure != null) {
+				throw new IllegalStateException("Failed to rebuild semantic index.", failure);
+			}
+		}
+
+		private void setTransitiveClosures(List<QueryConcept> queryConcepts, Map<Long, Node> nodesToSave, String branchPath,
+				boolean throwExceptionIfLoopFound) throws GraphBuilderException {
+
+			AtomicReference<GraphBuilderException> loopException = new AtomicReference<>();
+			try {
+				rebuildForkJoinPool.submit(() -> queryConcepts.parallelStream().forEach(queryConcept -> {
+					try {
+						setTransitiveClosure(queryConcept, nodesToSave, branchPath, throwExceptionIfLoopFound);
+					} catch (GraphBuilderException e) {
+						loopException.compareAndSet(null, e);
+					}
+				})).get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException("Interrupted while calculating transitive closures.", e);
+			} catch (ExecutionException e) {
+				throw new IllegalStateException("Failed to calculate transitive closures.", e.getCause());
+			}
+			if (loopException.get() != null) {
+				throw loopException.get();
+			}
+		}
+
+		private void queueSave(List<QueryConcept> queryConcepts, Form form) {
+			queue(() -> {
+				doSaveBatch(queryConcepts, commit);
+				status.addConceptsSaved(form.getName(), queryConcepts.size());
+			});
+		}
+
+		private void finishSaving() {
+			queue(endOfSaves);
+			try {
+				writer.get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException("Interrupted while saving semantic index.", e);
+			} catch (ExecutionException e) {
+				throw new IllegalStateException("Failed to save semantic index.", e.getCause());
+			}
+			if (saveFailure != null) {
+				throw saveFailure;
+			}
+			status.getFormStage().replaceAll((form, stage) -> "Complete");
+		}
+
+		private void queue(Runnable runnable) {
+			try {
+				while (!saveQueue.offer(runnable, 1, TimeUnit.SECONDS)) {
+					checkNotFailed();
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException("Interrupted while queueing semantic index save.", e);
+			}
+			if (runnable != endOfSaves) {
+				checkNotFailed();
+			}
+		}
+
+		private void checkNotFailed() {
+			if (saveFailure != null) {
+				throw new IllegalStateException("Failed to save semantic index.", saveFailure);
+			}
+			if (aborted) {
+				throw new IllegalStateException("Semantic index rebuild aborted.");
+			}
+			if (writer.isDone()) {
+				throw new IllegalStateException("Semantic index writer stopped unexpectedly.");
+			}
+		}
+
+		@Override
+		public void close() {
+			if (!writer.isDone()) {
+				aborted = true;
+				saveQueue.clear();
+				if (!saveQueue.offer(endOfSaves)) {
+					writer.cancel(true);
+				}
+			}
+		}
+	}
+
 	private static final class AttributeChanges {
 
 		private static final Comparator<AttributeChange> comparator = Comparator
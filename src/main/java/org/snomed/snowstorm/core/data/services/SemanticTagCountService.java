@@ -0,0 +1,215 @@
+package org.snomed.snowstorm.core.data.services;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Sets;
+import io.kaicode.elasticvc.api.*;
+import io.kaicode.elasticvc.domain.Branch;
+import io.kaicode.elasticvc.domain.Commit;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import org.elasticsearch.index.query.BoolQueryBuilder;
+import org.elasticsearch.search.aggregations.AggregationBuilders;
+import org.elasticsearch.search.aggregations.bucket.terms.Terms;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.snomed.snowstorm.core.data.domain.Concept;
+import org.snomed.snowstorm.core.data.domain.Concepts;
+import org.snomed.snowstorm.core.data.domain.Description;
+import org.snomed.snowstorm.core.data.domain.SemanticTagCounts;
+import org.snomed.snowstorm.core.data.repositories.SemanticTagCountsRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
+import org.springframework.data.elasticsearch.core.SearchHits;
+import org.springframework.data.elasticsearch.core.SearchHitsIterator;
+import org.springframework.data.elasticsearch.core.query.FetchSourceFilter;
+import org.springframework.data.elasticsearch.core.query.NativeSearchQueryBuilder;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+
+import static io.kaicode.elasticvc.api.ComponentService.CLAUSE_LIMIT;
+import static io.kaicode.elasticvc.api.ComponentService.LARGE_PAGE;
+import static org.elasticsearch.index.query.QueryBuilders.*;
+import static org.snomed.snowstorm.config.Config.PAGE_OF_ONE;
+
+/**
+ * Counts of active concepts per semantic tag, stored per branch in Elasticsearch so they are shared by all Snowstorm instances.
+ * Counts are calculated in full the first time a branch is requested, after that they are updated by each commit
+ * using only the concepts and FSNs changed in the commit.
+ */
+@Service
+public class SemanticTagCountService implements CommitListener {
+
+	// Effectively unlimited, counts must include every tag so that they can be updated incrementally
+	private static final int MAX_SEMANTIC_TAGS = 10_000;
+
+	@Autowired
+	private SemanticTagCountsRepository semanticTagCountsRepository;
+
+	@Autowired
+	private BranchService branchService;
+
+	@Autowired
+	private VersionControlHelper versionControlHelper;
+
+	@Autowired
+	private ElasticsearchOperations elasticsearchTemplate;
+
+	@Autowired
+	private ObjectMapper objectMapper;
+
+	private final Logger logger = LoggerFactory.getLogger(getClass());
+
+	public Map<String, Long> countActiveConceptsPerSemanticTag(String path) {
+		Branch branch = branchService.findLatest(path);
+		Map<String, Long> tagCounts = getStoredCounts(path, branch.getHeadTimestamp());
+		if (tagCounts == null) {
+			tagCounts = countAll(versionControlHelper.getBranchCriteria(branch));
+			saveCounts(path, branch.getHeadTimestamp(), tagCounts);
+		}
+		return tagCounts;
+	}
+
+	@Override
+	public void preCommitCompletion(Commit commit) throws IllegalStateException {
+		Branch branch = commit.getBranch();
+		String path = branch.getPath();
+		Map<String, Long> storedCounts;
+		Set<Long> conceptIds;
+		BranchCriteria before;
+		if (commit.isRebase()) {
+			// New counts are the parent counts at the new base with the changes on this branch applied
+			String parentPath = PathUtil.getParentPath(path);
+			storedCounts = parentPath != null ? getStoredCounts(parentPath, branch.getBaseTimestamp()) : null;
+			if (storedCounts == null) {
+				// Counts will be calculated in full when next requested
+				return;
+			}
+			conceptIds = getConceptsChanged(versionControlHelper.getChangesOnBranchIncludingOpenCommit(commit),
+					Sets.union(branch.getVersionsReplaced(Concept.class), branch.getVersionsReplaced(Description.class)), commit);
+			before = versionControlHelper.getBranchCriteriaAtTimepoint(parentPath, branch.getBase());
+		} else {
+			storedCounts = getStoredCounts(path, branch.getHeadTimestamp());
+			if (storedCounts == null) {
+				return;
+			}
+			conceptIds = getConceptsChanged(versionControlHelper.getBranchCriteriaChangesAndDeletionsWithinOpenCommitOnly(commit), Collections.emptySet(), commit);
+			before = versionControlHelper.getBranchCriteriaBeforeOpenCommit(commit);
+		}
+
+		Map<String, Long> tagCounts = storedCounts;
+		BranchCriteria after = versionControlHelper.getBranchCriteriaIncludingOpenCommit(commit);
+		for (List<Long> batch : Iterables.partition(conceptIds, CLAUSE_LIMIT)) {
+			countTags(batch, before).forEach((tag, count) -> tagCounts.merge(tag, -count, Long::sum));
+			countTags(batch, after).forEach((tag, count) -> tagCounts.merge(tag, count, Long::sum));
+		}
+		tagCounts.values().removeIf(count -> count <= 0);
+		saveCounts(path, commit.getTimepoint().getTime(), tagCounts);
+		logger.debug("Updated semantic tag counts on {} using {} changed concepts.", path, conceptIds.size());
+	}
+
+	private Set<Long> getConceptsChanged(BranchCriteria changesCriteria, Set<String> replacedVersionInternalIds, Commit commit) {
+		Set<String> internalIdsReplaced = new HashSet<>(replacedVersionInternalIds);
+		internalIdsReplaced.addAll(commit.getEntityVersionsReplaced().getOrDefault(Concept.class.getSimpleName(), Collections.emptySet()));
+		internalIdsReplaced.addAll(commit.getEntityVersionsReplaced().getOrDefault(Description.class.getSimpleName(), Collections.emptySet()));
+
+		Set<Long> conceptIds = new LongOpenHashSet();
+		BoolQueryBuilder conceptQuery = boolQuery().should(changesCriteria.getEntityBranchCriteria(Concept.class));
+		BoolQueryBuilder fsnQuery = boolQuery().should(changesCriteria.getEntityBranchCriteria(Description.class));
+		if (!internalIdsReplaced.isEmpty()) {
+			String[] ids = internalIdsReplaced.toArray(new String[]{});
+			conceptQuery.should(idsQuery().addIds(ids));
+			fsnQuery.should(idsQuery().addIds(ids));
+		}
+		try (SearchHitsIterator<Concept> stream = elasticsearchTemplate.searchForStream(new NativeSearchQueryBuilder()
+				.withQuery(conceptQuery)
+				.withSourceFilter(new FetchSourceFilter(new String[] {Concept.Fields.CONCEPT_ID}, null))
+				.withPageable(LARGE_PAGE).build(), Concept.class)) {
+			stream.forEachRemaining(hit -> conceptIds.add(hit.getContent().getConceptIdAsLong()));
+		}
+		try (SearchHitsIterator<Description> stream = elasticsearchTemplate.searchForStream(new NativeSearchQueryBuilder()
+				.withQuery(boolQuery()
+						.must(fsnQuery)
+						.must(termQuery(Description.Fields.TYPE_ID, Concepts.FSN)))
+				.withSourceFilter(new FetchSourceFilter(new String[] {Description.Fields.CONCEPT_ID}, null))
+				.withPageable(LARGE_PAGE).build(), Description.class)) {
+			stream.forEachRemaining(hit -> conceptIds.add(Long.parseLong(hit.getContent().getConceptId())));
+		}
+		return conceptIds;
+	}
+
+	private Map<String, Long> countAll(BranchCriteria branchCriteria) {
+		List<Long> activeConcepts = new LongArrayList();
+		try (SearchHitsIterator<Concept> stream = elasticsearchTemplate.searchForStream(new NativeSearchQueryBuilder()
+				.withQuery(boolQuery()
+						.must(branchCriteria.getEntityBranchCriteria(Concept.class))
+						.must(termQuery(Concept.Fields.ACTIVE, true)))
+				.withSourceFilter(new FetchSourceFilter(new String[] {Concept.Fields.CONCEPT_ID}, new String[] {}))
+				.withPageable(LARGE_PAGE).build(), Concept.class)) {
+			stream.forEachRemaining(hit -> activeConcepts.add(hit.getContent().getConceptIdAsLong()));
+		}
+		return countFSNTags(activeConcepts, branchCriteria);
+	}
+
+	private Map<String, Long> countTags(Collection<Long> conceptIds, BranchCriteria branchCriteria) {
+		List<Long> activeConcepts = new LongArrayList();
+		try (SearchHitsIterator<Concept> stream = elasticsearchTemplate.searchForStream(new NativeSearchQueryBuilder()
+				.withQuery(boolQuery()
+						.must(branchCriteria.getEntityBranchCriteria(Concept.class))
+						.must(termQuery(Concept.Fields.ACTIVE, true))
+						.filter(termsQuery(Concept.Fields.CONCEPT_ID, conceptIds)))
+				.withSourceFilter(new FetchSourceFilter(new String[] {Concept.Fields.CONCEPT_ID}, new String[] {}))
+				.withPageable(LARGE_PAGE).build(), Concept.class)) {
+			stream.forEachRemaining(hit -> activeConcepts.add(hit.getContent().getConceptIdAsLong()));
+		}
+		if (activeConcepts.isEmpty()) {
+			return Collections.emptyMap();
+		}
+		return countFSNTags(activeConcepts, branchCriteria);
+	}
+
+	private Map<String, Long> countFSNTags(Collection<Long> activeConceptIds, BranchCriteria branchCriteria) {
+		SearchHits<Description> page = elasticsearchTemplate.search(new NativeSearchQueryBuilder()
+				.withQuery(boolQuery()
+						.must(branchCriteria.getEntityBranchCriteria(Description.class))
+						.must(termQuery(Description.Fields.ACTIVE, true))
+						.must(termQuery(Description.Fields.TYPE_ID, Concepts.FSN))
+						.filter(termsQuery(Description.Fields.CONCEPT_ID, activeConceptIds))
+				)
+				.addAggregation(AggregationBuilders.terms("semanticTags").field(Description.Fields.TAG).size(MAX_SEMANTIC_TAGS))
+				.withPageable(PAGE_OF_ONE)
+				.build(), Description.class);
+
+		Map<String, Long> tagCounts = new TreeMap<>();
+		if (page.hasAggregations()) {
+			Terms semanticTags = page.getAggregations().get("semanticTags");
+			for (Terms.Bucket bucket : semanticTags.getBuckets()) {
+				tagCounts.put(bucket.getKeyAsString(), bucket.getDocCount());
+			}
+		}
+		return tagCounts;
+	}
+
+	private Map<String, Long> getStoredCounts(String path, long headTimestamp) {
+		Optional<SemanticTagCounts> stored = semanticTagCountsRepository.findById(path);
+		if (stored.isPresent() && stored.get().getHeadTimestamp() == headTimestamp) {
+			try {
+				return objectMapper.readValue(stored.get().getTagCountsJson(), new TypeReference<TreeMap<String, Long>>() {});
+			} catch (JsonProcessingException e) {
+				logger.warn("Failed to read stored semantic tag counts for {}, counts will be recalculated.", path, e);
+			}
+		}
+		return null;
+	}
+
+	private void saveCounts(String path, long headTimestamp, Map<String, Long> tagCounts) {
+		try {
+			semanticTagCountsRepository.save(new SemanticTagCounts(path, headTimestamp, objectMapper.writeValueAsString(tagCounts)));
+		} catch (JsonProcessingException e) {
+			logger.warn("Failed to store semantic tag counts for {}.", path, e);
+		}
+	}
+}
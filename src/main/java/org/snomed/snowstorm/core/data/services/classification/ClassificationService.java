@@ -1,16 +1,18 @@
 package org.snomed.snowstorm.core.data.services.classification;
 
+import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
 import io.kaicode.elasticvc.api.BranchCriteria;
 import io.kaicode.elasticvc.api.BranchService;
 import io.kaicode.elasticvc.api.VersionControlHelper;
 import io.kaicode.elasticvc.domain.Branch;
 import io.kaicode.elasticvc.domain.Commit;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
 import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
 import org.elasticsearch.ElasticsearchException;
 import org.elasticsearch.common.Strings;
 import org.elasticsearch.common.util.concurrent.UncategorizedExecutionException;
-import org.elasticsearch.index.query.BoolQueryBuilder;
 import org.elasticsearch.search.sort.FieldSortBuilder;
 import org.elasticsearch.search.sort.SortBuilders;
 import org.elasticsearch.search.sort.SortOrder;
@@ -57,8 +59,8 @@ import java.io.*;
 import java.text.NumberFormat;
 import java.text.SimpleDateFormat;
 import java.util.*;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
@@ -108,25 +110,29 @@ public class ClassificationService {
 	@Autowired
 	private VersionControlHelper versionControlHelper;
 
-	private final List<Classification> classificationsInProgress;
+	@Autowired
+	private ExecutorService executorService;
 
-	private Thread classificationStatusPollingThread;
-	private boolean shutdownRequested;
+	@Value("${classification-service.job.status-polling.threads:4}")
+	private int statusPollingThreads;
+
+	@Value("${classification-service.job.status-polling.max-interval-seconds:10}")
+	private int statusPollingMaxIntervalSeconds;
 
-	public static final int RESULT_PROCESSING_THREADS = 2;// Two threads is a good limit here. The processing is very Elasticsearch heavy while looking up inferred-not-stated values.
-	private final ExecutorService classificationProcessingExecutor = Executors.newFixedThreadPool(RESULT_PROCESSING_THREADS);
+	@Value("${classification-service.job.result-processing.threads:2}")
+	private int resultProcessingThreads;
+
+	private ScheduledExecutorService classificationStatusPollingExecutor;
+	private ExecutorService classificationProcessingExecutor;
+	private boolean shutdownRequested;
 
-	private static final int SECOND = 1000;
+	private static final int COMMUNICATION_PROBLEM_COOL_OFF_SECONDS = 30;
 
 	private static final PageRequest PAGE_FIRST_1K = PageRequest.of(0, 1000);
 
 	private Logger logger = LoggerFactory.getLogger(getClass());
 	private static final SimpleDateFormat SIMPLE_DATE_FORMAT = new SimpleDateFormat("yyyyMMdd");
 
-	public ClassificationService() {
-		classificationsInProgress = new ArrayList<>();
-	}
-
 	@PostConstruct
 	private void init() throws ServiceException {
 
@@ -158,113 +164,103 @@ public class ClassificationService {
 			logger.info("{} currently running classifications marked as failed due to restart.", failedCount[0]);
 		}
 
-		// Start thread to continuously fetch the status of remote classifications
-		classificationStatusPollingThread = new Thread(() -> {
-			try {
-				while (!shutdownRequested) {
-					try {
-						// Copy the in-progress list to avoid long synchronized block
-						List<Classification> classificationsToCheck;
-						synchronized (classificationsInProgress) {
-							classificationsToCheck = new ArrayList<>(classificationsInProgress);
-						}
-						Date remoteClassificationCutoffTime = DateUtil.newDatePlus(Calendar.MINUTE, -abortRemoteClassificationAfterMinutes);
-						for (Classification classification : classificationsToCheck) {
-							ClassificationStatusResponse statusResponse = serviceClient.getStatus(classification.getId());
-							ClassificationStatus newStatus = statusResponse.getStatus();
-							boolean timeout = false;
-
-							if (classification.getStatus() == newStatus) {
-								// No status change
-								// Check for timeout
-								if (classification.getCreationDate().before(remoteClassificationCutoffTime)) {
-									timeout = true;
-								} else {
-									// Nothing to do
-									continue;
-								}
-							}
+		// Each running classification has its own status poll on this pool
+		AtomicInteger pollingThreadNumber = new AtomicInteger();
+		classificationStatusPollingExecutor = Executors.newScheduledThreadPool(Math.max(statusPollingThreads, 1), runnable -> {
+			Thread thread = new Thread(runnable, "classification-status-polling-" + pollingThreadNumber.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+		classificationProcessingExecutor = Executors.newFixedThreadPool(Math.max(resultProcessingThreads, 1));
+	}
 
-							if (timeout || classification.getStatus() != newStatus) {
-								// Status change to process
+	@PreDestroy
+	public void shutdownPolling() {
+		shutdownRequested = true;
+		classificationStatusPollingExecutor.shutdownNow();
+		classificationProcessingExecutor.shutdown();
+		logger.info("Classification status polling stopped.");
+	}
 
-								// Stop polling if no longer needed
-								if (newStatus != ClassificationStatus.SCHEDULED && newStatus != ClassificationStatus.RUNNING) {
-									synchronized (classificationsInProgress) {
-										classificationsInProgress.remove(classification);
-									}
-								}
+	private void scheduleStatusPoll(Classification classification, ClassificationStatus knownStatus, int delaySeconds) {
+		if (shutdownRequested) {
+			return;
+		}
+		classificationStatusPollingExecutor.schedule(() -> pollStatus(classification, knownStatus, delaySeconds), delaySeconds, TimeUnit.SECONDS);
+	}
 
-								if (newStatus == ClassificationStatus.FAILED) {
-									classification.setErrorMessage(statusResponse.getErrorMessage());
-									logger.warn("Remote classification failed with message:{}, developerMessage:{}",
-											statusResponse.getErrorMessage(), statusResponse.getDeveloperMessage());
-								} else if (timeout) {
-									newStatus = ClassificationStatus.FAILED;
-									classification.setErrorMessage("Remote service taking too long.");
-								}
+	/**
+	 * Fetches the status of one remote classification and schedules the next poll.
+	 * The polling interval doubles, up to the configured maximum, while the status does not change.
+	 * The status last seen by polling is passed along because the classification itself is updated asynchronously.
+	 */
+	private void pollStatus(Classification classification, ClassificationStatus knownStatus, int previousDelaySeconds) {
+		try {
+			ClassificationStatusResponse statusResponse = serviceClient.getStatus(classification.getId());
+			ClassificationStatus newStatus = statusResponse.getStatus();
+
+			if (knownStatus == newStatus) {
+				// No status change
+				// Check for timeout
+				Date remoteClassificationCutoffTime = DateUtil.newDatePlus(Calendar.MINUTE, -abortRemoteClassificationAfterMinutes);
+				if (!classification.getCreationDate().before(remoteClassificationCutoffTime)) {
+					// Nothing to do, poll again later
+					scheduleStatusPoll(classification, knownStatus, Math.min(previousDelaySeconds * 2, Math.max(statusPollingMaxIntervalSeconds, 1)));
+					return;
+				}
+				newStatus = ClassificationStatus.FAILED;
+				classification.setErrorMessage("Remote service taking too long.");
+			} else if (newStatus == ClassificationStatus.FAILED) {
+				classification.setErrorMessage(statusResponse.getErrorMessage());
+				logger.warn("Remote classification failed with message:{}, developerMessage:{}",
+						statusResponse.getErrorMessage(), statusResponse.getDeveloperMessage());
+			}
 
-								final ClassificationStatus newStatusFinal = newStatus;
-								classificationProcessingExecutor.submit(() -> {
+			// Keep polling if still needed
+			if (newStatus == ClassificationStatus.SCHEDULED || newStatus == ClassificationStatus.RUNNING) {
+				scheduleStatusPoll(classification, newStatus, 1);
+			}
 
-									classification.setStatus(newStatusFinal);
+			final ClassificationStatus newStatusFinal = newStatus;
+			classificationProcessingExecutor.submit(() -> processStatusChange(classification, newStatusFinal));
 
-									if (newStatusFinal == COMPLETED) {
-										try {
-											downloadRemoteResults(classification);
+		} catch (RestClientException e) {
+			logger.warn("Problem with classification-service communication. Trying again in {} seconds.", COMMUNICATION_PROBLEM_COOL_OFF_SECONDS, e);
+			// Let's wait a while before trying again
+			scheduleStatusPoll(classification, knownStatus, COMMUNICATION_PROBLEM_COOL_OFF_SECONDS);
+		} catch (Exception e) {
+			logger.error("Unexpected exception while polling status of classification {}.", classification.getId(), e);
+			scheduleStatusPoll(classification, knownStatus, COMMUNICATION_PROBLEM_COOL_OFF_SECONDS);
+		}
+	}
 
-											Boolean inferredRelationshipChangesFound = doGetRelationshipChanges(classification.getPath(), classification.getId(),
-													Config.DEFAULT_LANGUAGE_DIALECTS, PageRequest.of(0, 1), false, null).getTotalElements() > 0;
+	private void processStatusChange(Classification classification, ClassificationStatus newStatus) {
+		classification.setStatus(newStatus);
 
-											Boolean equivalentConceptsFound = doGetEquivalentConcepts(classification.getPath(), classification.getId(),
-													Config.DEFAULT_LANGUAGE_DIALECTS, PageRequest.of(0, 1)).getTotalElements() > 0;
+		if (newStatus == COMPLETED) {
+			try {
+				downloadRemoteResults(classification);
 
-											classification.setInferredRelationshipChangesFound(inferredRelationshipChangesFound);
-											classification.setEquivalentConceptsFound(equivalentConceptsFound);
-											classification.setCompletionDate(new Date());
+				Boolean inferredRelationshipChangesFound = doGetRelationshipChanges(classification.getPath(), classification.getId(),
+						Config.DEFAULT_LANGUAGE_DIALECTS, PageRequest.of(0, 1), false, null).getTotalElements() > 0;
 
-										} catch (IOException | ElasticsearchException e) {
-											classification.setStatus(ClassificationStatus.FAILED);
-											String message = "Failed to capture remote classification results.";
-											classification.setErrorMessage(message);
-											logger.error(message, e);
-										}
-									}
+				Boolean equivalentConceptsFound = doGetEquivalentConcepts(classification.getPath(), classification.getId(),
+						Config.DEFAULT_LANGUAGE_DIALECTS, PageRequest.of(0, 1)).getTotalElements() > 0;
 
-									classificationRepository.save(classification);
-									logger.info("Classification {} {}.", classification.getId(), classification.getStatus());
-								});
-							}
-							if (shutdownRequested) {
-								break;
-							}
-						}
-						classificationsToCheck.clear();
-						Thread.sleep(SECOND);
-
-					} catch (RestClientException e) {
-						int coolOffSeconds = 30;
-						logger.warn("Problem with classification-service communication. Trying again in {} seconds.", coolOffSeconds, e);
-						// Let's wait a while before trying again
-						Thread.sleep(coolOffSeconds * SECOND);
-					}
-				}
-			} catch (InterruptedException e) {
-				logger.info("Classification status polling thread interrupted.");
-			} catch (Exception e) {
-				logger.error("Unexpected exception in classification status polling thread.", e);
-			} finally {
-				logger.info("Classification status polling thread stopped.");
+				classification.setInferredRelationshipChangesFound(inferredRelationshipChangesFound);
+				classification.setEquivalentConceptsFound(equivalentConceptsFound);
+				classification.setCompletionDate(new Date());
+
+			} catch (IOException | ElasticsearchException e) {
+				classification.setStatus(ClassificationStatus.FAILED);
+				String message = "Failed to capture remote classification results.";
+				classification.setErrorMessage(message);
+				logger.error(message, e);
 			}
-		});
-		classificationStatusPollingThread.setName("classification-status-polling");
-		classificationStatusPollingThread.start();
-	}
+		}
 
-	@PreDestroy
-	public void shutdownPolling() {
-		shutdownRequested = true;
-		classificationProcessingExecutor.shutdown();
+		classificationRepository.save(classification);
+		logger.info("Classification {} {}.", classification.getId(), classification.getStatus());
 	}
 
 	public Page<Classification> findClassifications(String path) {
@@ -323,9 +319,7 @@ public class ClassificationService {
 			classification.setId(remoteClassificationId);
 			classification.setStatus(ClassificationStatus.SCHEDULED);
 			classificationRepository.save(classification);
-			synchronized (classificationsInProgress) {
-				classificationsInProgress.add(classification);
-			}
+			scheduleStatusPoll(classification, ClassificationStatus.SCHEDULED, 1);
 		} catch (RestClientException | ExportException e) {
 			throw new ServiceException("Failed to create classification.", e);
 		}
@@ -579,84 +573,90 @@ public class ClassificationService {
 		}
 
 		// - Mark inferred not previously stated changes -
-		// Build query to find concepts in the stated semantic index which do not contain the inferred parents or attributes
+		// Load the stated parents and attributes of the changed concepts, then check each active change against them in memory
 		NumberFormat numberFormat = NumberFormat.getIntegerInstance();
 		if (activeRows > 0) {
 			logger.info("Looking up 'inferred not previously stated' values for {} active inferred relationship changes for classification {}.",
 					numberFormat.format(activeRows), classification.getId());
-		}
-		long rowsProcessed = 0;
-		Map<Long, List<RelationshipChange>> activeConceptChanges = new HashMap<>();
-
-		// The max clauses for bool query in elastic search by default is 1024
-		for (List<RelationshipChange> relationshipChangePartition : Lists.partition(relationshipChanges, 1000)) {
-			BoolQueryBuilder allConceptsQuery = boolQuery();
-			for (RelationshipChange relationshipChange : relationshipChangePartition) {
+			LongOpenHashSet activeSourceIds = new LongOpenHashSet();
+			for (RelationshipChange relationshipChange : relationshipChanges) {
 				if (relationshipChange.isActive()) {
-					Long sourceId = parseLong(relationshipChange.getSourceId());
-					BoolQueryBuilder conceptQuery = boolQuery()
-							.must(termQuery(QueryConcept.Fields.CONCEPT_ID, sourceId));
-					if (relationshipChange.getTypeId().equals(Concepts.ISA)) {
-						conceptQuery.mustNot(termQuery(QueryConcept.Fields.PARENTS, relationshipChange.getDestinationId()));
-					} else {
-						conceptQuery.mustNot(termQuery(QueryConcept.Fields.ATTR + "." + relationshipChange.getTypeId(), relationshipChange.getDestinationId()));
-					}
-					allConceptsQuery.should(conceptQuery);
-					activeConceptChanges.computeIfAbsent(sourceId, id -> new ArrayList<>()).add(relationshipChange);
-					rowsProcessed++;
-					if (rowsProcessed % 1_000 == 0) {
-						logger.info("Processing row {} of {} for classification {}", numberFormat.format(rowsProcessed), numberFormat.format(activeRows), classification.getId());
-					}
+					activeSourceIds.add(parseLong(relationshipChange.getSourceId()));
 				}
 			}
+			Long2ObjectMap<Set<String>> statedTriples = findStatedTypeDestinationPairs(classification.getPath(), activeSourceIds);
+			relationshipChanges.parallelStream()
+					.filter(RelationshipChange::isActive)
+					.forEach(relationshipChange -> {
+						// One or more inferred attributes or parents do not exist on the stated form of this concept
+						Set<String> conceptTriples = statedTriples.get(parseLong(relationshipChange.getSourceId()));
+						if (conceptTriples != null && !conceptTriples.contains(toTypeDestinationPair(relationshipChange.getTypeId(), relationshipChange.getDestinationId()))) {
+							relationshipChange.setInferredNotStated(true);
+						}
+					});
+		}
 
-			// make sure the should clause is not empty before running semantic index search
-			if (allConceptsQuery.should().isEmpty()) {
-				continue;
+		if (!relationshipChanges.isEmpty()) {
+			logger.info("Saving {} classification relationship changes total.", numberFormat.format(relationshipChanges.size()));
+			int chunkSize = 10_000;
+			List<Future<?>> saveFutures = new ArrayList<>();
+			for (List<RelationshipChange> changes : Lists.partition(relationshipChanges, chunkSize)) {
+				if (relationshipChanges.size() > chunkSize) {
+					logger.info("Saving batch of {} classification relationship changes.", numberFormat.format(changes.size()));
+				}
+				saveFutures.add(executorService.submit(() -> relationshipChangeRepository.saveAll(changes)));
 			}
+			for (Future<?> saveFuture : saveFutures) {
+				try {
+					saveFuture.get();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new ElasticsearchException("Interrupted while saving classification relationship changes.", e);
+				} catch (ExecutionException e) {
+					throw new ElasticsearchException("Failed to save classification relationship changes.", e.getCause());
+				}
+			}
+		}
+	}
 
-			BranchCriteria branchCriteria = versionControlHelper.getBranchCriteria(classification.getPath());
+	/**
+	 * @return Map of concept id to the type and destination pairs of the stated parents and attributes of that concept on the branch.
+	 * Concepts without a stated form are not included.
+	 */
+	private Long2ObjectMap<Set<String>> findStatedTypeDestinationPairs(String path, LongOpenHashSet conceptIds) {
+		Long2ObjectMap<Set<String>> statedPairs = new Long2ObjectOpenHashMap<>();
+		BranchCriteria branchCriteria = versionControlHelper.getBranchCriteria(path);
+		for (List<Long> conceptIdBatch : Iterables.partition(conceptIds, 10_000)) {
 			try (SearchHitsIterator<QueryConcept> semanticIndexConcepts = elasticsearchOperations.searchForStream(
 					new NativeSearchQueryBuilder()
 							.withQuery(boolQuery()
 									.must(branchCriteria.getEntityBranchCriteria(QueryConcept.class))
 									.must(termQuery(QueryConcept.Fields.STATED, true)))
-							.withFilter(allConceptsQuery)
+							.withFilter(termsQuery(QueryConcept.Fields.CONCEPT_ID, conceptIdBatch))
+							.withFields(QueryConcept.Fields.CONCEPT_ID, QueryConcept.Fields.PARENTS, QueryConcept.Fields.ATTR_MAP)
 							.withPageable(LARGE_PAGE).build(),
 					QueryConcept.class)) {
 
 				semanticIndexConcepts.forEachRemaining(hit -> {
-					// One or more inferred attributes or parents do not exist on this stated semanticIndexConcept
-					List<RelationshipChange> conceptChanges = activeConceptChanges.get(hit.getContent().getConceptIdL());
-					if (conceptChanges != null) {
-						Map<String, Set<String>> conceptAttributes = hit.getContent().getAttr();
-						for (RelationshipChange relationshipChange : conceptChanges) {
-							if (relationshipChange.getTypeId().equals(Concepts.ISA)) {
-								if (!hit.getContent().getParents().contains(parseLong(relationshipChange.getDestinationId()))) {
-									relationshipChange.setInferredNotStated(true);
-								}
-							} else {
-								if (!conceptAttributes.getOrDefault(relationshipChange.getTypeId(), Collections.emptySet()).contains(relationshipChange.getDestinationId())) {
-									relationshipChange.setInferredNotStated(true);
-								}
-							}
-						}
+					QueryConcept queryConcept = hit.getContent();
+					Set<String> pairs = new HashSet<>();
+					for (Long parent : queryConcept.getParents()) {
+						pairs.add(toTypeDestinationPair(Concepts.ISA, parent.toString()));
 					}
+					queryConcept.getAttr().forEach((typeId, destinationIds) -> {
+						for (String destinationId : destinationIds) {
+							pairs.add(toTypeDestinationPair(typeId, destinationId));
+						}
+					});
+					statedPairs.put(queryConcept.getConceptIdL().longValue(), pairs);
 				});
 			}
 		}
+		return statedPairs;
+	}
 
-		if (!relationshipChanges.isEmpty()) {
-			logger.info("Saving {} classification relationship changes total.", numberFormat.format(relationshipChanges.size()));
-			int chunkSize = 10_000;
-			List<List<RelationshipChange>> partition = Lists.partition(relationshipChanges, chunkSize);
-			for (List<RelationshipChange> changes : partition) {
-				if (relationshipChanges.size() > chunkSize) {
-					logger.info("Saving batch of {} classification relationship changes.", numberFormat.format(changes.size()));
-				}
-				relationshipChangeRepository.saveAll(changes);
-			}
-		}
+	private static String toTypeDestinationPair(String typeId, String destinationId) {
+		return typeId + "=" + destinationId;
 	}
 
 	private void saveEquivalentConcepts(String classificationId, InputStream rf2Stream) throws IOException, ElasticsearchException {
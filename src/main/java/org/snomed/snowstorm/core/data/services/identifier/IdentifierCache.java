@@ -1,25 +1,36 @@
 package org.snomed.snowstorm.core.data.services.identifier;
 
-import java.util.Deque;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+
 import java.util.List;
-import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
+/**
+ * Ring buffer of identifiers for one namespace/partition combination.
+ * Any number of threads can claim identifiers at the same time using compare-and-set on the read position.
+ * Only one thread tops up the buffer at a time, guarded by the top-up flag.
+ */
 public class IdentifierCache {
-	
+
 	private final int namespaceId;
 	private final String partitionId;
 	private final int maxCapacity;
-	private boolean topUpInProgress = false;
-	private boolean isLocked = false;
-	
-	private Deque<Long> identifiers = new ConcurrentLinkedDeque<>();
-	
+	private final AtomicBoolean topUpInProgress = new AtomicBoolean();
+
+	private final long[] identifiers;
+	// Position of the next identifier to claim
+	private final AtomicLong head = new AtomicLong();
+	// Position after the last identifier added
+	private final AtomicLong tail = new AtomicLong();
+
 	IdentifierCache(int namespaceId, String partitionId, int maxCapacity) {
 		this.namespaceId = namespaceId;
 		this.partitionId = partitionId;
 		this.maxCapacity = maxCapacity;
+		identifiers = new long[maxCapacity];
 	}
-	
+
 	public int getNamespaceId() {
 		return namespaceId;
 	}
@@ -29,39 +40,59 @@ public class IdentifierCache {
 	public int getMaxCapacity() {
 		return maxCapacity;
 	}
-	
+
 	public int identifiersAvailable() {
-		return identifiers.size();
-	}
-	
-	Long getIdentifier() {
-		return identifiers.pop();
+		return (int) (tail.get() - head.get());
 	}
 
-	public boolean isTopUpInProgress() {
-		return topUpInProgress;
+	/**
+	 * Claims the requested number of identifiers.
+	 * @return The identifiers or null if the cache does not hold enough.
+	 */
+	List<Long> claimIdentifiers(int quantity) {
+		long[] claimed = new long[quantity];
+		long position;
+		do {
+			position = head.get();
+			if (tail.get() - position < quantity) {
+				return null;
+			}
+			// Copy before claiming. The top-up never overwrites unclaimed positions so the copy is valid if the claim succeeds.
+			for (int i = 0; i < quantity; i++) {
+				claimed[i] = identifiers[(int) ((position + i) % maxCapacity)];
+			}
+		} while (!head.compareAndSet(position, position + quantity));
+		return LongArrayList.wrap(claimed);
 	}
 
-	public synchronized void setTopUpInProgress(boolean topUpInProgress) {
-		this.topUpInProgress = topUpInProgress;
+	boolean startTopUp() {
+		return topUpInProgress.compareAndSet(false, true);
 	}
 
-	public void topUp(List<Long> newIdentifiers) {
-		identifiers.addAll(newIdentifiers);
+	void endTopUp() {
+		topUpInProgress.set(false);
 	}
 
-	public boolean lock() {
-		if (isLocked) {
-			return false;
-		} 
-		isLocked = true;
-		return true;
+	public boolean isTopUpInProgress() {
+		return topUpInProgress.get();
 	}
-	
-	public void unlock() {
-		isLocked = false;
+
+	/**
+	 * Adds identifiers up to the capacity of the cache. Must only be called by the thread which started the top-up.
+	 * @return The number of identifiers added.
+	 */
+	int topUp(List<Long> newIdentifiers) {
+		long position = tail.get();
+		int space = maxCapacity - (int) (position - head.get());
+		int added = Math.min(space, newIdentifiers.size());
+		for (int i = 0; i < added; i++) {
+			identifiers[(int) ((position + i) % maxCapacity)] = newIdentifiers.get(i);
+		}
+		// Publish the new identifiers to claiming threads
+		tail.set(position + added);
+		return added;
 	}
-	
+
 	@Override
 	public String toString() {
 		return "IdCache(" + namespaceId + " - " + partitionId + ")";
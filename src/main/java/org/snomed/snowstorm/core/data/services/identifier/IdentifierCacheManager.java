@@ -3,40 +3,33 @@ package org.snomed.snowstorm.core.data.services.identifier;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.snomed.snowstorm.core.data.domain.ComponentType;
-import org.snomed.snowstorm.core.data.services.RuntimeServiceException;
 import org.snomed.snowstorm.core.data.services.ServiceException;
 import org.springframework.beans.factory.annotation.Autowired;
 
 import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
-import java.util.Date;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
-public class IdentifierCacheManager implements Runnable {
+public class IdentifierCacheManager {
 
 	// Time between successive polls in minutes
 	private int pollingIntervalMinutes = 10;
 
-	// Wait max to have access to cache
-	private int lockWaitLimitMilliseconds = 5 * 1000;
-	private int lockRetryMilliseconds = 200;
-
-	// Proportion below which cache will be topped up on next poll
+	// Proportion below which cache will be topped up in the background
 	final static double topUpLevel = 0.7;
 
-	// Proportion below which cache will be topped up during next bulk request
-	private final static double criticalLevel = 0.1;
-
 	@Autowired
 	private IdentifierSource identifierSource;
 
 	// Separate cache for each namespace/partition combination configured.
 	private Set<IdentifierCache> identifierCaches = new HashSet<>();
-	private Thread cacheDaemon;
-	private boolean stayAlive = true;
-	boolean isSleeping = false;
+	private volatile ScheduledExecutorService topUpExecutor;
 
 	private static final Logger logger = LoggerFactory.getLogger(IdentifierCacheManager.class);
 
@@ -46,11 +39,18 @@ public class IdentifierCacheManager implements Runnable {
 
 	@PostConstruct
 	public void startBackgroundTask() {
-		if (cacheDaemon != null) {
+		if (topUpExecutor != null) {
 			throw new IllegalStateException("Unable to start a second Identifier cache manager daemon");
 		}
-		cacheDaemon = new Thread(this, "IdentifierCacheManagerDaemon");
-		cacheDaemon.start();
+		AtomicInteger threadNumber = new AtomicInteger();
+		// One thread per cache so that a slow top-up does not hold up the others
+		topUpExecutor = Executors.newScheduledThreadPool(Math.max(identifierCaches.size(), 1), runnable -> {
+			Thread thread = new Thread(runnable, "IdentifierCacheManagerDaemon-" + threadNumber.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+		logger.info("Identifier cache manager polling commencing with {} minute period.", pollingIntervalMinutes);
+		topUpExecutor.scheduleWithFixedDelay(this::checkTopUpRequired, 0, pollingIntervalMinutes, TimeUnit.MINUTES);
 	}
 
 	@PreDestroy
@@ -58,32 +58,6 @@ public class IdentifierCacheManager implements Runnable {
 		stopBackgroundTask();
 	}
 
-	public void run() {
-		logger.info("Identifier cache manager polling commencing with {} second period.", pollingIntervalMinutes);
-		long pollingIntervalMillis = pollingIntervalMinutes * (long)1000;
-		while (stayAlive) {
-			Date timePollStarted = new Date();
-			checkTopUpRequired();
-			Date timePollCompleted = new Date();
-			//Have we exceeded a polling interval?
-			long timeTaken = timePollCompleted.getTime() - timePollStarted.getTime();
-			if (timeTaken > pollingIntervalMillis) {
-				logger.warn("Identifier cache top ups took longer than polling interval: {}ms", timeTaken);
-			} else {
-				long timeRemaining = pollingIntervalMillis - timeTaken;
-				try {
-					isSleeping = true;
-					//Don't mind being interrupted while sleeping.
-					Thread.sleep(timeRemaining);
-					isSleeping = false;
-				} catch (InterruptedException e) {
-					logger.info("Identifier cache manager sleep interrupted.");
-				}
-			}
-		}
-		logger.info("Identifier cache manager polling stopped.");
-	}
-	
 	public boolean topUpInProgress() {
 		for (IdentifierCache thisCache : identifierCaches) {
 			if (thisCache.isTopUpInProgress()) {
@@ -97,8 +71,8 @@ public class IdentifierCacheManager implements Runnable {
 		try {
 			//Work through each cache and see if number of identifiers is below top up level
 			for (IdentifierCache thisCache : identifierCaches) {
-				if ((double)thisCache.identifiersAvailable() < (double)thisCache.getMaxCapacity() * topUpLevel) {
-					topUp(thisCache, 0);
+				if (isLow(thisCache) && thisCache.startTopUp()) {
+					topUp(thisCache);
 				}
 			}
 		} catch (Exception e) {
@@ -106,22 +80,32 @@ public class IdentifierCacheManager implements Runnable {
 		}
 	}
 
-	void topUp(IdentifierCache cache, int extraRequired) {
-		if (cache.isTopUpInProgress()) {
-			logger.warn("Top-up already in progress for {}", cache);
-			return;
+	private boolean isLow(IdentifierCache cache) {
+		return (double)cache.identifiersAvailable() < (double)cache.getMaxCapacity() * topUpLevel;
+	}
+
+	private void requestTopUpIfLow(IdentifierCache cache) {
+		ScheduledExecutorService executor = topUpExecutor;
+		if (executor != null && isLow(cache) && cache.startTopUp()) {
+			executor.submit(() -> topUp(cache));
 		}
-		cache.setTopUpInProgress(true);
-		int quantityRequired = cache.getMaxCapacity() - cache.identifiersAvailable() + extraRequired;
+	}
+
+	// Must only be called by the thread which started the top-up
+	void topUp(IdentifierCache cache) {
+		int quantityRequired = cache.getMaxCapacity() - cache.identifiersAvailable();
 		try {
-			logger.info("Topping up {} by {}", cache, quantityRequired);
-			List<Long> newIdentifiers = identifierSource.reserveIds(cache.getNamespaceId(), cache.getPartitionId(), quantityRequired);
-			cache.topUp(newIdentifiers);
-			logger.info("Top up of {} by {} complete",cache, quantityRequired);
+			if (quantityRequired > 0) {
+				logger.info("Topping up {} by {}", cache, quantityRequired);
+				// Uniqueness of the whole batch is checked once by the source
+				List<Long> newIdentifiers = identifierSource.reserveIds(cache.getNamespaceId(), cache.getPartitionId(), quantityRequired);
+				int added = cache.topUp(newIdentifiers);
+				logger.info("Top up of {} by {} complete", cache, added);
+			}
 		} catch (Exception e) {
 			logger.error("Failed to top-up {} with {} identifiers ",cache, quantityRequired,e);
 		} finally {
-			cache.setTopUpInProgress(false);
+			cache.endTopUp();
 		}
 	}
 
@@ -131,54 +115,22 @@ public class IdentifierCacheManager implements Runnable {
 		if (quantityRequired == 0) {
 			return;
 		}
-		
+
 		//Do we have a cache for this namespace/partition?
 		IdentifierCache cache = getCache(namespaceId, partitionId);
 		ComponentType componentType = ComponentType.getTypeFromPartition(partitionId);
-		boolean requestSatisfied = false;
+		List<Long> identifiers = null;
 		if (cache != null) {
-			//Does cache need topping up anyway?
-			if (cache.identifiersAvailable() == 0 || 
-					( cache.identifiersAvailable() < (double)cache.getMaxCapacity() * criticalLevel 
-							&& quantityRequired > 5)
-					){
-				topUp(cache, quantityRequired);
-			}
-
-			//Does it have enough available?
-			if (cache.identifiersAvailable() > quantityRequired) {
-				waitForLock(cache);
-				for (int i=0; i < quantityRequired; i++) {
-					idBlock.addId(componentType, cache.getIdentifier());
-				}
-				cache.unlock();
-				requestSatisfied = true;
-			}
+			identifiers = cache.claimIdentifiers(quantityRequired);
+			// Top up ahead of demand, the request does not wait for this
+			requestTopUpIfLow(cache);
 		}
-		
-		if (!requestSatisfied) {
+
+		if (identifiers == null) {
 			//If we don't have the right cache, or it doesn't have sufficient availability, then call storage directly
-			idBlock.addAll(componentType, identifierSource.reserveIds(namespaceId, partitionId, quantityRequired));
+			identifiers = identifierSource.reserveIds(namespaceId, partitionId, quantityRequired);
 		}
-	}
-
-	private void waitForLock(IdentifierCache cache) {
-		boolean lockedSuccessfully = false;
-		int totalWaitTime = 0;
-		do {
-			lockedSuccessfully = cache.lock();
-			if (!lockedSuccessfully) {
-				if (totalWaitTime > lockWaitLimitMilliseconds) {
-					throw new RuntimeServiceException("Lock wait limit exceeded on identifier cache " + cache);
-				}
-				try {
-					Thread.sleep(lockRetryMilliseconds);
-				} catch (InterruptedException e) {
-					throw new RuntimeServiceException("Lock wait interrupted",e);
-				}
-				totalWaitTime += lockRetryMilliseconds;
-			}
-		} while (!lockedSuccessfully);
+		idBlock.addAll(componentType, identifiers);
 	}
 
 	IdentifierCache getCache(int namespaceId, String partitionId) {
@@ -191,10 +143,9 @@ public class IdentifierCacheManager implements Runnable {
 	}
 
 	public void stopBackgroundTask() {
-		stayAlive = false;
-		cacheDaemon.interrupt();
-		cacheDaemon = null;
+		topUpExecutor.shutdownNow();
+		topUpExecutor = null;
+		logger.info("Identifier cache manager polling stopped.");
 	}
 
-
 }
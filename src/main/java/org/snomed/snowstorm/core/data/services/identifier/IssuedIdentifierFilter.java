@@ -0,0 +1,308 @@
+package org.snomed.snowstorm.core.data.services.identifier;
+
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnels;
+import io.kaicode.elasticvc.api.CommitListener;
+import io.kaicode.elasticvc.domain.Branch;
+import io.kaicode.elasticvc.domain.Commit;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import org.elasticsearch.index.query.BoolQueryBuilder;
+import org.elasticsearch.index.query.QueryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.snomed.snowstorm.core.data.domain.*;
+import org.snomed.snowstorm.core.data.repositories.IssuedIdentifierFilterSnapshotRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
+import org.springframework.data.elasticsearch.core.SearchHitsIterator;
+import org.springframework.data.elasticsearch.core.query.NativeSearchQueryBuilder;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+
+import static io.kaicode.elasticvc.api.ComponentService.LARGE_PAGE;
+import static org.elasticsearch.index.query.QueryBuilders.*;
+
+/**
+ * Optional Bloom filter of every SCTID used by a component in any branch, one filter per component type.
+ * Locally generated identifiers only need checking in Elasticsearch if the filter reports that they may already be used.
+ * The filters are loaded from a saved snapshot on startup, caught up from the store and updated on every commit on this instance.
+ * Identifiers committed by other instances are picked up on a schedule. Until then a generated identifier may clash with one of them,
+ * with random identifiers this is very unlikely but the clash is not detected when the component is saved.
+ * The saved watermark never passes the timepoint of an open commit, however long the branch has been locked, so that identifiers
+ * written by a commit which is still open are never missed.
+ */
+@Service
+public class IssuedIdentifierFilter implements CommitListener {
+
+	@Value("${cis.local-random.issued-id-filter.enabled:false}")
+	private boolean enabled;
+
+	@Value("${cis.local-random.issued-id-filter.expected-ids-per-component-type:5000000}")
+	private int expectedIdsPerComponentType;
+
+	@Value("${cis.local-random.issued-id-filter.false-positive-probability:0.01}")
+	private double falsePositiveProbability;
+
+	@Autowired
+	private ElasticsearchOperations elasticsearchTemplate;
+
+	@Autowired
+	private IssuedIdentifierFilterSnapshotRepository snapshotRepository;
+
+	@Autowired
+	private ExecutorService executorService;
+
+	private final Map<ComponentType, ComponentTypeFilter> filters = new EnumMap<>(ComponentType.class);
+
+	private volatile boolean ready;
+
+	private final Logger logger = LoggerFactory.getLogger(getClass());
+
+	@PostConstruct
+	public void init() {
+		if (enabled) {
+			executorService.submit(this::load);
+		}
+	}
+
+	private void load() {
+		try {
+			for (ComponentType componentType : ComponentType.values()) {
+				Optional<IssuedIdentifierFilterSnapshot> snapshot = snapshotRepository.findById(componentType.name());
+				ComponentTypeFilter filter;
+				if (snapshot.isPresent()) {
+					byte[] bytes = Base64.getDecoder().decode(snapshot.get().getFilter());
+					filter = new ComponentTypeFilter(componentType, BloomFilter.readFrom(new ByteArrayInputStream(bytes), Funnels.longFunnel()),
+							snapshot.get().getWatermark());
+				} else {
+					logger.info("No issued identifier filter snapshot found for {}, all identifiers will be loaded.", componentType);
+					filter = new ComponentTypeFilter(componentType, BloomFilter.create(Funnels.longFunnel(), expectedIdsPerComponentType, falsePositiveProbability), 0);
+				}
+				catchUp(filter);
+				synchronized (filters) {
+					filters.put(componentType, filter);
+				}
+			}
+			saveSnapshots();
+			ready = true;
+			logger.info("Issued identifier filters ready.");
+		} catch (Exception e) {
+			logger.error("Failed to load issued identifier filters, identifiers will be checked in Elasticsearch only.", e);
+		}
+	}
+
+	/**
+	 * @return The identifiers which may already be used and must be checked in the store,
+	 * or all of the identifiers if the filters are not available.
+	 */
+	public Collection<Long> findProbablyIssued(String partitionId, Collection<Long> identifiers) {
+		ComponentTypeFilter filter = ready ? filters.get(ComponentType.getTypeFromPartition(partitionId)) : null;
+		if (filter == null) {
+			return identifiers;
+		}
+		List<Long> probablyIssued = new LongArrayList();
+		synchronized (filter) {
+			for (Long identifier : identifiers) {
+				if (filter.bloomFilter.mightContain(identifier)) {
+					probablyIssued.add(identifier);
+				}
+			}
+		}
+		return probablyIssued;
+	}
+
+	@Override
+	public void preCommitCompletion(Commit commit) throws IllegalStateException {
+		if (!ready) {
+			return;
+		}
+		// Add identifiers of component versions written in this commit, the watermark is not moved
+		QueryBuilder commitVersions = boolQuery()
+				.must(termQuery("path", commit.getBranch().getPath()))
+				.must(termQuery("start", commit.getTimepoint().getTime()));
+		for (ComponentTypeFilter filter : filters.values()) {
+			addIdentifiers(filter, commitVersions);
+		}
+	}
+
+	/**
+	 * Picks up identifiers committed by other instances.
+	 */
+	@Scheduled(fixedDelayString = "${cis.local-random.issued-id-filter.catch-up-interval:10000}")
+	public void catchUpAll() {
+		if (!ready) {
+			return;
+		}
+		List<ComponentTypeFilter> filtersToCatchUp;
+		synchronized (filters) {
+			filtersToCatchUp = new ArrayList<>(filters.values());
+		}
+		for (ComponentTypeFilter filter : filtersToCatchUp) {
+			catchUp(filter);
+		}
+	}
+
+	@Scheduled(fixedDelay = 600_000)
+	public void saveSnapshots() throws IOException {
+		if (!enabled) {
+			return;
+		}
+		List<ComponentTypeFilter> filtersToSave;
+		synchronized (filters) {
+			filtersToSave = new ArrayList<>(filters.values());
+		}
+		for (ComponentTypeFilter filter : filtersToSave) {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			long watermark;
+			synchronized (filter) {
+				if (!filter.changed) {
+					continue;
+				}
+				filter.bloomFilter.writeTo(bytes);
+				watermark = filter.watermark;
+				filter.changed = false;
+			}
+			snapshotRepository.save(new IssuedIdentifierFilterSnapshot(filter.componentType.name(), watermark,
+					Base64.getEncoder().encodeToString(bytes.toByteArray())));
+			logger.debug("Saved issued identifier filter snapshot for {} at watermark {}.", filter.componentType, watermark);
+		}
+	}
+
+	/**
+	 * Adds identifiers written since the last catch up. Versions written by open commits have a start before that,
+	 * so the branches locked now or at the last catch up are also searched from their head onwards.
+	 * Searching a released lock once more after it is released picks up everything its commit wrote.
+	 */
+	private void catchUp(ComponentTypeFilter filter) {
+		synchronized (filter.catchUpLock) {
+			// Taken before the search so that nothing written after the search can have an earlier start, other than by open commits
+			long now = new Date().getTime();
+			Map<String, Long> openCommits = findOpenCommits();
+			Map<String, Long> commitsToSearch = new HashMap<>(filter.openCommits);
+			openCommits.forEach((path, head) -> commitsToSearch.merge(path, head, Math::min));
+
+			BoolQueryBuilder versions = boolQuery().should(rangeQuery("start").gte(filter.scannedUpTo));
+			commitsToSearch.forEach((path, head) -> versions.should(boolQuery()
+					.must(termQuery("path", path))
+					.must(rangeQuery("start").gt(head))));
+			addIdentifiers(filter, versions);
+
+			long safeWatermark = now;
+			for (Long head : openCommits.values()) {
+				safeWatermark = Math.min(safeWatermark, head + 1);
+			}
+			synchronized (filter) {
+				filter.scannedUpTo = Math.max(filter.scannedUpTo, now);
+				filter.openCommits = openCommits;
+				// The snapshot is only saved again if identifiers were added, the watermark alone is not worth saving
+				filter.watermark = Math.max(filter.watermark, safeWatermark);
+			}
+		}
+	}
+
+	boolean isReady() {
+		return ready;
+	}
+
+	long getWatermark(String partitionId) {
+		ComponentTypeFilter filter = filters.get(ComponentType.getTypeFromPartition(partitionId));
+		synchronized (filter) {
+			return filter.watermark;
+		}
+	}
+
+	/**
+	 * Open commits have a timepoint after the head of their locked branch, they may still write versions with that start.
+	 * @return Head timestamp of each locked branch, by path.
+	 */
+	private Map<String, Long> findOpenCommits() {
+		Map<String, Long> openCommits = new HashMap<>();
+		try (SearchHitsIterator<Branch> lockedBranches = elasticsearchTemplate.searchForStream(new NativeSearchQueryBuilder()
+				.withQuery(boolQuery()
+						.must(termQuery("locked", true))
+						.mustNot(existsQuery("end")))
+				.withPageable(LARGE_PAGE)
+				.build(), Branch.class)) {
+			while (lockedBranches.hasNext()) {
+				Branch branch = lockedBranches.next().getContent();
+				openCommits.put(branch.getPath(), branch.getHeadTimestamp());
+			}
+		}
+		return openCommits;
+	}
+
+	private void addIdentifiers(ComponentTypeFilter filter, QueryBuilder versionsQuery) {
+		ComponentType componentType = filter.componentType;
+		Class<? extends SnomedComponent<?>> componentClass = getComponentClass(componentType);
+		try (SearchHitsIterator<? extends SnomedComponent<?>> stream = elasticsearchTemplate.searchForStream(new NativeSearchQueryBuilder()
+				.withQuery(versionsQuery)
+				.withFields(getIdField(componentType))
+				.withPageable(LARGE_PAGE)
+				.build(), componentClass)) {
+			LongArrayList batch = new LongArrayList();
+			while (stream.hasNext()) {
+				batch.add(Long.parseLong(stream.next().getContent().getId()));
+				if (batch.size() == 10_000 || !stream.hasNext()) {
+					synchronized (filter) {
+						for (long identifier : batch) {
+							filter.bloomFilter.put(identifier);
+						}
+						filter.changed = true;
+					}
+					batch.clear();
+				}
+			}
+		}
+	}
+
+	private static Class<? extends SnomedComponent<?>> getComponentClass(ComponentType componentType) {
+		switch (componentType) {
+			case Concept:
+				return Concept.class;
+			case Description:
+				return Description.class;
+			default:
+				return Relationship.class;
+		}
+	}
+
+	private static String getIdField(ComponentType componentType) {
+		switch (componentType) {
+			case Concept:
+				return Concept.Fields.CONCEPT_ID;
+			case Description:
+				return Description.Fields.DESCRIPTION_ID;
+			default:
+				return Relationship.Fields.RELATIONSHIP_ID;
+		}
+	}
+
+	private static final class ComponentTypeFilter {
+
+		private final ComponentType componentType;
+		private final BloomFilter<Long> bloomFilter;
+		private final Object catchUpLock = new Object();
+		// All versions with a start before the watermark have been added
+		private long watermark;
+		// All versions with a start after this have been added, except those of commits open at the time
+		private long scannedUpTo;
+		// Head timestamp of each branch locked at the last catch up
+		private Map<String, Long> openCommits = Collections.emptyMap();
+		private boolean changed;
+
+		private ComponentTypeFilter(ComponentType componentType, BloomFilter<Long> bloomFilter, long watermark) {
+			this.componentType = componentType;
+			this.bloomFilter = bloomFilter;
+			this.watermark = watermark;
+			this.scannedUpTo = watermark;
+		}
+	}
+}
@@ -21,58 +21,66 @@ import static org.elasticsearch.index.query.QueryBuilders.termsQuery;
 /**
  * Generates SNOMED Component identifiers locally using random numbers.
  * The store is queried to check that the numbers are unique.
+ * When the issued identifier filter is enabled only numbers which may already be used are checked in the store.
  */
 public class LocalRandomIdentifierSource implements IdentifierSource {
 
 	private final ElasticsearchRestTemplate elasticsearchTemplate;
 
+	private final IssuedIdentifierFilter issuedIdentifierFilter;
+
 	private ItemIdProvider itemIdProvider;
 
-	public LocalRandomIdentifierSource(ElasticsearchRestTemplate elasticsearchTemplate) {
+	public LocalRandomIdentifierSource(ElasticsearchRestTemplate elasticsearchTemplate, IssuedIdentifierFilter issuedIdentifierFilter) {
 		this.elasticsearchTemplate = elasticsearchTemplate;
+		this.issuedIdentifierFilter = issuedIdentifierFilter;
 		itemIdProvider = new RandomItemIdProvider();
 	}
 
 	@Override
 	public List<Long> reserveIds(int namespaceId, String partitionId, int quantity) {
 		Set<Long> newIdentifiers = new LongLinkedOpenHashSet();
-		List<Long> newIdentifierList = null;
+		String namespace = namespaceId == 0 ? "" : namespaceId + "";
 		do {
-			String hackId = itemIdProvider.getItemIdentifier();
-			String namespace = namespaceId == 0 ? "" : namespaceId + "";
-			String sctidWithoutCheck = hackId + namespace + partitionId;
-			char verhoeff = VerhoeffCheck.calculateChecksum(sctidWithoutCheck, 0, false);
-			long newSctid = Long.parseLong(sctidWithoutCheck + verhoeff);
-			newIdentifiers.add(newSctid);
-			if (newIdentifiers.size() == quantity) {
-				newIdentifierList = new LongArrayList(newIdentifiers);
-				// Bulk unique check
-				List<Long> alreadyExistingIdentifiers = new LongArrayList();
-				for (List<Long> newIdentifierBatch : Lists.partition(newIdentifierList, 10_000)) {
-					switch (partitionId) {
-						case "00":
-						case "10":
-							// Concept identifier
-							alreadyExistingIdentifiers.addAll(findExistingIdentifiersInAnyBranch(newIdentifierBatch, Concept.class, Concept.Fields.CONCEPT_ID));
-							break;
-						case "01":
-						case "11":
-							// Description identifier
-							alreadyExistingIdentifiers.addAll(findExistingIdentifiersInAnyBranch(newIdentifierBatch, Description.class, Description.Fields.DESCRIPTION_ID));
-							break;
-						case "02":
-						case "12":
-							// Relationship identifier
-							alreadyExistingIdentifiers.addAll(findExistingIdentifiersInAnyBranch(newIdentifierBatch, Relationship.class, Relationship.Fields.RELATIONSHIP_ID));
-							break;
-					}
+			// Generate candidates only for the identifiers still needed, each candidate is checked against the store once
+			Set<Long> candidates = new LongLinkedOpenHashSet();
+			while (candidates.size() < quantity - newIdentifiers.size()) {
+				String hackId = itemIdProvider.getItemIdentifier();
+				String sctidWithoutCheck = hackId + namespace + partitionId;
+				char verhoeff = VerhoeffCheck.calculateChecksum(sctidWithoutCheck, 0, false);
+				long newSctid = Long.parseLong(sctidWithoutCheck + verhoeff);
+				if (!newIdentifiers.contains(newSctid)) {
+					candidates.add(newSctid);
+				}
+			}
+			// Bulk unique check
+			List<Long> alreadyExistingIdentifiers = new LongArrayList();
+			Collection<Long> candidatesToCheck = issuedIdentifierFilter.findProbablyIssued(partitionId, candidates);
+			for (List<Long> candidateBatch : Lists.partition(new LongArrayList(candidatesToCheck), 10_000)) {
+				switch (partitionId) {
+					case "00":
+					case "10":
+						// Concept identifier
+						alreadyExistingIdentifiers.addAll(findExistingIdentifiersInAnyBranch(candidateBatch, Concept.class, Concept.Fields.CONCEPT_ID));
+						break;
+					case "01":
+					case "11":
+						// Description identifier
+						alreadyExistingIdentifiers.addAll(findExistingIdentifiersInAnyBranch(candidateBatch, Description.class, Description.Fields.DESCRIPTION_ID));
+						break;
+					case "02":
+					case "12":
+						// Relationship identifier
+						alreadyExistingIdentifiers.addAll(findExistingIdentifiersInAnyBranch(candidateBatch, Relationship.class, Relationship.Fields.RELATIONSHIP_ID));
+						break;
 				}
-				// Remove any identifiers which already exist in storage - more will be generated in the next loop.
-				newIdentifiers.removeAll(alreadyExistingIdentifiers);
 			}
+			// Remove any identifiers which already exist in storage - more will be generated in the next loop.
+			candidates.removeAll(alreadyExistingIdentifiers);
+			newIdentifiers.addAll(candidates);
 		} while (newIdentifiers.size() < quantity);
 
-		return newIdentifierList;
+		return new LongArrayList(newIdentifiers);
 	}
 
 	// Finds and returns matching existing identifiers
@@ -17,6 +17,18 @@ public class AuthoringStatsSummary {
 		this.executionTime = time;
 	}
 
+	public AuthoringStatsSummary(Date time, AuthoringStatsSummary counts) {
+		this(time);
+		newConceptsCount = counts.newConceptsCount;
+		inactivatedConceptsCount = counts.inactivatedConceptsCount;
+		reactivatedConceptsCount = counts.reactivatedConceptsCount;
+		changedFsnCount = counts.changedFsnCount;
+		inactivatedSynonymsCount = counts.inactivatedSynonymsCount;
+		newSynonymsForExistingConceptsCount = counts.newSynonymsForExistingConceptsCount;
+		reactivatedSynonymsCount = counts.reactivatedSynonymsCount;
+		title = counts.title;
+	}
+
 	public void setNewConceptsCount(long newConceptsCount) {
 		this.newConceptsCount = newConceptsCount;
 	}
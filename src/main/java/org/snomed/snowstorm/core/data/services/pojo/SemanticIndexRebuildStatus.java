@@ -0,0 +1,83 @@
+package org.snomed.snowstorm.core.data.services.pojo;
+
+import org.snomed.snowstorm.core.util.TimerUtil;
+
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+public class SemanticIndexRebuildStatus {
+
+	private final String branchPath;
+	private Status status;
+	private final Map<String, String> formStage;
+	private final Map<String, Integer> formConceptsSaved;
+	private String message;
+	private final Date startTime;
+	private Date endTime;
+	private Float secondsDuration;
+
+	public SemanticIndexRebuildStatus(String branchPath) {
+		this.branchPath = branchPath;
+		status = Status.RUNNING;
+		formStage = new ConcurrentHashMap<>();
+		formConceptsSaved = new ConcurrentHashMap<>();
+		startTime = new Date();
+	}
+
+	public void setStage(String formName, String stage) {
+		formStage.put(formName, stage);
+	}
+
+	public void addConceptsSaved(String formName, int count) {
+		formConceptsSaved.merge(formName, count, Integer::sum);
+	}
+
+	public String getBranchPath() {
+		return branchPath;
+	}
+
+	public Status getStatus() {
+		return status;
+	}
+
+	public void setStatus(Status status) {
+		this.status = status;
+		if (status == Status.COMPLETED || status == Status.FAILED) {
+			endTime = new Date();
+			secondsDuration = TimerUtil.getDuration(startTime.getTime(), endTime.getTime());
+		}
+	}
+
+	public Map<String, String> getFormStage() {
+		return formStage;
+	}
+
+	public Map<String, Integer> getFormConceptsSaved() {
+		return formConceptsSaved;
+	}
+
+	public String getMessage() {
+		return message;
+	}
+
+	public void setMessage(String message) {
+		this.message = message;
+	}
+
+	public Date getStartTime() {
+		return startTime;
+	}
+
+	public Date getEndTime() {
+		return endTime;
+	}
+
+	public Float getSecondsDuration() {
+		return secondsDuration;
+	}
+
+	public enum Status {
+		RUNNING, COMPLETED, FAILED
+	}
+}
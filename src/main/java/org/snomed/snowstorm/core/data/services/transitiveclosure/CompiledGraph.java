@@ -0,0 +1,210 @@
+package org.snomed.snowstorm.core.data.services.transitiveclosure;
+
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Set;
+
+/**
+ * Immutable form of a GraphBuilder graph with the transitive closure of every node calculated in one pass.
+ * Nodes are processed in topological order, parents before children, so each closure is derived from the closures of the parents
+ * rather than by walking the upper hierarchy again. The sorted "self and ancestors" array of a node is shared by all of its
+ * single parent children.
+ * Nodes which can not be ordered are part of, or below, a loop. Their closures are found by walking the graph when requested.
+ */
+final class CompiledGraph {
+
+	private static final int[] EMPTY = new int[0];
+
+	private final long[] ids;
+	private final int[] parentOffsets;
+	private final int[] parents;
+	private final BitSet updated;
+	private final BitSet ordered;
+	private final BitSet ancestorOrSelfUpdated;
+
+	// Sorted node indexes of each node and its ancestors, only held for ordered nodes which have children
+	private final int[][] selfAndAncestors;
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(CompiledGraph.class);
+
+	CompiledGraph(long[] ids, int[] parentOffsets, int[] parents, BitSet updated) {
+		this.ids = ids;
+		this.parentOffsets = parentOffsets;
+		this.parents = parents;
+		this.updated = updated;
+		int nodeCount = ids.length;
+		ordered = new BitSet(nodeCount);
+		ancestorOrSelfUpdated = new BitSet(nodeCount);
+		selfAndAncestors = new int[nodeCount][];
+
+		// Reverse edges
+		int[] childOffsets = new int[nodeCount + 1];
+		for (int parent : parents) {
+			childOffsets[parent + 1]++;
+		}
+		for (int i = 0; i < nodeCount; i++) {
+			childOffsets[i + 1] += childOffsets[i];
+		}
+		int[] children = new int[parents.length];
+		int[] cursor = Arrays.copyOf(childOffsets, nodeCount);
+		for (int node = 0; node < nodeCount; node++) {
+			for (int i = parentOffsets[node]; i < parentOffsets[node + 1]; i++) {
+				children[cursor[parents[i]]++] = node;
+			}
+		}
+
+		// Kahn's algorithm, nodes in loops never reach zero remaining parents so are left unordered
+		int[] remainingParents = new int[nodeCount];
+		int[] queue = new int[nodeCount];
+		int head = 0;
+		int tail = 0;
+		for (int node = 0; node < nodeCount; node++) {
+			remainingParents[node] = parentOffsets[node + 1] - parentOffsets[node];
+			if (remainingParents[node] == 0) {
+				queue[tail++] = node;
+			}
+		}
+		while (head < tail) {
+			int node = queue[head++];
+			ordered.set(node);
+
+			boolean anyUpdated = updated.get(node);
+			for (int i = parentOffsets[node]; !anyUpdated && i < parentOffsets[node + 1]; i++) {
+				anyUpdated = ancestorOrSelfUpdated.get(parents[i]);
+			}
+			if (anyUpdated) {
+				ancestorOrSelfUpdated.set(node);
+			}
+
+			if (childOffsets[node + 1] > childOffsets[node]) {
+				selfAndAncestors[node] = insert(getOrderedAncestors(node), node);
+				for (int i = childOffsets[node]; i < childOffsets[node + 1]; i++) {
+					int child = children[i];
+					if (--remainingParents[child] == 0) {
+						queue[tail++] = child;
+					}
+				}
+			}
+		}
+	}
+
+	Set<Long> getTransitiveClosure(int node, String path, boolean throwExceptionIfLoopFound) throws GraphBuilderException {
+		if (ordered.get(node)) {
+			return toIds(getOrderedAncestors(node));
+		}
+		BitSet reachable = walkAncestors(node);
+		if (reachable.get(node)) {
+			String message = String.format("Loop found in transitive closure for concept %s on branch %s.", ids[node], path);
+			if (throwExceptionIfLoopFound) {
+				throw new GraphBuilderException(message);
+			} else {
+				LOGGER.warn(message);
+			}
+			reachable.clear(node);
+		}
+		LongOpenHashSet ancestorIds = new LongOpenHashSet(reachable.cardinality());
+		for (int i = reachable.nextSetBit(0); i >= 0; i = reachable.nextSetBit(i + 1)) {
+			ancestorIds.add(ids[i]);
+		}
+		return ancestorIds;
+	}
+
+	boolean isAncestorOrSelfUpdated(int node) {
+		if (ordered.get(node)) {
+			return ancestorOrSelfUpdated.get(node);
+		}
+		return updated.get(node) || walkAncestors(node).intersects(updated);
+	}
+
+	Set<Long> getParentIds(int node) {
+		LongOpenHashSet parentIds = new LongOpenHashSet();
+		for (int i = parentOffsets[node]; i < parentOffsets[node + 1]; i++) {
+			parentIds.add(ids[parents[i]]);
+		}
+		return parentIds;
+	}
+
+	private int[] getOrderedAncestors(int node) {
+		int from = parentOffsets[node];
+		int to = parentOffsets[node + 1];
+		if (from == to) {
+			return EMPTY;
+		}
+		if (to - from == 1) {
+			// Shared with siblings
+			return selfAndAncestors[parents[from]];
+		}
+		int[] union = selfAndAncestors[parents[from]];
+		for (int i = from + 1; i < to; i++) {
+			union = union(union, selfAndAncestors[parents[i]]);
+		}
+		return union;
+	}
+
+	private static int[] union(int[] a, int[] b) {
+		// Merge of two sorted arrays
+		int[] result = new int[a.length + b.length];
+		int i = 0;
+		int j = 0;
+		int size = 0;
+		while (i < a.length && j < b.length) {
+			if (a[i] < b[j]) {
+				result[size++] = a[i++];
+			} else if (a[i] > b[j]) {
+				result[size++] = b[j++];
+			} else {
+				result[size++] = a[i++];
+				j++;
+			}
+		}
+		while (i < a.length) {
+			result[size++] = a[i++];
+		}
+		while (j < b.length) {
+			result[size++] = b[j++];
+		}
+		return size == result.length ? result : Arrays.copyOf(result, size);
+	}
+
+	private BitSet walkAncestors(int node) {
+		BitSet reachable = new BitSet(ids.length);
+		int[] stack = new int[16];
+		int size = 0;
+		stack[size++] = node;
+		while (size > 0) {
+			int current = stack[--size];
+			for (int i = parentOffsets[current]; i < parentOffsets[current + 1]; i++) {
+				int parent = parents[i];
+				if (!reachable.get(parent)) {
+					reachable.set(parent);
+					if (size == stack.length) {
+						stack = Arrays.copyOf(stack, size * 2);
+					}
+					stack[size++] = parent;
+				}
+			}
+		}
+		return reachable;
+	}
+
+	private static int[] insert(int[] sorted, int value) {
+		int position = -(Arrays.binarySearch(sorted, value) + 1);
+		int[] result = new int[sorted.length + 1];
+		System.arraycopy(sorted, 0, result, 0, position);
+		result[position] = value;
+		System.arraycopy(sorted, position, result, position + 1, sorted.length - position);
+		return result;
+	}
+
+	private LongOpenHashSet toIds(int[] nodes) {
+		LongOpenHashSet nodeIds = new LongOpenHashSet(nodes.length);
+		for (int node : nodes) {
+			nodeIds.add(ids[node]);
+		}
+		return nodeIds;
+	}
+}
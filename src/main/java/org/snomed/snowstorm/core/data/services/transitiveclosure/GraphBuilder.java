@@ -1,43 +1,138 @@
 package org.snomed.snowstorm.core.data.services.transitiveclosure;
 
-import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
-import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
 
+/**
+ * Collects is-a edges into a compact primitive graph.
+ * Transitive closures are calculated for the whole graph at once, in topological order, the first time one is requested after the graph changed.
+ * Reading closures is thread safe once the graph is no longer being modified.
+ */
 public class GraphBuilder {
 
-	private Long2ObjectMap<Node> nodeLookup = new Long2ObjectOpenHashMap<>();
+	private final Long2IntOpenHashMap indexById;
+	private final LongArrayList ids = new LongArrayList();
+	private final List<Node> nodes = new ArrayList<>();
+
+	// Parent edges as parallel lists of node indexes.
+	// Edges added before the parents of their source node were cleared are ignored.
+	private final IntArrayList edgeSources = new IntArrayList();
+	private final IntArrayList edgeDestinations = new IntArrayList();
+	private final IntArrayList parentsValidFromEdge = new IntArrayList();
+	private final BitSet updated = new BitSet();
+
+	private volatile CompiledGraph compiledGraph;
 
 	private static final Logger LOGGER = LoggerFactory.getLogger(GraphBuilder.class);
 
+	public GraphBuilder() {
+		indexById = new Long2IntOpenHashMap();
+		indexById.defaultReturnValue(-1);
+	}
+
 	public Node addParent(Long sourceId, Long destinationId) {
 		LOGGER.debug("{} -> {}", sourceId, destinationId);
 		Node createNode = getCreateNode(sourceId);
-		createNode.addParent(getCreateNode(destinationId));
+		edgeSources.add(createNode.getIndex());
+		edgeDestinations.add(getCreateNode(destinationId).getIndex());
+		compiledGraph = null;
 		return createNode;
 	}
 
 	private Node getCreateNode(Long id) {
-		Node node = nodeLookup.get(id);
-		if (node == null) {
-			node = new Node(id);
-			nodeLookup.put(node.getId(), node);
+		int index = indexById.get(id.longValue());
+		if (index == -1) {
+			index = ids.size();
+			indexById.put(id.longValue(), index);
+			ids.add(id.longValue());
+			parentsValidFromEdge.add(0);
+			nodes.add(new Node(this, index, id));
 		}
-		return node;
+		return nodes.get(index);
 	}
 
 	public Collection<Node> getNodes() {
-		return nodeLookup.values();
+		return Collections.unmodifiableList(nodes);
 	}
 
 	public int getNodeCount() {
-		return nodeLookup.size();
+		return nodes.size();
 	}
 
 	public void clearParentsAndMarkUpdated(Long sourceId) {
-		getCreateNode(sourceId).markUpdated().getParents().clear();
+		getCreateNode(sourceId).markUpdated();
+		parentsValidFromEdge.set(indexById.get(sourceId.longValue()), edgeSources.size());
+	}
+
+	void markUpdated(int index) {
+		updated.set(index);
+		compiledGraph = null;
+	}
+
+	CompiledGraph getCompiledGraph() {
+		CompiledGraph graph = compiledGraph;
+		if (graph == null) {
+			synchronized (this) {
+				graph = compiledGraph;
+				if (graph == null) {
+					graph = compile();
+					compiledGraph = graph;
+				}
+			}
+		}
+		return graph;
+	}
+
+	private CompiledGraph compile() {
+		int nodeCount = ids.size();
+		int edgeCount = edgeSources.size();
+
+		// Count valid edges per source node
+		int[] parentOffsets = new int[nodeCount + 1];
+		for (int i = 0; i < edgeCount; i++) {
+			int source = edgeSources.getInt(i);
+			if (i >= parentsValidFromEdge.getInt(source)) {
+				parentOffsets[source + 1]++;
+			}
+		}
+		for (int i = 0; i < nodeCount; i++) {
+			parentOffsets[i + 1] += parentOffsets[i];
+		}
+		int[] parents = new int[parentOffsets[nodeCount]];
+		int[] cursor = Arrays.copyOf(parentOffsets, nodeCount);
+		for (int i = 0; i < edgeCount; i++) {
+			int source = edgeSources.getInt(i);
+			if (i >= parentsValidFromEdge.getInt(source)) {
+				parents[cursor[source]++] = edgeDestinations.getInt(i);
+			}
+		}
+
+		// Sort and remove duplicate parents of each node, compacting the arrays in place
+		int[] uniqueOffsets = new int[nodeCount + 1];
+		int write = 0;
+		for (int node = 0; node < nodeCount; node++) {
+			int from = parentOffsets[node];
+			int to = parentOffsets[node + 1];
+			Arrays.sort(parents, from, to);
+			uniqueOffsets[node] = write;
+			for (int i = from; i < to; i++) {
+				if (i == from || parents[i] != parents[i - 1]) {
+					parents[write++] = parents[i];
+				}
+			}
+		}
+		uniqueOffsets[nodeCount] = write;
+
+		return new CompiledGraph(ids.toLongArray(), uniqueOffsets, Arrays.copyOf(parents, write), (BitSet) updated.clone());
 	}
 }
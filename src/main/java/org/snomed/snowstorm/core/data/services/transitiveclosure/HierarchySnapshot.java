@@ -0,0 +1,182 @@
+package org.snomed.snowstorm.core.data.services.transitiveclosure;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.longs.LongArrays;
+import it.unimi.dsi.fastutil.longs.LongIterator;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import it.unimi.dsi.fastutil.longs.LongSet;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+
+/**
+ * Immutable, memory resident copy of the is-a hierarchy of one form of the semantic index at a single branch timepoint.
+ * Parent and child edges are held in compressed sparse row form using primitive arrays so that a whole edition fits in a few megabytes.
+ * Nodes are only reported in results if a QueryConcept document exists for them, matching the behaviour of the semantic index.
+ */
+public class HierarchySnapshot {
+
+	private final long headTimestamp;
+	private final long[] conceptIds;
+	private final BitSet present;
+	private final int[] parentOffsets;
+	private final int[] parents;
+	private final int[] childOffsets;
+	private final int[] children;
+
+	private HierarchySnapshot(long headTimestamp, long[] conceptIds, BitSet present, int[] parentOffsets, int[] parents, int[] childOffsets, int[] children) {
+		this.headTimestamp = headTimestamp;
+		this.conceptIds = conceptIds;
+		this.present = present;
+		this.parentOffsets = parentOffsets;
+		this.parents = parents;
+		this.childOffsets = childOffsets;
+		this.children = children;
+	}
+
+	public boolean contains(long conceptId) {
+		int index = indexOf(conceptId);
+		return index >= 0 && present.get(index);
+	}
+
+	public LongSet getParents(long conceptId) {
+		LongSet result = new LongOpenHashSet();
+		int index = indexOf(conceptId);
+		if (index >= 0 && present.get(index)) {
+			for (int i = parentOffsets[index]; i < parentOffsets[index + 1]; i++) {
+				addIfPresent(parents[i], result);
+			}
+		}
+		return result;
+	}
+
+	public LongSet getChildren(long conceptId) {
+		LongSet result = new LongOpenHashSet();
+		int index = indexOf(conceptId);
+		if (index >= 0) {
+			for (int i = childOffsets[index]; i < childOffsets[index + 1]; i++) {
+				addIfPresent(children[i], result);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * @return The union of the ancestors of all the given concepts, excluding the given concepts unless they are ancestors of each other.
+	 */
+	public LongSet getAncestors(Collection<Long> conceptIds) {
+		return traverse(conceptIds, true, parentOffsets, parents);
+	}
+
+	/**
+	 * @return The union of the descendants of all the given concepts, excluding the given concepts unless they are descendants of each other.
+	 */
+	public LongSet getDescendants(Collection<Long> conceptIds) {
+		return traverse(conceptIds, false, childOffsets, children);
+	}
+
+	private LongSet traverse(Collection<Long> startIds, boolean startMustBePresent, int[] offsets, int[] edges) {
+		BitSet visited = new BitSet(conceptIds.length);
+		IntArrayList queue = new IntArrayList();
+		for (Long startId : startIds) {
+			int index = indexOf(startId);
+			if (index >= 0 && (!startMustBePresent || present.get(index))) {
+				queue.add(index);
+			}
+		}
+		// Iterative breadth first walk, each node is expanded once
+		for (int q = 0; q < queue.size(); q++) {
+			int index = queue.getInt(q);
+			for (int i = offsets[index]; i < offsets[index + 1]; i++) {
+				int next = edges[i];
+				if (!visited.get(next)) {
+					visited.set(next);
+					queue.add(next);
+				}
+			}
+		}
+		visited.and(present);
+		LongSet result = new LongOpenHashSet(visited.cardinality());
+		for (int i = visited.nextSetBit(0); i >= 0; i = visited.nextSetBit(i + 1)) {
+			result.add(conceptIds[i]);
+		}
+		return result;
+	}
+
+	private void addIfPresent(int index, LongSet result) {
+		if (present.get(index)) {
+			result.add(conceptIds[index]);
+		}
+	}
+
+	private int indexOf(long conceptId) {
+		return Arrays.binarySearch(conceptIds, conceptId);
+	}
+
+	public long getHeadTimestamp() {
+		return headTimestamp;
+	}
+
+	public int getConceptCount() {
+		return present.cardinality();
+	}
+
+	public static class Builder {
+
+		private final LongOpenHashSet presentIds = new LongOpenHashSet();
+		private final LongArrayList edgeSources = new LongArrayList();
+		private final LongArrayList edgeDestinations = new LongArrayList();
+
+		public Builder addConcept(long conceptId, Collection<Long> parentIds) {
+			presentIds.add(conceptId);
+			if (parentIds != null) {
+				for (Long parentId : parentIds) {
+					edgeSources.add(conceptId);
+					edgeDestinations.add(parentId.longValue());
+				}
+			}
+			return this;
+		}
+
+		public HierarchySnapshot build(long headTimestamp) {
+			// Collect all node ids, parents may be referenced without having a QueryConcept of their own
+			LongOpenHashSet allIds = new LongOpenHashSet(presentIds);
+			allIds.addAll(edgeDestinations);
+			long[] ids = allIds.toLongArray();
+			LongArrays.quickSort(ids);
+
+			BitSet present = new BitSet(ids.length);
+			for (LongIterator iterator = presentIds.iterator(); iterator.hasNext(); ) {
+				present.set(Arrays.binarySearch(ids, iterator.nextLong()));
+			}
+
+			int edgeCount = edgeSources.size();
+			int[] sourceIndexes = new int[edgeCount];
+			int[] destinationIndexes = new int[edgeCount];
+			int[] parentOffsets = new int[ids.length + 1];
+			int[] childOffsets = new int[ids.length + 1];
+			for (int i = 0; i < edgeCount; i++) {
+				sourceIndexes[i] = Arrays.binarySearch(ids, edgeSources.getLong(i));
+				destinationIndexes[i] = Arrays.binarySearch(ids, edgeDestinations.getLong(i));
+				parentOffsets[sourceIndexes[i] + 1]++;
+				childOffsets[destinationIndexes[i] + 1]++;
+			}
+			for (int i = 0; i < ids.length; i++) {
+				parentOffsets[i + 1] += parentOffsets[i];
+				childOffsets[i + 1] += childOffsets[i];
+			}
+
+			int[] parents = new int[edgeCount];
+			int[] children = new int[edgeCount];
+			int[] parentCursor = Arrays.copyOf(parentOffsets, ids.length);
+			int[] childCursor = Arrays.copyOf(childOffsets, ids.length);
+			for (int i = 0; i < edgeCount; i++) {
+				parents[parentCursor[sourceIndexes[i]]++] = destinationIndexes[i];
+				children[childCursor[destinationIndexes[i]]++] = sourceIndexes[i];
+			}
+			return new HierarchySnapshot(headTimestamp, ids, present, parentOffsets, parents, childOffsets, children);
+		}
+	}
+}
@@ -8,6 +8,8 @@ import org.apache.tomcat.util.http.fileupload.util.Streams;
 import org.elasticsearch.index.query.BoolQueryBuilder;
 import org.elasticsearch.index.query.QueryBuilder;
 import org.elasticsearch.index.query.QueryBuilders;
+import org.elasticsearch.search.aggregations.AggregationBuilders;
+import org.elasticsearch.search.aggregations.bucket.terms.Terms;
 import org.elasticsearch.search.sort.SortBuilders;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -21,8 +23,10 @@ import org.snomed.snowstorm.core.rf2.RF2Type;
 import org.snomed.snowstorm.core.util.DateUtil;
 import org.snomed.snowstorm.core.util.TimerUtil;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
 import org.springframework.data.elasticsearch.core.SearchHit;
+import org.springframework.data.elasticsearch.core.SearchHits;
 import org.springframework.data.elasticsearch.core.SearchHitsIterator;
 import org.springframework.data.elasticsearch.core.query.NativeSearchQuery;
 import org.springframework.data.elasticsearch.core.query.NativeSearchQueryBuilder;
@@ -30,12 +34,18 @@ import org.springframework.stereotype.Service;
 import org.springframework.util.CollectionUtils;
 
 import java.io.*;
+import java.nio.file.Files;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.stream.Collectors;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipOutputStream;
 
 import static io.kaicode.elasticvc.api.ComponentService.LARGE_PAGE;
+import static org.snomed.snowstorm.config.Config.PAGE_OF_ONE;
 import static org.elasticsearch.index.query.QueryBuilders.*;
 
 @Service
@@ -59,6 +69,9 @@ public class ExportService {
 	@Autowired
 	private BranchMetadataHelper branchMetadataHelper;
 
+	@Value("${export.concurrency:4}")
+	private int exportConcurrency;
+
 	private Set<String> refsetTypesRequiredForClassification = Sets.newHashSet(Concepts.REFSET_MRCM_ATTRIBUTE_DOMAIN, Concepts.OWL_EXPRESSION_TYPE_REFERENCE_SET);
 
 	private Logger logger = LoggerFactory.getLogger(getClass());
@@ -125,76 +138,86 @@ public class ExportService {
 
 		try {
 			branchService.lockBranch(branchPath, branchMetadataHelper.getBranchLockMetadata("Exporting RF2 " + exportType.getName()));
-			File exportFile = File.createTempFile("export-" + new Date().getTime(), ".zip");
-			try (ZipOutputStream zipOutputStream = new ZipOutputStream(new FileOutputStream(exportFile))) {
-				// Write Concepts
-				int conceptLines = exportComponents(Concept.class, "Terminology/", "sct2_Concept_", filenameEffectiveDate, exportType, zipOutputStream,
-						getContentQuery(exportType, moduleIds, startEffectiveTime, branchCriteria.getEntityBranchCriteria(Concept.class)), transientEffectiveTime, null);
-				logger.info("{} concept states exported", conceptLines);
-
-				if (!forClassification) {
-					// Write Descriptions
-					BoolQueryBuilder descriptionBranchCriteria = branchCriteria.getEntityBranchCriteria(Description.class);
-					BoolQueryBuilder descriptionContentQuery = getContentQuery(exportType, moduleIds, startEffectiveTime, descriptionBranchCriteria);
-					descriptionContentQuery.mustNot(termQuery(Description.Fields.TYPE_ID, Concepts.TEXT_DEFINITION));
-					int descriptionLines = exportComponents(Description.class, "Terminology/", "sct2_Description_", filenameEffectiveDate, exportType, zipOutputStream,
-							descriptionContentQuery, transientEffectiveTime,null);
-					logger.info("{} description states exported", descriptionLines);
-
-					// Write Text Definitions
-					BoolQueryBuilder textDefinitionContentQuery = getContentQuery(exportType, moduleIds, startEffectiveTime, descriptionBranchCriteria);
-					textDefinitionContentQuery.must(termQuery(Description.Fields.TYPE_ID, Concepts.TEXT_DEFINITION));
-					int textDefinitionLines = exportComponents(Description.class, "Terminology/", "sct2_TextDefinition_", filenameEffectiveDate, exportType, zipOutputStream,
-							textDefinitionContentQuery, transientEffectiveTime, null);
-					logger.info("{} text defintion states exported", textDefinitionLines);
-				}
+			List<ExportEntry> entries = new ArrayList<>();
+
+			// Concepts
+			entries.add(new ExportEntry(Concept.class, "Terminology/", "sct2_Concept_",
+					getContentQuery(exportType, moduleIds, startEffectiveTime, branchCriteria.getEntityBranchCriteria(Concept.class)), null, "concept"));
+
+			if (!forClassification) {
+				// Descriptions
+				BoolQueryBuilder descriptionBranchCriteria = branchCriteria.getEntityBranchCriteria(Description.class);
+				BoolQueryBuilder descriptionContentQuery = getContentQuery(exportType, moduleIds, startEffectiveTime, descriptionBranchCriteria);
+				descriptionContentQuery.mustNot(termQuery(Description.Fields.TYPE_ID, Concepts.TEXT_DEFINITION));
+				entries.add(new ExportEntry(Description.class, "Terminology/", "sct2_Description_", descriptionContentQuery, null, "description"));
+
+				// Text Definitions
+				BoolQueryBuilder textDefinitionContentQuery = getContentQuery(exportType, moduleIds, startEffectiveTime, descriptionBranchCriteria);
+				textDefinitionContentQuery.must(termQuery(Description.Fields.TYPE_ID, Concepts.TEXT_DEFINITION));
+				entries.add(new ExportEntry(Description.class, "Terminology/", "sct2_TextDefinition_", textDefinitionContentQuery, null, "text definition"));
+			}
 
-				// Write Stated Relationships
-				BoolQueryBuilder relationshipBranchCritera = branchCriteria.getEntityBranchCriteria(Relationship.class);
-				BoolQueryBuilder relationshipQuery = getContentQuery(exportType, moduleIds, startEffectiveTime, relationshipBranchCritera);
-				relationshipQuery.must(termQuery("characteristicTypeId", Concepts.STATED_RELATIONSHIP));
-				int statedRelationshipLines = exportComponents(Relationship.class, "Terminology/", "sct2_StatedRelationship_", filenameEffectiveDate, exportType, zipOutputStream,
-						relationshipQuery, transientEffectiveTime, null);
-				logger.info("{} stated relationship states exported", statedRelationshipLines);
-
-				// Write Inferred Relationships
-				relationshipQuery = getContentQuery(exportType, moduleIds, startEffectiveTime, relationshipBranchCritera);
-				// Not 'stated' will include inferred and additional
-				relationshipQuery.mustNot(termQuery("characteristicTypeId", Concepts.STATED_RELATIONSHIP));
-				int inferredRelationshipLines = exportComponents(Relationship.class, "Terminology/", "sct2_Relationship_", filenameEffectiveDate, exportType, zipOutputStream,
-						relationshipQuery, transientEffectiveTime, null);
-				logger.info("{} inferred and additional relationship states exported", inferredRelationshipLines);
-
-				// Write Reference Sets
-				List<ReferenceSetType> referenceSetTypes = getReferenceSetTypes(branchCriteria.getEntityBranchCriteria(ReferenceSetType.class)).stream()
-						.filter(type -> !forClassification || refsetTypesRequiredForClassification.contains(type.getConceptId()))
-						.collect(Collectors.toList());
-
-				logger.info("{} Reference Set Types found for this export: {}", referenceSetTypes.size(), referenceSetTypes);
-
-				BoolQueryBuilder memberBranchCriteria = branchCriteria.getEntityBranchCriteria(ReferenceSetMember.class);
-				for (ReferenceSetType referenceSetType : referenceSetTypes) {
-					List<Long> refsetsOfThisType = new ArrayList<>(queryService.findDescendantIdsAsUnion(branchCriteria, true, Collections.singleton(Long.parseLong(referenceSetType.getConceptId()))));
-					refsetsOfThisType.add(Long.parseLong(referenceSetType.getConceptId()));
-					for (Long refsetToExport : refsetsOfThisType) {
+			// Stated Relationships
+			BoolQueryBuilder relationshipBranchCritera = branchCriteria.getEntityBranchCriteria(Relationship.class);
+			BoolQueryBuilder relationshipQuery = getContentQuery(exportType, moduleIds, startEffectiveTime, relationshipBranchCritera);
+			relationshipQuery.must(termQuery("characteristicTypeId", Concepts.STATED_RELATIONSHIP));
+			entries.add(new ExportEntry(Relationship.class, "Terminology/", "sct2_StatedRelationship_", relationshipQuery, null, "stated relationship"));
+
+			// Inferred Relationships
+			relationshipQuery = getContentQuery(exportType, moduleIds, startEffectiveTime, relationshipBranchCritera);
+			// Not 'stated' will include inferred and additional
+			relationshipQuery.mustNot(termQuery("characteristicTypeId", Concepts.STATED_RELATIONSHIP));
+			entries.add(new ExportEntry(Relationship.class, "Terminology/", "sct2_Relationship_", relationshipQuery, null, "inferred and additional relationship"));
+
+			// Reference Sets
+			List<ReferenceSetType> referenceSetTypes = getReferenceSetTypes(branchCriteria.getEntityBranchCriteria(ReferenceSetType.class)).stream()
+					.filter(type -> !forClassification || refsetTypesRequiredForClassification.contains(type.getConceptId()))
+					.collect(Collectors.toList());
+
+			logger.info("{} Reference Set Types found for this export: {}", referenceSetTypes.size(), referenceSetTypes);
+
+			BoolQueryBuilder memberBranchCriteria = branchCriteria.getEntityBranchCriteria(ReferenceSetMember.class);
+			Map<ReferenceSetType, List<Long>> typeRefsets = new LinkedHashMap<>();
+			for (ReferenceSetType referenceSetType : referenceSetTypes) {
+				List<Long> refsetsOfThisType = new ArrayList<>(queryService.findDescendantIdsAsUnion(branchCriteria, true, Collections.singleton(Long.parseLong(referenceSetType.getConceptId()))));
+				refsetsOfThisType.add(Long.parseLong(referenceSetType.getConceptId()));
+				typeRefsets.put(referenceSetType, refsetsOfThisType);
+			}
+			Map<Long, Long> refsetMemberCounts = countMembersByRefset(getContentQuery(exportType, moduleIds, startEffectiveTime, memberBranchCriteria),
+					typeRefsets.values().stream().flatMap(Collection::stream).collect(Collectors.toSet()));
+			for (Map.Entry<ReferenceSetType, List<Long>> entry : typeRefsets.entrySet()) {
+				ReferenceSetType referenceSetType = entry.getKey();
+				List<Long> refsetsOfThisType = entry.getValue();
+				for (Long refsetToExport : refsetsOfThisType) {
+					long memberCount = refsetMemberCounts.getOrDefault(refsetToExport, 0L);
+					if (memberCount > 0) {
+						logger.info("Exporting Reference Set {} {} with {} members", refsetToExport, referenceSetType.getName(), memberCount);
 						BoolQueryBuilder memberQuery = getContentQuery(exportType, moduleIds, startEffectiveTime, memberBranchCriteria);
 						memberQuery.must(QueryBuilders.termQuery(ReferenceSetMember.Fields.REFSET_ID, refsetToExport));
-						long memberCount = elasticsearchTemplate.count(getNativeSearchQuery(memberQuery), ReferenceSetMember.class);
-						if (memberCount > 0) {
-							logger.info("Exporting Reference Set {} {} with {} members", refsetToExport, referenceSetType.getName(), memberCount);
-							String exportDir = referenceSetType.getExportDir();
-							String entryDirectory = !exportDir.startsWith("/") ? "Refset/" + exportDir + "/" : exportDir.substring(1) + "/";
-							String entryFilenamePrefix = (!entryDirectory.startsWith("Terminology/") ? "der2_" : "sct2_") + referenceSetType.getFieldTypes() + "Refset_" + referenceSetType.getName() + (refsetsOfThisType.size() > 1 ? refsetToExport : "");
-							exportComponents(
-									ReferenceSetMember.class,
-									entryDirectory,
-									entryFilenamePrefix,
-									filenameEffectiveDate,
-									exportType,
-									zipOutputStream,
-									memberQuery,
-									transientEffectiveTime,
-									referenceSetType.getFieldNameList());
+						String exportDir = referenceSetType.getExportDir();
+						String entryDirectory = !exportDir.startsWith("/") ? "Refset/" + exportDir + "/" : exportDir.substring(1) + "/";
+						String entryFilenamePrefix = (!entryDirectory.startsWith("Terminology/") ? "der2_" : "sct2_") + referenceSetType.getFieldTypes() + "Refset_" + referenceSetType.getName() + (refsetsOfThisType.size() > 1 ? refsetToExport : "");
+						entries.add(new ExportEntry(ReferenceSetMember.class, entryDirectory, entryFilenamePrefix, memberQuery, referenceSetType.getFieldNameList(), null));
+					}
+				}
+			}
+
+			File exportFile = File.createTempFile("export-" + new Date().getTime(), ".zip");
+			try (ZipOutputStream zipOutputStream = new ZipOutputStream(new FileOutputStream(exportFile))) {
+				if (exportConcurrency > 1) {
+					exportEntriesConcurrently(entries, filenameEffectiveDate, exportType, zipOutputStream, transientEffectiveTime);
+				} else {
+					for (ExportEntry entry : entries) {
+						String componentFilePath = entry.getComponentFilePath(exportType, filenameEffectiveDate);
+						try {
+							zipOutputStream.putNextEntry(new ZipEntry(componentFilePath));
+							try {
+								entry.logLinesWritten(exportComponents(entry, componentFilePath, zipOutputStream, transientEffectiveTime));
+							} finally {
+								zipOutputStream.closeEntry();
+							}
+						} catch (IOException e) {
+							throw new ExportException("Failed to write export zip entry '" + componentFilePath + "'", e);
 						}
 					}
 				}
@@ -233,31 +256,98 @@ public class ExportService {
 		return contentQuery;
 	}
 
-	private <T> int exportComponents(Class<T> componentClass, String entryDirectory, String entryFilenamePrefix, String filenameEffectiveDate,
-									 RF2Type exportType, ZipOutputStream zipOutputStream, BoolQueryBuilder contentQuery, String transientEffectiveTime, List<String> extraFieldNames) {
+	/*
+		Each entry is streamed into its own spool file, several at once, then the spool files are copied into the zip in the original entry order.
+	 */
+	private void exportEntriesConcurrently(List<ExportEntry> entries, String filenameEffectiveDate, RF2Type exportType, ZipOutputStream zipOutputStream,
+			String transientEffectiveTime) throws IOException {
 
-		String componentFilePath = "SnomedCT_Export/RF2Release/" + entryDirectory + entryFilenamePrefix + String.format("%s_INT_%s.txt", exportType.getName(), filenameEffectiveDate);
-		logger.info("Exporting file {}", componentFilePath);
+		ExecutorService exportExecutor = Executors.newFixedThreadPool(exportConcurrency);
+		List<Future<File>> spoolFiles = new ArrayList<>();
 		try {
-			// Open zip entry
-			zipOutputStream.putNextEntry(new ZipEntry(componentFilePath));
-
-			// Stream components into zip
-			try (ExportWriter<T> writer = getExportWriter(componentClass, zipOutputStream, extraFieldNames);
-					SearchHitsIterator<T> componentStream = elasticsearchTemplate.searchForStream(getNativeSearchQuery(contentQuery), componentClass)) {
-				writer.setTransientEffectiveTime(transientEffectiveTime);
-				writer.writeHeader();
-				componentStream.forEachRemaining(hit -> writer.write(hit.getContent()));
-				return writer.getContentLinesWritten();
-			} finally {
-				// Close zip entry
-				zipOutputStream.closeEntry();
+			for (ExportEntry entry : entries) {
+				spoolFiles.add(exportExecutor.submit(() -> {
+					File spoolFile = File.createTempFile("export-entry-" + new Date().getTime(), ".txt");
+					try (OutputStream spoolOutputStream = new FileOutputStream(spoolFile)) {
+						entry.logLinesWritten(exportComponents(entry, entry.getComponentFilePath(exportType, filenameEffectiveDate), spoolOutputStream, transientEffectiveTime));
+					} catch (IOException | RuntimeException e) {
+						spoolFile.delete();
+						throw e;
+					}
+					return spoolFile;
+				}));
+			}
+			for (int i = 0; i < entries.size(); i++) {
+				String componentFilePath = entries.get(i).getComponentFilePath(exportType, filenameEffectiveDate);
+				File spoolFile = getSpoolFile(spoolFiles.get(i), componentFilePath);
+				try {
+					zipOutputStream.putNextEntry(new ZipEntry(componentFilePath));
+					Files.copy(spoolFile.toPath(), zipOutputStream);
+					zipOutputStream.closeEntry();
+				} finally {
+					spoolFile.delete();
+				}
+			}
+		} finally {
+			exportExecutor.shutdownNow();
+			// Remove spool files of entries not copied into the zip because of an earlier failure
+			for (Future<File> spoolFile : spoolFiles) {
+				if (spoolFile.isDone() && !spoolFile.isCancelled()) {
+					try {
+						spoolFile.get().delete();
+					} catch (InterruptedException | ExecutionException e) {
+						// Entry failed, nothing to remove
+					}
+				}
 			}
+		}
+	}
+
+	private File getSpoolFile(Future<File> spoolFile, String componentFilePath) {
+		try {
+			return spoolFile.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new ExportException("Interrupted while exporting '" + componentFilePath + "'", e);
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			throw cause instanceof ExportException ? (ExportException) cause : new ExportException("Failed to write export zip entry '" + componentFilePath + "'", cause);
+		}
+	}
+
+	private <T> int exportComponents(ExportEntry entry, String componentFilePath, OutputStream outputStream, String transientEffectiveTime) {
+		logger.info("Exporting file {}", componentFilePath);
+		@SuppressWarnings("unchecked")
+		Class<T> componentClass = (Class<T>) entry.componentClass;
+		try (ExportWriter<T> writer = getExportWriter(componentClass, outputStream, entry.extraFieldNames);
+				SearchHitsIterator<T> componentStream = elasticsearchTemplate.searchForStream(getNativeSearchQuery(entry.contentQuery), componentClass)) {
+			writer.setTransientEffectiveTime(transientEffectiveTime);
+			writer.writeHeader();
+			componentStream.forEachRemaining(hit -> writer.write(hit.getContent()));
+			return writer.getContentLinesWritten();
 		} catch (IOException e) {
 			throw new ExportException("Failed to write export zip entry '" + componentFilePath + "'", e);
 		}
 	}
 
+	// Member counts of many reference sets from one terms aggregation rather than a count query per reference set
+	private Map<Long, Long> countMembersByRefset(BoolQueryBuilder memberContentQuery, Set<Long> refsetIds) {
+		if (refsetIds.isEmpty()) {
+			return Collections.emptyMap();
+		}
+		SearchHits<ReferenceSetMember> results = elasticsearchTemplate.search(new NativeSearchQueryBuilder()
+				.withQuery(memberContentQuery.filter(termsQuery(ReferenceSetMember.Fields.REFSET_ID, refsetIds)))
+				.withPageable(PAGE_OF_ONE)
+				.addAggregation(AggregationBuilders.terms("refsets").field(ReferenceSetMember.Fields.REFSET_ID).size(refsetIds.size()))
+				.build(), ReferenceSetMember.class);
+		Map<Long, Long> counts = new HashMap<>();
+		Terms refsets = results.getAggregations().get("refsets");
+		for (Terms.Bucket bucket : refsets.getBuckets()) {
+			counts.put(Long.parseLong(bucket.getKeyAsString()), bucket.getDocCount());
+		}
+		return counts;
+	}
+
 	private <T> ExportWriter<T> getExportWriter(Class<T> componentClass, OutputStream outputStream, List<String> extraFieldNames) throws IOException {
 		if (componentClass.equals(Concept.class)) {
 			return (ExportWriter<T>) new ConceptExportWriter(getBufferedWriter(outputStream));
@@ -294,4 +384,34 @@ public class ExportService {
 	private BufferedWriter getBufferedWriter(OutputStream outputStream) {
 		return new BufferedWriter(new OutputStreamWriter(outputStream));
 	}
+
+	private final class ExportEntry {
+
+		private final Class<?> componentClass;
+		private final String entryDirectory;
+		private final String entryFilenamePrefix;
+		private final BoolQueryBuilder contentQuery;
+		private final List<String> extraFieldNames;
+		private final String statesLogName;
+
+		private ExportEntry(Class<?> componentClass, String entryDirectory, String entryFilenamePrefix, BoolQueryBuilder contentQuery, List<String> extraFieldNames,
+				String statesLogName) {
+			this.componentClass = componentClass;
+			this.entryDirectory = entryDirectory;
+			this.entryFilenamePrefix = entryFilenamePrefix;
+			this.contentQuery = contentQuery;
+			this.extraFieldNames = extraFieldNames;
+			this.statesLogName = statesLogName;
+		}
+
+		private String getComponentFilePath(RF2Type exportType, String filenameEffectiveDate) {
+			return "SnomedCT_Export/RF2Release/" + entryDirectory + entryFilenamePrefix + String.format("%s_INT_%s.txt", exportType.getName(), filenameEffectiveDate);
+		}
+
+		private void logLinesWritten(int lines) {
+			if (statesLogName != null) {
+				logger.info("{} {} states exported", lines, statesLogName);
+			}
+		}
+	}
 }
@@ -0,0 +1,104 @@
+package org.snomed.snowstorm.core.rf2.rf2import;
+
+import it.unimi.dsi.fastutil.longs.Long2IntMap;
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+import it.unimi.dsi.fastutil.objects.Object2IntMap;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+import org.snomed.snowstorm.core.data.domain.SnomedComponent;
+
+import java.util.Collection;
+
+/**
+ * Effective time and released flag of the existing components of one type on the import branch, held for the duration of an import.
+ * Loaded once from the branch and kept up to date with the components saved by each completed import commit,
+ * so later releases of a full import do not need to query the branch again.
+ *
+ * Only components with an effective time or which have been released are held. SCTIDs are held as longs, reference set member UUIDs as strings.
+ * The state of each component is packed into one int, effectiveTime * 2 + released.
+ */
+class ExistingComponentIndex {
+
+	private final boolean uuidIds;
+	private final Long2IntOpenHashMap sctidStates = new Long2IntOpenHashMap();
+	private final Object2IntOpenHashMap<String> uuidStates = new Object2IntOpenHashMap<>();
+
+	// States of components saved in the open commit, applied when the commit completes
+	private final Long2IntOpenHashMap stagedSctidStates = new Long2IntOpenHashMap();
+	private final Object2IntOpenHashMap<String> stagedUuidStates = new Object2IntOpenHashMap<>();
+
+	private boolean loaded;
+
+	ExistingComponentIndex(boolean uuidIds) {
+		this.uuidIds = uuidIds;
+	}
+
+	boolean isLoaded() {
+		return loaded;
+	}
+
+	void setLoaded() {
+		loaded = true;
+	}
+
+	synchronized void put(String id, Integer effectiveTime, boolean released) {
+		int state = state(effectiveTime, released);
+		if (state != 0) {
+			if (uuidIds) {
+				uuidStates.put(id, state);
+			} else {
+				sctidStates.put(Long.parseLong(id), state);
+			}
+		}
+	}
+
+	synchronized Integer getEffectiveTime(String id) {
+		int effectiveTime = getState(id) >> 1;
+		return effectiveTime != 0 ? effectiveTime : null;
+	}
+
+	synchronized boolean isReleased(String id) {
+		return (getState(id) & 1) == 1;
+	}
+
+	synchronized void stage(Collection<? extends SnomedComponent<?>> components) {
+		for (SnomedComponent<?> component : components) {
+			int state = state(component.getEffectiveTimeI(), component.isReleased());
+			if (uuidIds) {
+				stagedUuidStates.put(component.getId(), state);
+			} else {
+				stagedSctidStates.put(Long.parseLong(component.getId()), state);
+			}
+		}
+	}
+
+	synchronized void applyStaged() {
+		for (Long2IntMap.Entry entry : stagedSctidStates.long2IntEntrySet()) {
+			if (entry.getIntValue() != 0) {
+				sctidStates.put(entry.getLongKey(), entry.getIntValue());
+			} else {
+				sctidStates.remove(entry.getLongKey());
+			}
+		}
+		stagedSctidStates.clear();
+		for (Object2IntMap.Entry<String> entry : stagedUuidStates.object2IntEntrySet()) {
+			if (entry.getIntValue() != 0) {
+				uuidStates.put(entry.getKey(), entry.getIntValue());
+			} else {
+				uuidStates.removeInt(entry.getKey());
+			}
+		}
+		stagedUuidStates.clear();
+	}
+
+	synchronized int size() {
+		return uuidIds ? uuidStates.size() : sctidStates.size();
+	}
+
+	private int getState(String id) {
+		return uuidIds ? uuidStates.getInt(id) : sctidStates.get(Long.parseLong(id));
+	}
+
+	private static int state(Integer effectiveTime, boolean released) {
+		return (effectiveTime != null ? effectiveTime << 1 : 0) | (released ? 1 : 0);
+	}
+}
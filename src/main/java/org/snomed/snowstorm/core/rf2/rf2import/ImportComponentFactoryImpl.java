@@ -5,7 +5,6 @@ import io.kaicode.elasticvc.api.BranchCriteria;
 import io.kaicode.elasticvc.api.BranchService;
 import io.kaicode.elasticvc.api.VersionControlHelper;
 import io.kaicode.elasticvc.domain.Commit;
-import io.kaicode.elasticvc.domain.Entity;
 import org.ihtsdo.otf.snomedboot.factory.ImpotentComponentFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -16,9 +15,11 @@ import org.snomed.snowstorm.core.data.services.ReferenceSetMemberService;
 import org.snomed.snowstorm.core.rf2.RF2Constants;
 import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
 import org.springframework.data.elasticsearch.core.SearchHitsIterator;
+import org.springframework.data.elasticsearch.core.query.FetchSourceFilter;
 import org.springframework.data.elasticsearch.core.query.NativeSearchQueryBuilder;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Function;
@@ -47,7 +48,9 @@ public class ImportComponentFactoryImpl extends ImpotentComponentFactory {
 	private List<PersistBuffer> persistBuffers;
 	private List<PersistBuffer> coreComponentPersistBuffers;
 	private MaxEffectiveTimeCollector maxEffectiveTimeCollector;
-	private Map<String, AtomicLong> componentTypeSkippedMap = new HashMap<>();
+	private Map<String, AtomicLong> componentTypeSkippedMap = new ConcurrentHashMap<>();
+	private int pipelineQueueSize;
+	private boolean existingComponentIndexEnabled;
 
 	// A small number of stated relationships also appear in the inferred file. These should not be persisted when importing a snapshot.
 	Set<Long> statedRelationshipsToSkip = Sets.newHashSet(3187444026L, 3192499027L, 3574321020L);
@@ -65,10 +68,14 @@ public class ImportComponentFactoryImpl extends ImpotentComponentFactory {
 		ElasticsearchOperations elasticsearchTemplate = conceptUpdateHelper.getElasticsearchTemplate();
 		versionControlHelper = conceptUpdateHelper.getVersionControlHelper();
 
-		conceptPersistBuffer = new PersistBuffer<Concept>() {
+		conceptPersistBuffer = new PersistBuffer<Concept>(Concept.class.getSimpleName()) {
 			@Override
-			public void persistCollection(Collection<Concept> entities) {
-				processEntities(entities, patchReleaseVersion, elasticsearchTemplate, Concept.class, copyReleaseFields, clearEffectiveTimes);
+			void processCollection(Collection<Concept> entities) {
+				processEntities(entities, patchReleaseVersion, elasticsearchTemplate, Concept.class, copyReleaseFields, clearEffectiveTimes, getExistingComponentIndex());
+			}
+
+			@Override
+			void saveCollection(Collection<Concept> entities) {
 				if (!entities.isEmpty()) {
 					conceptUpdateHelper.doSaveBatchConcepts(entities, commit);
 				}
@@ -76,10 +83,14 @@ public class ImportComponentFactoryImpl extends ImpotentComponentFactory {
 		};
 		coreComponentPersistBuffers.add(conceptPersistBuffer);
 
-		descriptionPersistBuffer = new PersistBuffer<Description>() {
+		descriptionPersistBuffer = new PersistBuffer<Description>(Description.class.getSimpleName()) {
+			@Override
+			void processCollection(Collection<Description> entities) {
+				processEntities(entities, patchReleaseVersion, elasticsearchTemplate, Description.class, copyReleaseFields, clearEffectiveTimes, getExistingComponentIndex());
+			}
+
 			@Override
-			public void persistCollection(Collection<Description> entities) {
-				processEntities(entities, patchReleaseVersion, elasticsearchTemplate, Description.class, copyReleaseFields, clearEffectiveTimes);
+			void saveCollection(Collection<Description> entities) {
 				if (!entities.isEmpty()) {
 					conceptUpdateHelper.doSaveBatchDescriptions(entities, commit);
 				}
@@ -87,10 +98,14 @@ public class ImportComponentFactoryImpl extends ImpotentComponentFactory {
 		};
 		coreComponentPersistBuffers.add(descriptionPersistBuffer);
 
-		relationshipPersistBuffer = new PersistBuffer<Relationship>() {
+		relationshipPersistBuffer = new PersistBuffer<Relationship>(Relationship.class.getSimpleName()) {
 			@Override
-			public void persistCollection(Collection<Relationship> entities) {
-				processEntities(entities, patchReleaseVersion, elasticsearchTemplate, Relationship.class, copyReleaseFields, clearEffectiveTimes);
+			void processCollection(Collection<Relationship> entities) {
+				processEntities(entities, patchReleaseVersion, elasticsearchTemplate, Relationship.class, copyReleaseFields, clearEffectiveTimes, getExistingComponentIndex());
+			}
+
+			@Override
+			void saveCollection(Collection<Relationship> entities) {
 				if (!entities.isEmpty()) {
 					conceptUpdateHelper.doSaveBatchRelationships(entities, commit);
 				}
@@ -98,18 +113,23 @@ public class ImportComponentFactoryImpl extends ImpotentComponentFactory {
 		};
 		coreComponentPersistBuffers.add(relationshipPersistBuffer);
 
-		memberPersistBuffer = new PersistBuffer<ReferenceSetMember>() {
+		memberPersistBuffer = new PersistBuffer<ReferenceSetMember>(ReferenceSetMember.class.getSimpleName()) {
+			@Override
+			void processCollection(Collection<ReferenceSetMember> entities) {
+				processEntities(entities, patchReleaseVersion, elasticsearchTemplate, ReferenceSetMember.class, copyReleaseFields, clearEffectiveTimes, getExistingComponentIndex());
+			}
+
 			@Override
-			public void persistCollection(Collection<ReferenceSetMember> entities) {
+			void saveCollection(Collection<ReferenceSetMember> entities) {
 				if (!coreComponentsFlushed) { // Avoid having to sync to check this
-					synchronized (this) {
+					// Not synchronized on this buffer, with the pipeline enabled this runs on the save thread while another thread may hold the buffer
+					synchronized (coreComponentPersistBuffers) {
 						if (!coreComponentsFlushed) {
-							coreComponentPersistBuffers.forEach(PersistBuffer::flush);
+							flushCoreComponents();
 							coreComponentsFlushed = true;
 						}
 					}
 				}
-				processEntities(entities, patchReleaseVersion, elasticsearchTemplate, ReferenceSetMember.class, copyReleaseFields, clearEffectiveTimes);
 				if (!entities.isEmpty()) {
 					memberService.doSaveBatchMembers(entities, commit);
 				}
@@ -123,7 +143,11 @@ public class ImportComponentFactoryImpl extends ImpotentComponentFactory {
 		- Copy release fields from existing.
 	 */
 	private <T extends SnomedComponent> void processEntities(Collection<T> components, Integer patchReleaseVersion, ElasticsearchOperations elasticsearchTemplate,
-			Class<T> componentClass, boolean copyReleaseFields, boolean clearEffectiveTimes) {
+			Class<T> componentClass, boolean copyReleaseFields, boolean clearEffectiveTimes, ExistingComponentIndex existingComponentIndex) {
+
+		if (existingComponentIndex != null && !existingComponentIndex.isLoaded()) {
+			loadExistingComponentIndex(elasticsearchTemplate, componentClass, existingComponentIndex);
+		}
 
 		Map<Integer, List<T>> effectiveDateMap = new HashMap<>();
 		components.forEach(component -> {
@@ -141,34 +165,19 @@ public class ImportComponentFactoryImpl extends ImpotentComponentFactory {
 			}
 		});
 		// patchReleaseVersion=-1 is a special case which allows replacing any effectiveTime
-		if (patchReleaseVersion == null || !patchReleaseVersion.equals(-1)) {
-			for (Integer effectiveTime : new TreeSet<>(effectiveDateMap.keySet())) {
-				// Find component states with an equal or greater effective time
-				boolean replacementOfThisEffectiveTimeAllowed = patchReleaseVersion != null && patchReleaseVersion.equals(effectiveTime);
-				List<T> componentsAtDate = effectiveDateMap.get(effectiveTime);
-				String idField = componentsAtDate.get(0).getIdField();
-				AtomicInteger alreadyExistingComponentCount = new AtomicInteger();
-				try (SearchHitsIterator<T> componentsWithSameOrLaterEffectiveTime = elasticsearchTemplate.searchForStream(new NativeSearchQueryBuilder()
-						.withQuery(boolQuery()
-								.must(branchCriteriaBeforeOpenCommit.getEntityBranchCriteria(componentClass))
-								.must(termsQuery(idField, componentsAtDate.stream().map(T::getId).collect(Collectors.toList())))
-								.must(replacementOfThisEffectiveTimeAllowed ?
-										rangeQuery(SnomedComponent.Fields.EFFECTIVE_TIME).gt(effectiveTime)
-										: rangeQuery(SnomedComponent.Fields.EFFECTIVE_TIME).gte(effectiveTime)))
-						.withFields(idField)// Only fetch the id
-						.withPageable(LARGE_PAGE)
-						.build(), componentClass)) {
-					componentsWithSameOrLaterEffectiveTime.forEachRemaining(hit -> {
-						// Skip component import
-						components.remove(hit.getContent());// Compared by id only
-						alreadyExistingComponentCount.incrementAndGet();
-					});
-				}
-				componentTypeSkippedMap.computeIfAbsent(componentClass.getSimpleName(), key -> new AtomicLong()).addAndGet(alreadyExistingComponentCount.get());
+		if (!effectiveDateMap.isEmpty() && (patchReleaseVersion == null || !patchReleaseVersion.equals(-1))) {
+			if (existingComponentIndex == null && pipelineQueueSize == 0) {
+				skipExistingComponentsByEffectiveTime(components, effectiveDateMap, patchReleaseVersion, elasticsearchTemplate, componentClass);
+			} else {
+				skipExistingComponents(components, effectiveDateMap, patchReleaseVersion, elasticsearchTemplate, componentClass, existingComponentIndex);
 			}
 		}
 		if (copyReleaseFields) {
-			Map<String, T> idToUnreleasedComponentMap = components.stream().filter(component -> component.getEffectiveTime() == null).collect(Collectors.toMap(T::getId, Function.identity()));
+			Map<String, T> idToUnreleasedComponentMap = components.stream()
+					.filter(component -> component.getEffectiveTime() == null)
+					// Only fetch release details of components known to be released
+					.filter(component -> existingComponentIndex == null || existingComponentIndex.isReleased(component.getId()))
+					.collect(Collectors.toMap(T::getId, Function.identity()));
 			if (!idToUnreleasedComponentMap.isEmpty()) {
 				String idField = idToUnreleasedComponentMap.values().iterator().next().getIdField();
 				try (SearchHitsIterator<T> stream = elasticsearchTemplate.searchForStream(new NativeSearchQueryBuilder()
@@ -190,15 +199,155 @@ public class ImportComponentFactoryImpl extends ImpotentComponentFactory {
 		}
 	}
 
+	private <T extends SnomedComponent> void skipExistingComponentsByEffectiveTime(Collection<T> components, Map<Integer, List<T>> effectiveDateMap,
+			Integer patchReleaseVersion, ElasticsearchOperations elasticsearchTemplate, Class<T> componentClass) {
+
+		for (Integer effectiveTime : new TreeSet<>(effectiveDateMap.keySet())) {
+			// Find component states with an equal or greater effective time
+			boolean replacementOfThisEffectiveTimeAllowed = patchReleaseVersion != null && patchReleaseVersion.equals(effectiveTime);
+			List<T> componentsAtDate = effectiveDateMap.get(effectiveTime);
+			String idField = componentsAtDate.get(0).getIdField();
+			AtomicInteger alreadyExistingComponentCount = new AtomicInteger();
+			try (SearchHitsIterator<T> componentsWithSameOrLaterEffectiveTime = elasticsearchTemplate.searchForStream(new NativeSearchQueryBuilder()
+					.withQuery(boolQuery()
+							.must(branchCriteriaBeforeOpenCommit.getEntityBranchCriteria(componentClass))
+							.must(termsQuery(idField, componentsAtDate.stream().map(T::getId).collect(Collectors.toList())))
+							.must(replacementOfThisEffectiveTimeAllowed ?
+									rangeQuery(SnomedComponent.Fields.EFFECTIVE_TIME).gt(effectiveTime)
+									: rangeQuery(SnomedComponent.Fields.EFFECTIVE_TIME).gte(effectiveTime)))
+					.withFields(idField)// Only fetch the id
+					.withPageable(LARGE_PAGE)
+					.build(), componentClass)) {
+				componentsWithSameOrLaterEffectiveTime.forEachRemaining(hit -> {
+					// Skip component import
+					components.remove(hit.getContent());// Compared by id only
+					alreadyExistingComponentCount.incrementAndGet();
+				});
+			}
+			componentTypeSkippedMap.computeIfAbsent(componentClass.getSimpleName(), key -> new AtomicLong()).addAndGet(alreadyExistingComponentCount.get());
+		}
+	}
+
+	/**
+	 * Skips component states which are not newer than the existing version, using the existing component index or one query for all
+	 * effective times in the batch. A batch may contain several states of one component, each state is compared using its own effective time.
+	 */
+	private <T extends SnomedComponent> void skipExistingComponents(Collection<T> components, Map<Integer, List<T>> effectiveDateMap,
+			Integer patchReleaseVersion, ElasticsearchOperations elasticsearchTemplate, Class<T> componentClass, ExistingComponentIndex existingComponentIndex) {
+
+		Map<String, List<T>> idToComponentsMap = new HashMap<>();
+		effectiveDateMap.values().forEach(componentsAtDate -> componentsAtDate.forEach(component ->
+				idToComponentsMap.computeIfAbsent(component.getId(), id -> new ArrayList<>()).add(component)));
+		// Components are compared by id only so states to skip are collected by identity
+		Set<T> componentsToSkip = Collections.newSetFromMap(new IdentityHashMap<>());
+		if (existingComponentIndex != null) {
+			idToComponentsMap.forEach((id, componentStates) -> {
+				Integer existingEffectiveTime = existingComponentIndex.getEffectiveTime(id);
+				if (existingEffectiveTime != null) {
+					addComponentsToSkip(componentStates, existingEffectiveTime, patchReleaseVersion, componentsToSkip);
+				}
+			});
+		} else {
+			String idField = idToComponentsMap.values().iterator().next().get(0).getIdField();
+			Integer minEffectiveTime = Collections.min(effectiveDateMap.keySet());
+			try (SearchHitsIterator<T> componentsWithSameOrLaterEffectiveTime = elasticsearchTemplate.searchForStream(new NativeSearchQueryBuilder()
+					.withQuery(boolQuery()
+							.must(branchCriteriaBeforeOpenCommit.getEntityBranchCriteria(componentClass))
+							.must(termsQuery(idField, idToComponentsMap.keySet()))
+							.must(rangeQuery(SnomedComponent.Fields.EFFECTIVE_TIME).gte(minEffectiveTime)))
+					.withSourceFilter(new FetchSourceFilter(new String[]{idField, SnomedComponent.Fields.EFFECTIVE_TIME}, null))// Only fetch the id and effectiveTime
+					.withPageable(LARGE_PAGE)
+					.build(), componentClass)) {
+				componentsWithSameOrLaterEffectiveTime.forEachRemaining(hit -> {
+					T existing = hit.getContent();
+					addComponentsToSkip(idToComponentsMap.get(existing.getId()), existing.getEffectiveTimeI(), patchReleaseVersion, componentsToSkip);
+				});
+			}
+		}
+		if (!componentsToSkip.isEmpty()) {
+			// Skip component import
+			components.removeIf(componentsToSkip::contains);
+		}
+		componentTypeSkippedMap.computeIfAbsent(componentClass.getSimpleName(), key -> new AtomicLong()).addAndGet(componentsToSkip.size());
+	}
+
+	private static <T extends SnomedComponent> void addComponentsToSkip(List<T> componentStates, Integer existingEffectiveTime, Integer patchReleaseVersion,
+			Set<T> componentsToSkip) {
+
+		for (T componentState : componentStates) {
+			if (isExistingVersionSameOrLater(existingEffectiveTime, componentState.getEffectiveTimeI(), patchReleaseVersion)) {
+				componentsToSkip.add(componentState);
+			}
+		}
+	}
+
+	private static boolean isExistingVersionSameOrLater(Integer existingEffectiveTime, Integer effectiveTime, Integer patchReleaseVersion) {
+		boolean replacementOfThisEffectiveTimeAllowed = patchReleaseVersion != null && patchReleaseVersion.equals(effectiveTime);
+		return existingEffectiveTime > effectiveTime || (existingEffectiveTime.equals(effectiveTime) && !replacementOfThisEffectiveTimeAllowed);
+	}
+
+	private <T extends SnomedComponent> void loadExistingComponentIndex(ElasticsearchOperations elasticsearchTemplate, Class<T> componentClass,
+			ExistingComponentIndex existingComponentIndex) {
+
+		Date start = new Date();
+		String idField = getIdField(componentClass);
+		try (SearchHitsIterator<T> stream = elasticsearchTemplate.searchForStream(new NativeSearchQueryBuilder()
+				.withQuery(boolQuery()
+						.must(branchCriteriaBeforeOpenCommit.getEntityBranchCriteria(componentClass))
+						// Components without an effectiveTime which have never been released can not prevent import and have no release details to copy
+						.should(existsQuery(SnomedComponent.Fields.EFFECTIVE_TIME))
+						.should(termQuery(SnomedComponent.Fields.RELEASED, true))
+						.minimumShouldMatch(1))
+				.withSourceFilter(new FetchSourceFilter(new String[]{idField, SnomedComponent.Fields.EFFECTIVE_TIME, SnomedComponent.Fields.RELEASED}, null))
+				.withPageable(LARGE_PAGE)
+				.build(), componentClass)) {
+			stream.forEachRemaining(hit -> {
+				T existing = hit.getContent();
+				existingComponentIndex.put(existing.getId(), existing.getEffectiveTimeI(), existing.isReleased());
+			});
+		}
+		existingComponentIndex.setLoaded();
+		logger.info("Loaded effective times of {} existing {} components in {} seconds.", existingComponentIndex.size(), componentClass.getSimpleName(),
+				(new Date().getTime() - start.getTime()) / 1_000);
+	}
+
+	private static String getIdField(Class<? extends SnomedComponent> componentClass) {
+		if (componentClass == Concept.class) {
+			return Concept.Fields.CONCEPT_ID;
+		} else if (componentClass == Description.class) {
+			return Description.Fields.DESCRIPTION_ID;
+		} else if (componentClass == Relationship.class) {
+			return Relationship.Fields.RELATIONSHIP_ID;
+		}
+		return ReferenceSetMember.Fields.MEMBER_ID;
+	}
+
 	@Override
 	public void loadingComponentsStarting() {
-		commit = branchService.openCommit(path, branchMetadataHelper.getBranchLockMetadata("Loading components from RF2 import."));
-		branchCriteriaBeforeOpenCommit = versionControlHelper.getBranchCriteriaBeforeOpenCommit(commit);
+		setCommit(branchService.openCommit(path, branchMetadataHelper.getBranchLockMetadata("Loading components from RF2 import.")));
 	}
 
 	protected void setCommit(Commit commit) {
 		this.commit = commit;
 		branchCriteriaBeforeOpenCommit = versionControlHelper.getBranchCriteriaBeforeOpenCommit(commit);
+		if (pipelineQueueSize > 0) {
+			persistBuffers.forEach(PersistBuffer::startPipeline);
+		}
+	}
+
+	/**
+	 * Persist components on a lookup and a save thread per component type rather than on the thread parsing the RF2 files.
+	 * @param queueSize number of batches of each component type which can wait at each stage before parsing is held back.
+	 */
+	void enablePipeline(int queueSize) {
+		pipelineQueueSize = queueSize;
+	}
+
+	/**
+	 * Load the effective times of existing components into memory once per import rather than querying the branch for every batch.
+	 */
+	void enableExistingComponentIndex() {
+		existingComponentIndexEnabled = true;
 	}
 
 	@Override
@@ -212,9 +361,22 @@ public class ImportComponentFactoryImpl extends ImpotentComponentFactory {
 				logger.info("{} components of type {} were not imported from RF2 because a newer version was found.", componentTypeSkippedMap.get(type).get(), type);
 			}
 		}
-		persistBuffers.forEach(PersistBuffer::flush);
+		try {
+			flushCoreComponents();
+			memberPersistBuffer.flush();
+			memberPersistBuffer.awaitPipeline();
+		} finally {
+			persistBuffers.forEach(PersistBuffer::stopPipeline);
+		}
 		commit.markSuccessful();
 		commit.close();
+		persistBuffers.forEach(PersistBuffer::applyStagedComponents);
+	}
+
+	private void flushCoreComponents() {
+		coreComponentPersistBuffers.forEach(PersistBuffer::flush);
+		// Core components must be saved before any reference set members
+		coreComponentPersistBuffers.forEach(PersistBuffer::awaitPipeline);
 	}
 
 	@Override
@@ -295,11 +457,16 @@ public class ImportComponentFactoryImpl extends ImpotentComponentFactory {
 		return "1".equals(active);
 	}
 
-	private abstract class PersistBuffer<E extends Entity> {
+	private abstract class PersistBuffer<E extends SnomedComponent<E>> {
 
+		private final String componentType;
+		private final ExistingComponentIndex existingComponentIndex;
 		private List<E> entities = new ArrayList<>();
+		private PersistPipeline<E> pipeline;
 
-		PersistBuffer() {
+		PersistBuffer(String componentType) {
+			this.componentType = componentType;
+			existingComponentIndex = new ExistingComponentIndex(ReferenceSetMember.class.getSimpleName().equals(componentType));
 			persistBuffers.add(this);
 		}
 
@@ -311,11 +478,56 @@ public class ImportComponentFactoryImpl extends ImpotentComponentFactory {
 		}
 
 		synchronized void flush() {
-			persistCollection(entities);
-			entities.clear();
+			if (pipeline != null) {
+				if (!entities.isEmpty()) {
+					pipeline.submit(entities);
+					entities = new ArrayList<>();
+				}
+			} else {
+				processCollection(entities);
+				saveAndStageCollection(entities);
+				entities.clear();
+			}
+		}
+
+		synchronized void startPipeline() {
+			if (pipeline == null) {
+				pipeline = new PersistPipeline<>(componentType, pipelineQueueSize, this::processCollection, this::saveAndStageCollection);
+			}
 		}
 
-		abstract void persistCollection(Collection<E> entities);
+		void awaitPipeline() {
+			PersistPipeline<E> pipeline = this.pipeline;
+			if (pipeline != null) {
+				pipeline.awaitCompletion();
+			}
+		}
+
+		synchronized void stopPipeline() {
+			if (pipeline != null) {
+				pipeline.shutdown();
+				pipeline = null;
+			}
+		}
+
+		private void saveAndStageCollection(Collection<E> entities) {
+			saveCollection(entities);
+			if (existingComponentIndexEnabled && existingComponentIndex.isLoaded()) {
+				existingComponentIndex.stage(entities);
+			}
+		}
+
+		ExistingComponentIndex getExistingComponentIndex() {
+			return existingComponentIndexEnabled ? existingComponentIndex : null;
+		}
+
+		void applyStagedComponents() {
+			existingComponentIndex.applyStaged();
+		}
+
+		abstract void processCollection(Collection<E> entities);
+
+		abstract void saveCollection(Collection<E> entities);
 
 	}
 
@@ -11,6 +11,7 @@ import org.snomed.snowstorm.core.data.domain.CodeSystem;
 import org.snomed.snowstorm.core.data.services.*;
 import org.snomed.snowstorm.core.rf2.RF2Type;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.stereotype.Service;
 import org.springframework.web.bind.annotation.PathVariable;
@@ -47,6 +48,15 @@ public class ImportService {
 	@Autowired
 	private CodeSystemService codeSystemService;
 
+	@Value("${import.pipeline.enabled:false}")
+	private boolean pipelineEnabled;
+
+	@Value("${import.pipeline.queue-size:4}")
+	private int pipelineQueueSize;
+
+	@Value("${import.existing-component-index.enabled:false}")
+	private boolean existingComponentIndexEnabled;
+
 	private Logger logger = LoggerFactory.getLogger(getClass());
 
 	public ImportService() {
@@ -149,11 +159,22 @@ public class ImportService {
 	}
 
 	private ImportComponentFactoryImpl getImportComponentFactory(String branchPath, Integer patchReleaseVersion, boolean copyReleaseFields, boolean clearEffectiveTimes) {
-		return new ImportComponentFactoryImpl(conceptUpdateHelper, memberService, branchService, branchMetadataHelper, branchPath, patchReleaseVersion, copyReleaseFields, clearEffectiveTimes);
+		return configure(new ImportComponentFactoryImpl(conceptUpdateHelper, memberService, branchService, branchMetadataHelper, branchPath, patchReleaseVersion,
+				copyReleaseFields, clearEffectiveTimes));
 	}
 
 	private HistoryAwareComponentFactory getFullImportComponentFactory(String branchPath) {
-		return new FullImportComponentFactoryImpl(conceptUpdateHelper, memberService, branchService, branchMetadataHelper, codeSystemService, branchPath, null);
+		return configure(new FullImportComponentFactoryImpl(conceptUpdateHelper, memberService, branchService, branchMetadataHelper, codeSystemService, branchPath, null));
+	}
+
+	private <T extends ImportComponentFactoryImpl> T configure(T importComponentFactory) {
+		if (pipelineEnabled) {
+			importComponentFactory.enablePipeline(pipelineQueueSize);
+		}
+		if (existingComponentIndexEnabled) {
+			importComponentFactory.enableExistingComponentIndex();
+		}
+		return importComponentFactory;
 	}
 
 	@PreAuthorize("hasPermission('AUTHOR', #branchPath)")
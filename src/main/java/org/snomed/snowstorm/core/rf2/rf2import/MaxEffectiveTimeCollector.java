@@ -4,7 +4,7 @@ public class MaxEffectiveTimeCollector {
 
 	private Integer maxEffectiveTime;
 
-	public void add(Integer effectiveTime) {
+	public synchronized void add(Integer effectiveTime) {
 		if (maxEffectiveTime == null || maxEffectiveTime < effectiveTime) {
 			maxEffectiveTime = effectiveTime;
 		}
@@ -0,0 +1,124 @@
+package org.snomed.snowstorm.core.rf2.rf2import;
+
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * Two stage pipeline which persists batches of a single component type during an RF2 import.
+ * The lookup stage checks existing component versions, the save stage writes the batch. Each stage has one thread and a bounded queue
+ * so batches are saved in the order they were submitted while the lookup for the next batch runs alongside the save of the previous one.
+ * When the queues are full the submitting thread blocks. After the first failure remaining batches are dropped and the failure is thrown to the submitter.
+ */
+class PersistPipeline<E> {
+
+	private final String name;
+	private final Consumer<List<E>> lookupStage;
+	private final Consumer<List<E>> saveStage;
+	private final ThreadPoolExecutor lookupExecutor;
+	private final ThreadPoolExecutor saveExecutor;
+	private final Semaphore lookupPermits;
+	private final Semaphore savePermits;
+	private final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+	PersistPipeline(String name, int queueSize, Consumer<List<E>> lookupStage, Consumer<List<E>> saveStage) {
+		this.name = name;
+		this.lookupStage = lookupStage;
+		this.saveStage = saveStage;
+		// Permits bound the number of tasks waiting or running at each stage. A task releases its permit just before the thread takes the next task
+		// so queue capacity matches the permit count and the executors never reject.
+		lookupPermits = new Semaphore(queueSize + 1);
+		savePermits = new Semaphore(queueSize + 1);
+		lookupExecutor = newStageExecutor(name + "-lookup", queueSize + 1);
+		saveExecutor = newStageExecutor(name + "-save", queueSize + 1);
+	}
+
+	void submit(List<E> batch) {
+		throwIfFailed();
+		acquire(lookupPermits);
+		lookupExecutor.execute(() -> {
+			try {
+				if (failure.get() == null) {
+					lookupStage.accept(batch);
+					acquire(savePermits);
+					saveExecutor.execute(() -> {
+						try {
+							if (failure.get() == null) {
+								saveStage.accept(batch);
+							}
+						} catch (Throwable e) {
+							failure.compareAndSet(null, e);
+						} finally {
+							savePermits.release();
+						}
+					});
+				}
+			} catch (Throwable e) {
+				failure.compareAndSet(null, e);
+			} finally {
+				lookupPermits.release();
+			}
+		});
+	}
+
+	/**
+	 * Blocks until all batches submitted so far have been saved.
+	 */
+	void awaitCompletion() {
+		CompletableFuture<Void> done = new CompletableFuture<>();
+		acquire(lookupPermits);
+		lookupExecutor.execute(() -> {
+			try {
+				acquire(savePermits);
+				saveExecutor.execute(() -> {
+					savePermits.release();
+					done.complete(null);
+				});
+			} catch (Throwable e) {
+				failure.compareAndSet(null, e);
+				done.complete(null);
+			} finally {
+				lookupPermits.release();
+			}
+		});
+		try {
+			done.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while waiting for " + name + " persist pipeline.", e);
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("Failed to wait for " + name + " persist pipeline.", e.getCause());
+		}
+		throwIfFailed();
+	}
+
+	void shutdown() {
+		lookupExecutor.shutdown();
+		saveExecutor.shutdown();
+	}
+
+	private void throwIfFailed() {
+		Throwable e = failure.get();
+		if (e != null) {
+			throw new IllegalStateException("Failed to persist " + name + " components.", e);
+		}
+	}
+
+	private static void acquire(Semaphore permits) {
+		try {
+			permits.acquire();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while waiting for import queue space.", e);
+		}
+	}
+
+	private static ThreadPoolExecutor newStageExecutor(String threadName, int queueCapacity) {
+		return new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+			Thread thread = new Thread(runnable, "rf2-import-" + threadName);
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+}
@@ -0,0 +1,29 @@
+package org.snomed.snowstorm.core.util;
+
+import java.util.concurrent.ExecutionException;
+
+public class ConcurrencyUtil {
+
+	/**
+	 * Waits for the result of a task run on another thread.
+	 * A RuntimeException thrown by the task is rethrown as it is. Other failures and interruption are thrown as an IllegalStateException.
+	 * @param result Supplies the result, for example future::get or () -> completionService.take().get()
+	 * @param work Description of the work for the exception message, for example "loading concepts"
+	 */
+	public static <T> T waitForResult(TaskResult<T> result, String work) {
+		try {
+			return result.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while " + work + ".", e);
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			throw cause instanceof RuntimeException ? (RuntimeException) cause : new IllegalStateException("Failed while " + work + ".", cause);
+		}
+	}
+
+	@FunctionalInterface
+	public interface TaskResult<T> {
+		T get() throws InterruptedException, ExecutionException;
+	}
+}
@@ -3,6 +3,7 @@ package org.snomed.snowstorm.ecl;
 import com.google.common.collect.Sets;
 import it.unimi.dsi.fastutil.longs.LongArrayList;
 import it.unimi.dsi.fastutil.longs.LongComparators;
+import it.unimi.dsi.fastutil.longs.LongSet;
 import org.elasticsearch.index.query.BoolQueryBuilder;
 import org.elasticsearch.index.query.QueryBuilder;
 import org.elasticsearch.search.sort.FieldSortBuilder;
@@ -18,6 +19,7 @@ import org.springframework.data.domain.Sort;
 import org.springframework.data.elasticsearch.core.SearchHitsIterator;
 import org.springframework.data.elasticsearch.core.query.NativeSearchQueryBuilder;
 
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
 import java.util.Set;
@@ -71,21 +73,44 @@ public class ConceptSelectorHelper {
 				});
 			}
 
-			// Stream search doesn't sort for us
-			ids.sort(LongComparators.OPPOSITE_COMPARATOR);
+			return sortAndPage(ids, pageRequest);
+		}
+	}
 
-			int total = ids.size();
-			if (pageRequest != null) {
-				int fromIndex = (int) pageRequest.getOffset();
-				int toIndex = fromIndex + (pageRequest.getPageSize());
-				if (toIndex > total) {
-					toIndex = total;
-				}
-				return ids.isEmpty() || fromIndex >= total ? Page.empty() : new PageImpl<>(ids.subList(fromIndex, toIndex), pageRequest, total);
-			} else {
-				return ids.isEmpty() ? Page.empty() : new PageImpl<>(ids, PageRequest.of(0, total), total);
+	public static Page<Long> sortAndPage(List<Long> ids, PageRequest pageRequest) {
+		// Stream search doesn't sort for us
+		ids.sort(LongComparators.OPPOSITE_COMPARATOR);
+
+		int total = ids.size();
+		if (pageRequest != null) {
+			int fromIndex = (int) pageRequest.getOffset();
+			int toIndex = fromIndex + (pageRequest.getPageSize());
+			if (toIndex > total) {
+				toIndex = total;
 			}
+			return ids.isEmpty() || fromIndex >= total ? Page.empty() : new PageImpl<>(ids.subList(fromIndex, toIndex), pageRequest, total);
+		} else {
+			return ids.isEmpty() ? Page.empty() : new PageImpl<>(ids, PageRequest.of(0, total), total);
+		}
+	}
+
+	/**
+	 * Sorts the ids in the default order (descending) as primitives, only the requested page is copied into the result.
+	 */
+	public static Page<Long> sortAndPage(LongSet ids, PageRequest pageRequest) {
+		long[] sortedIds = ids.toLongArray();
+		Arrays.sort(sortedIds);
+		int total = sortedIds.length;
+		if (total == 0) {
+			return Page.empty();
+		}
+		int fromIndex = pageRequest != null ? (int) Math.min(pageRequest.getOffset(), total) : 0;
+		int toIndex = pageRequest != null ? Math.min(fromIndex + pageRequest.getPageSize(), total) : total;
+		LongArrayList page = new LongArrayList(toIndex - fromIndex);
+		for (int i = fromIndex; i < toIndex; i++) {
+			page.add(sortedIds[total - 1 - i]);
 		}
+		return new PageImpl<>(page, pageRequest != null ? pageRequest : PageRequest.of(0, total), total);
 	}
 
 	public static FieldSortBuilder getDefaultSortForQueryConcept() {
@@ -0,0 +1,244 @@
+package org.snomed.snowstorm.ecl;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import org.snomed.langauges.ecl.domain.refinement.Operator;
+import org.springframework.data.domain.Page;
+
+import java.util.*;
+import java.util.function.Supplier;
+
+/**
+ * Plan of a single ECL execution.
+ * The planning pass estimates the cardinality of each sub-expression, merges duplicate sub-expressions and orders conjunctions so that
+ * the most selective sub-expression is selected first and its results are pushed down as a concept id filter to the others.
+ * During execution the plan memoises ancestor and parent lookups of single concepts and records the timing of each step,
+ * the plan is returned to the client when an explanation is requested.
+ * A plan requested by a client holds one execution section for each ECL execution made while handling the request,
+ * each section has its own steps and memo.
+ *
+ * Estimates are fixed heuristics based on the shape of the expression, for example descendants are estimated as 10,000 times the focus.
+ * No queries are made to produce them so they do not reflect the content of the branch and the order of conjunctions is a best guess.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class ECLQueryPlan {
+
+	public static final long ALL_CONCEPTS_ESTIMATE = 1_000_000;
+	private static final long REFERENCE_SET_MEMBERS_ESTIMATE = 10_000;
+
+	private final String ecl;
+	private final boolean stated;
+	private String plan;
+	private Long estimate;
+	private Long resultCount;
+	private Long durationMillis;
+	private boolean resultCacheUsed;
+	private final List<Step> steps = new ArrayList<>();
+	private final List<ECLQueryPlan> executions = Collections.synchronizedList(new ArrayList<>());
+	private final long start = System.currentTimeMillis();
+
+	// Memo of ancestor and parent lookups, valid for the branch criteria of this execution only
+	private final Map<String, Set<Long>> hierarchyLookups = new HashMap<>();
+
+	// Memo of complete sub-expression selections, keyed by the plan string of the sub-expression
+	private final Map<String, Optional<Page<Long>>> subExpressionSelections = new HashMap<>();
+
+	public ECLQueryPlan(String ecl, boolean stated) {
+		this.ecl = ecl;
+		this.stated = stated;
+	}
+
+	/**
+	 * Starts a new section of this plan for one ECL execution.
+	 */
+	public ECLQueryPlan startExecution() {
+		ECLQueryPlan execution = new ECLQueryPlan(ecl, stated);
+		executions.add(execution);
+		return execution;
+	}
+
+	public static long estimate(Operator operator, long focusEstimate) {
+		if (operator == null) {
+			return focusEstimate;
+		}
+		switch (operator) {
+			case parentof:
+				return capped(focusEstimate * 3);
+			case ancestorof:
+			case ancestororselfof:
+				return capped(focusEstimate * 30);
+			case childof:
+				return capped(focusEstimate * 20);
+			case memberOf:
+				return REFERENCE_SET_MEMBERS_ESTIMATE;
+			default:
+				// Descendants
+				return capped(focusEstimate * 10_000);
+		}
+	}
+
+	public static long capped(long estimate) {
+		return estimate < 0 || estimate > ALL_CONCEPTS_ESTIMATE ? ALL_CONCEPTS_ESTIMATE : estimate;
+	}
+
+	public static String getOperatorSymbol(Operator operator) {
+		switch (operator) {
+			case childof:
+				return "<!";
+			case descendantof:
+				return "<";
+			case descendantorselfof:
+				return "<<";
+			case parentof:
+				return ">!";
+			case ancestorof:
+				return ">";
+			case ancestororselfof:
+				return ">>";
+			case memberOf:
+				return "^";
+			default:
+				return operator.name();
+		}
+	}
+
+	/**
+	 * Runs a selection as a step of the plan. Selections with a non-null key are only run once per execution.
+	 */
+	public Optional<Page<Long>> select(String description, String key, long estimate, Supplier<Optional<Page<Long>>> selection) {
+		if (key != null) {
+			Optional<Page<Long>> memoised = subExpressionSelections.get(key);
+			if (memoised != null) {
+				addStep("Reuse result of duplicate sub-expression " + description, estimate, memoised.map(Page::getTotalElements).orElse(null), 0L);
+				return memoised;
+			}
+		}
+		long stepStart = System.currentTimeMillis();
+		Optional<Page<Long>> page = selection.get();
+		addStep("Select " + description, estimate, page.map(Page::getTotalElements).orElse(null), System.currentTimeMillis() - stepStart);
+		if (key != null) {
+			subExpressionSelections.put(key, page);
+		}
+		return page;
+	}
+
+	/**
+	 * Returns the memoised result of an ancestor or parent lookup of a single concept, the lookup is made if not yet known.
+	 */
+	public Set<Long> lookupHierarchy(Operator operator, Long conceptId, Supplier<Set<Long>> lookup) {
+		String key = getOperatorSymbol(operator) + conceptId;
+		Set<Long> ids = hierarchyLookups.get(key);
+		if (ids == null) {
+			long stepStart = System.currentTimeMillis();
+			ids = lookup.get();
+			hierarchyLookups.put(key, ids);
+			addStep("Lookup " + key, estimate(operator, 1), (long) ids.size(), System.currentTimeMillis() - stepStart);
+		}
+		return ids;
+	}
+
+	/**
+	 * Runs an ancestor or parent lookup of many concepts as a step of the plan.
+	 */
+	public Set<Long> lookupHierarchy(Operator operator, Collection<Long> conceptIds, Supplier<Set<Long>> lookup) {
+		long stepStart = System.currentTimeMillis();
+		Set<Long> ids = lookup.get();
+		addStep("Lookup " + getOperatorSymbol(operator) + " of " + conceptIds.size() + " concepts", estimate(operator, conceptIds.size()), (long) ids.size(),
+				System.currentTimeMillis() - stepStart);
+		return ids;
+	}
+
+	public void addStep(String description) {
+		addStep(description, null, null, null);
+	}
+
+	private void addStep(String description, Long estimate, Long resultCount, Long durationMillis) {
+		steps.add(new Step(description, estimate, resultCount, durationMillis));
+	}
+
+	void complete(long resultCount) {
+		this.resultCount = resultCount;
+		durationMillis = System.currentTimeMillis() - start;
+	}
+
+	void setPlan(String plan, long estimate) {
+		this.plan = plan;
+		this.estimate = estimate;
+	}
+
+	void setResultCacheUsed(boolean resultCacheUsed) {
+		this.resultCacheUsed = resultCacheUsed;
+	}
+
+	public String getEcl() {
+		return ecl;
+	}
+
+	@JsonIgnore
+	public boolean isStated() {
+		return stated;
+	}
+
+	public String getPlan() {
+		return plan;
+	}
+
+	public Long getEstimate() {
+		return estimate;
+	}
+
+	public Long getResultCount() {
+		return resultCount;
+	}
+
+	public Long getDurationMillis() {
+		return durationMillis;
+	}
+
+	@JsonInclude(JsonInclude.Include.NON_DEFAULT)
+	public boolean isResultCacheUsed() {
+		return resultCacheUsed;
+	}
+
+	@JsonInclude(JsonInclude.Include.NON_EMPTY)
+	public List<Step> getSteps() {
+		return steps;
+	}
+
+	@JsonInclude(JsonInclude.Include.NON_EMPTY)
+	public List<ECLQueryPlan> getExecutions() {
+		return executions;
+	}
+
+	@JsonInclude(JsonInclude.Include.NON_NULL)
+	public static final class Step {
+
+		private final String description;
+		private final Long estimate;
+		private final Long resultCount;
+		private final Long durationMillis;
+
+		private Step(String description, Long estimate, Long resultCount, Long durationMillis) {
+			this.description = description;
+			this.estimate = estimate;
+			this.resultCount = resultCount;
+			this.durationMillis = durationMillis;
+		}
+
+		public String getDescription() {
+			return description;
+		}
+
+		public Long getEstimate() {
+			return estimate;
+		}
+
+		public Long getResultCount() {
+			return resultCount;
+		}
+
+		public Long getDurationMillis() {
+			return durationMillis;
+		}
+	}
+}
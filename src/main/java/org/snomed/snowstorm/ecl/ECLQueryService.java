@@ -3,6 +3,8 @@ package org.snomed.snowstorm.ecl;
 import ch.qos.logback.classic.Level;
 import io.kaicode.elasticvc.api.BranchCriteria;
 import org.elasticsearch.index.query.BoolQueryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.snomed.langauges.ecl.ECLException;
 import org.snomed.langauges.ecl.ECLQueryBuilder;
 import org.snomed.snowstorm.core.data.domain.QueryConcept;
@@ -17,6 +19,7 @@ import org.springframework.stereotype.Service;
 
 import java.util.Collection;
 import java.util.Optional;
+import java.util.concurrent.ExecutorService;
 
 @Service
 public class ECLQueryService {
@@ -27,9 +30,17 @@ public class ECLQueryService {
 	@Autowired
 	private QueryService queryService;
 
+	@Autowired
+	private ECLResultCache eclResultCache;
+
+	@Autowired
+	private ExecutorService executorService;
+
 	@Value("${timer.ecl.duration-threshold}")
 	private int eclDurationLoggingThreshold;
 
+	private final Logger logger = LoggerFactory.getLogger(getClass());
+
 	public Page<Long> selectConceptIds(String ecl, BranchCriteria branchCriteria, String path, boolean stated, PageRequest pageRequest) throws ECLException {
 		return selectConceptIds(ecl, branchCriteria, path, stated, null, pageRequest);
 	}
@@ -39,19 +50,75 @@ public class ECLQueryService {
 	}
 
 	public Page<Long> selectConceptIds(String ecl, BranchCriteria branchCriteria, String path, boolean stated, Collection<Long> conceptIdFilter, PageRequest pageRequest) throws ECLException {
+		return selectConceptIds(ecl, branchCriteria, path, stated, conceptIdFilter, pageRequest, null);
+	}
+
+	/**
+	 * @param explainPlan Optional plan, a section with the steps and timings of this execution is added to it.
+	 */
+	public Page<Long> selectConceptIds(String ecl, BranchCriteria branchCriteria, String path, boolean stated, Collection<Long> conceptIdFilter, PageRequest pageRequest,
+			ECLQueryPlan explainPlan) throws ECLException {
+
+		ECLQueryPlan plan = explainPlan != null ? explainPlan.startExecution() : new ECLQueryPlan(ecl, stated);
+		if (conceptIdFilter != null || path == null || !eclResultCache.isCacheable(pageRequest)) {
+			return doSelectConceptIds(ecl, branchCriteria, path, stated, conceptIdFilter, pageRequest, plan);
+		}
+
+		ECLResultCache.Key cacheKey = eclResultCache.getKey(ecl, path, branchCriteria, stated);
+		if (cacheKey == null) {
+			return doSelectConceptIds(ecl, branchCriteria, path, stated, null, pageRequest, plan);
+		}
+
+		Page<Long> cachedPage = eclResultCache.getPage(cacheKey, pageRequest);
+		if (cachedPage != null) {
+			plan.setResultCacheUsed(true);
+			plan.complete(cachedPage.getTotalElements());
+			return cachedPage;
+		}
+
+		Page<Long> page = doSelectConceptIds(ecl, branchCriteria, path, stated, null, pageRequest, plan);
+		if (eclResultCache.isWithinMaxResultSize(page.getTotalElements())) {
+			if (pageRequest == null) {
+				eclResultCache.put(cacheKey, page.getContent());
+			} else if (eclResultCache.startFill(cacheKey)) {
+				// Load the complete result set in the background so the request thread only pays for the requested page.
+				executorService.submit(() -> fillResultCache(ecl, branchCriteria, path, stated, cacheKey));
+			}
+		}
+		return page;
+	}
+
+	private void fillResultCache(String ecl, BranchCriteria branchCriteria, String path, boolean stated, ECLResultCache.Key cacheKey) {
+		try {
+			Page<Long> allResults = doSelectConceptIds(ecl, branchCriteria, path, stated, null, null, new ECLQueryPlan(ecl, stated));
+			eclResultCache.put(cacheKey, allResults.getContent());
+		} catch (Exception e) {
+			logger.warn("Failed to fill ECL result cache for '{}' on {}.", ecl, path, e);
+		} finally {
+			eclResultCache.endFill(cacheKey);
+		}
+	}
+
+	private Page<Long> doSelectConceptIds(String ecl, BranchCriteria branchCriteria, String path, boolean stated, Collection<Long> conceptIdFilter, PageRequest pageRequest,
+			ECLQueryPlan plan) throws ECLException {
+
 		TimerUtil eclSlowQueryTimer = getEclSlowQueryTimer();
 		SExpressionConstraint expressionConstraint = (SExpressionConstraint) eclQueryBuilder.createQuery(ecl);
 
-		// TODO: Attempt to simplify queries here.
-		// Changing something like "(id) AND (<<id OR >>id)"  to  "(id AND <<id) OR (id AND >>id)" will run in a fraction of the time because there will be no large fetches
+		// Planning pass, merges duplicate sub-expressions and attaches the plan used to order conjunctions and memoise lookups.
+		// Something like "(id) AND (<<id OR >>id)" selects the single concept first and pushes it down as a filter so there are no large fetches.
+		expressionConstraint.plan(plan);
+		plan.setPlan(expressionConstraint.toPlanString(), expressionConstraint.estimateCardinality());
 
 		Optional<Page<Long>> pageOptional = expressionConstraint.select(path, branchCriteria, stated, conceptIdFilter, pageRequest, queryService);
 		pageOptional.ifPresent(page -> eclSlowQueryTimer.checkpoint(() -> String.format("ecl:'%s', with %s results in this page.", ecl, page.getNumberOfElements())));
 
-		return pageOptional.orElseGet(() -> {
+		Page<Long> page = pageOptional.orElseGet(() -> {
 			BoolQueryBuilder query = ConceptSelectorHelper.getBranchAndStatedQuery(branchCriteria.getEntityBranchCriteria(QueryConcept.class), stated);
 			return ConceptSelectorHelper.fetchIds(query, conceptIdFilter, null, pageRequest, queryService);
 		});
+		plan.complete(page.getTotalElements());
+		return page;
 	}
 
 	private TimerUtil getEclSlowQueryTimer() {
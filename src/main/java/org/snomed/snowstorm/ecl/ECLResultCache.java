@@ -0,0 +1,220 @@
+package org.snomed.snowstorm.ecl;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.kaicode.elasticvc.api.BranchCriteria;
+import io.kaicode.elasticvc.api.CommitListener;
+import io.kaicode.elasticvc.domain.Commit;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import org.snomed.snowstorm.core.data.domain.QueryConcept;
+import org.snomed.snowstorm.core.data.services.CachingVersionControlHelper;
+import org.snomed.snowstorm.core.data.services.CachingVersionControlHelper.BranchHead;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Cache of complete ECL results, held as concept id arrays in the default result order (descending).
+ * Entries are keyed by the branch path, head and base timestamps of the criteria used. Only head criteria of unlocked branches
+ * handed out by the {@link CachingVersionControlHelper} can be cached so queries at other timepoints or within an open commit are never cached.
+ * Entries are removed when the branch or one of its ancestors receives a commit.
+ */
+@Service
+public class ECLResultCache implements CommitListener {
+
+	@Value("${ecl.result-cache.enabled:false}")
+	private boolean enabled;
+
+	@Value("${ecl.result-cache.max-result-size:100000}")
+	private int maxResultSize;
+
+	@Value("${ecl.result-cache.max-concept-ids:10000000}")
+	private long maxConceptIds;
+
+	@Autowired
+	private CachingVersionControlHelper versionControlHelper;
+
+	private Cache<Key, long[]> cache;
+
+	private final Set<Key> fillsInProgress = ConcurrentHashMap.newKeySet();
+
+	@PostConstruct
+	public void init() {
+		cache = Caffeine.newBuilder()
+				.maximumWeight(maxConceptIds)
+				.weigher((Key key, long[] conceptIds) -> conceptIds.length + 1)
+				.recordStats()
+				.build();
+	}
+
+	/**
+	 * @return True if results of a query using this page request can be served from the cache.
+	 * Only requests without a page, or in the default sort order, are supported.
+	 */
+	public boolean isCacheable(PageRequest pageRequest) {
+		return enabled && (pageRequest == null
+				|| Sort.unsorted().equals(pageRequest.getSort())
+				|| pageRequest.getSort().getOrderFor(QueryConcept.Fields.CONCEPT_ID) == null);
+	}
+
+	public boolean isWithinMaxResultSize(long resultSize) {
+		return resultSize <= maxResultSize;
+	}
+
+	/**
+	 * @return The cache key for this query or null if the branch criteria are not the head criteria of an unlocked branch version.
+	 */
+	Key getKey(String ecl, String path, BranchCriteria branchCriteria, boolean stated) {
+		BranchHead branchHead = versionControlHelper.getBranchHead(branchCriteria);
+		if (branchHead == null || !branchHead.getPath().equals(path)) {
+			// Historic or open commit criteria
+			return null;
+		}
+		return new Key(branchHead, stated, normalise(ecl));
+	}
+
+	/**
+	 * @return The page of cached results or null if the results are not cached.
+	 */
+	Page<Long> getPage(Key key, PageRequest pageRequest) {
+		long[] conceptIds = cache.getIfPresent(key);
+		if (conceptIds == null) {
+			return null;
+		}
+		return getPage(conceptIds, pageRequest);
+	}
+
+	/**
+	 * Caches the complete results of the ECL query.
+	 */
+	void put(Key key, List<Long> conceptIds) {
+		if (conceptIds.size() > maxResultSize) {
+			return;
+		}
+		cache.put(key, new LongArrayList(conceptIds).toLongArray());
+	}
+
+	/**
+	 * @return True if the caller should fill the cache entry, false if the results are already being loaded by another thread.
+	 * Callers returning true must call {@link #endFill(Key)} when done.
+	 */
+	boolean startFill(Key key) {
+		return fillsInProgress.add(key);
+	}
+
+	void endFill(Key key) {
+		fillsInProgress.remove(key);
+	}
+
+	@Override
+	public void preCommitCompletion(Commit commit) throws IllegalStateException {
+		String path = commit.getBranch().getPath();
+		String childPrefix = path + "/";
+		cache.asMap().keySet().removeIf(key -> key.branchHead.getPath().equals(path) || key.branchHead.getPath().startsWith(childPrefix));
+	}
+
+	public Map<String, Object> getStats() {
+		CacheStats stats = cache.stats();
+		Map<String, Object> statsMap = new LinkedHashMap<>();
+		statsMap.put("enabled", enabled);
+		statsMap.put("entries", cache.estimatedSize());
+		statsMap.put("fillsInProgress", fillsInProgress.size());
+		statsMap.put("conceptIds", cache.policy().eviction().map(eviction -> eviction.weightedSize().orElse(0)).orElse(0L));
+		statsMap.put("hitCount", stats.hitCount());
+		statsMap.put("missCount", stats.missCount());
+		statsMap.put("hitRate", stats.hitRate());
+		statsMap.put("evictionCount", stats.evictionCount());
+		return statsMap;
+	}
+
+	static Page<Long> getPage(long[] conceptIds, PageRequest pageRequest) {
+		int total = conceptIds.length;
+		if (total == 0) {
+			return Page.empty();
+		}
+		if (pageRequest == null) {
+			return new PageImpl<>(LongArrayList.wrap(conceptIds), PageRequest.of(0, total), total);
+		}
+		int fromIndex = (int) Math.min(pageRequest.getOffset(), total);
+		int toIndex = Math.min(fromIndex + pageRequest.getPageSize(), total);
+		return new PageImpl<>(new LongArrayList(conceptIds, fromIndex, toIndex - fromIndex), pageRequest, total);
+	}
+
+	/**
+	 * Removes terms and redundant whitespace, outside of quoted strings, so that equivalent ECL shares cache entries.
+	 */
+	static String normalise(String ecl) {
+		StringBuilder builder = new StringBuilder(ecl.length());
+		boolean inTerm = false;
+		boolean inQuote = false;
+		boolean pendingSpace = false;
+		for (int i = 0; i < ecl.length(); i++) {
+			char c = ecl.charAt(i);
+			if (inQuote) {
+				builder.append(c);
+				if (c == '"' && ecl.charAt(i - 1) != '\\') {
+					inQuote = false;
+				}
+			} else if (inTerm) {
+				if (c == '|') {
+					inTerm = false;
+				}
+			} else if (c == '|') {
+				inTerm = true;
+			} else if (Character.isWhitespace(c)) {
+				pendingSpace = builder.length() > 0;
+			} else {
+				if (pendingSpace) {
+					builder.append(' ');
+					pendingSpace = false;
+				}
+				builder.append(c);
+				if (c == '"') {
+					inQuote = true;
+				}
+			}
+		}
+		return builder.toString();
+	}
+
+	static final class Key {
+
+		private final BranchHead branchHead;
+		private final boolean stated;
+		private final String ecl;
+
+		private Key(BranchHead branchHead, boolean stated, String ecl) {
+			this.branchHead = branchHead;
+			this.stated = stated;
+			this.ecl = ecl;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (this == o) return true;
+			if (o == null || getClass() != o.getClass()) return false;
+			Key key = (Key) o;
+			return stated == key.stated &&
+					branchHead.equals(key.branchHead) &&
+					ecl.equals(key.ecl);
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(branchHead, stated, ecl);
+		}
+	}
+}
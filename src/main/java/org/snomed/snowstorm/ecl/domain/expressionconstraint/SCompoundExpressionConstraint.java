@@ -4,24 +4,27 @@ import io.kaicode.elasticvc.api.BranchCriteria;
 import org.elasticsearch.index.query.BoolQueryBuilder;
 import org.snomed.langauges.ecl.domain.expressionconstraint.CompoundExpressionConstraint;
 import org.snomed.langauges.ecl.domain.expressionconstraint.SubExpressionConstraint;
+import org.snomed.snowstorm.core.data.domain.QueryConcept;
 import org.snomed.snowstorm.core.data.services.QueryService;
+import org.snomed.snowstorm.ecl.ECLQueryPlan;
 import org.snomed.snowstorm.ecl.domain.RefinementBuilder;
 import org.snomed.snowstorm.ecl.domain.SubRefinementBuilder;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 
-import java.util.Collection;
-import java.util.List;
-import java.util.Optional;
-import java.util.Set;
+import java.util.*;
 
 import static com.google.common.collect.Sets.newHashSet;
+import static java.util.stream.Collectors.toList;
 import static java.util.stream.Collectors.toSet;
 import static org.elasticsearch.index.query.QueryBuilders.boolQuery;
+import static org.elasticsearch.index.query.QueryBuilders.termQuery;
 import static org.springframework.util.CollectionUtils.isEmpty;
 
 public class SCompoundExpressionConstraint extends CompoundExpressionConstraint implements SExpressionConstraint {
 
+	private ECLQueryPlan plan;
+
 	@Override
 	public Optional<Page<Long>> select(String path, BranchCriteria branchCriteria, boolean stated, Collection<Long> conceptIdFilter, PageRequest pageRequest, QueryService queryService) {
 		return SExpressionConstraintHelper.select(this, path, branchCriteria, stated, conceptIdFilter, pageRequest, queryService);
@@ -32,6 +35,81 @@ public class SCompoundExpressionConstraint extends CompoundExpressionConstraint
 		return SExpressionConstraintHelper.select(this, refinementBuilder);
 	}
 
+	@Override
+	public void plan(ECLQueryPlan plan) {
+		this.plan = plan;
+		// A AND A = A, A OR A = A
+		conjunctionExpressionConstraints = mergeDuplicates(conjunctionExpressionConstraints, plan);
+		disjunctionExpressionConstraints = mergeDuplicates(disjunctionExpressionConstraints, plan);
+		if (exclusionExpressionConstraint != null) {
+			((SSubExpressionConstraint) exclusionExpressionConstraint).plan(plan);
+		}
+	}
+
+	private List<SubExpressionConstraint> mergeDuplicates(List<SubExpressionConstraint> subExpressionConstraints, ECLQueryPlan plan) {
+		if (subExpressionConstraints == null) {
+			return null;
+		}
+		Set<String> planStrings = new HashSet<>();
+		List<SubExpressionConstraint> merged = new ArrayList<>();
+		for (SubExpressionConstraint subExpressionConstraint : subExpressionConstraints) {
+			SSubExpressionConstraint sSubExpressionConstraint = (SSubExpressionConstraint) subExpressionConstraint;
+			String planString = sSubExpressionConstraint.toPlanString();
+			if (planString != null && !planStrings.add(planString)) {
+				plan.addStep("Merge duplicate sub-expression " + planString);
+				continue;
+			}
+			sSubExpressionConstraint.plan(plan);
+			merged.add(subExpressionConstraint);
+		}
+		return merged;
+	}
+
+	@Override
+	public long estimateCardinality() {
+		if (!isEmpty(conjunctionExpressionConstraints)) {
+			// With exclusion the conjunction holds the single left hand side
+			return conjunctionExpressionConstraints.stream().mapToLong(this::estimateCardinality).min().orElse(ECLQueryPlan.ALL_CONCEPTS_ESTIMATE);
+		}
+		if (!isEmpty(disjunctionExpressionConstraints)) {
+			return ECLQueryPlan.capped(disjunctionExpressionConstraints.stream().mapToLong(this::estimateCardinality).sum());
+		}
+		return ECLQueryPlan.ALL_CONCEPTS_ESTIMATE;
+	}
+
+	private long estimateCardinality(SubExpressionConstraint subExpressionConstraint) {
+		return ((SSubExpressionConstraint) subExpressionConstraint).estimateCardinality();
+	}
+
+	@Override
+	public String toPlanString() {
+		String planString;
+		if (conjunctionExpressionConstraints != null) {
+			planString = toPlanString(conjunctionExpressionConstraints, " AND ");
+		} else if (disjunctionExpressionConstraints != null) {
+			planString = toPlanString(disjunctionExpressionConstraints, " OR ");
+		} else {
+			return null;
+		}
+		if (planString != null && exclusionExpressionConstraint != null) {
+			String exclusionPlanString = ((SSubExpressionConstraint) exclusionExpressionConstraint).toPlanString();
+			planString = exclusionPlanString != null ? planString + " MINUS " + exclusionPlanString : null;
+		}
+		return planString;
+	}
+
+	private String toPlanString(List<SubExpressionConstraint> subExpressionConstraints, String delimiter) {
+		List<String> planStrings = new ArrayList<>();
+		for (SubExpressionConstraint subExpressionConstraint : subExpressionConstraints) {
+			String planString = ((SSubExpressionConstraint) subExpressionConstraint).toPlanString();
+			if (planString == null) {
+				return null;
+			}
+			planStrings.add(planString);
+		}
+		return String.join(delimiter, planStrings);
+	}
+
 	@Override
 	public Set<String> getConceptIds() {
 		Set<String> conceptIds = newHashSet();
@@ -57,8 +135,12 @@ public class SCompoundExpressionConstraint extends CompoundExpressionConstraint
 
 	public void addCriteria(RefinementBuilder refinementBuilder) {
 		if (conjunctionExpressionConstraints != null) {
-			for (SubExpressionConstraint conjunctionExpressionConstraint : conjunctionExpressionConstraints) {
-				((SSubExpressionConstraint)conjunctionExpressionConstraint).addCriteria(refinementBuilder);
+			if (plan != null) {
+				addPlannedConjunctionCriteria(refinementBuilder);
+			} else {
+				for (SubExpressionConstraint conjunctionExpressionConstraint : conjunctionExpressionConstraints) {
+					((SSubExpressionConstraint)conjunctionExpressionConstraint).addCriteria(refinementBuilder);
+				}
 			}
 		}
 		if (disjunctionExpressionConstraints != null) {
@@ -76,4 +158,35 @@ public class SCompoundExpressionConstraint extends CompoundExpressionConstraint
 			((SSubExpressionConstraint)exclusionExpressionConstraint).addCriteria(new SubRefinementBuilder(refinementBuilder, mustNotQuery));
 		}
 	}
+
+	// Adds the conjunction, most selective first. The concepts selected by single concept and nested conjuncts are pushed down
+	// as a filter into the selection of the following nested conjuncts, which would otherwise be fetched in full.
+	private void addPlannedConjunctionCriteria(RefinementBuilder refinementBuilder) {
+		List<SSubExpressionConstraint> conjuncts = conjunctionExpressionConstraints.stream()
+				.map(SSubExpressionConstraint.class::cast)
+				.sorted(Comparator.comparingLong(SSubExpressionConstraint::estimateCardinality))
+				.collect(toList());
+
+		Collection<Long> selectedConceptIds = null;
+		for (SSubExpressionConstraint conjunct : conjuncts) {
+			if (selectedConceptIds != null && selectedConceptIds.isEmpty()) {
+				plan.addStep("Skip remaining conjunction, no concepts can match");
+				refinementBuilder.getQuery().must(termQuery(QueryConcept.Fields.CONCEPT_ID, SExpressionConstraintHelper.MISSING_LONG));
+				return;
+			}
+			if (conjunct.isNestedSelection()) {
+				List<Long> conceptIds = conjunct.addNestedCriteria(refinementBuilder, selectedConceptIds);
+				if (conceptIds != null) {
+					selectedConceptIds = conceptIds;
+				}
+			} else {
+				conjunct.addCriteria(refinementBuilder);
+				Long conceptId = conjunct.getSingleConceptId();
+				if (conceptId != null) {
+					selectedConceptIds = selectedConceptIds == null || selectedConceptIds.contains(conceptId) ?
+							Collections.singletonList(conceptId) : Collections.emptyList();
+				}
+			}
+		}
+	}
 }
@@ -1,13 +1,15 @@
 package org.snomed.snowstorm.ecl.domain.expressionconstraint;
 
 import io.kaicode.elasticvc.api.BranchCriteria;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import it.unimi.dsi.fastutil.longs.LongSet;
 import org.snomed.langauges.ecl.domain.expressionconstraint.DottedExpressionConstraint;
 import org.snomed.langauges.ecl.domain.expressionconstraint.SubExpressionConstraint;
 import org.snomed.snowstorm.core.data.services.QueryService;
-import org.snomed.snowstorm.core.util.PageHelper;
+import org.snomed.snowstorm.ecl.ConceptSelectorHelper;
+import org.snomed.snowstorm.ecl.ECLQueryPlan;
 import org.snomed.snowstorm.ecl.domain.RefinementBuilder;
 import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Slice;
 
@@ -23,28 +25,27 @@ public class SDottedExpressionConstraint extends DottedExpressionConstraint impl
 
 	@Override
 	public Optional<Page<Long>> select(String path, BranchCriteria branchCriteria, boolean stated, Collection<Long> conceptIdFilter, PageRequest pageRequest, QueryService queryService) {
-		Optional<Page<Long>> conceptIds = SExpressionConstraintHelper.select(this, path, branchCriteria, stated, conceptIdFilter, null, queryService);
+		// The concept id filter applies to the final attribute values, not the focus concepts
+		Optional<Page<Long>> focusConceptIds = SExpressionConstraintHelper.select(this, path, branchCriteria, stated, null, null, queryService);
 
-		if (!conceptIds.isPresent()) {
+		if (!focusConceptIds.isPresent()) {
 			throw new UnsupportedOperationException("Dotted expression using wildcard focus concept is not supported.");
 		}
 
-		for (SubExpressionConstraint dottedAttribute : dottedAttributes) {
-			Optional<Page<Long>> attributeTypeIdsOptional = ((SSubExpressionConstraint)dottedAttribute).select(path, branchCriteria, stated, conceptIdFilter, null, queryService);
+		LongSet destinationFilter = conceptIdFilter != null ? new LongOpenHashSet(conceptIdFilter) : null;
+		Collection<Long> sourceConceptIds = focusConceptIds.get().getContent();
+		LongSet conceptIds = new LongOpenHashSet();
+		for (Iterator<SubExpressionConstraint> iterator = dottedAttributes.iterator(); iterator.hasNext() && !sourceConceptIds.isEmpty(); ) {
+			SubExpressionConstraint dottedAttribute = iterator.next();
+			Optional<Page<Long>> attributeTypeIdsOptional = ((SSubExpressionConstraint)dottedAttribute).select(path, branchCriteria, stated, null, null, queryService);
 			List<Long> attributeTypeIds = attributeTypeIdsOptional.map(Slice::getContent).orElse(null);
-			// XXX Note that this content is not paginated
-			List<Long> idList = new ArrayList<>(queryService.findRelationshipDestinationIds(conceptIds.get().getContent(), attributeTypeIds, branchCriteria, stated));
-			conceptIds = Optional.of(new PageImpl<>(idList));
-		}
-
-		// Manually apply pagination
-		if (pageRequest != null) {
-			List<Long> content = conceptIds.get().getContent();
-			List<Long> pageOfContent = PageHelper.subList(content, pageRequest.getPageNumber(), pageRequest.getPageSize());
-			conceptIds = Optional.of(new PageImpl<>(pageOfContent, pageRequest, content.size()));
+			// Values are streamed into a primitive set, the filter is applied as values are collected for the last attribute
+			conceptIds = queryService.findRelationshipDestinationIds(sourceConceptIds, attributeTypeIds, branchCriteria, stated, iterator.hasNext() ? null : destinationFilter);
+			sourceConceptIds = conceptIds;
 		}
 
-		return conceptIds;
+		// Only the requested page is boxed
+		return Optional.of(ConceptSelectorHelper.sortAndPage(conceptIds, pageRequest));
 	}
 
 	@Override
@@ -52,6 +53,25 @@ public class SDottedExpressionConstraint extends DottedExpressionConstraint impl
 		return select(refinementBuilder.getPath(), refinementBuilder.getBranchCriteria(), refinementBuilder.isStated(), null, null, refinementBuilder.getQueryService());
 	}
 
+	@Override
+	public void plan(ECLQueryPlan plan) {
+		((SSubExpressionConstraint) subExpressionConstraint).plan(plan);
+		for (SubExpressionConstraint dottedAttribute : dottedAttributes) {
+			((SSubExpressionConstraint) dottedAttribute).plan(plan);
+		}
+	}
+
+	@Override
+	public long estimateCardinality() {
+		return ((SSubExpressionConstraint) subExpressionConstraint).estimateCardinality();
+	}
+
+	@Override
+	public String toPlanString() {
+		// Not compared
+		return null;
+	}
+
 	@Override
 	public Set<String> getConceptIds() {
 		Set<String> conceptIds = newHashSet();
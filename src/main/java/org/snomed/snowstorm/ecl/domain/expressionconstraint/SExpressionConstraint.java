@@ -2,6 +2,7 @@ package org.snomed.snowstorm.ecl.domain.expressionconstraint;
 
 import io.kaicode.elasticvc.api.BranchCriteria;
 import org.snomed.snowstorm.core.data.services.QueryService;
+import org.snomed.snowstorm.ecl.ECLQueryPlan;
 import org.snomed.snowstorm.ecl.domain.RefinementBuilder;
 import org.snomed.snowstorm.ecl.domain.SRefinement;
 import org.springframework.data.domain.Page;
@@ -15,4 +16,17 @@ public interface SExpressionConstraint extends SRefinement {
 	Optional<Page<Long>> select(String path, BranchCriteria branchCriteria, boolean stated, Collection<Long> conceptIdFilter, PageRequest pageRequest, QueryService queryService);
 
 	Optional<Page<Long>> select(RefinementBuilder refinementBuilder);
+
+	/**
+	 * Planning pass, run once before selection. Attaches the plan to this constraint and its nested constraints,
+	 * merging duplicate sub-expressions on the way. Constraints without a plan are selected as written.
+	 */
+	void plan(ECLQueryPlan plan);
+
+	long estimateCardinality();
+
+	/**
+	 * @return Normalised form of the constraint used to recognise duplicate sub-expressions or null if the constraint can not be compared.
+	 */
+	String toPlanString();
 }
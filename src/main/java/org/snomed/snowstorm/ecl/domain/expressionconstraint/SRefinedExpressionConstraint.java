@@ -5,6 +5,7 @@ import org.snomed.langauges.ecl.domain.expressionconstraint.RefinedExpressionCon
 import org.snomed.langauges.ecl.domain.expressionconstraint.SubExpressionConstraint;
 import org.snomed.langauges.ecl.domain.refinement.EclRefinement;
 import org.snomed.snowstorm.core.data.services.QueryService;
+import org.snomed.snowstorm.ecl.ECLQueryPlan;
 import org.snomed.snowstorm.ecl.domain.RefinementBuilder;
 import org.snomed.snowstorm.ecl.domain.refinement.SEclRefinement;
 import org.springframework.data.domain.Page;
@@ -30,6 +31,22 @@ public class SRefinedExpressionConstraint extends RefinedExpressionConstraint im
 		return SExpressionConstraintHelper.select(this, refinementBuilder);
 	}
 
+	@Override
+	public void plan(ECLQueryPlan plan) {
+		((SSubExpressionConstraint) subexpressionConstraint).plan(plan);
+	}
+
+	@Override
+	public long estimateCardinality() {
+		return ((SSubExpressionConstraint) subexpressionConstraint).estimateCardinality();
+	}
+
+	@Override
+	public String toPlanString() {
+		// Not compared
+		return null;
+	}
+
 	@Override
 	public Set<String> getConceptIds() {
 		Set<String> conceptIds = newHashSet();
@@ -1,21 +1,30 @@
 package org.snomed.snowstorm.ecl.domain.expressionconstraint;
 
 import io.kaicode.elasticvc.api.BranchCriteria;
-import it.unimi.dsi.fastutil.longs.LongArraySet;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import it.unimi.dsi.fastutil.longs.LongSet;
 import org.elasticsearch.index.query.BoolQueryBuilder;
 import org.elasticsearch.index.query.QueryBuilders;
 import org.snomed.langauges.ecl.domain.expressionconstraint.ExpressionConstraint;
 import org.snomed.langauges.ecl.domain.expressionconstraint.SubExpressionConstraint;
 import org.snomed.langauges.ecl.domain.refinement.Operator;
+import org.snomed.snowstorm.core.data.domain.Concept;
 import org.snomed.snowstorm.core.data.domain.Concepts;
 import org.snomed.snowstorm.core.data.domain.QueryConcept;
 import org.snomed.snowstorm.core.data.services.QueryService;
+import org.snomed.snowstorm.core.data.services.transitiveclosure.HierarchySnapshot;
+import org.snomed.snowstorm.ecl.ConceptSelectorHelper;
+import org.snomed.snowstorm.ecl.ECLQueryPlan;
 import org.snomed.snowstorm.ecl.domain.RefinementBuilder;
 import org.snomed.snowstorm.ecl.domain.SubRefinementBuilder;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.elasticsearch.core.SearchAfterPageRequest;
 
 import java.util.*;
+import java.util.function.Supplier;
 
 import static com.google.common.collect.Sets.newHashSet;
 import static java.lang.Long.parseLong;
@@ -23,6 +32,8 @@ import static org.elasticsearch.index.query.QueryBuilders.*;
 
 public class SSubExpressionConstraint extends SubExpressionConstraint implements SExpressionConstraint {
 
+	private ECLQueryPlan plan;
+
 	public SSubExpressionConstraint(Operator operator) {
 		super(operator);
 	}
@@ -32,6 +43,10 @@ public class SSubExpressionConstraint extends SubExpressionConstraint implements
 		if (isUnconstrained()) {
 			return Optional.empty();
 		}
+		Optional<Page<Long>> hierarchySnapshotPage = selectUsingHierarchySnapshot(path, branchCriteria, stated, conceptIdFilter, pageRequest, queryService);
+		if (hierarchySnapshotPage.isPresent()) {
+			return hierarchySnapshotPage;
+		}
 		return SExpressionConstraintHelper.select(this, path, branchCriteria, stated, conceptIdFilter, pageRequest, queryService);
 	}
 
@@ -44,9 +59,124 @@ public class SSubExpressionConstraint extends SubExpressionConstraint implements
 		if (isUnconstrained()) {
 			return Optional.empty();
 		}
+		Optional<Page<Long>> hierarchySnapshotPage = selectUsingHierarchySnapshot(refinementBuilder.getPath(), refinementBuilder.getBranchCriteria(),
+				refinementBuilder.isStated(), null, null, refinementBuilder.getQueryService());
+		if (hierarchySnapshotPage.isPresent()) {
+			return hierarchySnapshotPage;
+		}
 		return SExpressionConstraintHelper.select(this, refinementBuilder);
 	}
 
+	// Answers a hierarchy operator on a single concept from memory, without any Elasticsearch round trip.
+	private Optional<Page<Long>> selectUsingHierarchySnapshot(String path, BranchCriteria branchCriteria, boolean stated, Collection<Long> conceptIdFilter,
+			PageRequest pageRequest, QueryService queryService) {
+
+		if (conceptId == null || operator == null || operator == Operator.memberOf || !isDefaultOrder(pageRequest)) {
+			return Optional.empty();
+		}
+		HierarchySnapshot hierarchySnapshot = queryService.findHierarchySnapshot(path, branchCriteria, stated);
+		if (hierarchySnapshot == null) {
+			return Optional.empty();
+		}
+		long id = parseLong(conceptId);
+		LongSet conceptIds;
+		switch (operator) {
+			case childof:
+				conceptIds = hierarchySnapshot.getChildren(id);
+				break;
+			case descendantof:
+				conceptIds = hierarchySnapshot.getDescendants(Collections.singleton(id));
+				break;
+			case descendantorselfof:
+				conceptIds = hierarchySnapshot.getDescendants(Collections.singleton(id));
+				if (hierarchySnapshot.contains(id)) {
+					conceptIds.add(id);
+				}
+				break;
+			case parentof:
+				conceptIds = hierarchySnapshot.getParents(id);
+				break;
+			case ancestorof:
+				conceptIds = hierarchySnapshot.getAncestors(Collections.singleton(id));
+				break;
+			case ancestororselfof:
+				conceptIds = hierarchySnapshot.getAncestors(Collections.singleton(id));
+				if (hierarchySnapshot.contains(id)) {
+					conceptIds.add(id);
+				}
+				break;
+			default:
+				return Optional.empty();
+		}
+		if (conceptIdFilter != null) {
+			conceptIds.retainAll(new LongOpenHashSet(conceptIdFilter));
+		}
+		return Optional.of(ConceptSelectorHelper.sortAndPage(new LongArrayList(conceptIds), pageRequest));
+	}
+
+	// Pages from the snapshot are in the default order, concept id descending. Any other order, or search after paging, is left to Elasticsearch.
+	private static boolean isDefaultOrder(PageRequest pageRequest) {
+		if (pageRequest == null) {
+			return true;
+		}
+		if (pageRequest instanceof SearchAfterPageRequest) {
+			return false;
+		}
+		for (Sort.Order order : pageRequest.getSort()) {
+			if (order.isAscending() || !(order.getProperty().equals(QueryConcept.Fields.CONCEPT_ID) || order.getProperty().equals(Concept.Fields.CONCEPT_ID))) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	@Override
+	public void plan(ECLQueryPlan plan) {
+		this.plan = plan;
+		if (nestedExpressionConstraint != null) {
+			((SExpressionConstraint) nestedExpressionConstraint).plan(plan);
+		}
+	}
+
+	@Override
+	public long estimateCardinality() {
+		if (wildcard) {
+			return operator == Operator.memberOf ? ECLQueryPlan.estimate(operator, ECLQueryPlan.ALL_CONCEPTS_ESTIMATE) : ECLQueryPlan.ALL_CONCEPTS_ESTIMATE;
+		}
+		long focusEstimate = conceptId != null ? 1 : ((SExpressionConstraint) nestedExpressionConstraint).estimateCardinality();
+		return ECLQueryPlan.estimate(operator, focusEstimate);
+	}
+
+	@Override
+	public String toPlanString() {
+		StringBuilder builder = new StringBuilder();
+		if (operator != null) {
+			builder.append(ECLQueryPlan.getOperatorSymbol(operator)).append(" ");
+		}
+		if (conceptId != null) {
+			builder.append(conceptId);
+		} else if (wildcard) {
+			builder.append("*");
+		} else {
+			String nestedPlanString = ((SExpressionConstraint) nestedExpressionConstraint).toPlanString();
+			if (nestedPlanString == null) {
+				return null;
+			}
+			builder.append("(").append(nestedPlanString).append(")");
+		}
+		return builder.toString();
+	}
+
+	// A single concept without operator selects at most that concept
+	Long getSingleConceptId() {
+		return conceptId != null && operator == null ? parseLong(conceptId) : null;
+	}
+
+	// A bracketed expression without operator, the nested expression is selected before the rest of the query runs
+	boolean isNestedSelection() {
+		return nestedExpressionConstraint != null && operator == null;
+	}
+
 	@Override
 	public Set<String> getConceptIds() {
 		Set<String> conceptIds = newHashSet();
@@ -77,24 +207,7 @@ public class SSubExpressionConstraint extends SubExpressionConstraint implements
 				query.must(QueryBuilders.termQuery(QueryConcept.Fields.CONCEPT_ID, conceptId));
 			}
 		} else if (nestedExpressionConstraint != null) {
-			Optional<Page<Long>> conceptIdsOptional = ((SExpressionConstraint)nestedExpressionConstraint).select(refinementBuilder);
-			if (!conceptIdsOptional.isPresent()) {
-				return;
-			}
-			List<Long> conceptIds = conceptIdsOptional.get().getContent();
-			if (conceptIds.isEmpty()) {
-				// Attribute type is not a wildcard but empty selection
-				// Force query to return nothing
-				conceptIds = Collections.singletonList(SExpressionConstraintHelper.MISSING_LONG);
-			}
-			BoolQueryBuilder filterQuery = boolQuery();
-			query.filter(filterQuery);
-			if (operator != null) {
-				SubRefinementBuilder filterRefinementBuilder = new SubRefinementBuilder(refinementBuilder, filterQuery);
-				applyConceptCriteriaWithOperator(conceptIds, operator, filterRefinementBuilder);
-			} else {
-				filterQuery.must(termsQuery(QueryConcept.Fields.CONCEPT_ID, conceptIds));
-			}
+			addNestedCriteria(refinementBuilder, null);
 		} else if (operator == Operator.memberOf) {
 			// Member of wildcard (any reference set)
 			query.must(termsQuery(QueryConcept.Fields.CONCEPT_ID, refinementBuilder.getQueryService().findConceptIdsInReferenceSet(refinementBuilder.getBranchCriteria(), null)));
@@ -110,6 +223,52 @@ public class SSubExpressionConstraint extends SubExpressionConstraint implements
 		// Else Wildcard! which has no constraints
 	}
 
+	/**
+	 * Selects the nested expression and adds the results as criteria.
+	 * @param conceptIdFilter Concepts already known to be the only possible results, pushed down into the nested selection. Only used without an operator.
+	 * @return The selected concept ids, filtered by conceptIdFilter, or null if the nested expression is unconstrained.
+	 */
+	List<Long> addNestedCriteria(RefinementBuilder refinementBuilder, Collection<Long> conceptIdFilter) {
+		if (operator != null) {
+			conceptIdFilter = null;
+		}
+		Optional<Page<Long>> conceptIdsOptional = selectNested(refinementBuilder, conceptIdFilter);
+		if (!conceptIdsOptional.isPresent()) {
+			return null;
+		}
+		List<Long> conceptIds = conceptIdsOptional.get().getContent();
+		List<Long> selectedConceptIds = conceptIds;
+		if (conceptIds.isEmpty()) {
+			// Attribute type is not a wildcard but empty selection
+			// Force query to return nothing
+			conceptIds = Collections.singletonList(SExpressionConstraintHelper.MISSING_LONG);
+		}
+		BoolQueryBuilder filterQuery = boolQuery();
+		refinementBuilder.getQuery().filter(filterQuery);
+		if (operator != null) {
+			SubRefinementBuilder filterRefinementBuilder = new SubRefinementBuilder(refinementBuilder, filterQuery);
+			applyConceptCriteriaWithOperator(conceptIds, operator, filterRefinementBuilder);
+		} else {
+			filterQuery.must(termsQuery(QueryConcept.Fields.CONCEPT_ID, conceptIds));
+		}
+		return selectedConceptIds;
+	}
+
+	private Optional<Page<Long>> selectNested(RefinementBuilder refinementBuilder, Collection<Long> conceptIdFilter) {
+		SExpressionConstraint nested = (SExpressionConstraint) nestedExpressionConstraint;
+		if (plan == null) {
+			return nested.select(refinementBuilder);
+		}
+		String nestedPlanString = nested.toPlanString();
+		String description = "(" + (nestedPlanString != null ? nestedPlanString : nested.getClass().getSimpleName()) + ")";
+		if (conceptIdFilter != null) {
+			return plan.select(description + " within " + conceptIdFilter.size() + " concepts", null, Math.min(conceptIdFilter.size(), nested.estimateCardinality()),
+					() -> nested.select(refinementBuilder.getPath(), refinementBuilder.getBranchCriteria(), refinementBuilder.isStated(), conceptIdFilter, null,
+							refinementBuilder.getQueryService()));
+		}
+		return plan.select(description, nestedPlanString, nested.estimateCardinality(), () -> nested.select(refinementBuilder));
+	}
+
 	private void applyConceptCriteriaWithOperator(Collection<Long> conceptIds, Operator operator, RefinementBuilder refinementBuilder) {
 		BoolQueryBuilder query = refinementBuilder.getQuery();
 		QueryService queryService = refinementBuilder.getQueryService();
@@ -134,10 +293,8 @@ public class SSubExpressionConstraint extends SubExpressionConstraint implements
 				query.must(termsQuery(QueryConcept.Fields.ANCESTORS, conceptIds));
 				break;
 			case parentof:
-				for (Long conceptId : conceptIds) {
-					Set<Long> parents = queryService.findParentIds(branchCriteria, stated, conceptId.toString());
-					query.must(termsQuery(QueryConcept.Fields.CONCEPT_ID, parents));
-				}
+				Set<Long> allParents = retrieveAllParents(conceptIds, branchCriteria, path, stated, queryService);
+				query.must(termsQuery(QueryConcept.Fields.CONCEPT_ID, allParents));
 				break;
 			case ancestororselfof:
 				Set<Long> allAncestors = retrieveAllAncestors(conceptIds, branchCriteria, path, stated, queryService);
@@ -160,11 +317,41 @@ public class SSubExpressionConstraint extends SubExpressionConstraint implements
 	}
 
 	private Set<Long> retrieveAllAncestors(Collection<Long> conceptIds, BranchCriteria branchCriteria, String path, boolean stated, QueryService queryService) {
-		Set<Long> allAncestors = new LongArraySet();
-		for (Long conceptId : conceptIds) {
-			allAncestors.addAll(queryService.findAncestorIds(branchCriteria, path, stated, conceptId.toString()));
+		HierarchySnapshot hierarchySnapshot = queryService.findHierarchySnapshot(path, branchCriteria, stated);
+		if (hierarchySnapshot != null) {
+			return hierarchySnapshot.getAncestors(conceptIds);
+		}
+		if (conceptIds.size() == 1) {
+			Long conceptId = conceptIds.iterator().next();
+			return lookupHierarchy(Operator.ancestorof, conceptId, () -> queryService.findAncestorIds(branchCriteria, path, stated, conceptId.toString()));
 		}
-		return allAncestors;
+		// Set at a time rather than a query per concept
+		return lookupHierarchy(Operator.ancestorof, conceptIds, () -> queryService.findAncestorIdsAsUnion(branchCriteria, stated, conceptIds));
+	}
+
+	private Set<Long> retrieveAllParents(Collection<Long> conceptIds, BranchCriteria branchCriteria, String path, boolean stated, QueryService queryService) {
+		HierarchySnapshot hierarchySnapshot = queryService.findHierarchySnapshot(path, branchCriteria, stated);
+		if (hierarchySnapshot != null) {
+			LongSet allParents = new LongOpenHashSet();
+			for (Long conceptId : conceptIds) {
+				allParents.addAll(hierarchySnapshot.getParents(conceptId));
+			}
+			return allParents;
+		}
+		if (conceptIds.size() == 1) {
+			Long conceptId = conceptIds.iterator().next();
+			return lookupHierarchy(Operator.parentof, conceptId, () -> queryService.findParentIds(branchCriteria, stated, conceptId.toString()));
+		}
+		return lookupHierarchy(Operator.parentof, conceptIds, () -> queryService.findParentIdsAsUnion(branchCriteria, stated, conceptIds));
+	}
+
+	// Lookups of the same concept are only made once per planned execution
+	private Set<Long> lookupHierarchy(Operator operator, Long conceptId, Supplier<Set<Long>> lookup) {
+		return plan != null ? plan.lookupHierarchy(operator, conceptId, lookup) : lookup.get();
+	}
+
+	private Set<Long> lookupHierarchy(Operator operator, Collection<Long> conceptIds, Supplier<Set<Long>> lookup) {
+		return plan != null ? plan.lookupHierarchy(operator, conceptIds, lookup) : lookup.get();
 	}
 
 }
@@ -1,6 +1,11 @@
 package org.snomed.snowstorm.mrcm;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import io.kaicode.elasticvc.api.BranchCriteria;
+import io.kaicode.elasticvc.api.BranchService;
+import io.kaicode.elasticvc.api.VersionControlHelper;
+import io.kaicode.elasticvc.domain.Branch;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.snomed.langauges.ecl.ECLQueryBuilder;
@@ -31,8 +36,51 @@ public class MRCMLoader {
 	@Autowired
 	private ReferenceSetMemberService memberService;
 
+	@Autowired
+	private BranchService branchService;
+
+	@Autowired
+	private VersionControlHelper versionControlHelper;
+
+	// MRCM of the head of each branch, removed by MRCMUpdateService when a commit changes MRCM reference set members
+	private final Cache<String, BranchMRCM> branchHeadMRCMCache = Caffeine.newBuilder().maximumSize(1_000).build();
+
 	private static Logger logger = LoggerFactory.getLogger(MRCMLoader.class);
 
+	/**
+	 * Returns the active MRCM at the head of the branch, loaded from the cache where possible.
+	 * A cached MRCM is used until the branch is rebased or a commit changes the MRCM reference sets on the branch or one of its ancestors.
+	 */
+	MRCM loadActiveMRCMFromCache(String branchPath) throws ServiceException {
+		Branch branch = branchService.findLatest(branchPath);
+		BranchMRCM cached = branchHeadMRCMCache.getIfPresent(branchPath);
+		if (cached != null && cached.baseTimestamp == branch.getBaseTimestamp()) {
+			return cached.mrcm;
+		}
+		MRCM mrcm = loadActiveMRCM(branchPath, versionControlHelper.getBranchCriteria(branch));
+		if (!branch.isLocked()) {
+			// Only cache if no commit started or landed on the branch while loading, the commit may have changed the MRCM after eviction.
+			// Checked after the put so that an eviction between the check and the put can not be missed.
+			BranchMRCM entry = new BranchMRCM(mrcm, branch.getBaseTimestamp());
+			branchHeadMRCMCache.put(branchPath, entry);
+			Branch latest = branchService.findLatest(branchPath);
+			if (latest.isLocked() || latest.getHeadTimestamp() != branch.getHeadTimestamp()) {
+				branchHeadMRCMCache.asMap().remove(branchPath, entry);
+			}
+		}
+		return mrcm;
+	}
+
+	boolean isCachedOnBranchOrChildren(String branchPath) {
+		String childPrefix = branchPath + "/";
+		return branchHeadMRCMCache.asMap().keySet().stream().anyMatch(path -> path.equals(branchPath) || path.startsWith(childPrefix));
+	}
+
+	void evictCache(String branchPath) {
+		String childPrefix = branchPath + "/";
+		branchHeadMRCMCache.asMap().keySet().removeIf(path -> path.equals(branchPath) || path.startsWith(childPrefix));
+	}
+
 	// TODO: Make this work for MRCM extensions. Ask Guillermo how he is extending the MRCM in Extensions TermMed are maintaining.
 	MRCM loadActiveMRCM(String branchPath, BranchCriteria branchCriteria) throws ServiceException {
 		TimerUtil timer = new TimerUtil("MRCM");
@@ -130,4 +178,14 @@ public class MRCMLoader {
 		return null;
 	}
 
+	private static final class BranchMRCM {
+
+		private final MRCM mrcm;
+		private final long baseTimestamp;
+
+		private BranchMRCM(MRCM mrcm, long baseTimestamp) {
+			this.mrcm = mrcm;
+			this.baseTimestamp = baseTimestamp;
+		}
+	}
 }
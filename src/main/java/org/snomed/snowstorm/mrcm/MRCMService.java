@@ -65,7 +65,7 @@ public class MRCMService {
 			allAncestors.addAll(parentIds);
 
 			// Load MRCM using active records applicable to this branch
-			MRCM branchMRCM = mrcmLoader.loadActiveMRCM(branchPath, branchCriteria);
+			MRCM branchMRCM = mrcmLoader.loadActiveMRCMFromCache(branchPath);
 
 			// Find matching domains
 			Set<Domain> matchedDomains = branchMRCM.getDomains().stream().filter(domain -> {
@@ -82,9 +82,10 @@ public class MRCMService {
 			Set<String> domainReferenceComponents = matchedDomains.stream().map(Domain::getReferencedComponentId).collect(Collectors.toSet());
 
 			// Find applicable attributes
-			attributeDomains.addAll(branchMRCM.getAttributeDomains().stream()
-					.filter(attributeDomain -> attributeDomain.getContentType().ruleAppliesToContentType(contentType)
-							&& domainReferenceComponents.contains(attributeDomain.getDomainId())).collect(Collectors.toList()));
+			for (String domainReferenceComponent : domainReferenceComponents) {
+				attributeDomains.addAll(branchMRCM.getAttributeDomainsByDomainId(domainReferenceComponent).stream()
+						.filter(attributeDomain -> attributeDomain.getContentType().ruleAppliesToContentType(contentType)).collect(Collectors.toList()));
+			}
 		}
 
 		Set<String> attributeIds = attributeDomains.stream().map(AttributeDomain::getReferencedComponentId).collect(Collectors.toSet());
@@ -108,18 +109,15 @@ public class MRCMService {
 	}
 
 	public Collection<ConceptMini> retrieveAttributeValues(ContentType contentType, String attributeId, String termPrefix, String branchPath, List<LanguageDialect> languageDialects) throws ServiceException {
-		BranchCriteria branchCriteria = versionControlHelper.getBranchCriteria(branchPath);
-
-		MRCM branchMRCM = mrcmLoader.loadActiveMRCM(branchPath, branchCriteria);
+		MRCM branchMRCM = mrcmLoader.loadActiveMRCMFromCache(branchPath);
 
 		Set<AttributeRange> attributeRanges;
 		if (Concepts.ISA.equals(attributeId)) {
 			attributeRanges = Collections.singleton(IS_A_ATTRIBUTE_RANGE);
 		} else {
-			attributeRanges = branchMRCM.getAttributeRanges().stream()
+			attributeRanges = branchMRCM.getAttributeRangesByAttributeId(attributeId).stream()
 					.filter(attributeRange -> attributeRange.getContentType().ruleAppliesToContentType(contentType)
-							&& attributeRange.getRuleStrength() == RuleStrength.MANDATORY
-							&& attributeRange.getReferencedComponentId().equals(attributeId)).collect(Collectors.toSet());
+							&& attributeRange.getRuleStrength() == RuleStrength.MANDATORY).collect(Collectors.toSet());
 		}
 
 		if (attributeRanges.isEmpty()) {
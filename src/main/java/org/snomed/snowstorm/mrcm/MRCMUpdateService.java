@@ -62,6 +62,11 @@ public class MRCMUpdateService extends ComponentService implements CommitListene
 
 	@Override
 	public void preCommitCompletion(Commit commit) throws IllegalStateException {
+		// Evict cached MRCM for any commit type, including imports where auto update is disabled, rebase and promotion
+		String path = commit.getBranch().getPath();
+		if (mrcmLoader.isCachedOnBranchOrChildren(path) && !getMRCMRefsetComponentsChanged(commit).isEmpty()) {
+			mrcmLoader.evictCache(path);
+		}
 		 boolean isMRCMAutoUpdatedDisabled = commit.getBranch().getMetadata() != null
 				&& "true".equals(commit.getBranch().getMetadata().get(DISABLE_MRCM_AUTO_UPDATE_METADATA_KEY));
 		if (isMRCMAutoUpdatedDisabled) {
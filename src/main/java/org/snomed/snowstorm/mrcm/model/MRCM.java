@@ -1,6 +1,6 @@
 package org.snomed.snowstorm.mrcm.model;
 
-import java.util.List;
+import java.util.*;
 
 public class MRCM {
 
@@ -8,10 +8,22 @@ public class MRCM {
 	private final List<AttributeDomain> attributeDomains;
 	private final List<AttributeRange> attributeRanges;
 
+	// Indexes built once so that cached models can be queried without scanning every rule
+	private final Map<String, List<AttributeDomain>> attributeDomainsByDomainId;
+	private final Map<String, List<AttributeRange>> attributeRangesByAttributeId;
+
 	public MRCM(List<Domain> domains, List<AttributeDomain> attributeDomains, List<AttributeRange> attributeRanges) {
 		this.domains = domains;
 		this.attributeDomains = attributeDomains;
 		this.attributeRanges = attributeRanges;
+		attributeDomainsByDomainId = new HashMap<>();
+		for (AttributeDomain attributeDomain : attributeDomains) {
+			attributeDomainsByDomainId.computeIfAbsent(attributeDomain.getDomainId(), id -> new ArrayList<>()).add(attributeDomain);
+		}
+		attributeRangesByAttributeId = new HashMap<>();
+		for (AttributeRange attributeRange : attributeRanges) {
+			attributeRangesByAttributeId.computeIfAbsent(attributeRange.getReferencedComponentId(), id -> new ArrayList<>()).add(attributeRange);
+		}
 	}
 
 	public List<Domain> getDomains() {
@@ -25,4 +37,12 @@ public class MRCM {
 	public List<AttributeRange> getAttributeRanges() {
 		return attributeRanges;
 	}
+
+	public List<AttributeDomain> getAttributeDomainsByDomainId(String domainId) {
+		return attributeDomainsByDomainId.getOrDefault(domainId, Collections.emptyList());
+	}
+
+	public List<AttributeRange> getAttributeRangesByAttributeId(String attributeId) {
+		return attributeRangesByAttributeId.getOrDefault(attributeId, Collections.emptyList());
+	}
 }
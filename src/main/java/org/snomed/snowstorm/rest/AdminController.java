@@ -4,9 +4,14 @@ import io.kaicode.rest.util.branchpathrewrite.BranchPathUriUtil;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
 import org.snomed.snowstorm.core.data.domain.Concept;
+import org.snomed.snowstorm.core.data.domain.jobs.ReindexJob;
 import org.snomed.snowstorm.core.data.services.*;
+import org.snomed.snowstorm.core.data.services.pojo.SemanticIndexRebuildStatus;
+import org.snomed.snowstorm.ecl.ECLResultCache;
 import org.snomed.snowstorm.mrcm.MRCMUpdateService;
+import org.snomed.snowstorm.rest.pojo.ItemsPage;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
@@ -27,9 +32,15 @@ public class AdminController {
 	@Autowired
 	private ConceptDefinitionStatusUpdateService definitionStatusUpdateService;
 
+	@Autowired
+	private DescriptionAcceptabilityUpdateService descriptionAcceptabilityUpdateService;
+
 	@Autowired
 	private AdminOperationsService adminOperationsService;
 
+	@Autowired
+	private ReindexJobService reindexJobService;
+
 	@Autowired
 	private MRCMUpdateService mrcmUpdateService;
 
@@ -39,6 +50,15 @@ public class AdminController {
 	@Autowired
 	private SBranchService sBranchService;
 
+	@Autowired
+	private ECLResultCache eclResultCache;
+
+	@Autowired
+	private CachingVersionControlHelper versionControlHelper;
+
+	@Value("${search.description.stored-acceptability.enabled:false}")
+	private boolean storedAcceptabilityEnabled;
+
 	@ApiOperation(value = "Rebuild the description index.",
 			notes = "Use this if the search configuration for international character handling of a language has been " +
 					"set or updated after importing content of that language. " +
@@ -46,9 +66,28 @@ public class AdminController {
 					"N.B. Snowstorm must be restarted to read the new configuration.")
 	@RequestMapping(value = "/actions/rebuild-description-index-for-language", method = RequestMethod.POST)
 	@PreAuthorize("hasPermission('ADMIN', 'global')")
-	public void rebuildDescriptionIndexForLanguage(@RequestParam String languageCode) throws IOException {
+	public ReindexJob rebuildDescriptionIndexForLanguage(@RequestParam String languageCode) {
 		ControllerHelper.requiredParam(languageCode, "languageCode");
-		adminOperationsService.reindexDescriptionsForLanguage(languageCode);
+		return adminOperationsService.reindexDescriptionsForLanguage(languageCode);
+	}
+
+	@ApiOperation(value = "List background reindex jobs, most recent first.")
+	@RequestMapping(value = "/reindex-jobs", method = RequestMethod.GET)
+	@PreAuthorize("hasPermission('ADMIN', 'global')")
+	public ItemsPage<ReindexJob> listReindexJobs(
+			@RequestParam(required = false, defaultValue = "0") int offset,
+			@RequestParam(required = false, defaultValue = "50") int limit) {
+		ControllerHelper.validatePageSize(offset, limit);
+		return new ItemsPage<>(reindexJobService.findJobs(offset / limit, limit));
+	}
+
+	@ApiOperation(value = "Progress of a background reindex job.",
+			notes = "Reports the number of documents checked and updated in each internalId slice of the index. " +
+					"Jobs interrupted by a restart continue from the last completed batch when Snowstorm starts.")
+	@RequestMapping(value = "/reindex-jobs/{jobId}", method = RequestMethod.GET)
+	@PreAuthorize("hasPermission('ADMIN', 'global')")
+	public ReindexJob getReindexJob(@PathVariable String jobId) {
+		return reindexJobService.getJobOrThrow(jobId);
 	}
 
 	@ApiOperation(value = "Rebuild the semantic index of the branch.",
@@ -62,6 +101,32 @@ public class AdminController {
 		queryConceptUpdateService.rebuildStatedAndInferredSemanticIndex(BranchPathUriUtil.decodePath(branch));
 	}
 
+	@ApiOperation(value = "Progress of the running rebuild of the semantic index of the branch.",
+			notes = "Reports the stage and number of concepts saved for each form of the semantic index while a rebuild is running. " +
+					"Rebuilds made during a rebase are included. Returns not found when no rebuild is running.")
+	@RequestMapping(value = "/{branch}/actions/rebuild-semantic-index", method = RequestMethod.GET)
+	@PreAuthorize("hasPermission('ADMIN', #branch)")
+	public SemanticIndexRebuildStatus getRebuildBranchTransitiveClosureStatus(@PathVariable String branch) {
+		return ControllerHelper.throwIfNotFound("Semantic index rebuild", queryConceptUpdateService.getRebuildStatus(BranchPathUriUtil.decodePath(branch)));
+	}
+
+	@ApiOperation(value = "Statistics of the ECL result cache.",
+			notes = "Number of entries and cached concept ids, hit, miss and eviction counts since startup.")
+	@RequestMapping(value = "/cache/ecl-results", method = RequestMethod.GET)
+	@PreAuthorize("hasPermission('ADMIN', 'global')")
+	public Map<String, Object> getECLResultCacheStats() {
+		return eclResultCache.getStats();
+	}
+
+	@ApiOperation(value = "Statistics of the branch criteria cache.",
+			notes = "Number of entries, hit, miss and eviction counts since startup. " +
+					"Also the number of branch criteria requests and cache misses made by each REST endpoint, in total and per request.")
+	@RequestMapping(value = "/cache/branch-criteria", method = RequestMethod.GET)
+	@PreAuthorize("hasPermission('ADMIN', 'global')")
+	public Map<String, Object> getBranchCriteriaCacheStats() {
+		return versionControlHelper.getStats();
+	}
+
 	@ApiOperation(value = "Force update of definition statuses of all concepts based on axioms.",
 			notes = "You are unlikely to need this action. " +
 					"If something has wrong with processing content updates on the branch the definition statuses " +
@@ -73,6 +138,19 @@ public class AdminController {
 		definitionStatusUpdateService.updateAllDefinitionStatuses(BranchPathUriUtil.decodePath(branch));
 	}
 
+	@ApiOperation(value = "Force update of the stored acceptability of all descriptions based on language reference set members.",
+			notes = "Only available when search.description.stored-acceptability.enabled is set. " +
+					"Run this once on MAIN after enabling the setting on content imported by an earlier version of Snowstorm. " +
+					"After that the acceptability of descriptions on MAIN is kept up to date as content changes.")
+	@RequestMapping(value = "/{branch}/actions/update-description-acceptability", method = RequestMethod.POST)
+	@PreAuthorize("hasPermission('ADMIN', #branch)")
+	public void updateDescriptionAcceptability(@PathVariable String branch) throws ServiceException {
+		if (!storedAcceptabilityEnabled) {
+			throw new IllegalArgumentException("Stored description acceptability is disabled in this deployment.");
+		}
+		descriptionAcceptabilityUpdateService.updateAllDescriptionAcceptability(BranchPathUriUtil.decodePath(branch));
+	}
+
 	@ApiOperation(value = "End duplicate versions of donated components in version control.",
 			notes = "You may need this action if you have used the branch merge operation to upgrade an extension " +
 					"which has donated content to the International Edition. The operation should be run on the extension branch.")
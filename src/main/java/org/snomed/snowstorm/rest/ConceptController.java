@@ -21,6 +21,7 @@ import org.snomed.snowstorm.core.pojo.BranchTimepoint;
 import org.snomed.snowstorm.core.pojo.LanguageDialect;
 import org.snomed.snowstorm.core.util.PageHelper;
 import org.snomed.snowstorm.core.util.TimerUtil;
+import org.snomed.snowstorm.ecl.ECLQueryPlan;
 import org.snomed.snowstorm.ecl.validation.ECLValidator;
 import org.snomed.snowstorm.rest.converter.SearchAfterHelper;
 import org.snomed.snowstorm.rest.pojo.*;
@@ -104,6 +105,9 @@ public class ConceptController {
 			@RequestParam(required = false) String statedEcl,
 			@RequestParam(required = false) Set<String> conceptIds,
 			@RequestParam(required = false) boolean returnIdOnly,
+			@ApiParam(value = "Include the ECL query plan in the response, with the steps and timings of each ECL execution made for the request. " +
+					"Cardinality estimates are fixed heuristics based on the shape of the expression, not counts of the branch content.")
+			@RequestParam(required = false) boolean explain,
 			@RequestParam(required = false, defaultValue = "0") int offset,
 			@RequestParam(required = false, defaultValue = "50") int limit,
 			@RequestParam(required = false) String searchAfter,
@@ -131,6 +135,8 @@ public class ConceptController {
 
 		List<LanguageDialect> languageDialects = ControllerHelper.parseAcceptLanguageHeaderWithDefaultFallback(acceptLanguageHeader);
 
+		ECLQueryPlan eclExplainPlan = explain && ecl != null ? new ECLQueryPlan(ecl, stated) : null;
+
 		QueryService.ConceptQueryBuilder queryBuilder = queryService.createQueryBuilder(stated)
 				.activeFilter(activeFilter)
 				.descriptionCriteria(descriptionCriteria -> descriptionCriteria
@@ -140,6 +146,7 @@ public class ConceptController {
 				)
 				.definitionStatusFilter(definitionStatusFilter)
 				.ecl(ecl)
+				.eclExplainPlan(eclExplainPlan)
 				.resultLanguageDialects(languageDialects)
 				.conceptIds(conceptIds);
 
@@ -149,11 +156,14 @@ public class ConceptController {
 		if (ecl != null) {
 			pageRequest = getPageRequestWithSort(offset, limit, searchAfter, Sort.sort(QueryConcept.class).by(QueryConcept::getConceptIdL).descending());
 		}
+		ItemsPage<?> itemsPage;
 		if (returnIdOnly) {
-			return new ItemsPage<>(queryService.searchForIds(queryBuilder, branch, pageRequest));
+			itemsPage = new ItemsPage<>(queryService.searchForIds(queryBuilder, branch, pageRequest));
 		} else {
-			return new ItemsPage<>(queryService.search(queryBuilder, branch, pageRequest));
+			itemsPage = new ItemsPage<>(queryService.search(queryBuilder, branch, pageRequest));
 		}
+		itemsPage.setEclExplainPlan(eclExplainPlan);
+		return itemsPage;
 	}
 
 	@RequestMapping(value = "/{branch}/concepts/{conceptId}", method = RequestMethod.GET, produces = {"application/json", "text/csv"})
@@ -188,6 +198,7 @@ public class ConceptController {
 				searchRequest.getStatedEclFilter(),
 				searchRequest.getConceptIds(),
 				searchRequest.isReturnIdOnly(),
+				searchRequest.isExplain(),
 				searchRequest.getOffset(),
 				searchRequest.getLimit(),
 				searchRequest.getSearchAfter(),
@@ -286,7 +297,7 @@ public class ConceptController {
 	}
 
 	private ItemsPage<?> findConceptsWithECL(String ecl, boolean stated, String branch, String acceptLanguageHeader, int offset, int limit) {
-		return findConcepts(branch, null, null, null, null, null, null, null, null, !stated ? ecl : null, stated ? ecl : null, null, false, offset, limit, null, acceptLanguageHeader);
+		return findConcepts(branch, null, null, null, null, null, null, null, null, !stated ? ecl : null, stated ? ecl : null, null, false, false, offset, limit, null, acceptLanguageHeader);
 	}
 
 	@RequestMapping(value = "/{branch}/concepts/{conceptId}/inbound-relationships", method = RequestMethod.GET)
@@ -0,0 +1,32 @@
+package org.snomed.snowstorm.rest.config;
+
+import org.snomed.snowstorm.core.data.services.CachingVersionControlHelper;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Counts the branch criteria requests made while handling each REST request, grouped by method and URL pattern.
+ */
+public class BranchLookupMetricsInterceptor implements HandlerInterceptor {
+
+	private final CachingVersionControlHelper versionControlHelper;
+
+	public BranchLookupMetricsInterceptor(CachingVersionControlHelper versionControlHelper) {
+		this.versionControlHelper = versionControlHelper;
+	}
+
+	@Override
+	public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+		versionControlHelper.startRequest();
+		return true;
+	}
+
+	@Override
+	public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+		Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+		versionControlHelper.endRequest(pattern != null ? request.getMethod() + " " + pattern : null);
+	}
+}
@@ -18,6 +18,7 @@ public class ConceptSearchRequest {
 	private String statedEclFilter;
 	private Set<String> conceptIds;
 	private boolean returnIdOnly;
+	private boolean explain;
 	private int offset = 0;
 	private int limit = 50;
 	private String searchAfter;
@@ -107,6 +108,14 @@ public class ConceptSearchRequest {
 		this.returnIdOnly = returnIdOnly;
 	}
 
+	public boolean isExplain() {
+		return explain;
+	}
+
+	public void setExplain(boolean explain) {
+		this.explain = explain;
+	}
+
 	public int getOffset() {
 		return offset;
 	}
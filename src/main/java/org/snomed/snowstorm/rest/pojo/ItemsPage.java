@@ -1,6 +1,8 @@
 package org.snomed.snowstorm.rest.pojo;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonView;
+import org.snomed.snowstorm.ecl.ECLQueryPlan;
 import org.snomed.snowstorm.core.util.SearchAfterPage;
 import org.snomed.snowstorm.rest.View;
 import org.springframework.data.domain.Page;
@@ -17,6 +19,7 @@ public class ItemsPage<T> {
 	private final Long offset;
 	private final String searchAfter;
 	private final Object[] searchAfterArray;
+	private ECLQueryPlan eclExplainPlan;
 
 	public ItemsPage(Collection<T> items) {
 		this.items = items;
@@ -89,4 +92,14 @@ public class ItemsPage<T> {
 	public Object[] getSearchAfterArray() {
 		return searchAfterArray;
 	}
+
+	@JsonView(View.Component.class)
+	@JsonInclude(JsonInclude.Include.NON_NULL)
+	public ECLQueryPlan getEclExplainPlan() {
+		return eclExplainPlan;
+	}
+
+	public void setEclExplainPlan(ECLQueryPlan eclExplainPlan) {
+		this.eclExplainPlan = eclExplainPlan;
+	}
 }
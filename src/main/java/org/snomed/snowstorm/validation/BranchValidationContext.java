@@ -0,0 +1,49 @@
+package org.snomed.snowstorm.validation;
+
+import io.kaicode.elasticvc.api.BranchCriteria;
+
+/**
+ * Services used by the Drools rules to look up content on one branch head.
+ * The services memoise their lookups so the context is shared by all validation requests until the branch head moves.
+ */
+class BranchValidationContext {
+
+	// Maximum number of lookups memoised by each cache of each service
+	static final int MAX_CACHED_LOOKUPS = 10_000;
+
+	private final long headTimestamp;
+	private final BranchCriteria branchCriteria;
+	private final ConceptDroolsValidationService conceptService;
+	private final DescriptionDroolsValidationService descriptionService;
+	private final RelationshipDroolsValidationService relationshipService;
+
+	BranchValidationContext(long headTimestamp, BranchCriteria branchCriteria, ConceptDroolsValidationService conceptService,
+			DescriptionDroolsValidationService descriptionService, RelationshipDroolsValidationService relationshipService) {
+
+		this.headTimestamp = headTimestamp;
+		this.branchCriteria = branchCriteria;
+		this.conceptService = conceptService;
+		this.descriptionService = descriptionService;
+		this.relationshipService = relationshipService;
+	}
+
+	long getHeadTimestamp() {
+		return headTimestamp;
+	}
+
+	BranchCriteria getBranchCriteria() {
+		return branchCriteria;
+	}
+
+	ConceptDroolsValidationService getConceptService() {
+		return conceptService;
+	}
+
+	DescriptionDroolsValidationService getDescriptionService() {
+		return descriptionService;
+	}
+
+	RelationshipDroolsValidationService getRelationshipService() {
+		return relationshipService;
+	}
+}
@@ -1,5 +1,7 @@
 package org.snomed.snowstorm.validation;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import io.kaicode.elasticvc.api.BranchCriteria;
 import org.ihtsdo.drools.domain.Relationship;
 import org.snomed.snowstorm.config.Config;
@@ -29,6 +31,9 @@ public class ConceptDroolsValidationService implements org.ihtsdo.drools.service
 	private final ElasticsearchOperations elasticsearchTemplate;
 	private final QueryService queryService;
 
+	// Hierarchy lookups by ECL, reused while the validation context of the branch is current
+	private final Cache<String, Set<String>> eclResultCache = Caffeine.newBuilder().maximumSize(BranchValidationContext.MAX_CACHED_LOOKUPS).build();
+
 	ConceptDroolsValidationService(String branchPath, BranchCriteria branchCriteria, ElasticsearchOperations elasticsearchTemplate, QueryService queryService) {
 		this.branchPath = branchPath;
 		this.branchCriteria = branchCriteria;
@@ -130,8 +135,11 @@ public class ConceptDroolsValidationService implements org.ihtsdo.drools.service
 		if (statedParentIds.size() > 1) {
 			eclBuilder.append(")");
 		}
-		Page<Long> idPage = queryService.searchForIds(queryService.createQueryBuilder(true).ecl(eclBuilder.toString()), branchPath, LARGE_PAGE);
-		return idPage.getContent().stream().map(Object::toString).collect(Collectors.toSet());
+		String ecl = eclBuilder.toString();
+		return eclResultCache.get("ids:" + ecl, key -> {
+			Page<Long> idPage = queryService.searchForIds(queryService.createQueryBuilder(true).ecl(ecl), branchPath, LARGE_PAGE);
+			return idPage.getContent().stream().map(Object::toString).collect(Collectors.toSet());
+		});
 	}
 
 	private Set<String> getStatedParents(org.ihtsdo.drools.domain.Concept concept) {
@@ -146,6 +154,10 @@ public class ConceptDroolsValidationService implements org.ihtsdo.drools.service
 	}
 
 	private Set<String> getConceptIdsByEcl(boolean stated, String ecl) {
+		return eclResultCache.get((stated ? "stated:" : "inferred:") + ecl, key -> doGetConceptIdsByEcl(stated, ecl));
+	}
+
+	private Set<String> doGetConceptIdsByEcl(boolean stated, String ecl) {
 		try {
 			Page<ConceptMini> directDescendantsOfRoot = queryService.search(
 					queryService.createQueryBuilder(stated).ecl(ecl),
@@ -1,5 +1,8 @@
 package org.snomed.snowstorm.validation;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.google.common.collect.Iterables;
 import com.google.common.collect.Sets;
 import io.kaicode.elasticvc.api.BranchCriteria;
 import io.kaicode.elasticvc.api.VersionControlHelper;
@@ -11,6 +14,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.snomed.snowstorm.core.data.domain.Concepts;
 import org.snomed.snowstorm.core.data.domain.Description;
+import org.snomed.snowstorm.core.data.domain.QueryConcept;
 import org.snomed.snowstorm.core.data.domain.Relationship;
 import org.snomed.snowstorm.core.data.services.DescriptionService;
 import org.snomed.snowstorm.core.data.services.QueryService;
@@ -18,12 +22,15 @@ import org.snomed.snowstorm.validation.domain.DroolsDescription;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
 import org.springframework.data.elasticsearch.core.SearchHit;
+import org.springframework.data.elasticsearch.core.SearchHitsIterator;
 import org.springframework.data.elasticsearch.core.query.NativeSearchQuery;
 import org.springframework.data.elasticsearch.core.query.NativeSearchQueryBuilder;
 
 import java.util.*;
 import java.util.stream.Collectors;
 
+import static io.kaicode.elasticvc.api.ComponentService.CLAUSE_LIMIT;
+import static io.kaicode.elasticvc.api.ComponentService.LARGE_PAGE;
 import static org.elasticsearch.index.query.QueryBuilders.*;
 
 public class DescriptionDroolsValidationService implements org.ihtsdo.drools.service.DescriptionService {
@@ -36,7 +43,11 @@ public class DescriptionDroolsValidationService implements org.ihtsdo.drools.ser
 	private final QueryService queryService;
 	private final TestResourceProvider testResourceProvider;
 	private static Set<String> hierarchyRootIds;
-	private Map<String, String> statedHierarchyRootIdCache = Collections.synchronizedMap(new HashMap<>());
+	// Lookups against the branch criteria, reused while the validation context of the branch is current
+	private final Cache<String, Optional<String>> statedHierarchyRootIdCache = Caffeine.newBuilder().maximumSize(BranchValidationContext.MAX_CACHED_LOOKUPS).build();
+	private final Cache<String, List<Description>> activeExactTermCache = Caffeine.newBuilder().maximumSize(BranchValidationContext.MAX_CACHED_LOOKUPS).build();
+	private final Cache<String, List<Description>> inactiveExactTermCache = Caffeine.newBuilder().maximumSize(BranchValidationContext.MAX_CACHED_LOOKUPS).build();
+	private final Cache<Long, Set<Long>> statedAncestorCache = Caffeine.newBuilder().maximumSize(BranchValidationContext.MAX_CACHED_LOOKUPS).build();
 	private static final Logger LOGGER = LoggerFactory.getLogger(DescriptionDroolsValidationService.class);
 
 	DescriptionDroolsValidationService(String branchPath,
@@ -74,17 +85,47 @@ public class DescriptionDroolsValidationService implements org.ihtsdo.drools.ser
 	}
 
 	private Set<org.ihtsdo.drools.domain.Description> findDescriptionByExactTerm(String exactTerm, boolean active) {
-		NativeSearchQuery query = new NativeSearchQueryBuilder()
-				.withQuery(boolQuery()
-						.must(branchCriteria.getEntityBranchCriteria(Description.class))
-						.must(termQuery("active", active))
-						.must(termQuery("term", exactTerm))
-				)
-				.build();
-		List<Description> matches = elasticsearchTemplate.search(query, Description.class).get().map(SearchHit::getContent).collect(Collectors.toList());
-		return matches.stream()
-				.filter(description -> description.getTerm().equals(exactTerm))
-				.map(DroolsDescription::new).collect(Collectors.toSet());
+		Cache<String, List<Description>> cache = active ? activeExactTermCache : inactiveExactTermCache;
+		List<Description> matches = cache.getIfPresent(exactTerm);
+		if (matches == null) {
+			preloadExactTerms(Collections.singleton(exactTerm));
+			matches = cache.getIfPresent(exactTerm);
+		}
+		return matches == null ? Collections.emptySet() : matches.stream().map(DroolsDescription::new).collect(Collectors.toSet());
+	}
+
+	/**
+	 * Loads the active and inactive descriptions matching each term in batches, ahead of the rules asking for them one term at a time.
+	 */
+	void preloadExactTerms(Collection<String> terms) {
+		Set<String> termsToLoad = terms.stream()
+				.filter(term -> activeExactTermCache.getIfPresent(term) == null || inactiveExactTermCache.getIfPresent(term) == null)
+				.collect(Collectors.toSet());
+		for (List<String> batch : Iterables.partition(termsToLoad, CLAUSE_LIMIT)) {
+			Map<String, List<Description>> activeMatches = new HashMap<>();
+			Map<String, List<Description>> inactiveMatches = new HashMap<>();
+			for (String term : batch) {
+				activeMatches.put(term, new ArrayList<>());
+				inactiveMatches.put(term, new ArrayList<>());
+			}
+			try (SearchHitsIterator<Description> stream = elasticsearchTemplate.searchForStream(new NativeSearchQueryBuilder()
+					.withQuery(boolQuery()
+							.must(branchCriteria.getEntityBranchCriteria(Description.class))
+							.must(termsQuery(Description.Fields.TERM, batch))
+					)
+					.withPageable(LARGE_PAGE)
+					.build(), Description.class)) {
+				stream.forEachRemaining(hit -> {
+					Description description = hit.getContent();
+					List<Description> matches = (description.isActive() ? activeMatches : inactiveMatches).get(description.getTerm());
+					if (matches != null) {
+						matches.add(description);
+					}
+				});
+			}
+			activeExactTermCache.putAll(activeMatches);
+			inactiveExactTermCache.putAll(inactiveMatches);
+		}
 	}
 
 	@Override
@@ -99,10 +140,12 @@ public class DescriptionDroolsValidationService implements org.ihtsdo.drools.ser
 				// Find root for this concept
 				String conceptHierarchyRootId = findStatedHierarchyRootId(concept);
 				if (conceptHierarchyRootId != null) {
-					return matchingDescriptions.stream().filter(d -> {
-						Set<Long> matchingDescriptionAncestors = queryService.findAncestorIds(branchCriteria, branchPath, true, d.getConceptId());
-						return matchingDescriptionAncestors.contains(new Long(conceptHierarchyRootId));
-					}).collect(Collectors.toSet());
+					Long hierarchyRootId = Long.parseLong(conceptHierarchyRootId);
+					Map<Long, Set<Long>> ancestors = findStatedAncestors(matchingDescriptions.stream()
+							.map(d -> Long.parseLong(d.getConceptId())).collect(Collectors.toSet()));
+					return matchingDescriptions.stream()
+							.filter(d -> ancestors.get(Long.parseLong(d.getConceptId())).contains(hierarchyRootId))
+							.collect(Collectors.toSet());
 				}
 			}
 		} catch (IllegalArgumentException e) {
@@ -159,21 +202,19 @@ public class DescriptionDroolsValidationService implements org.ihtsdo.drools.ser
 	}
 
 	private String findStatedHierarchyRootId(org.ihtsdo.drools.domain.Concept concept) {
-		String conceptId = concept.getId();
-		if (!statedHierarchyRootIdCache.containsKey(conceptId)) {
-			statedHierarchyRootIdCache.put(conceptId, doFindStatedHierarchyRootId(concept));
-		}
-		return statedHierarchyRootIdCache.get(conceptId);
-	}
-
-	private String doFindStatedHierarchyRootId(org.ihtsdo.drools.domain.Concept concept) {
 		Set<String> statedIsARelationships = concept.getRelationships().stream().filter(r -> r.isActive()
 				&& Concepts.STATED_RELATIONSHIP.equals(r.getCharacteristicTypeId())
-				&& Concepts.ISA.equals(r.getTypeId())).map(org.ihtsdo.drools.domain.Relationship :: getDestinationId).collect(Collectors.toSet());
+				&& Concepts.ISA.equals(r.getTypeId())).map(org.ihtsdo.drools.domain.Relationship :: getDestinationId).collect(Collectors.toCollection(TreeSet::new));
 
 		if (statedIsARelationships.isEmpty()) {
 			return null;
 		}
+		// The root only depends on the stated parents so the result can be shared by concepts with the same parents
+		return statedHierarchyRootIdCache.get(String.join(",", statedIsARelationships),
+				key -> Optional.ofNullable(doFindStatedHierarchyRootId(statedIsARelationships))).orElse(null);
+	}
+
+	private String doFindStatedHierarchyRootId(Set<String> statedIsARelationships) {
 
 		Set<String> hierarchyRootIds = findHierarchyRootsOnMAIN();
 		Sets.SetView<String> statedHierarchyRoot = Sets.intersection(hierarchyRootIds, statedIsARelationships);
@@ -183,7 +224,8 @@ public class DescriptionDroolsValidationService implements org.ihtsdo.drools.ser
 
 		// Search ancestors of stated is-a relationships
 		String firstStatedParentId = statedIsARelationships.iterator().next();
-		Set<Long> statedAncestors = queryService.findAncestorIds(firstStatedParentId, branchPath, true);
+		Long firstStatedParent = Long.parseLong(firstStatedParentId);
+		Set<Long> statedAncestors = findStatedAncestors(Collections.singleton(firstStatedParent)).get(firstStatedParent);
 		Set<String> statedAncestorsAsStringArray = statedAncestors.stream().map(String::valueOf).collect(Collectors.toSet());
 		statedHierarchyRoot = Sets.intersection(hierarchyRootIds, statedAncestorsAsStringArray);
 		if (!statedHierarchyRoot.isEmpty()) {
@@ -193,6 +235,32 @@ public class DescriptionDroolsValidationService implements org.ihtsdo.drools.ser
 		return null;
 	}
 
+	/**
+	 * @return Map of concept id to stated ancestor ids, loaded in batches for concepts not already cached.
+	 */
+	private Map<Long, Set<Long>> findStatedAncestors(Set<Long> conceptIds) {
+		return statedAncestorCache.getAll(conceptIds, idsToLoad -> {
+			Map<Long, Set<Long>> ancestors = new HashMap<>();
+			for (Long conceptId : idsToLoad) {
+				ancestors.put(conceptId, Collections.emptySet());
+			}
+			for (List<Long> batch : Iterables.partition(idsToLoad, CLAUSE_LIMIT)) {
+				try (SearchHitsIterator<QueryConcept> stream = elasticsearchTemplate.searchForStream(new NativeSearchQueryBuilder()
+						.withQuery(boolQuery()
+								.must(branchCriteria.getEntityBranchCriteria(QueryConcept.class))
+								.must(termQuery(QueryConcept.Fields.STATED, true))
+								.must(termsQuery(QueryConcept.Fields.CONCEPT_ID, batch))
+						)
+						.withFields(QueryConcept.Fields.CONCEPT_ID, QueryConcept.Fields.ANCESTORS)
+						.withPageable(LARGE_PAGE)
+						.build(), QueryConcept.class)) {
+					stream.forEachRemaining(hit -> ancestors.put(hit.getContent().getConceptIdL(), hit.getContent().getAncestors()));
+				}
+			}
+			return ancestors;
+		});
+	}
+
 	private Set<String> findHierarchyRootsOnMAIN() {
 		if (hierarchyRootIds == null) {
 			synchronized (DescriptionDroolsValidationService.class) {
@@ -1,5 +1,8 @@
 package org.snomed.snowstorm.validation;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.google.common.collect.Lists;
 import io.kaicode.elasticvc.api.BranchCriteria;
 import io.kaicode.elasticvc.api.BranchService;
 import io.kaicode.elasticvc.api.VersionControlHelper;
@@ -32,6 +35,10 @@ import org.springframework.util.Assert;
 
 import java.io.File;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 import static io.kaicode.elasticvc.api.VersionControlHelper.LARGE_PAGE;
@@ -56,6 +63,21 @@ public class DroolsValidationService {
 	@Autowired
 	private BranchService branchService;
 
+	@Autowired
+	private ExecutorService executorService;
+
+	@Value("${validation.drools.concurrency:4}")
+	private int concurrency;
+
+	@Value("${validation.drools.min-concepts-per-thread:10}")
+	private int minConceptsPerThread;
+
+	@Value("${validation.drools.preload-terms.min-concepts:10}")
+	private int preloadTermsMinConcepts;
+
+	// Validation context of the head of each branch, replaced when the branch head moves
+	private final Cache<String, BranchValidationContext> branchValidationContexts;
+
 	private final String droolsRulesPath;
 	private final ResourceManager testResourceManager;
 
@@ -66,10 +88,16 @@ public class DroolsValidationService {
 
 	public DroolsValidationService(
 			@Value("${validation.drools.rules.path}") String droolsRulesPath,
+			@Value("${validation.drools.context-cache.max-branches:10}") int maxCachedBranchContexts,
 			@Autowired TestResourcesResourceManagerConfiguration resourceManagerConfiguration,
 			@Autowired ResourceLoader cloudResourceLoader) {
 
 		this.droolsRulesPath = droolsRulesPath;
+		// Each context memoises up to MAX_CACHED_LOOKUPS entries per lookup type so only keep the contexts of a few branches
+		branchValidationContexts = Caffeine.newBuilder()
+				.maximumSize(maxCachedBranchContexts)
+				.expireAfterAccess(1, TimeUnit.HOURS)
+				.build();
 		testResourceManager = new ResourceManager(resourceManagerConfiguration, cloudResourceLoader);
 		newRuleExecutorAndResources();
 	}
@@ -92,17 +120,78 @@ public class DroolsValidationService {
 			return Collections.emptyList();
 		}
 
-		BranchCriteria branchCriteria = versionControlHelper.getBranchCriteria(branchWithInheritedMetadata);
-		Set<DroolsConcept> droolsConcepts = concepts.stream().map(DroolsConcept::new).collect(Collectors.toSet());
+		BranchValidationContext context = getValidationContext(branchWithInheritedMetadata);
 
 		// Look-up release hashes from the store to set/update the component effectiveTimes
-		setReleaseHashAndEffectiveTime(concepts, branchCriteria);
+		setReleaseHashAndEffectiveTime(concepts, context.getBranchCriteria());
 
-		ConceptDroolsValidationService conceptService = new ConceptDroolsValidationService(branchPath, branchCriteria, elasticsearchOperations, queryService);
-		DescriptionDroolsValidationService descriptionService = new DescriptionDroolsValidationService(branchPath, branchCriteria, versionControlHelper, elasticsearchOperations,
-				this.descriptionService, queryService, testResourceProvider);
-		RelationshipDroolsValidationService relationshipService = new RelationshipDroolsValidationService(branchPath, branchCriteria, queryService);
-		return ruleExecutor.execute(ruleSetNames, droolsConcepts, conceptService, descriptionService, relationshipService, false, false);
+		// Load descriptions with the same terms in batches rather than one term at a time.
+		// Small requests, like validating a single concept, leave the rules to look up only the terms they need.
+		if (concepts.size() >= preloadTermsMinConcepts) {
+			context.getDescriptionService().preloadExactTerms(concepts.stream()
+					.flatMap(concept -> concept.getDescriptions().stream())
+					.map(Description::getTerm)
+					.filter(Objects::nonNull)
+					.collect(Collectors.toSet()));
+		}
+
+		List<DroolsConcept> droolsConcepts = concepts.stream().map(DroolsConcept::new).collect(Collectors.toList());
+		List<List<DroolsConcept>> partitions = partition(droolsConcepts);
+		if (partitions.size() <= 1) {
+			return execute(ruleSetNames, droolsConcepts, context);
+		}
+
+		// Run partitions of the concepts on separate threads, sharing the validation context
+		List<Future<List<InvalidContent>>> futures = new ArrayList<>();
+		for (List<DroolsConcept> partition : partitions) {
+			futures.add(executorService.submit(() -> execute(ruleSetNames, partition, context)));
+		}
+		List<InvalidContent> invalidContents = new ArrayList<>();
+		try {
+			for (Future<List<InvalidContent>> future : futures) {
+				invalidContents.addAll(future.get());
+			}
+		} catch (InterruptedException e) {
+			futures.forEach(future -> future.cancel(true));
+			Thread.currentThread().interrupt();
+			throw new ServiceException("Interrupted while running Snomed-Drools validation.", e);
+		} catch (ExecutionException e) {
+			futures.forEach(future -> future.cancel(true));
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			throw new ServiceException("Failed to run Snomed-Drools validation.", cause);
+		}
+		return invalidContents;
+	}
+
+	/**
+	 * Splits concepts into at most one partition per thread, with at least the minimum number of concepts per thread.
+	 */
+	<T> List<List<T>> partition(List<T> concepts) {
+		int partitionSize = Math.max(Math.max(minConceptsPerThread, 1), (concepts.size() + concurrency - 1) / Math.max(concurrency, 1));
+		return Lists.partition(concepts, partitionSize);
+	}
+
+	private List<InvalidContent> execute(Set<String> ruleSetNames, Collection<DroolsConcept> droolsConcepts, BranchValidationContext context) {
+		return ruleExecutor.execute(ruleSetNames, new HashSet<>(droolsConcepts), context.getConceptService(), context.getDescriptionService(),
+				context.getRelationshipService(), false, false);
+	}
+
+	BranchValidationContext getValidationContext(Branch branch) {
+		String branchPath = branch.getPath();
+		BranchValidationContext context = branchValidationContexts.getIfPresent(branchPath);
+		if (context == null || context.getHeadTimestamp() != branch.getHeadTimestamp()) {
+			BranchCriteria branchCriteria = versionControlHelper.getBranchCriteria(branch);
+			context = new BranchValidationContext(branch.getHeadTimestamp(), branchCriteria,
+					new ConceptDroolsValidationService(branchPath, branchCriteria, elasticsearchOperations, queryService),
+					new DescriptionDroolsValidationService(branchPath, branchCriteria, versionControlHelper, elasticsearchOperations,
+							this.descriptionService, queryService, testResourceProvider),
+					new RelationshipDroolsValidationService(branchPath, branchCriteria, queryService));
+			branchValidationContexts.put(branchPath, context);
+		}
+		return context;
 	}
 
 	private void setReleaseHashAndEffectiveTime(Set<Concept> concepts, BranchCriteria branchCriteria) {
@@ -191,5 +280,7 @@ public class DroolsValidationService {
 		}
 		this.ruleExecutor = new RuleExecutorFactory().createRuleExecutor(droolsRulesPath);
 		this.testResourceProvider = ruleExecutor.newTestResourceProvider(testResourceManager);
+		// Contexts hold the previous test resources
+		branchValidationContexts.invalidateAll();
 	}
 }
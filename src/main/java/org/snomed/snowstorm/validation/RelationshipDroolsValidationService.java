@@ -1,5 +1,7 @@
 package org.snomed.snowstorm.validation;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import io.kaicode.elasticvc.api.BranchCriteria;
 import org.snomed.snowstorm.core.data.domain.Concepts;
 import org.snomed.snowstorm.core.data.services.QueryService;
@@ -13,6 +15,9 @@ public class RelationshipDroolsValidationService implements org.ihtsdo.drools.se
 	private final String branchPath;
 	private BranchCriteria branchCriteria;
 
+	// Inbound relationship lookups by ECL, reused while the validation context of the branch is current
+	private final Cache<String, Boolean> eclMatchCache = Caffeine.newBuilder().maximumSize(BranchValidationContext.MAX_CACHED_LOOKUPS).build();
+
 	RelationshipDroolsValidationService(String branchPath, BranchCriteria branchCriteria, QueryService queryService) {
 		this.branchPath = branchPath;
 		this.branchCriteria = branchCriteria;
@@ -44,6 +49,7 @@ public class RelationshipDroolsValidationService implements org.ihtsdo.drools.se
 			ecl = "*:*=" + conceptId;
 		}
 
-		return queryService.searchForIds(queryService.createQueryBuilder(true).ecl(ecl), branchPath, branchCriteria, PageRequest.of(0, 1)).getTotalElements() > 0;
+		return eclMatchCache.get(ecl, key ->
+				queryService.searchForIds(queryService.createQueryBuilder(true).ecl(ecl), branchPath, branchCriteria, PageRequest.of(0, 1)).getTotalElements() > 0);
 	}
 }
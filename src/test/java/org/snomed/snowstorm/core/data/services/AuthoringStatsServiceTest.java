@@ -0,0 +1,69 @@
+package org.snomed.snowstorm.core.data.services;
+
+import org.junit.jupiter.api.Test;
+import org.snomed.snowstorm.AbstractTest;
+import org.snomed.snowstorm.core.data.domain.Concept;
+import org.snomed.snowstorm.core.data.domain.Concepts;
+import org.snomed.snowstorm.core.data.domain.Description;
+import org.snomed.snowstorm.core.data.services.pojo.AuthoringStatsSummary;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import static org.junit.Assert.*;
+
+class AuthoringStatsServiceTest extends AbstractTest {
+
+	@Autowired
+	private AuthoringStatsService authoringStatsService;
+
+	@Autowired
+	private ConceptService conceptService;
+
+	@Autowired
+	private ReleaseService releaseService;
+
+	@Test
+	void testStatsCounts() throws ServiceException, InterruptedException {
+		conceptService.create(new Concept("100001")
+				.addDescription(new Description("Concept A (finding)").setTypeId(Concepts.FSN))
+				.addDescription(new Description("Concept A")), MAIN);
+		conceptService.create(new Concept("100002")
+				.addDescription(new Description("Concept B (finding)").setTypeId(Concepts.FSN)), MAIN);
+		releaseService.createVersion(20200131, MAIN);
+
+		AuthoringStatsSummary stats = authoringStatsService.getStats(MAIN);
+		assertEquals(0, stats.getNewConceptsCount());
+		assertEquals(0, stats.getChangedFsnCount());
+
+		// New concept
+		conceptService.create(new Concept("100003")
+				.addDescription(new Description("Concept C (finding)").setTypeId(Concepts.FSN)), MAIN);
+
+		// Inactivated concept
+		Concept conceptB = conceptService.find("100002", MAIN);
+		conceptB.setActive(false);
+		conceptService.update(conceptB, MAIN);
+
+		// Changed FSN and new synonym on an existing concept
+		Concept conceptA = conceptService.find("100001", MAIN);
+		conceptA.getDescriptions().stream().filter(description -> description.getTypeId().equals(Concepts.FSN)).findFirst()
+				.orElseThrow(AssertionError::new).setTerm("Concept A changed (finding)");
+		conceptA.addDescription(new Description("Concept A new synonym"));
+		conceptService.update(conceptA, MAIN);
+
+		stats = authoringStatsService.getStats(MAIN);
+		assertEquals(1, stats.getNewConceptsCount());
+		assertEquals(1, stats.getInactivatedConceptsCount());
+		assertEquals(0, stats.getReactivatedConceptsCount());
+		assertEquals(1, stats.getChangedFsnCount());
+		assertEquals(0, stats.getInactivatedSynonymsCount());
+		assertEquals(1, stats.getNewSynonymsForExistingConceptsCount());
+		assertEquals(0, stats.getReactivatedSynonymsCount());
+
+		// Counts of the same branch head are reused, the execution time is set for each response
+		Thread.sleep(10);
+		AuthoringStatsSummary repeatedStats = authoringStatsService.getStats(MAIN);
+		assertEquals(stats.getNewConceptsCount(), repeatedStats.getNewConceptsCount());
+		assertEquals(stats.getNewSynonymsForExistingConceptsCount(), repeatedStats.getNewSynonymsForExistingConceptsCount());
+		assertTrue(repeatedStats.getExecutionTime().after(stats.getExecutionTime()));
+	}
+}
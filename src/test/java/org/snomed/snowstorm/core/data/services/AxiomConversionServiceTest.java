@@ -0,0 +1,66 @@
+package org.snomed.snowstorm.core.data.services;
+
+import com.google.common.collect.Sets;
+import org.junit.jupiter.api.Test;
+import org.snomed.snowstorm.AbstractTest;
+import org.snomed.snowstorm.core.data.domain.Concept;
+import org.snomed.snowstorm.core.data.domain.ReferenceSetMember;
+import org.snomed.snowstorm.core.data.domain.Relationship;
+import org.snomed.snowstorm.core.data.services.pojo.MemberSearchRequest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+
+import static org.junit.Assert.*;
+import static org.snomed.snowstorm.core.data.domain.Concepts.*;
+
+class AxiomConversionServiceTest extends AbstractTest {
+
+	@Autowired
+	private ConceptService conceptService;
+
+	@Autowired
+	private ReferenceSetMemberService memberService;
+
+	@Test
+	void conversionUpdatedAfterAttributeDomainChange() throws ServiceException {
+		ServiceTestUtil testUtil = new ServiceTestUtil(conceptService);
+		testUtil.createConceptWithPathIdAndTerm(MAIN, CLINICAL_FINDING, "Clinical finding (finding)");
+		testUtil.createConceptWithPathIdAndTerm(MAIN, FINDING_SITE, "Finding site (attribute)");
+		testUtil.createConceptWithPathIdAndTerm(MAIN, HEART_STRUCTURE, "Heart structure (body structure)");
+
+		// Attributes in group 0 are self grouped unless the MRCM says they are never grouped
+		conceptService.create(new Concept("100001").addAxiom(new Relationship(ISA, CLINICAL_FINDING), new Relationship(FINDING_SITE, HEART_STRUCTURE)), MAIN);
+		assertTrue(getOwlExpression("100001").contains(":609096000"));
+
+		memberService.createMembers(MAIN, Sets.newHashSet(
+				new ReferenceSetMember(CORE_MODULE, REFSET_MRCM_DOMAIN_INTERNATIONAL, CLINICAL_FINDING)
+						.setAdditionalField("domainConstraint", "<< 404684003 |Clinical finding (finding)|")
+						.setAdditionalField("parentDomain", null)
+						.setAdditionalField("proximalPrimitiveConstraint", "<< 404684003 |Clinical finding (finding)|")
+						.setAdditionalField("proximalPrimitiveRefinement", null)
+						.setAdditionalField("domainTemplateForPrecoordination", "")
+						.setAdditionalField("domainTemplateForPostcoordination", null)
+						.setAdditionalField("guideURL", ""),
+				new ReferenceSetMember(CORE_MODULE, REFSET_MRCM_ATTRIBUTE_DOMAIN_INTERNATIONAL, FINDING_SITE)
+						.setAdditionalField("domainId", CLINICAL_FINDING)
+						.setAdditionalField("grouped", "0")
+						.setAdditionalField("attributeCardinality", "0..*")
+						.setAdditionalField("attributeInGroupCardinality", "0..1")
+						.setAdditionalField("ruleStrengthId", "723597001")
+						.setAdditionalField("contentTypeId", "723596005"),
+				new ReferenceSetMember(CORE_MODULE, REFSET_MRCM_ATTRIBUTE_RANGE_INTERNATIONAL, FINDING_SITE)
+						.setAdditionalField("rangeConstraint", "<< 80891009 |Heart structure (body structure)|")
+						.setAdditionalField("attributeRule", null)
+						.setAdditionalField("ruleStrengthId", "723597001")
+						.setAdditionalField("contentTypeId", "723596005")));
+
+		// The cached conversion service must not be used after the attribute domain change
+		conceptService.create(new Concept("100002").addAxiom(new Relationship(ISA, CLINICAL_FINDING), new Relationship(FINDING_SITE, HEART_STRUCTURE)), MAIN);
+		assertFalse(getOwlExpression("100002").contains(":609096000"));
+	}
+
+	private String getOwlExpression(String conceptId) {
+		return memberService.findMembers(MAIN, new MemberSearchRequest().active(true).referenceSet(OWL_AXIOM_REFERENCE_SET).referencedComponentId(conceptId),
+				PageRequest.of(0, 10)).getContent().get(0).getAdditionalField(ReferenceSetMember.OwlExpressionFields.OWL_EXPRESSION);
+	}
+}
@@ -0,0 +1,81 @@
+package org.snomed.snowstorm.core.data.services;
+
+import io.kaicode.elasticvc.api.BranchCriteria;
+import io.kaicode.elasticvc.api.BranchService;
+import io.kaicode.elasticvc.domain.Branch;
+import org.junit.jupiter.api.Test;
+import org.snomed.snowstorm.AbstractTest;
+import org.snomed.snowstorm.core.data.services.CachingVersionControlHelper.BranchHead;
+import org.snomed.snowstorm.core.data.domain.Concept;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+
+import static org.junit.Assert.*;
+
+class CachingVersionControlHelperTest extends AbstractTest {
+
+	@Autowired
+	private CachingVersionControlHelper versionControlHelper;
+
+	@Autowired
+	private ConceptService conceptService;
+
+	@Autowired
+	private BranchService branchService;
+
+	@Autowired
+	private ExecutorService taskExecutor;
+
+	@Test
+	void cachedUntilCommit() throws ServiceException {
+		branchService.create("MAIN/A");
+		BranchCriteria criteria = versionControlHelper.getBranchCriteria("MAIN/A");
+		long hitCount = getHitCount();
+		assertSame(criteria, versionControlHelper.getBranchCriteria("MAIN/A"));
+		assertEquals(hitCount + 1, getHitCount());
+
+		conceptService.create(new Concept("100001"), "MAIN/A");
+		BranchCriteria criteriaAfterCommit = versionControlHelper.getBranchCriteria("MAIN/A");
+		assertNotSame(criteria, criteriaAfterCommit);
+		assertEquals(1, conceptService.findAll("MAIN/A", PageRequest.of(0, 10)).getTotalElements());
+	}
+
+	@Test
+	void branchHeadOnlyKnownForHeadCriteria() {
+		branchService.create("MAIN/B");
+		Branch branch = branchService.findLatest("MAIN/B");
+		BranchCriteria criteria = versionControlHelper.getBranchCriteria("MAIN/B");
+		assertEquals(new BranchHead("MAIN/B", branch.getHeadTimestamp(), branch.getBaseTimestamp()), versionControlHelper.getBranchHead(criteria));
+		assertNull(versionControlHelper.getBranchHead(versionControlHelper.getBranchCriteriaAtTimepoint("MAIN/B", branch.getHead())));
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	void lookupsOfSubmittedTasksCountedForRequest() throws ExecutionException, InterruptedException {
+		branchService.create("MAIN/C");
+		versionControlHelper.startRequest();
+		versionControlHelper.getBranchCriteria("MAIN/C");
+		taskExecutor.submit(() -> versionControlHelper.getBranchCriteria("MAIN/C")).get();
+		taskExecutor.submit(() -> versionControlHelper.getBranchCriteria("MAIN")).get();
+		versionControlHelper.endRequest("GET /test");
+
+		Map<String, Object> endpoints = (Map<String, Object>) versionControlHelper.getStats().get("endpoints");
+		Map<String, Object> endpointStats = (Map<String, Object>) endpoints.get("GET /test");
+		assertEquals(1L, endpointStats.get("requests"));
+		assertEquals(3L, endpointStats.get("branchCriteriaRequests"));
+
+		// Tasks submitted outside of a request are not counted
+		taskExecutor.submit(() -> versionControlHelper.getBranchCriteria("MAIN/C")).get();
+		endpoints = (Map<String, Object>) versionControlHelper.getStats().get("endpoints");
+		assertEquals(3L, ((Map<String, Object>) endpoints.get("GET /test")).get("branchCriteriaRequests"));
+	}
+
+	private long getHitCount() {
+		Map<String, Object> stats = versionControlHelper.getStats();
+		return (long) stats.get("hitCount");
+	}
+}
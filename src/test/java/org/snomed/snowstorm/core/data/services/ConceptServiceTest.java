@@ -24,6 +24,7 @@ import org.snomed.snowstorm.rest.View;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.test.util.ReflectionTestUtils;
 
 import java.io.IOException;
 import java.util.*;
@@ -1088,6 +1089,48 @@ class ConceptServiceTest extends AbstractTest {
 		assertNotNull(relationship.getType());
 	}
 
+	@Test
+	void testConcurrentConceptLoadMatchesSequentialLoad() throws ServiceException, IOException {
+		testUtil.createConceptWithPathIdAndTerm(MAIN, SNOMEDCT_ROOT, "SNOMED CT Concept (SNOMED RT+CTV3)");
+		testUtil.createConceptWithPathIdAndTerm(MAIN, CLINICAL_FINDING, "Clinical finding (finding)");
+		testUtil.createConceptWithPathIdAndTerm(MAIN, FINDING_SITE, "Finding site (attribute)");
+		testUtil.createConceptWithPathIdAndTerm(MAIN, HEART_STRUCTURE, "Heart structure (body structure)");
+		List<String> conceptIds = new ArrayList<>();
+		for (int i = 1; i <= 5; i++) {
+			Description inactiveSynonym = new Description("Old term " + i);
+			inactiveSynonym.setActive(false);
+			inactiveSynonym.setInactivationIndicator(Concepts.inactivationIndicatorNames.get(Concepts.OUTDATED));
+			Concept concept = conceptService.create(new Concept("10000" + i + "00" + i)
+					.addDescription(fsn("Heart finding " + i + " (finding)"))
+					.addDescription(new Description("Heart finding " + i).addLanguageRefsetMember(US_EN_LANG_REFSET, ACCEPTABLE))
+					.addDescription(inactiveSynonym)
+					.addAxiom(new Relationship(ISA, CLINICAL_FINDING), new Relationship(FINDING_SITE, HEART_STRUCTURE))
+					.addRelationship(new Relationship(ISA, CLINICAL_FINDING).setCharacteristicTypeId(INFERRED_RELATIONSHIP)), MAIN);
+			conceptIds.add(concept.getConceptId());
+		}
+
+		Object concurrency = ReflectionTestUtils.getField(conceptService, "conceptLoadConcurrency");
+		String concurrentlyLoaded;
+		String sequentiallyLoaded;
+		try {
+			ReflectionTestUtils.setField(conceptService, "conceptLoadConcurrency", 4);
+			concurrentlyLoaded = toJson(conceptService.find(MAIN, conceptIds, DEFAULT_LANGUAGE_DIALECTS));
+			ReflectionTestUtils.setField(conceptService, "conceptLoadConcurrency", 1);
+			sequentiallyLoaded = toJson(conceptService.find(MAIN, conceptIds, DEFAULT_LANGUAGE_DIALECTS));
+		} finally {
+			ReflectionTestUtils.setField(conceptService, "conceptLoadConcurrency", concurrency);
+		}
+		assertEquals(sequentiallyLoaded, concurrentlyLoaded);
+		assertTrue(concurrentlyLoaded.contains("Heart finding 5 (finding)"));
+		assertTrue(concurrentlyLoaded.contains("OUTDATED"));
+	}
+
+	private String toJson(Collection<Concept> concepts) throws IOException {
+		List<Concept> sortedConcepts = new ArrayList<>(concepts);
+		sortedConcepts.sort(Comparator.comparing(Concept::getConceptId));
+		return objectMapper.writerWithView(View.Component.class).writeValueAsString(sortedConcepts);
+	}
+
 	private void printAllDescriptions(String path) throws TooCostlyException {
 		final Page<Description> descriptions = descriptionService.findDescriptionsWithAggregations(path, new DescriptionCriteria(), ServiceTestUtil.PAGE_REQUEST);
 		logger.info("Description on " + path);
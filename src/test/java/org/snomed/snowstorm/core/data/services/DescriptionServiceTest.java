@@ -10,10 +10,13 @@ import org.snomed.snowstorm.AbstractTest;
 import org.snomed.snowstorm.TestConfig;
 import org.snomed.snowstorm.config.SearchLanguagesConfiguration;
 import org.snomed.snowstorm.core.data.domain.*;
+import org.snomed.snowstorm.core.data.repositories.SemanticTagCountsRepository;
 import org.snomed.snowstorm.core.data.services.pojo.DescriptionCriteria;
 import org.snomed.snowstorm.core.data.services.pojo.PageWithBucketAggregations;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
+import org.springframework.data.elasticsearch.core.query.NativeSearchQueryBuilder;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 
@@ -22,6 +25,7 @@ import java.util.stream.Collectors;
 
 import static com.google.common.collect.Lists.newArrayList;
 import static java.lang.Long.parseLong;
+import static org.elasticsearch.index.query.QueryBuilders.termQuery;
 import static org.junit.Assert.*;
 import static org.snomed.snowstorm.core.data.domain.Concepts.*;
 import static org.snomed.snowstorm.core.data.services.DescriptionService.SearchMode.REGEX;
@@ -49,6 +53,18 @@ class DescriptionServiceTest extends AbstractTest {
 	@Autowired
 	private SearchLanguagesConfiguration searchLanguagesConfiguration;
 
+	@Autowired
+	private SemanticTagCountsRepository semanticTagCountsRepository;
+
+	@Autowired
+	private BranchMergeService mergeService;
+
+	@Autowired
+	private DescriptionAcceptabilityUpdateService acceptabilityUpdateService;
+
+	@Autowired
+	private ElasticsearchOperations elasticsearchTemplate;
+
 	private ServiceTestUtil testUtil;
 
 	@BeforeEach
@@ -517,6 +533,124 @@ class DescriptionServiceTest extends AbstractTest {
 		assertEquals(1, descriptionService.findDescriptionsWithAggregations(path, descriptionCriteria, PageRequest.of(0, 10)).getTotalElements());
 	}
 
+	@Test
+	void testDescriptionSearchAcceptabilityFilterAfterLanguageRefsetChange() throws ServiceException {
+		String path = "MAIN";
+		Concept concept = conceptService.create(new Concept("100006")
+				.addDescription(new Description("Pepperoni Pizza").addLanguageRefsetMember(GB_EN_LANG_REFSET, ACCEPTABLE)), path);
+		String descriptionId = concept.getDescriptions().iterator().next().getDescriptionId();
+
+		DescriptionCriteria descriptionCriteria = new DescriptionCriteria()
+				.term("Pepperoni")
+				.preferredIn(Collections.singleton(parseLong(US_EN_LANG_REFSET)));
+		assertEquals(0, descriptionService.findDescriptionsWithAggregations(path, descriptionCriteria, PageRequest.of(0, 10)).getTotalElements());
+
+		ReferenceSetMember usMember = referenceSetMemberService.createMember(path, new ReferenceSetMember(Concepts.CORE_MODULE, US_EN_LANG_REFSET, descriptionId)
+				.setAdditionalField(ReferenceSetMember.LanguageFields.ACCEPTABILITY_ID, PREFERRED));
+		assertEquals(1, descriptionService.findDescriptionsWithAggregations(path, descriptionCriteria, PageRequest.of(0, 10)).getTotalElements());
+
+		descriptionCriteria.preferredIn(null).acceptableIn(Collections.singleton(parseLong(GB_EN_LANG_REFSET)));
+		assertEquals(1, descriptionService.findDescriptionsWithAggregations(path, descriptionCriteria, PageRequest.of(0, 10)).getTotalElements());
+
+		referenceSetMemberService.deleteMember(path, usMember.getMemberId());
+		descriptionCriteria.acceptableIn(null).preferredIn(Collections.singleton(parseLong(US_EN_LANG_REFSET)));
+		assertEquals(0, descriptionService.findDescriptionsWithAggregations(path, descriptionCriteria, PageRequest.of(0, 10)).getTotalElements());
+	}
+
+	@Test
+	void testSemanticTagCountsUpdatedByCommit() throws ServiceException {
+		String path = "MAIN";
+		conceptService.batchCreate(newArrayList(
+				new Concept("100001").addFSN("Pizza (food)"),
+				new Concept("100002").addFSN("Cheese (food)"),
+				new Concept("100003").addFSN("Oven (physical object)")), path);
+
+		Map<String, Long> tagCounts = descriptionService.countActiveConceptsPerSemanticTag(path);
+		assertEquals(2, tagCounts.get("food").longValue());
+		assertEquals(1, tagCounts.get("physical object").longValue());
+
+		conceptService.create(new Concept("100004").addFSN("Pasta (food)"), path);
+		Concept oven = conceptService.find("100003", path);
+		oven.setActive(false);
+		conceptService.update(oven, path);
+
+		// Counts were updated by the commits rather than recalculated
+		assertEquals(branchService.findLatest(path).getHeadTimestamp(), semanticTagCountsRepository.findById(path).get().getHeadTimestamp());
+		tagCounts = descriptionService.countActiveConceptsPerSemanticTag(path);
+		assertEquals(3, tagCounts.get("food").longValue());
+		assertNull(tagCounts.get("physical object"));
+
+		branchService.create("MAIN/A");
+		conceptService.create(new Concept("100005").addFSN("Plate (physical object)"), "MAIN/A");
+		conceptService.create(new Concept("100006").addFSN("Bread (food)"), path);
+		mergeService.mergeBranchSync(path, "MAIN/A", Collections.emptySet());
+		tagCounts = descriptionService.countActiveConceptsPerSemanticTag("MAIN/A");
+		assertEquals(4, tagCounts.get("food").longValue());
+		assertEquals(1, tagCounts.get("physical object").longValue());
+	}
+
+	@Test
+	void testDescriptionSearchAcceptabilityFilterAfterLanguageRefsetChangeOnChildBranch() throws ServiceException {
+		Concept concept = conceptService.create(new Concept("100007")
+				.addDescription(new Description("Margherita Pizza").addLanguageRefsetMember(GB_EN_LANG_REFSET, ACCEPTABLE)), "MAIN");
+		String descriptionId = concept.getDescriptions().iterator().next().getDescriptionId();
+		branchService.create("MAIN/A");
+
+		DescriptionCriteria descriptionCriteria = new DescriptionCriteria()
+				.term("Margherita")
+				.preferredIn(Collections.singleton(parseLong(US_EN_LANG_REFSET)));
+		ReferenceSetMember usMember = referenceSetMemberService.createMember("MAIN/A", new ReferenceSetMember(Concepts.CORE_MODULE, US_EN_LANG_REFSET, descriptionId)
+				.setAdditionalField(ReferenceSetMember.LanguageFields.ACCEPTABILITY_ID, PREFERRED));
+		assertEquals(1, descriptionService.findDescriptionsWithAggregations("MAIN/A", descriptionCriteria, PageRequest.of(0, 10)).getTotalElements());
+		assertEquals(0, descriptionService.findDescriptionsWithAggregations("MAIN", descriptionCriteria, PageRequest.of(0, 10)).getTotalElements());
+
+		// The description is not versioned on the child branch to hold the derived acceptability
+		assertEquals("MAIN", descriptionService.findDescription("MAIN/A", descriptionId).getPath());
+
+		mergeService.mergeBranchSync("MAIN/A", "MAIN", Collections.emptySet());
+		assertEquals(1, descriptionService.findDescriptionsWithAggregations("MAIN", descriptionCriteria, PageRequest.of(0, 10)).getTotalElements());
+
+		branchService.create("MAIN/B");
+		referenceSetMemberService.deleteMember("MAIN/B", usMember.getMemberId());
+		assertEquals(0, descriptionService.findDescriptionsWithAggregations("MAIN/B", descriptionCriteria, PageRequest.of(0, 10)).getTotalElements());
+		assertEquals(1, descriptionService.findDescriptionsWithAggregations("MAIN", descriptionCriteria, PageRequest.of(0, 10)).getTotalElements());
+	}
+
+	@Test
+	void testDescriptionSearchAcceptabilityFilterOnBranchBasedBeforeFullUpdate() throws ServiceException {
+		Concept concept = conceptService.create(new Concept("100008")
+				.addDescription(new Description("Calzone Pizza").addLanguageRefsetMember(GB_EN_LANG_REFSET, ACCEPTABLE)), "MAIN");
+		String descriptionId = concept.getDescriptions().iterator().next().getDescriptionId();
+
+		// Description written before stored acceptability existed
+		Description description = elasticsearchTemplate.search(new NativeSearchQueryBuilder()
+				.withQuery(termQuery(Description.Fields.DESCRIPTION_ID, descriptionId)).build(), Description.class).getSearchHit(0).getContent();
+		description.setPreferredIn(null);
+		description.setAcceptableIn(null);
+		elasticsearchTemplate.save(description);
+		elasticsearchTemplate.indexOps(Description.class).refresh();
+
+		// Version branch which is never rebased
+		String versionBranch = "MAIN/2020-07-31";
+		branchService.create(versionBranch);
+
+		acceptabilityUpdateService.updateAllDescriptionAcceptability("MAIN");
+		assertNotNull(acceptabilityUpdateService.getFullUpdateTimepoint());
+
+		DescriptionCriteria descriptionCriteria = new DescriptionCriteria()
+				.term("Calzone")
+				.acceptableIn(Collections.singleton(parseLong(GB_EN_LANG_REFSET)));
+		assertEquals(1, descriptionService.findDescriptionsWithAggregations(versionBranch, descriptionCriteria, PageRequest.of(0, 10)).getTotalElements());
+		assertEquals(1, descriptionService.findDescriptionsWithAggregations("MAIN", descriptionCriteria, PageRequest.of(0, 10)).getTotalElements());
+
+		// A branch created after the full update uses the stored acceptability
+		branchService.create("MAIN/A");
+		assertEquals(1, descriptionService.findDescriptionsWithAggregations("MAIN/A", descriptionCriteria, PageRequest.of(0, 10)).getTotalElements());
+		descriptionCriteria.acceptableIn(null).preferredIn(Collections.singleton(parseLong(GB_EN_LANG_REFSET)));
+		assertEquals(0, descriptionService.findDescriptionsWithAggregations(versionBranch, descriptionCriteria, PageRequest.of(0, 10)).getTotalElements());
+		assertEquals(0, descriptionService.findDescriptionsWithAggregations("MAIN/A", descriptionCriteria, PageRequest.of(0, 10)).getTotalElements());
+	}
+
 	@Test
 	void testVersionControlOnChildOfMainBranch() throws ServiceException {
 		branchService.create("MAIN/A");
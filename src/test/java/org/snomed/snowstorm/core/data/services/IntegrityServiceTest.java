@@ -124,6 +124,51 @@ class IntegrityServiceTest extends AbstractTest {
 		assertNull(reportProjectTest2Run3.getRelationshipsWithMissingOrInactiveDestination());
 	}
 
+	@Test
+	void testFindAllComponentsWithBadIntegrityAfterInactivation() throws ServiceException {
+		branchService.create("MAIN/project");
+		conceptService.create(new Concept("100001"), "MAIN/project");
+		conceptService.create(new Concept("10000101").addRelationship(new Relationship("10000101", "100001")), "MAIN/project");
+		conceptService.create(new Concept("100002").addRelationship(new Relationship("10000101", "100001")), "MAIN/project");
+		conceptService.create(new Concept("100003").addRelationship(new Relationship("10000101", "100002")), "MAIN/project");
+
+		// First check stores the integrity index of the branch
+		IntegrityIssueReport report = integrityService.findAllComponentsWithBadIntegrity(branchService.findLatest("MAIN/project"), true);
+		assertTrue(report.isEmpty());
+
+		// Index is updated by the commit so the relationship on concept 3 is found without a full check
+		conceptService.update((Concept) new Concept("100002").setActive(false), "MAIN/project");
+		report = integrityService.findAllComponentsWithBadIntegrity(branchService.findLatest("MAIN/project"), true);
+		assertNull(report.getRelationshipsWithMissingOrInactiveSource());
+		assertNull(report.getRelationshipsWithMissingOrInactiveType());
+		assertEquals(1, report.getRelationshipsWithMissingOrInactiveDestination().size());
+		assertEquals(100002L, report.getRelationshipsWithMissingOrInactiveDestination().values().iterator().next().longValue());
+
+		// Reactivating the concept fixes the relationship
+		conceptService.update((Concept) new Concept("100002").setActive(true), "MAIN/project");
+		report = integrityService.findAllComponentsWithBadIntegrity(branchService.findLatest("MAIN/project"), true);
+		assertTrue(report.isEmpty());
+	}
+
+	@Test
+	void testIndexedAxiomIssuesMatchInBothForms() throws ServiceException {
+		branchService.create("MAIN/project");
+		conceptService.create(new Concept("100001"), "MAIN/project");
+		conceptService.create(new Concept("100002"), "MAIN/project");
+		conceptService.create(new Concept("100003").addAxiom(new Relationship(Concepts.ISA, "100002")), "MAIN/project");
+
+		// First checks store the integrity index of each form
+		assertTrue(integrityService.findAllComponentsWithBadIntegrity(branchService.findLatest("MAIN/project"), true).isEmpty());
+		assertTrue(integrityService.findAllComponentsWithBadIntegrity(branchService.findLatest("MAIN/project"), false).isEmpty());
+
+		// Both indexes are updated by the commit, the full check reports axioms for both forms
+		conceptService.update((Concept) new Concept("100002").setActive(false), "MAIN/project");
+		IntegrityIssueReport statedReport = integrityService.findAllComponentsWithBadIntegrity(branchService.findLatest("MAIN/project"), true);
+		IntegrityIssueReport inferredReport = integrityService.findAllComponentsWithBadIntegrity(branchService.findLatest("MAIN/project"), false);
+		assertEquals(1, statedReport.getAxiomsWithMissingOrInactiveReferencedConcept().size());
+		assertEquals(statedReport.getAxiomsWithMissingOrInactiveReferencedConcept().keySet(), inferredReport.getAxiomsWithMissingOrInactiveReferencedConcept().keySet());
+	}
+
 	private void makeRelationshipInactive(Collection<Long> relationshipIds, String branchPath) {
 		try (Commit commit = branchService.openCommit(branchPath)) {
 			Set<Relationship> relationships = relationshipIds.stream().map(id -> {
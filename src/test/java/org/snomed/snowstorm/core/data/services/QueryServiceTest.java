@@ -1,6 +1,7 @@
 package org.snomed.snowstorm.core.data.services;
 
 import com.google.common.collect.Lists;
+import io.kaicode.elasticvc.api.VersionControlHelper;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -13,11 +14,14 @@ import org.springframework.data.domain.PageRequest;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Set;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.snomed.snowstorm.config.Config.DEFAULT_LANGUAGE_DIALECTS;
 import static org.snomed.snowstorm.core.data.domain.Concepts.ISA;
 import static org.snomed.snowstorm.core.data.domain.Concepts.SNOMEDCT_ROOT;
 
@@ -31,6 +35,9 @@ class QueryServiceTest extends AbstractTest {
 	@Autowired
 	private ConceptService conceptService;
 
+	@Autowired
+	private VersionControlHelper versionControlHelper;
+
 	private static final PageRequest PAGE_REQUEST = PageRequest.of(0, 50);
 	public static final String PATH = "MAIN";
 	private Concept root;
@@ -132,4 +139,18 @@ class QueryServiceTest extends AbstractTest {
 		assertEquals(5, page.getTotalElements());
 	}
 
+	@Test
+	void testJoinDescendantCountAndLeafFlag() {
+		List<ConceptMini> concepts = Arrays.asList(new ConceptMini(SNOMEDCT_ROOT, DEFAULT_LANGUAGE_DIALECTS), new ConceptMini(pizza_2.getConceptId(), DEFAULT_LANGUAGE_DIALECTS),
+				new ConceptMini(cheesePizza_3.getConceptId(), DEFAULT_LANGUAGE_DIALECTS), new ConceptMini(reallyCheesyPizza_5.getConceptId(), DEFAULT_LANGUAGE_DIALECTS));
+		service.joinDescendantCountAndLeafFlag(concepts, Relationship.CharacteristicType.stated, PATH, versionControlHelper.getBranchCriteria(PATH));
+
+		for (ConceptMini concept : concepts) {
+			long eclCount = service.search(service.createQueryBuilder(true).ecl("<" + concept.getConceptId()), PATH, PAGE_REQUEST).getTotalElements();
+			assertEquals("Descendant count of " + concept.getConceptId(), eclCount, concept.getDescendantCount().longValue());
+		}
+		assertEquals(0, concepts.get(3).getDescendantCount().longValue());
+		assertTrue(concepts.get(1).getDescendantCount() >= 3);
+	}
+
 }
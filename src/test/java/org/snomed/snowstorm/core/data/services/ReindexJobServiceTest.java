@@ -0,0 +1,124 @@
+package org.snomed.snowstorm.core.data.services;
+
+import org.elasticsearch.index.query.QueryBuilder;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.snomed.snowstorm.AbstractTest;
+import org.snomed.snowstorm.core.data.domain.Description;
+import org.snomed.snowstorm.core.data.domain.JobStatus;
+import org.snomed.snowstorm.core.data.domain.jobs.ReindexJob;
+import org.snomed.snowstorm.core.data.repositories.jobs.ReindexJobRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.elasticsearch.core.query.UpdateQuery;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.function.Function;
+
+import static org.elasticsearch.index.query.QueryBuilders.matchAllQuery;
+import static org.junit.Assert.*;
+
+class ReindexJobServiceTest extends AbstractTest {
+
+	@Autowired
+	private ReindexJobService reindexJobService;
+
+	@Autowired
+	private ReindexJobRepository reindexJobRepository;
+
+	@Autowired
+	private ConceptService conceptService;
+
+	@AfterEach
+	void tearDown() {
+		reindexJobRepository.deleteAll();
+	}
+
+	@Test
+	void jobFailsWhenSliceFails() throws ServiceException, InterruptedException {
+		ServiceTestUtil testUtil = new ServiceTestUtil(conceptService);
+		testUtil.createConceptWithPathIdAndTerm(MAIN, "100001", "Heart");
+		testUtil.createConceptWithPathIdAndTerm(MAIN, "100002", "Lung");
+
+		ReindexJob job = reindexJobService.startJob(FailingReindexer.TYPE, Collections.singletonMap(FailingReindexer.FAIL_ON_TERM, "Lung"));
+		job = waitForJob(job.getId());
+
+		assertEquals(JobStatus.FAILED, job.getStatus());
+		assertEquals("Failed on term Lung", job.getMessage());
+		assertNotNull(job.getEndDate());
+	}
+
+	@Test
+	void resumeContinuesIncompleteSlices() throws ServiceException {
+		ServiceTestUtil testUtil = new ServiceTestUtil(conceptService);
+		testUtil.createConceptWithPathIdAndTerm(MAIN, "100001", "Heart");
+		testUtil.createConceptWithPathIdAndTerm(MAIN, "100002", "Lung");
+
+		// Job interrupted by a restart after the first slice completed
+		ReindexJob.Slice completeSlice = new ReindexJob.Slice(null, null);
+		completeSlice.addProgress(null, 5, 0);
+		completeSlice.setComplete(true);
+		ReindexJob.Slice incompleteSlice = new ReindexJob.Slice(null, null);
+		ReindexJob job = new ReindexJob(DescriptionFoldingReindexer.TYPE, Collections.singletonMap(DescriptionFoldingReindexer.LANGUAGE_CODE, "en"),
+				Arrays.asList(completeSlice, incompleteSlice));
+		job.setStatus(JobStatus.IN_PROGRESS);
+		reindexJobRepository.save(job);
+
+		reindexJobService.resumeJobs();
+
+		job = reindexJobService.getJobOrThrow(job.getId());
+		assertEquals(JobStatus.COMPLETED, job.getStatus());
+		assertEquals(2, job.getSlicesComplete());
+		// The complete slice is not run again
+		assertEquals(5, job.getSlices().get(0).getDocumentsProcessed());
+		assertEquals(2, job.getSlices().get(1).getDocumentsProcessed());
+		assertEquals(7, job.getDocumentsProcessed());
+	}
+
+	private ReindexJob waitForJob(String id) throws InterruptedException {
+		for (int i = 0; i < 100; i++) {
+			ReindexJob job = reindexJobService.getJobOrThrow(id);
+			if (job.getStatus() != JobStatus.SCHEDULED && job.getStatus() != JobStatus.IN_PROGRESS) {
+				return job;
+			}
+			Thread.sleep(200);
+		}
+		fail("Reindex job did not finish.");
+		return null;
+	}
+
+	@Component
+	static class FailingReindexer implements DocumentReindexer<Description> {
+
+		static final String TYPE = "test-failing";
+		static final String FAIL_ON_TERM = "failOnTerm";
+
+		@Override
+		public String getType() {
+			return TYPE;
+		}
+
+		@Override
+		public Class<Description> getDocumentClass() {
+			return Description.class;
+		}
+
+		@Override
+		public QueryBuilder getQuery(Map<String, String> parameters) {
+			return matchAllQuery();
+		}
+
+		@Override
+		public Function<Description, UpdateQuery> getUpdateFunction(Map<String, String> parameters) {
+			String failOnTerm = parameters.get(FAIL_ON_TERM);
+			return description -> {
+				if (description.getTerm().equals(failOnTerm)) {
+					throw new IllegalStateException("Failed on term " + failOnTerm);
+				}
+				return null;
+			};
+		}
+	}
+}
@@ -1,6 +1,7 @@
 package org.snomed.snowstorm.core.data.services;
 
 import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
 import io.kaicode.elasticvc.api.BranchService;
 import io.kaicode.elasticvc.api.CommitListener;
 import io.kaicode.elasticvc.domain.Commit;
@@ -16,6 +17,7 @@ import org.snomed.snowstorm.core.data.domain.Concept;
 import org.snomed.snowstorm.core.data.domain.ConceptMini;
 import org.snomed.snowstorm.core.data.domain.QueryConcept;
 import org.snomed.snowstorm.core.data.domain.Relationship;
+import org.snomed.snowstorm.core.data.services.pojo.SemanticIndexRebuildStatus;
 import org.snomed.snowstorm.mrcm.MRCMUpdateService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
@@ -26,12 +28,15 @@ import org.springframework.data.elasticsearch.core.query.NativeSearchQueryBuilde
 import org.springframework.data.elasticsearch.core.query.Query;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.util.ReflectionTestUtils;
 
 import java.util.*;
 import java.util.stream.Collectors;
 
 import static io.kaicode.elasticvc.api.ComponentService.LARGE_PAGE;
+import static java.lang.Long.parseLong;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.snomed.snowstorm.core.data.domain.Concepts.*;
@@ -404,6 +409,80 @@ class SemanticIndexUpdateServiceTest extends AbstractTest {
 		assertEquals("[138875005, 1000013, 1000011]", concepts.getContent().stream().map(ConceptMini::getConceptId).collect(Collectors.toList()).toString());
 	}
 
+	@Test
+	void testRebaseDeltaMatchesFullRebuild() throws ServiceException {
+		// On MAIN
+		Concept root = new Concept(SNOMEDCT_ROOT);
+		Concept cA = new Concept("1000011").addRelationship(new Relationship(ISA, SNOMEDCT_ROOT)).addRelationship(new Relationship(ISA, SNOMEDCT_ROOT).setInferred(true));
+		Concept cB = new Concept("1000012").addRelationship(new Relationship(ISA, SNOMEDCT_ROOT)).addRelationship(new Relationship(ISA, SNOMEDCT_ROOT).setInferred(true));
+		Concept cC = new Concept("1000013").addRelationship(new Relationship(ISA, cA.getId())).addRelationship(new Relationship(ISA, cA.getId()).setInferred(true));
+		Concept cD = new Concept("1000014").addRelationship(new Relationship(ISA, SNOMEDCT_ROOT)).addRelationship(new Relationship(ISA, SNOMEDCT_ROOT).setInferred(true));
+		conceptService.batchCreate(Lists.newArrayList(root, cA, cB, cC, cD), "MAIN");
+
+		// Authored on MAIN/A under C, D and B
+		String branch = "MAIN/A";
+		branchService.create(branch);
+		Concept cE = new Concept("1000015").addRelationship(new Relationship(ISA, cC.getId())).addRelationship(new Relationship(ISA, cC.getId()).setInferred(true));
+		Concept cF = new Concept("1000016").addRelationship(new Relationship(ISA, cD.getId())).addRelationship(new Relationship(ISA, cD.getId()).setInferred(true));
+		Concept cG = new Concept("1000017").addRelationship(new Relationship(ISA, cB.getId())).addRelationship(new Relationship(ISA, cB.getId()).setInferred(true));
+		conceptService.batchCreate(Lists.newArrayList(cE, cF, cG), branch);
+		List<String> conceptIds = Lists.newArrayList(root.getId(), cA.getId(), cB.getId(), cC.getId(), cD.getId(), cE.getId(), cF.getId(), cG.getId());
+
+		// On MAIN C moves from A to B
+		cC = conceptService.find(cC.getId(), "MAIN");
+		cC.getRelationships().forEach(relationship -> relationship.setDestinationId(cB.getId()));
+		conceptService.update(cC, "MAIN");
+
+		branchMergeService.mergeBranchSync("MAIN", branch, Collections.emptySet());
+		assertTC(cE, branch, cC, cB, root);
+		assertTC(cG, branch, cB, root);
+		Map<String, Set<Long>> deltaAncestors = getAncestors(conceptIds, branch);
+		updateService.rebuildStatedAndInferredSemanticIndex(branch);
+		assertEquals(deltaAncestors, getAncestors(conceptIds, branch));
+
+		// On MAIN the parent of F is deleted
+		conceptService.deleteConceptAndComponents(cD.getId(), "MAIN", false);
+
+		branchMergeService.mergeBranchSync("MAIN", branch, Collections.emptySet());
+		deltaAncestors = getAncestors(conceptIds, branch);
+		updateService.rebuildStatedAndInferredSemanticIndex(branch);
+		assertEquals(deltaAncestors, getAncestors(conceptIds, branch));
+		assertEquals(Collections.emptySet(), deltaAncestors.get(cD.getId() + "-stated"));
+	}
+
+	@Test
+	void testParallelRebuildMatchesSequentialRebuild() throws ServiceException {
+		Concept root = new Concept(SNOMEDCT_ROOT);
+		Concept cA = new Concept("1000011").addRelationship(new Relationship(ISA, SNOMEDCT_ROOT)).addRelationship(new Relationship(ISA, SNOMEDCT_ROOT).setInferred(true));
+		Concept cB = new Concept("1000012").addRelationship(new Relationship(ISA, SNOMEDCT_ROOT)).addRelationship(new Relationship(ISA, SNOMEDCT_ROOT).setInferred(true));
+		Concept cC = new Concept("1000013").addRelationship(new Relationship(ISA, cA.getId())).addRelationship(new Relationship(ISA, cB.getId()).setInferred(true));
+		Concept cD = new Concept("1000014").addRelationship(new Relationship(ISA, cC.getId())).addRelationship(new Relationship(ISA, cC.getId()).setInferred(true))
+				.addRelationship(new Relationship("363698007", cB.getId()));
+		conceptService.batchCreate(Lists.newArrayList(root, cA, cB, cC, cD), "MAIN");
+
+		String branch = "MAIN/A";
+		branchService.create(branch);
+		Concept cE = new Concept("1000015").addRelationship(new Relationship(ISA, cD.getId())).addRelationship(new Relationship(ISA, cA.getId()).setInferred(true));
+		conceptService.create(cE, branch);
+		List<String> conceptIds = Lists.newArrayList(root.getId(), cA.getId(), cB.getId(), cC.getId(), cD.getId(), cE.getId());
+
+		try {
+			ReflectionTestUtils.setField(updateService, "parallelRebuildEnabled", false);
+			updateService.rebuildStatedAndInferredSemanticIndex(branch);
+			Map<String, Set<Long>> sequentialAncestors = getAncestors(conceptIds, branch);
+			long sequentialAttributeMatches = queryService.eclSearch("*:363698007=*", true, branch, LARGE_PAGE).getTotalElements();
+
+			ReflectionTestUtils.setField(updateService, "parallelRebuildEnabled", true);
+			updateService.rebuildStatedAndInferredSemanticIndex(branch);
+			assertEquals(sequentialAncestors, getAncestors(conceptIds, branch));
+			assertEquals(sequentialAttributeMatches, queryService.eclSearch("*:363698007=*", true, branch, LARGE_PAGE).getTotalElements());
+			assertEquals(Sets.newHashSet(cD.getConceptIdAsLong(), cC.getConceptIdAsLong(), cA.getConceptIdAsLong(), parseLong(SNOMEDCT_ROOT)),
+					sequentialAncestors.get(cE.getId() + "-stated"));
+		} finally {
+			ReflectionTestUtils.setField(updateService, "parallelRebuildEnabled", true);
+		}
+	}
+
 	@Test
 	void inactiveConceptsNotAdded() throws ServiceException {
 		String path = "MAIN";
@@ -572,7 +651,11 @@ class SemanticIndexUpdateServiceTest extends AbstractTest {
 
 		assertEquals(0, queryService.search(queryService.createQueryBuilder(false).ecl("<" + SNOMEDCT_ROOT), path, QueryService.PAGE_OF_ONE).getTotalElements());
 
-		updateService.rebuildStatedAndInferredSemanticIndex(path);
+		SemanticIndexRebuildStatus rebuildStatus = updateService.rebuildStatedAndInferredSemanticIndex(path);
+		assertEquals(SemanticIndexRebuildStatus.Status.COMPLETED, rebuildStatus.getStatus());
+		// Only running rebuilds are tracked
+		assertNull(updateService.getRebuildStatus(path));
+		assertEquals(5, rebuildStatus.getFormConceptsSaved().get("inferred").intValue());
 
 		assertEquals(4, queryService.search(queryService.createQueryBuilder(false).ecl("<" + SNOMEDCT_ROOT), path, QueryService.PAGE_OF_ONE).getTotalElements());
 		assertEquals(1, queryService.search(queryService.createQueryBuilder(false).ecl("*:363698007=*"), path, QueryService.PAGE_OF_ONE).getTotalElements());
@@ -712,6 +795,15 @@ class SemanticIndexUpdateServiceTest extends AbstractTest {
 		}
 	}
 
+	private Map<String, Set<Long>> getAncestors(List<String> conceptIds, String branch) {
+		Map<String, Set<Long>> ancestors = new HashMap<>();
+		for (String conceptId : conceptIds) {
+			ancestors.put(conceptId + "-stated", queryService.findAncestorIds(conceptId, branch, true));
+			ancestors.put(conceptId + "-inferred", queryService.findAncestorIds(conceptId, branch, false));
+		}
+		return ancestors;
+	}
+
 	private void assertTC(Concept concept, Concept... ancestors) {
 		assertTC(concept, "MAIN", ancestors);
 	}
@@ -18,15 +18,20 @@ import org.snomed.snowstorm.core.data.repositories.classification.RelationshipCh
 import org.snomed.snowstorm.core.data.services.CodeSystemService;
 import org.snomed.snowstorm.core.data.services.ConceptService;
 import org.snomed.snowstorm.core.data.services.ServiceException;
+import org.snomed.snowstorm.core.data.services.classification.pojo.ClassificationStatusResponse;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.util.ReflectionTestUtils;
 
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.util.Comparator;
+import java.util.Date;
 import java.util.List;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
 import static io.kaicode.elasticvc.api.VersionControlHelper.LARGE_PAGE;
@@ -198,6 +203,79 @@ class ClassificationServiceTest extends AbstractTest {
 		assertNull(inactiveRelationship.getEffectiveTime());
 	}
 
+	@Test
+	void testStatusPollingOfClassificationsIsIndependent() throws InterruptedException {
+		String slowClassificationId = UUID.randomUUID().toString();
+		String quickClassificationId = UUID.randomUUID().toString();
+		CountDownLatch slowServiceResponse = new CountDownLatch(1);
+		AtomicInteger quickStatusRequests = new AtomicInteger();
+
+		// Remote service which answers slowly for one classification and reports a failure for the other after it was running
+		RemoteClassificationServiceClient stubClient = new RemoteClassificationServiceClient("http://localhost", "", "") {
+			@Override
+			ClassificationStatusResponse getStatus(String classificationId) {
+				ClassificationStatusResponse response = new ClassificationStatusResponse();
+				if (classificationId.equals(slowClassificationId)) {
+					try {
+						slowServiceResponse.await();
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+					response.setStatus(ClassificationStatus.FAILED);
+					response.setErrorMessage("Slow failure");
+				} else if (quickStatusRequests.incrementAndGet() == 1) {
+					response.setStatus(ClassificationStatus.RUNNING);
+				} else {
+					response.setStatus(ClassificationStatus.FAILED);
+					response.setErrorMessage("Quick failure");
+				}
+				return response;
+			}
+		};
+
+		Object originalClient = ReflectionTestUtils.getField(classificationService, "serviceClient");
+		ReflectionTestUtils.setField(classificationService, "serviceClient", stubClient);
+		try {
+			Classification slowClassification = createScheduledClassification(slowClassificationId);
+			Classification quickClassification = createScheduledClassification(quickClassificationId);
+			ReflectionTestUtils.invokeMethod(classificationService, "scheduleStatusPoll", slowClassification, ClassificationStatus.SCHEDULED, 0);
+			ReflectionTestUtils.invokeMethod(classificationService, "scheduleStatusPoll", quickClassification, ClassificationStatus.SCHEDULED, 0);
+
+			// The quick classification is polled through to the end while the slow poll is still waiting for the remote service
+			Classification quickResult = waitForStatus(quickClassificationId, ClassificationStatus.FAILED);
+			assertEquals("Quick failure", quickResult.getErrorMessage());
+			assertEquals(2, quickStatusRequests.get());
+			assertEquals(ClassificationStatus.SCHEDULED, classificationService.findClassification("MAIN", slowClassificationId).getStatus());
+
+			slowServiceResponse.countDown();
+			Classification slowResult = waitForStatus(slowClassificationId, ClassificationStatus.FAILED);
+			assertEquals("Slow failure", slowResult.getErrorMessage());
+		} finally {
+			slowServiceResponse.countDown();
+			ReflectionTestUtils.setField(classificationService, "serviceClient", originalClient);
+		}
+	}
+
+	private Classification createScheduledClassification(String classificationId) {
+		Classification classification = new Classification();
+		classification.setId(classificationId);
+		classification.setPath("MAIN");
+		classification.setStatus(ClassificationStatus.SCHEDULED);
+		classification.setCreationDate(new Date());
+		classification.setLastCommitDate(branchService.findLatest("MAIN").getHead());
+		classificationRepository.save(classification);
+		return classification;
+	}
+
+	private Classification waitForStatus(String classificationId, ClassificationStatus status) throws InterruptedException {
+		for (int i = 0; classificationService.findClassification("MAIN", classificationId).getStatus() != status && i < 50; i++) {
+			Thread.sleep(200);
+		}
+		Classification classification = classificationService.findClassification("MAIN", classificationId);
+		assertEquals(status, classification.getStatus());
+		return classification;
+	}
+
 	Classification createClassification(String path, String classificationId) {
 		Classification classification = new Classification();
 		classification.setId(classificationId);
@@ -39,10 +39,12 @@ class IdentifierCacheManagerTest extends AbstractTest {
 	void testTopUp() throws ServiceException, InterruptedException {
 		Assert.assertEquals(0, testCache.identifiersAvailable());
 		
-		//Since the cache is below critical level, asking for identifiers will trigger a top up + additional required
+		//Since the cache is empty, asking for identifiers will get them directly from the store without waiting for a top up
 		IdentifierReservedBlock reservedBlock = new IdentifierReservedBlock(0);
 		cacheManager.populateIdBlock(reservedBlock, TEST_DEMAND, TEST_NAMESPACE, TEST_PARTITION);
 		Assert.assertEquals(TEST_DEMAND, reservedBlock.size(ComponentType.Concept));
+		Assert.assertEquals(0, testCache.identifiersAvailable());
+		cacheManager.checkTopUpRequired();
 		Assert.assertEquals(TEST_CAPACITY, testCache.identifiersAvailable());
 		
 		//Now take us down to above top up level and prove it remains constant
@@ -0,0 +1,104 @@
+package org.snomed.snowstorm.core.data.services.identifier;
+
+import io.kaicode.elasticvc.api.BranchService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.snomed.snowstorm.AbstractTest;
+import org.snomed.snowstorm.core.data.domain.ComponentType;
+import org.snomed.snowstorm.core.data.domain.Concept;
+import org.snomed.snowstorm.core.data.repositories.IssuedIdentifierFilterSnapshotRepository;
+import org.snomed.snowstorm.core.data.services.ConceptService;
+import org.snomed.snowstorm.core.data.services.ServiceException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+
+import static org.junit.Assert.*;
+
+class IssuedIdentifierFilterTest extends AbstractTest {
+
+	private static final String CONCEPT_PARTITION = "00";
+
+	@Autowired
+	private IssuedIdentifierFilter issuedIdentifierFilter;
+
+	@Autowired
+	private IssuedIdentifierFilterSnapshotRepository snapshotRepository;
+
+	@Autowired
+	private ConceptService conceptService;
+
+	@Autowired
+	private BranchService branchService;
+
+	@Autowired
+	private ElasticsearchOperations elasticsearchTemplate;
+
+	@BeforeEach
+	void waitForFilters() throws InterruptedException {
+		for (int i = 0; i < 100 && !issuedIdentifierFilter.isReady(); i++) {
+			Thread.sleep(200);
+		}
+		assertTrue(issuedIdentifierFilter.isReady());
+	}
+
+	@Test
+	void committedIdentifiersProbablyIssued() throws ServiceException {
+		conceptService.create(new Concept("100108"), MAIN);
+
+		Collection<Long> probablyIssued = issuedIdentifierFilter.findProbablyIssued(CONCEPT_PARTITION, Arrays.asList(100108L, 101107L, 102104L));
+		assertTrue(probablyIssued.contains(100108L));
+		assertFalse(probablyIssued.contains(101107L));
+		assertFalse(probablyIssued.contains(102104L));
+	}
+
+	@Test
+	void snapshotOnlySavedWhenIdentifiersAdded() throws IOException, ServiceException, InterruptedException {
+		issuedIdentifierFilter.saveSnapshots();
+		long savedWatermark = getSavedWatermark();
+
+		// Catching up without new identifiers only moves the watermark in memory
+		Thread.sleep(10);
+		issuedIdentifierFilter.catchUpAll();
+		issuedIdentifierFilter.saveSnapshots();
+		assertEquals(savedWatermark, getSavedWatermark());
+
+		conceptService.create(new Concept("101107"), MAIN);
+		issuedIdentifierFilter.saveSnapshots();
+		assertTrue(getSavedWatermark() > savedWatermark);
+	}
+
+	@Test
+	void identifiersOfOpenCommitsNotMissed() throws InterruptedException {
+		long head = branchService.findLatest(MAIN).getHeadTimestamp();
+		branchService.lockBranch(MAIN, "Test lock");
+		try {
+			issuedIdentifierFilter.catchUpAll();
+			Thread.sleep(10);
+			issuedIdentifierFilter.catchUpAll();
+			assertTrue(issuedIdentifierFilter.getWatermark(CONCEPT_PARTITION) <= head + 1);
+
+			// Another instance writes within its open commit, after this instance has caught up past the commit timepoint
+			Concept concept = new Concept("101107");
+			concept.setPath(MAIN);
+			concept.setStart(new Date(head + 1));
+			elasticsearchTemplate.save(concept);
+			elasticsearchTemplate.indexOps(Concept.class).refresh();
+		} finally {
+			branchService.unlock(MAIN);
+		}
+
+		issuedIdentifierFilter.catchUpAll();
+		assertTrue(issuedIdentifierFilter.findProbablyIssued(CONCEPT_PARTITION, Collections.singletonList(101107L)).contains(101107L));
+		assertTrue(issuedIdentifierFilter.getWatermark(CONCEPT_PARTITION) > head + 1);
+	}
+
+	private long getSavedWatermark() {
+		return snapshotRepository.findById(ComponentType.Concept.name()).orElseThrow(AssertionError::new).getWatermark();
+	}
+}
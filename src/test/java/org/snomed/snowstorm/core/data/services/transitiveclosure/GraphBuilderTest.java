@@ -0,0 +1,92 @@
+package org.snomed.snowstorm.core.data.services.transitiveclosure;
+
+import com.google.common.collect.Sets;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class GraphBuilderTest {
+
+	@Test
+	void transitiveClosure() throws GraphBuilderException {
+		// 1 <- 2 <- 4 <- 5
+		// 1 <- 3 <- 4
+		// 1 <- 3 <- 6
+		GraphBuilder graphBuilder = new GraphBuilder();
+		graphBuilder.addParent(2L, 1L);
+		graphBuilder.addParent(3L, 1L);
+		graphBuilder.addParent(4L, 2L);
+		graphBuilder.addParent(4L, 3L);
+		graphBuilder.addParent(4L, 3L);
+		graphBuilder.addParent(5L, 4L);
+		graphBuilder.addParent(6L, 3L);
+		Map<Long, Node> nodes = getNodes(graphBuilder);
+
+		assertEquals(6, graphBuilder.getNodeCount());
+		assertEquals(Collections.emptySet(), nodes.get(1L).getTransitiveClosure("MAIN", true));
+		assertEquals(Sets.newHashSet(1L), nodes.get(2L).getTransitiveClosure("MAIN", true));
+		assertEquals(Sets.newHashSet(1L, 2L, 3L), nodes.get(4L).getTransitiveClosure("MAIN", true));
+		assertEquals(Sets.newHashSet(1L, 2L, 3L, 4L), nodes.get(5L).getTransitiveClosure("MAIN", true));
+		assertEquals(Sets.newHashSet(1L, 3L), nodes.get(6L).getTransitiveClosure("MAIN", true));
+		assertEquals(Sets.newHashSet(2L, 3L), nodes.get(4L).getParentIds());
+
+		// Changing the graph recalculates closures
+		graphBuilder.clearParentsAndMarkUpdated(4L);
+		graphBuilder.addParent(4L, 6L);
+		assertEquals(Sets.newHashSet(6L), nodes.get(4L).getParentIds());
+		assertEquals(Sets.newHashSet(1L, 3L, 4L, 6L), nodes.get(5L).getTransitiveClosure("MAIN", true));
+	}
+
+	@Test
+	void ancestorOrSelfUpdated() {
+		GraphBuilder graphBuilder = new GraphBuilder();
+		graphBuilder.addParent(2L, 1L);
+		graphBuilder.addParent(3L, 2L);
+		graphBuilder.addParent(4L, 1L);
+		graphBuilder.clearParentsAndMarkUpdated(2L);
+		graphBuilder.addParent(2L, 1L);
+		Map<Long, Node> nodes = getNodes(graphBuilder);
+
+		assertFalse(nodes.get(1L).isAncestorOrSelfUpdated());
+		assertTrue(nodes.get(2L).isAncestorOrSelfUpdated());
+		assertTrue(nodes.get(3L).isAncestorOrSelfUpdated());
+		assertFalse(nodes.get(4L).isAncestorOrSelfUpdated());
+	}
+
+	@Test
+	void loopDetection() throws GraphBuilderException {
+		// 1 <- 2 <- 3 <- 2, 4 is below the loop
+		GraphBuilder graphBuilder = new GraphBuilder();
+		graphBuilder.addParent(2L, 1L);
+		graphBuilder.addParent(3L, 2L);
+		graphBuilder.addParent(2L, 3L);
+		graphBuilder.addParent(4L, 3L);
+		graphBuilder.clearParentsAndMarkUpdated(5L);
+		graphBuilder.addParent(5L, 1L);
+		graphBuilder.addParent(6L, 1L);
+		graphBuilder.addParent(7L, 2L);
+		graphBuilder.addParent(7L, 6L);
+		graphBuilder.clearParentsAndMarkUpdated(1L);
+		Map<Long, Node> nodes = getNodes(graphBuilder);
+
+		assertThrows(GraphBuilderException.class, () -> nodes.get(2L).getTransitiveClosure("MAIN", true));
+		assertEquals(Sets.newHashSet(1L, 3L), nodes.get(2L).getTransitiveClosure("MAIN", false));
+		assertEquals(Sets.newHashSet(1L, 2L, 3L), nodes.get(4L).getTransitiveClosure("MAIN", true));
+		assertEquals(Sets.newHashSet(1L, 2L, 3L, 6L), nodes.get(7L).getTransitiveClosure("MAIN", true));
+		assertEquals(Sets.newHashSet(1L), nodes.get(5L).getTransitiveClosure("MAIN", true));
+		assertTrue(nodes.get(4L).isAncestorOrSelfUpdated());
+	}
+
+	private Map<Long, Node> getNodes(GraphBuilder graphBuilder) {
+		return graphBuilder.getNodes().stream().collect(Collectors.toMap(Node::getId, Function.identity()));
+	}
+
+}
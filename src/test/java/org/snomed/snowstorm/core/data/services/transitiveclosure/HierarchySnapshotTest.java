@@ -0,0 +1,49 @@
+package org.snomed.snowstorm.core.data.services.transitiveclosure;
+
+import com.google.common.collect.Sets;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+class HierarchySnapshotTest {
+
+	@Test
+	void hierarchyOperators() {
+		// 1 <- 2 <- 4
+		// 1 <- 3 <- 4 <- 5
+		// 6 is referenced as a parent of 7 but has no QueryConcept
+		HierarchySnapshot snapshot = new HierarchySnapshot.Builder()
+				.addConcept(1L, Collections.emptySet())
+				.addConcept(2L, Collections.singleton(1L))
+				.addConcept(3L, Collections.singleton(1L))
+				.addConcept(4L, Sets.newHashSet(2L, 3L))
+				.addConcept(5L, Collections.singleton(4L))
+				.addConcept(7L, Collections.singleton(6L))
+				.build(1L);
+
+		assertEquals(6, snapshot.getConceptCount());
+		assertTrue(snapshot.contains(1L));
+		assertFalse(snapshot.contains(6L));
+		assertFalse(snapshot.contains(100L));
+
+		assertEquals(Sets.newHashSet(2L, 3L), snapshot.getParents(4L));
+		assertEquals(Sets.newHashSet(2L, 3L), snapshot.getChildren(1L));
+		assertEquals(Collections.singleton(7L), snapshot.getChildren(6L));
+		assertEquals(Collections.emptySet(), snapshot.getParents(7L));
+
+		assertEquals(Sets.newHashSet(1L, 2L, 3L, 4L), snapshot.getAncestors(Collections.singleton(5L)));
+		assertEquals(Sets.newHashSet(1L), snapshot.getAncestors(Sets.newHashSet(2L, 3L)));
+		assertEquals(Sets.newHashSet(1L, 2L, 3L), snapshot.getAncestors(Sets.newHashSet(2L, 4L)));
+		assertEquals(Collections.emptySet(), snapshot.getAncestors(Collections.singleton(7L)));
+
+		assertEquals(Sets.newHashSet(2L, 3L, 4L, 5L), snapshot.getDescendants(Collections.singleton(1L)));
+		assertEquals(Sets.newHashSet(4L, 5L), snapshot.getDescendants(Collections.singleton(3L)));
+		assertEquals(Collections.singleton(7L), snapshot.getDescendants(Collections.singleton(6L)));
+		assertEquals(Collections.emptySet(), snapshot.getDescendants(Collections.singleton(100L)));
+	}
+
+}
@@ -0,0 +1,124 @@
+package org.snomed.snowstorm.core.data.services.transitiveclosure;
+
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the previous recursive transitive closure calculation with the GraphBuilder closure engine
+ * using a synthetic hierarchy of a similar size and shape to the International Edition inferred form.
+ *
+ * Not run as part of the build. Run the main method, the GC profiler reports heap allocation per operation (gc.alloc.rate.norm).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgs = {"-Xmx4g"})
+public class TransitiveClosureBenchmark {
+
+	private static final int CONCEPTS = 350_000;
+	private static final double ADDITIONAL_PARENT_RATE = 0.35;
+
+	private long[] sources;
+	private long[] destinations;
+
+	@Setup
+	public void generateHierarchy() {
+		// Each concept gets a random earlier concept as parent, some get a second parent.
+		// This gives a depth and ancestor count similar to the clinical finding hierarchy.
+		Random random = new Random(1234);
+		int edgeCount = 0;
+		sources = new long[CONCEPTS * 2];
+		destinations = new long[CONCEPTS * 2];
+		for (int concept = 1; concept < CONCEPTS; concept++) {
+			sources[edgeCount] = concept;
+			destinations[edgeCount++] = random.nextInt(concept);
+			if (concept > 1 && random.nextDouble() < ADDITIONAL_PARENT_RATE) {
+				sources[edgeCount] = concept;
+				destinations[edgeCount++] = random.nextInt(concept);
+			}
+		}
+		sources = Arrays.copyOf(sources, edgeCount);
+		destinations = Arrays.copyOf(destinations, edgeCount);
+	}
+
+	@Benchmark
+	public long recursiveClosures() {
+		Map<Long, RecursiveNode> nodes = new HashMap<>();
+		for (int i = 0; i < sources.length; i++) {
+			RecursiveNode destination = nodes.computeIfAbsent(destinations[i], RecursiveNode::new);
+			nodes.computeIfAbsent(sources[i], RecursiveNode::new).parents.add(destination);
+		}
+		long ancestorCount = 0;
+		for (RecursiveNode node : nodes.values()) {
+			LongOpenHashSet parentIds = new LongOpenHashSet();
+			node.getTransitiveClosure(parentIds);
+			ancestorCount += parentIds.size();
+		}
+		return ancestorCount;
+	}
+
+	@Benchmark
+	public long graphBuilderClosures() throws GraphBuilderException {
+		GraphBuilder graphBuilder = new GraphBuilder();
+		for (int i = 0; i < sources.length; i++) {
+			graphBuilder.addParent(sources[i], destinations[i]);
+		}
+		long ancestorCount = 0;
+		for (Node node : graphBuilder.getNodes()) {
+			ancestorCount += node.getTransitiveClosure("MAIN", true).size();
+		}
+		return ancestorCount;
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder()
+				.include(TransitiveClosureBenchmark.class.getSimpleName())
+				.addProfiler(GCProfiler.class)
+				.build()).run();
+	}
+
+	// The implementation used by Node before the closure engine was added
+	private static final class RecursiveNode {
+
+		private final Long id;
+		private final Set<RecursiveNode> parents = new HashSet<>();
+
+		private RecursiveNode(Long id) {
+			this.id = id;
+		}
+
+		private void getTransitiveClosure(Set<Long> parentIds) {
+			for (RecursiveNode parent : parents) {
+				if (parentIds.add(parent.id)) {
+					parent.getTransitiveClosure(parentIds);
+				}
+			}
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (this == o) return true;
+			if (o == null || getClass() != o.getClass()) return false;
+			return id.equals(((RecursiveNode) o).id);
+		}
+
+		@Override
+		public int hashCode() {
+			return id.hashCode();
+		}
+	}
+}
@@ -17,13 +17,13 @@ import org.snomed.snowstorm.core.util.StreamUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.util.ReflectionTestUtils;
 
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.*;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
 
@@ -439,6 +439,48 @@ class ExportServiceTest extends AbstractTest {
 		}
 	}
 
+	@Test
+	void concurrentExportMatchesSequentialExport() throws Exception {
+		Object concurrency = ReflectionTestUtils.getField(exportService, "exportConcurrency");
+		Map<String, List<String>> concurrentExport;
+		Map<String, List<String>> sequentialExport;
+		try {
+			ReflectionTestUtils.setField(exportService, "exportConcurrency", 4);
+			concurrentExport = exportSnapshotEntries();
+			ReflectionTestUtils.setField(exportService, "exportConcurrency", 1);
+			sequentialExport = exportSnapshotEntries();
+		} finally {
+			ReflectionTestUtils.setField(exportService, "exportConcurrency", concurrency);
+		}
+
+		// Spool files are copied into the zip in the original entry order
+		assertEquals(new ArrayList<>(sequentialExport.keySet()), new ArrayList<>(concurrentExport.keySet()));
+		assertEquals(sequentialExport, concurrentExport);
+		assertTrue(concurrentExport.keySet().stream().anyMatch(name -> name.contains("sct2_Concept_Snapshot")));
+	}
+
+	private Map<String, List<String>> exportSnapshotEntries() throws IOException {
+		File exportFile = getTempFile("export", ".zip");
+		try (FileOutputStream outputStream = new FileOutputStream(exportFile)) {
+			ExportConfiguration exportConfiguration = new ExportConfiguration("MAIN", RF2Type.SNAPSHOT);
+			exportConfiguration.setConceptsAndRelationshipsOnly(false);
+			exportConfiguration.setFilenameEffectiveDate("20190904");
+			exportService.createJob(exportConfiguration);
+			exportService.exportRF2Archive(exportConfiguration, outputStream);
+		}
+		Map<String, List<String>> entries = new LinkedHashMap<>();
+		try (ZipInputStream zipInputStream = new ZipInputStream(new FileInputStream(exportFile))) {
+			ZipEntry entry;
+			while ((entry = zipInputStream.getNextEntry()) != null) {
+				List<String> lines = getLines(zipInputStream);
+				// Row order within a file is not part of the comparison
+				Collections.sort(lines);
+				entries.put(entry.getName(), lines);
+			}
+		}
+		return entries;
+	}
+
 	void printLines(List<String> lines) {
 		for (String l : lines) {
 			System.out.println(l);
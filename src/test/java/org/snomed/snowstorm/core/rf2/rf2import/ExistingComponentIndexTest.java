@@ -0,0 +1,53 @@
+package org.snomed.snowstorm.core.rf2.rf2import;
+
+import org.junit.jupiter.api.Test;
+import org.snomed.snowstorm.core.data.domain.Concept;
+import org.snomed.snowstorm.core.data.domain.ReferenceSetMember;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+class ExistingComponentIndexTest {
+
+	@Test
+	void stagedStatesAppliedOnCommit() {
+		ExistingComponentIndex index = new ExistingComponentIndex(false);
+		index.put("100001", 20200131, true);
+		index.put("100002", null, false);
+		assertEquals(1, index.size());
+		assertEquals(20200131, index.getEffectiveTime("100001").intValue());
+		assertTrue(index.isReleased("100001"));
+		assertNull(index.getEffectiveTime("100002"));
+		assertFalse(index.isReleased("100002"));
+
+		Concept changed = new Concept("100001");
+		changed.setReleased(true);
+		Concept added = new Concept("100003");
+		added.release(20200731);
+		index.stage(Arrays.asList(changed, added));
+		assertEquals(20200131, index.getEffectiveTime("100001").intValue());
+		assertNull(index.getEffectiveTime("100003"));
+
+		index.applyStaged();
+		assertNull(index.getEffectiveTime("100001"));
+		assertTrue(index.isReleased("100001"));
+		assertEquals(20200731, index.getEffectiveTime("100003").intValue());
+
+		Concept unreleased = new Concept("100003");
+		index.stage(Collections.singleton(unreleased));
+		index.applyStaged();
+		assertNull(index.getEffectiveTime("100003"));
+		assertEquals(1, index.size());
+	}
+
+	@Test
+	void memberIds() {
+		ExistingComponentIndex index = new ExistingComponentIndex(true);
+		ReferenceSetMember member = new ReferenceSetMember("a2f8d2a6-4a4c-4b4e-8f5e-2d0c3b7d1a01", 20190731, true, "900000000000207008", "723264001", "100001");
+		index.put(member.getId(), member.getEffectiveTimeI(), true);
+		assertEquals(20190731, index.getEffectiveTime(member.getId()).intValue());
+		assertFalse(index.isReleased("a2f8d2a6-4a4c-4b4e-8f5e-2d0c3b7d1a02"));
+	}
+}
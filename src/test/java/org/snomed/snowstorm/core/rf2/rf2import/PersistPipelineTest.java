@@ -0,0 +1,47 @@
+package org.snomed.snowstorm.core.rf2.rf2import;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+class PersistPipelineTest {
+
+	@Test
+	void batchesSavedInSubmittedOrder() {
+		List<Integer> looked = Collections.synchronizedList(new ArrayList<>());
+		List<Integer> saved = Collections.synchronizedList(new ArrayList<>());
+		PersistPipeline<Integer> pipeline = new PersistPipeline<>("test", 2, looked::addAll, saved::addAll);
+		try {
+			for (int i = 0; i < 20; i++) {
+				pipeline.submit(Arrays.asList(i * 2, i * 2 + 1));
+			}
+			pipeline.awaitCompletion();
+		} finally {
+			pipeline.shutdown();
+		}
+		assertEquals(40, looked.size());
+		for (int i = 0; i < 40; i++) {
+			assertEquals(i, saved.get(i).intValue());
+		}
+	}
+
+	@Test
+	void saveFailureThrownToSubmitter() {
+		PersistPipeline<Integer> pipeline = new PersistPipeline<>("test", 2, batch -> {}, batch -> {
+			throw new IllegalArgumentException("Save failed");
+		});
+		try {
+			pipeline.submit(Collections.singletonList(1));
+			try {
+				pipeline.awaitCompletion();
+				fail("Expected failure");
+			} catch (IllegalStateException e) {
+				assertEquals("Save failed", e.getCause().getMessage());
+			}
+		} finally {
+			pipeline.shutdown();
+		}
+	}
+}
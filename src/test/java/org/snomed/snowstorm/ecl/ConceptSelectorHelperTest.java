@@ -0,0 +1,34 @@
+package org.snomed.snowstorm.ecl;
+
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+
+class ConceptSelectorHelperTest {
+
+	@Test
+	void sortAndPagePrimitiveSet() {
+		LongOpenHashSet ids = new LongOpenHashSet(new long[] {3, 100, 1, 20, 5});
+
+		Page<Long> all = ConceptSelectorHelper.sortAndPage(ids, null);
+		assertEquals(Arrays.asList(100L, 20L, 5L, 3L, 1L), all.getContent());
+		assertEquals(5, all.getTotalElements());
+
+		Page<Long> secondPage = ConceptSelectorHelper.sortAndPage(ids, PageRequest.of(1, 2));
+		assertEquals(Arrays.asList(5L, 3L), secondPage.getContent());
+		assertEquals(5, secondPage.getTotalElements());
+
+		Page<Long> beyondResults = ConceptSelectorHelper.sortAndPage(ids, PageRequest.of(3, 2));
+		assertEquals(Collections.emptyList(), beyondResults.getContent());
+		assertEquals(5, beyondResults.getTotalElements());
+
+		assertEquals(0, ConceptSelectorHelper.sortAndPage(new LongOpenHashSet(), PageRequest.of(0, 10)).getTotalElements());
+	}
+
+}
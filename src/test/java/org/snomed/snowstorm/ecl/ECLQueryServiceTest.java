@@ -26,6 +26,7 @@ import java.util.stream.Collectors;
 
 import static io.kaicode.elasticvc.api.VersionControlHelper.LARGE_PAGE;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 import static org.snomed.snowstorm.core.data.domain.Concepts.*;
 
 @ExtendWith(SpringExtension.class)
@@ -276,6 +277,19 @@ class ECLQueryServiceTest extends AbstractTest {
 				strings(selectConceptIds(">!" + BLEEDING)));
 	}
 
+	@Test
+	void selectParentsAndAncestorsOfManyConcepts() {
+		// Parents and ancestors of a set of concepts are the union of those of each concept
+		Set<String> parents = strings(selectConceptIds(">!" + DISORDER));
+		parents.addAll(strings(selectConceptIds(">!" + CLINICAL_FINDING)));
+		assertEquals(Sets.newHashSet(CLINICAL_FINDING, SNOMEDCT_ROOT), parents);
+		assertEquals(parents, strings(selectConceptIds(">!(" + DISORDER + " OR " + CLINICAL_FINDING + ")")));
+
+		Set<String> ancestors = strings(selectConceptIds(">" + PENTALOGY_OF_FALLOT));
+		ancestors.addAll(strings(selectConceptIds(">" + BODY_STRUCTURE)));
+		assertEquals(ancestors, strings(selectConceptIds(">(" + PENTALOGY_OF_FALLOT + " OR " + BODY_STRUCTURE + ")")));
+	}
+
 	@Test
 	void selectChildren() {
 		// Direct Children
@@ -438,6 +452,30 @@ class ECLQueryServiceTest extends AbstractTest {
 				strings(selectConceptIds("<" + SNOMEDCT_ROOT + " AND (<<" + BLEEDING + " OR " + SNOMEDCT_ROOT +")")));
 	}
 
+	@Test
+	void plannedConjunction() {
+		String ecl = "(" + CLINICAL_FINDING + ") AND (<<" + DISORDER + " OR >>" + DISORDER + ") AND (<<" + DISORDER + " OR >>" + DISORDER + ")";
+		ECLQueryPlan plan = new ECLQueryPlan(ecl, STATED);
+		Collection<Long> ids = eclQueryService.selectConceptIds(ecl, branchCriteria, MAIN, STATED, null, null, plan).getContent();
+		assertEquals(Sets.newHashSet(CLINICAL_FINDING), strings(ids));
+
+		assertEquals(1, plan.getExecutions().size());
+		ECLQueryPlan execution = plan.getExecutions().get(0);
+		List<String> steps = execution.getSteps().stream().map(ECLQueryPlan.Step::getDescription).collect(Collectors.toList());
+		String disjunction = "(<< " + DISORDER + " OR >> " + DISORDER + ")";
+		assertEquals("Merge duplicate sub-expression " + disjunction, steps.get(0));
+		assertEquals("Select (" + CLINICAL_FINDING + ")", steps.get(1));
+		// The single concept is pushed down into the selection of the larger conjunct
+		assertTrue(steps.contains("Select " + disjunction + " within 1 concepts"));
+		assertEquals(1, execution.getResultCount().longValue());
+
+		// A second execution gets its own section
+		eclQueryService.selectConceptIds(ecl, branchCriteria, MAIN, STATED, null, null, plan);
+		assertEquals(2, plan.getExecutions().size());
+		assertEquals(steps.size(), plan.getExecutions().get(1).getSteps().size());
+		assertTrue(plan.getSteps().isEmpty());
+	}
+
 	@Test
 	void attributeGroups() {
 		String eclWithoutGrouping =
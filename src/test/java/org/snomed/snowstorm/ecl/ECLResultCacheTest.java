@@ -0,0 +1,44 @@
+package org.snomed.snowstorm.ecl;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+
+class ECLResultCacheTest {
+
+	@Test
+	void normalise() {
+		assertEquals("<< 404684003", ECLResultCache.normalise("  <<  404684003 |Clinical finding (finding)|  "));
+		assertEquals("<< 404684003 : 363698007 = << 39057004",
+				ECLResultCache.normalise("<< 404684003 |Clinical finding|:\n\t363698007 |Finding site| = << 39057004 |Pulmonary valve|"));
+		assertEquals("<< 404684003 {{ term = \"heart  |attack|\" }}", ECLResultCache.normalise("<< 404684003 {{ term = \"heart  |attack|\" }}"));
+	}
+
+	@Test
+	void getPage() {
+		long[] conceptIds = {5, 4, 3, 2, 1};
+
+		Page<Long> all = ECLResultCache.getPage(conceptIds, null);
+		assertEquals(Arrays.asList(5L, 4L, 3L, 2L, 1L), all.getContent());
+		assertEquals(5, all.getTotalElements());
+
+		Page<Long> secondPage = ECLResultCache.getPage(conceptIds, PageRequest.of(1, 2));
+		assertEquals(Arrays.asList(3L, 2L), secondPage.getContent());
+		assertEquals(5, secondPage.getTotalElements());
+
+		Page<Long> lastPage = ECLResultCache.getPage(conceptIds, PageRequest.of(2, 2));
+		assertEquals(Collections.singletonList(1L), lastPage.getContent());
+
+		Page<Long> beyondResults = ECLResultCache.getPage(conceptIds, PageRequest.of(3, 2));
+		assertEquals(Collections.emptyList(), beyondResults.getContent());
+		assertEquals(5, beyondResults.getTotalElements());
+
+		assertEquals(0, ECLResultCache.getPage(new long[0], PageRequest.of(0, 10)).getTotalElements());
+	}
+
+}
@@ -0,0 +1,74 @@
+package org.snomed.snowstorm.ecl.domain.expressionconstraint;
+
+import com.google.common.collect.Sets;
+import org.junit.jupiter.api.Test;
+import org.snomed.langauges.ecl.ECLQueryBuilder;
+import org.snomed.snowstorm.core.data.domain.Concept;
+import org.snomed.snowstorm.core.data.domain.QueryConcept;
+import org.snomed.snowstorm.core.data.services.QueryService;
+import org.snomed.snowstorm.core.data.services.transitiveclosure.HierarchySnapshot;
+import org.snomed.snowstorm.ecl.SECLObjectFactory;
+import org.snomed.snowstorm.rest.ControllerHelper;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class SSubExpressionConstraintTest {
+
+	private final ECLQueryBuilder eclQueryBuilder = new ECLQueryBuilder(new SECLObjectFactory());
+
+	@Test
+	void hierarchySnapshotUsedForConceptIdDescendingSort() {
+		// 100001 <- 200001 <- 400001
+		// 100001 <- 300001
+		HierarchySnapshot snapshot = new HierarchySnapshot.Builder()
+				.addConcept(100001L, Collections.emptySet())
+				.addConcept(200001L, Collections.singleton(100001L))
+				.addConcept(300001L, Collections.singleton(100001L))
+				.addConcept(400001L, Sets.newHashSet(200001L))
+				.build(1L);
+		QueryService queryService = mock(QueryService.class);
+		when(queryService.findHierarchySnapshot(eq("MAIN"), any(), eq(false))).thenReturn(snapshot);
+
+		SSubExpressionConstraint descendants = (SSubExpressionConstraint) eclQueryBuilder.createQuery("< 100001");
+
+		// Page requests as built by the concept search endpoint
+		PageRequest queryConceptSort = ControllerHelper.getPageRequest(0, 2, Sort.sort(QueryConcept.class).by(QueryConcept::getConceptIdL).descending());
+		Page<Long> page = descendants.select("MAIN", null, false, null, queryConceptSort, queryService).orElseThrow(AssertionError::new);
+		assertEquals(Arrays.asList(400001L, 300001L), page.getContent());
+		assertEquals(3, page.getTotalElements());
+
+		PageRequest conceptSort = ControllerHelper.getPageRequest(2, 2, Sort.sort(Concept.class).by(Concept::getConceptId).descending());
+		page = descendants.select("MAIN", null, false, null, conceptSort, queryService).orElseThrow(AssertionError::new);
+		assertEquals(Collections.singletonList(200001L), page.getContent());
+
+		page = descendants.select("MAIN", null, false, Arrays.asList(200001L, 400001L, 500001L), PageRequest.of(0, 10), queryService).orElseThrow(AssertionError::new);
+		assertEquals(Arrays.asList(400001L, 200001L), page.getContent());
+
+		verify(queryService, times(3)).findHierarchySnapshot(eq("MAIN"), any(), eq(false));
+		verifyNoMoreInteractions(queryService);
+	}
+
+	@Test
+	void hierarchySnapshotNotUsedForOtherSorts() {
+		QueryService queryService = mock(QueryService.class);
+		SSubExpressionConstraint descendants = (SSubExpressionConstraint) eclQueryBuilder.createQuery("< 100001");
+
+		PageRequest ascending = PageRequest.of(0, 10, Sort.sort(QueryConcept.class).by(QueryConcept::getConceptIdL).ascending());
+		try {
+			descendants.select("MAIN", null, false, null, ascending, queryService);
+		} catch (RuntimeException e) {
+			// The Elasticsearch fallback can not run against the mock
+		}
+		verify(queryService, never()).findHierarchySnapshot(any(), any(), anyBoolean());
+	}
+
+}
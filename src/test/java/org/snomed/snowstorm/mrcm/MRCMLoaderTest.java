@@ -0,0 +1,68 @@
+package org.snomed.snowstorm.mrcm;
+
+import com.google.common.collect.Sets;
+import org.junit.jupiter.api.Test;
+import org.snomed.snowstorm.AbstractTest;
+import org.snomed.snowstorm.core.data.domain.Concepts;
+import org.snomed.snowstorm.core.data.domain.ReferenceSetMember;
+import org.snomed.snowstorm.core.data.services.ConceptService;
+import org.snomed.snowstorm.core.data.services.ReferenceSetMemberService;
+import org.snomed.snowstorm.core.data.services.ServiceException;
+import org.snomed.snowstorm.core.data.services.ServiceTestUtil;
+import org.snomed.snowstorm.mrcm.model.MRCM;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import static org.junit.Assert.*;
+
+class MRCMLoaderTest extends AbstractTest {
+
+	private static final String ASSOCIATED_MORPHOLOGY = "116676008";
+
+	@Autowired
+	private MRCMLoader mrcmLoader;
+
+	@Autowired
+	private ReferenceSetMemberService memberService;
+
+	@Autowired
+	private ConceptService conceptService;
+
+	@Test
+	void cachedMRCMEvictedByAttributeDomainChange() throws ServiceException {
+		ServiceTestUtil testUtil = new ServiceTestUtil(conceptService);
+		testUtil.createConceptWithPathIdAndTerm(MAIN, Concepts.CLINICAL_FINDING, "Clinical finding (finding)");
+		testUtil.createConceptWithPathIdAndTerm(MAIN, Concepts.FINDING_SITE, "Finding site (attribute)");
+		testUtil.createConceptWithPathIdAndTerm(MAIN, ASSOCIATED_MORPHOLOGY, "Associated morphology (attribute)");
+		memberService.createMembers(MAIN, Sets.newHashSet(
+				new ReferenceSetMember(Concepts.CORE_MODULE, Concepts.REFSET_MRCM_DOMAIN_INTERNATIONAL, Concepts.CLINICAL_FINDING)
+						.setAdditionalField("domainConstraint", "<< 404684003 |Clinical finding (finding)|")
+						.setAdditionalField("parentDomain", null)
+						.setAdditionalField("proximalPrimitiveConstraint", "<< 404684003 |Clinical finding (finding)|")
+						.setAdditionalField("proximalPrimitiveRefinement", null)
+						.setAdditionalField("guideURL", ""),
+				attributeDomain(Concepts.FINDING_SITE)));
+
+		MRCM mrcm = mrcmLoader.loadActiveMRCMFromCache(MAIN);
+		assertEquals(1, mrcm.getAttributeDomains().size());
+		assertSame(mrcm, mrcmLoader.loadActiveMRCMFromCache(MAIN));
+
+		// Commits which do not change the MRCM keep the cached entry
+		testUtil.createConceptWithPathIdAndTerm(MAIN, Concepts.HEART_STRUCTURE, "Heart structure (body structure)");
+		assertSame(mrcm, mrcmLoader.loadActiveMRCMFromCache(MAIN));
+
+		memberService.createMember(MAIN, attributeDomain(ASSOCIATED_MORPHOLOGY));
+		MRCM updatedMrcm = mrcmLoader.loadActiveMRCMFromCache(MAIN);
+		assertNotSame(mrcm, updatedMrcm);
+		assertEquals(2, updatedMrcm.getAttributeDomains().size());
+	}
+
+	private ReferenceSetMember attributeDomain(String attributeId) {
+		return new ReferenceSetMember(Concepts.CORE_MODULE, Concepts.REFSET_MRCM_ATTRIBUTE_DOMAIN_INTERNATIONAL, attributeId)
+				.setAdditionalField("domainId", Concepts.CLINICAL_FINDING)
+				.setAdditionalField("grouped", "1")
+				.setAdditionalField("attributeCardinality", "0..*")
+				.setAdditionalField("attributeInGroupCardinality", "0..1")
+				.setAdditionalField("ruleStrengthId", "723597001")
+				.setAdditionalField("contentTypeId", "723596005");
+	}
+}
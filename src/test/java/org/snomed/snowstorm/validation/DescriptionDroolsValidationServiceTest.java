@@ -1,6 +1,7 @@
 package org.snomed.snowstorm.validation;
 
 import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
 import io.kaicode.elasticvc.api.VersionControlHelper;
 import org.junit.Assert;
 import org.junit.jupiter.api.BeforeEach;
@@ -85,4 +86,18 @@ class DescriptionDroolsValidationServiceTest extends AbstractTest {
 
         Assert.assertEquals(1, descriptions.size());
     }
+
+    @Test
+    void findDescriptionByExactTermAfterPreload() {
+        validationService.preloadExactTerms(Sets.newHashSet("Entire heart", "Body structure (body structure)", "No match"));
+
+        Set<org.ihtsdo.drools.domain.Description> matches = validationService.findActiveDescriptionByExactTerm("Entire heart");
+        Assert.assertEquals(1, matches.size());
+        Assert.assertEquals("302509004", matches.iterator().next().getConceptId());
+        Assert.assertEquals(1, validationService.findActiveDescriptionByExactTerm("Body structure (body structure)").size());
+        Assert.assertTrue(validationService.findActiveDescriptionByExactTerm("No match").isEmpty());
+        Assert.assertTrue(validationService.findInactiveDescriptionByExactTerm("Entire heart").isEmpty());
+        // Not preloaded
+        Assert.assertEquals(1, validationService.findActiveDescriptionByExactTerm("Entire heart (body structure)").size());
+    }
 }
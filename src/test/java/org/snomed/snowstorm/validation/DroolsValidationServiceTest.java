@@ -0,0 +1,116 @@
+package org.snomed.snowstorm.validation;
+
+import io.kaicode.elasticvc.api.BranchService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.snomed.snowstorm.AbstractTest;
+import org.snomed.snowstorm.core.data.domain.Concept;
+import org.snomed.snowstorm.core.data.domain.Description;
+import org.snomed.snowstorm.core.data.services.ConceptService;
+import org.snomed.snowstorm.core.data.services.ServiceException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.Assert.*;
+
+class DroolsValidationServiceTest extends AbstractTest {
+
+	@Autowired
+	private DroolsValidationService droolsValidationService;
+
+	@Autowired
+	private ConceptService conceptService;
+
+	@Autowired
+	private BranchService branchService;
+
+	@Autowired
+	private ExecutorService executorService;
+
+	@AfterEach
+	void tearDown() {
+		ReflectionTestUtils.setField(droolsValidationService, "concurrency", 4);
+		ReflectionTestUtils.setField(droolsValidationService, "minConceptsPerThread", 10);
+	}
+
+	@Test
+	void testPartitionAcrossThreads() {
+		ReflectionTestUtils.setField(droolsValidationService, "concurrency", 4);
+		ReflectionTestUtils.setField(droolsValidationService, "minConceptsPerThread", 10);
+
+		assertEquals(Arrays.asList(25, 25, 25, 25), getPartitionSizes(100));
+		assertEquals(Arrays.asList(26, 26, 26, 23), getPartitionSizes(101));
+		assertEquals(Arrays.asList(10, 5), getPartitionSizes(15));
+		assertEquals(Collections.singletonList(10), getPartitionSizes(10));
+		assertEquals(Collections.emptyList(), getPartitionSizes(0));
+	}
+
+	@Test
+	void testConcurrentPartitionsShareContext() throws ServiceException, ExecutionException, InterruptedException {
+		List<String> terms = new ArrayList<>();
+		List<Concept> concepts = new ArrayList<>();
+		for (int i = 1; i <= 20; i++) {
+			String term = "Term " + i;
+			terms.add(term);
+			concepts.add(new Concept((1000 + i) + "001").addDescription(new Description(term)));
+		}
+		terms.add("Missing term");
+		conceptService.batchCreate(concepts, MAIN);
+
+		// Lookups of all partitions run at the same time against the same context
+		ReflectionTestUtils.setField(droolsValidationService, "minConceptsPerThread", 1);
+		BranchValidationContext context = droolsValidationService.getValidationContext(branchService.findBranchOrThrow(MAIN));
+		List<Future<Map<String, Set<String>>>> futures = new ArrayList<>();
+		for (List<String> partition : droolsValidationService.partition(terms)) {
+			futures.add(executorService.submit(() -> findDescriptionIds(context.getDescriptionService(), partition)));
+		}
+		assertEquals(4, futures.size());
+		Map<String, Set<String>> concurrentResults = new HashMap<>();
+		for (Future<Map<String, Set<String>>> future : futures) {
+			concurrentResults.putAll(future.get());
+		}
+
+		// Same results from one thread using a new context
+		droolsValidationService.newRuleExecutorAndResources();
+		BranchValidationContext newContext = droolsValidationService.getValidationContext(branchService.findBranchOrThrow(MAIN));
+		assertNotSame(context, newContext);
+		assertEquals(findDescriptionIds(newContext.getDescriptionService(), terms), concurrentResults);
+		assertEquals(1, concurrentResults.get("Term 1").size());
+		assertEquals(0, concurrentResults.get("Missing term").size());
+	}
+
+	@Test
+	void testContextReusedUntilBranchHeadMoves() throws ServiceException {
+		BranchValidationContext context = droolsValidationService.getValidationContext(branchService.findBranchOrThrow(MAIN));
+		assertTrue(context.getDescriptionService().findActiveDescriptionByExactTerm("Heart").isEmpty());
+
+		// Next request on the same branch head
+		assertSame(context, droolsValidationService.getValidationContext(branchService.findBranchOrThrow(MAIN)));
+
+		conceptService.create(new Concept("100001").addDescription(new Description("Heart")), MAIN);
+		BranchValidationContext contextAfterCommit = droolsValidationService.getValidationContext(branchService.findBranchOrThrow(MAIN));
+		assertNotSame(context, contextAfterCommit);
+		assertEquals(1, contextAfterCommit.getDescriptionService().findActiveDescriptionByExactTerm("Heart").size());
+	}
+
+	private List<Integer> getPartitionSizes(int conceptCount) {
+		List<Integer> concepts = IntStream.range(0, conceptCount).boxed().collect(Collectors.toList());
+		return droolsValidationService.partition(concepts).stream().map(List::size).collect(Collectors.toList());
+	}
+
+	private Map<String, Set<String>> findDescriptionIds(DescriptionDroolsValidationService descriptionService, List<String> terms) {
+		Map<String, Set<String>> descriptionIds = new HashMap<>();
+		for (String term : terms) {
+			descriptionIds.put(term, descriptionService.findActiveDescriptionByExactTerm(term).stream()
+					.map(org.ihtsdo.drools.domain.Description::getId).collect(Collectors.toSet()));
+		}
+		return descriptionIds;
+	}
+}